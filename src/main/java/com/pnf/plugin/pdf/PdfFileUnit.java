@@ -19,7 +19,6 @@ limitations under the License.
 package com.pnf.plugin.pdf;
 
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -33,13 +32,18 @@ import java.util.UUID;
 import com.pnf.plugin.pdf.PdfStatistics.SuspiciousType;
 import com.pnf.plugin.pdf.address.IAddress;
 import com.pnf.plugin.pdf.document.TreePdfDocument;
+import com.pnf.plugin.pdf.filter.OutputLimit;
 import com.pnf.plugin.pdf.obj.PdfIndirectObj;
 import com.pnf.plugin.pdf.obj.PdfObjId;
 import com.pnf.plugin.pdf.obj.PdfStream;
 import com.pnf.plugin.pdf.obj.PdfStream.StreamType;
 import com.pnf.plugin.pdf.obj.PdfTrailer;
+import com.pnf.plugin.pdf.parser.ByteSourceFactory;
+import com.pnf.plugin.pdf.parser.DecodedStreamCache;
+import com.pnf.plugin.pdf.parser.IByteSource;
 import com.pnf.plugin.pdf.parser.PdfFile;
 import com.pnf.plugin.pdf.parser.PdfParser;
+import com.pnf.plugin.pdf.parser.PdfXrefLoader;
 import com.pnf.plugin.pdf.unit.BinaryStreamUnit;
 import com.pnf.plugin.pdf.unit.IPdfUnit;
 import com.pnf.plugin.pdf.unit.PdfObjStmUnit;
@@ -63,6 +67,7 @@ import com.pnfsoftware.jeb.core.output.IUnitFormatter;
 import com.pnfsoftware.jeb.core.output.UnitFormatterUtil;
 import com.pnfsoftware.jeb.core.output.text.impl.AsciiDocument;
 import com.pnfsoftware.jeb.core.properties.IPropertyDefinitionManager;
+import com.pnfsoftware.jeb.core.properties.IPropertyManager;
 import com.pnfsoftware.jeb.core.units.AbstractInteractiveBinaryUnit;
 import com.pnfsoftware.jeb.core.units.IUnit;
 import com.pnfsoftware.jeb.core.units.IUnitProcessor;
@@ -71,6 +76,7 @@ import com.pnfsoftware.jeb.util.format.Strings;
 import com.pnfsoftware.jeb.util.logging.GlobalLog;
 import com.pnfsoftware.jeb.util.logging.ILogger;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
+import com.pnfsoftware.jeb.util.serialization.annotations.SerCustomInit;
 import com.pnfsoftware.jeb.util.serialization.annotations.SerId;
 import com.pnfsoftware.jeb.util.serialization.annotations.SerTransient;
 
@@ -89,13 +95,31 @@ public class PdfFileUnit extends AbstractInteractiveBinaryUnit implements IPdfUn
     /** All objects by object id bound to their pdf section in file */
     @SerId(2)
     private Map<PdfObjId, PdfFile> objects = new TreeMap<>();
-    /** trailer list by buffer position */
+    /** trailers of projects saved before positions were long, migrated on load */
     @SerId(3)
-    private Map<Integer, PdfTrailer> trailers = new TreeMap<>();
+    private Map<Integer, PdfTrailer> legacyTrailers;
     @SerId(4)
     private byte[] simpleView;
     @SerId(5)
     private PdfStatistics statistics;
+    /** Maximum size of decoded stream data kept in memory, 0 when all streams stay decoded */
+    @SerId(6)
+    private long decodedBytesBudget;
+    /** Image pixels are decoded when requested, parsing only reads image headers */
+    @SerId(7)
+    private boolean lazyImageDecoding;
+    /** Maximum size of a decoded stream, 0 when not limited (projects saved before limits) */
+    @SerId(8)
+    private long maxStreamDecodedSize;
+    /** Maximum size of all decoded streams */
+    @SerId(9)
+    private long maxDocumentDecodedSize;
+    /** Expansion ratio thresholds by filter name */
+    @SerId(10)
+    private Map<String, Integer> maxRatios;
+    /** trailer list by buffer position */
+    @SerId(11)
+    private Map<Long, PdfTrailer> trailers = new TreeMap<>();
 
     @SerTransient
     private List<PdfIndirectObj> objectList;
@@ -105,18 +129,73 @@ public class PdfFileUnit extends AbstractInteractiveBinaryUnit implements IPdfUn
     /** Built dynamically from objects */
     @SerTransient
     private CrossReferences crossReferences;
+    /** Loads the objects referenced before being parsed, only while parsing in xref mode */
+    @SerTransient
+    private PdfXrefLoader objectLoader;
+    /** Input bytes, read by source-backed streams */
+    @SerTransient
+    private IByteSource source;
+    /** Decoded data of source-backed streams, built from decodedBytesBudget */
+    @SerTransient
+    private DecodedStreamCache decodedStreamCache;
+    /** Decoded size limits, built from the maximum sizes and ratios */
+    @SerTransient
+    private OutputLimit outputLimit;
 
     public PdfFileUnit(String name, IInput data, IUnitProcessor unitProcessor, IUnitCreator parent,
             IPropertyDefinitionManager pdm) {
         super(null, data, PdfPlugin.TYPE, name, unitProcessor, parent, pdm);
         identifier = name + UUID.randomUUID().toString();
+        maxStreamDecodedSize = PdfPlugin.DEFAULT_MAX_STREAM_DECODED_SIZE * 1024L * 1024L;
+        maxDocumentDecodedSize = PdfPlugin.DEFAULT_MAX_DOCUMENT_DECODED_SIZE * 1024L * 1024L;
+        maxRatios = new TreeMap<>(PdfPlugin.DEFAULT_MAX_RATIOS);
+    }
+
+    @SerCustomInit
+    private void migrateTrailers() {
+        if(legacyTrailers != null) {
+            trailers = new TreeMap<>();
+            for(Entry<Integer, PdfTrailer> entry: legacyTrailers.entrySet()) {
+                trailers.put((long)entry.getKey(), entry.getValue());
+            }
+            legacyTrailers = null;
+        }
     }
 
     @Override
     public boolean process() {
         PdfParser parser = new PdfParser(this);
-        try(InputStream is = getInput().getStream()) {
-            parser.parse(is);
+        IPropertyManager pm = getPropertyManager();
+        if(pm != null) {
+            parser.setXrefParsing(Boolean.TRUE.equals(pm.getBoolean(PdfPlugin.PROPERTY_XREF_PARSING)));
+            parser.setXrefReportUnlisted(Boolean.TRUE.equals(pm.getBoolean(PdfPlugin.PROPERTY_XREF_REPORT_UNLISTED)));
+            Integer workerThreads = pm.getInteger(PdfPlugin.PROPERTY_WORKER_THREADS);
+            if(workerThreads != null && workerThreads > 0) {
+                parser.setParallelism(workerThreads);
+            }
+            lazyImageDecoding = Boolean.TRUE.equals(pm.getBoolean(PdfPlugin.PROPERTY_LAZY_IMAGE_DECODING));
+            if(Boolean.TRUE.equals(pm.getBoolean(PdfPlugin.PROPERTY_LAZY_STREAM_DECODING))) {
+                Integer budget = pm.getInteger(PdfPlugin.PROPERTY_DECODED_BYTES_BUDGET);
+                decodedBytesBudget = (budget == null || budget <= 0 ? PdfPlugin.DEFAULT_DECODED_BYTES_BUDGET: budget)
+                        * 1024L * 1024L;
+            }
+            Integer maxStreamSize = pm.getInteger(PdfPlugin.PROPERTY_MAX_STREAM_DECODED_SIZE);
+            if(maxStreamSize != null && maxStreamSize > 0) {
+                maxStreamDecodedSize = maxStreamSize * 1024L * 1024L;
+            }
+            Integer maxDocumentSize = pm.getInteger(PdfPlugin.PROPERTY_MAX_DOCUMENT_DECODED_SIZE);
+            if(maxDocumentSize != null && maxDocumentSize > 0) {
+                maxDocumentDecodedSize = maxDocumentSize * 1024L * 1024L;
+            }
+            for(String filter: PdfPlugin.DEFAULT_MAX_RATIOS.keySet()) {
+                Integer ratio = pm.getInteger(filter + PdfPlugin.PROPERTY_SUFFIX_MAX_RATIO);
+                if(ratio != null && ratio >= 0) {
+                    maxRatios.put(filter, ratio);
+                }
+            }
+        }
+        try {
+            parser.parse(getSource());
             simpleView = parser.getSimpleView();
         }
         catch(IOException e) {
@@ -233,6 +312,40 @@ public class PdfFileUnit extends AbstractInteractiveBinaryUnit implements IPdfUn
         return streamUnit;
     }
 
+    /**
+     * Bytes of the input, shared by the parser and the source-backed streams
+     */
+    public synchronized IByteSource getSource() throws IOException {
+        if(source == null) {
+            source = ByteSourceFactory.create(getInput());
+        }
+        return source;
+    }
+
+    public boolean isLazyImageDecoding() {
+        return lazyImageDecoding;
+    }
+
+    /**
+     * @return the cache of decoded stream data, null when streams keep their data (default mode)
+     */
+    public synchronized DecodedStreamCache getDecodedStreamCache() {
+        if(decodedStreamCache == null && decodedBytesBudget > 0) {
+            decodedStreamCache = new DecodedStreamCache(decodedBytesBudget);
+        }
+        return decodedStreamCache;
+    }
+
+    /**
+     * @return the decoded size limits of the streams, null when decoding is not limited
+     */
+    public synchronized OutputLimit getOutputLimit() {
+        if(outputLimit == null && maxStreamDecodedSize > 0) {
+            outputLimit = new OutputLimit(maxStreamDecodedSize, maxDocumentDecodedSize, maxRatios);
+        }
+        return outputLimit;
+    }
+
     public List<PdfIndirectObj> getObjectList() {
         if(objectList == null) {
             objectList = new ArrayList<>(toMap().values());
@@ -246,10 +359,18 @@ public class PdfFileUnit extends AbstractInteractiveBinaryUnit implements IPdfUn
         return objects;
     }
 
-    public Map<Integer, PdfTrailer> getTrailers() {
+    public Map<Long, PdfTrailer> getTrailers() {
         return trailers;
     }
 
+    public PdfXrefLoader getObjectLoader() {
+        return objectLoader;
+    }
+
+    public void setObjectLoader(PdfXrefLoader objectLoader) {
+        this.objectLoader = objectLoader;
+    }
+
     private Map<PdfObjId, PdfIndirectObj> toMap() {
         Map<PdfObjId, PdfIndirectObj> objectsMap = new TreeMap<>();
         for(Entry<PdfObjId, PdfFile> objectEntrySet: objects.entrySet()) {
@@ -425,6 +546,7 @@ public class PdfFileUnit extends AbstractInteractiveBinaryUnit implements IPdfUn
         }
         stb.append("\n").append(statistics.toStringTokens());
         stb.append(getStatistics().toStringCorruptions());
+        stb.append(getStatistics().toStringUnlistedObjects());
         return stb.toString();
     }
 
@@ -18,16 +18,27 @@ limitations under the License.
 
 package com.pnf.plugin.pdf;
 
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.pnf.plugin.pdf.filter.OutputLimit;
 import com.pnf.plugin.pdf.parser.PdfHeaderParser;
 import com.pnfsoftware.jeb.core.IUnitCreator;
 import com.pnfsoftware.jeb.core.PluginInformation;
 import com.pnfsoftware.jeb.core.Version;
 import com.pnfsoftware.jeb.core.input.IInput;
 import com.pnfsoftware.jeb.core.properties.IPropertyDefinitionManager;
+import com.pnfsoftware.jeb.core.properties.impl.PropertyTypeBoolean;
+import com.pnfsoftware.jeb.core.properties.impl.PropertyTypeInteger;
 import com.pnfsoftware.jeb.core.units.AbstractUnitIdentifier;
 import com.pnfsoftware.jeb.core.units.IUnit;
 import com.pnfsoftware.jeb.core.units.IUnitProcessor;
 import com.pnfsoftware.jeb.core.units.WellKnownUnitTypes;
+import com.pnfsoftware.jeb.util.logging.GlobalLog;
+import com.pnfsoftware.jeb.util.logging.ILogger;
 
 /**
  * PDF JEB2 unit plugin. Detects PDF files and extract their content
@@ -36,10 +47,60 @@ import com.pnfsoftware.jeb.core.units.WellKnownUnitTypes;
  * 
  */
 public class PdfPlugin extends AbstractUnitIdentifier {
+    private static final ILogger logger = GlobalLog.getLogger(PdfPlugin.class);
+
     public static final String TYPE = WellKnownUnitTypes.typePdf;
 
+    public static final String PROPERTY_XREF_PARSING = "XrefParsing";
+    public static final String PROPERTY_XREF_REPORT_UNLISTED = "XrefReportUnlisted";
+    public static final String PROPERTY_WORKER_THREADS = "WorkerThreads";
+    public static final String PROPERTY_LAZY_STREAM_DECODING = "LazyStreamDecoding";
+    public static final String PROPERTY_DECODED_BYTES_BUDGET = "DecodedBytesBudget";
+    public static final String PROPERTY_LAZY_IMAGE_DECODING = "LazyImageDecoding";
+    public static final String PROPERTY_MAX_STREAM_DECODED_SIZE = "MaxStreamDecodedSize";
+    public static final String PROPERTY_MAX_DOCUMENT_DECODED_SIZE = "MaxDocumentDecodedSize";
+    /**
+     * System property overriding the number of bytes scanned for a PDF header when the input does not
+     * start with it (0: whole input). Identification runs before any unit exists, so this setting
+     * cannot be read from the plugin properties.
+     */
+    public static final String SYSTEM_PROPERTY_IDENTIFICATION_WINDOW = "pdf.IdentificationWindow";
+    /** Suffix of the expansion ratio threshold properties, prefixed by a filter name */
+    public static final String PROPERTY_SUFFIX_MAX_RATIO = "MaxRatio";
+
+    /** Default size of decoded stream data kept in memory in lazy mode, in MB */
+    public static final int DEFAULT_DECODED_BYTES_BUDGET = 256;
+    public static final int DEFAULT_MAX_STREAM_DECODED_SIZE = 256;
+    public static final int DEFAULT_MAX_DOCUMENT_DECODED_SIZE = 4096;
+    /** Default expansion ratio thresholds, by filter name (0: none) */
+    public static final Map<String, Integer> DEFAULT_MAX_RATIOS = createDefaultMaxRatios();
+
+    /** Number of bytes scanned for a PDF header when the input does not start with it */
+    private final int identificationWindow;
+
+    /** Identification metrics: number of header scans and bytes read by them */
+    private final AtomicLong headerScanCount = new AtomicLong();
+    private final AtomicLong headerScanBytesRead = new AtomicLong();
+
     public PdfPlugin() {
+        this(getDefaultIdentificationWindow());
+    }
+
+    /**
+     * @param identificationWindow number of bytes scanned for a PDF header when the input does not
+     *            start with it, 0 to scan the whole input
+     */
+    public PdfPlugin(int identificationWindow) {
         super(TYPE, 0);
+        this.identificationWindow = identificationWindow;
+    }
+
+    private static int getDefaultIdentificationWindow() {
+        Integer window = Integer.getInteger(SYSTEM_PROPERTY_IDENTIFICATION_WINDOW);
+        if(window == null || window < 0) {
+            return PdfHeaderParser.DEFAULT_PREFIX_WINDOW;
+        }
+        return window;
     }
 
     @Override
@@ -50,6 +111,40 @@ public class PdfPlugin extends AbstractUnitIdentifier {
     @Override
     public void initialize(IPropertyDefinitionManager parentPdm) {
         super.initialize(parentPdm);
+        pdm.addDefinition(PROPERTY_XREF_PARSING, PropertyTypeBoolean.create(false),
+                "Read objects at the offsets given by the xref sections instead of scanning the whole file"
+                        + " (all listed objects are still parsed)");
+        pdm.addDefinition(PROPERTY_XREF_REPORT_UNLISTED, PropertyTypeBoolean.create(false),
+                "In xref mode, also scan the file for objects not listed in any xref section (as slow as a full scan)");
+        pdm.addDefinition(PROPERTY_WORKER_THREADS, PropertyTypeInteger.create(0, 256, 0),
+                "Maximum number of threads used to decode streams (0: number of processors)");
+        pdm.addDefinition(PROPERTY_LAZY_STREAM_DECODING, PropertyTypeBoolean.create(false),
+                "Read stream data from the input when needed and release decoded data over the budget");
+        pdm.addDefinition(PROPERTY_DECODED_BYTES_BUDGET,
+                PropertyTypeInteger.create(1, 1024 * 1024, DEFAULT_DECODED_BYTES_BUDGET),
+                "In lazy stream decoding mode, maximum size of decoded stream data kept in memory (MB)");
+        pdm.addDefinition(PROPERTY_LAZY_IMAGE_DECODING, PropertyTypeBoolean.create(false),
+                "Only read image headers while parsing: pixels are decoded when the image stream is opened");
+        pdm.addDefinition(PROPERTY_MAX_STREAM_DECODED_SIZE,
+                PropertyTypeInteger.create(1, 2047, DEFAULT_MAX_STREAM_DECODED_SIZE),
+                "Maximum size of a decoded stream (MB): decoding stops there and the stream is reported");
+        pdm.addDefinition(PROPERTY_MAX_DOCUMENT_DECODED_SIZE,
+                PropertyTypeInteger.create(1, 1024 * 1024, DEFAULT_MAX_DOCUMENT_DECODED_SIZE),
+                "Maximum size of all decoded streams of a document (MB)");
+        for(Entry<String, Integer> e: DEFAULT_MAX_RATIOS.entrySet()) {
+            pdm.addDefinition(e.getKey() + PROPERTY_SUFFIX_MAX_RATIO,
+                    PropertyTypeInteger.create(0, 1_000_000, e.getValue()),
+                    String.format("Maximum expansion ratio of %s over %d MB of output (0: none)", e.getKey(),
+                            OutputLimit.RATIO_CHECK_FLOOR / 1_000_000));
+        }
+    }
+
+    private static Map<String, Integer> createDefaultMaxRatios() {
+        Map<String, Integer> ratios = new LinkedHashMap<>();
+        ratios.put("FlateDecode", 500);
+        ratios.put("LZWDecode", 500);
+        ratios.put("RunLengthDecode", 0);
+        return Collections.unmodifiableMap(ratios);
     }
 
     @Override
@@ -58,11 +153,29 @@ public class PdfPlugin extends AbstractUnitIdentifier {
             return true;
         }
         // determine PDF file
-        return new PdfHeaderParser(input).isPdf();
+        PdfHeaderParser headerParser = new PdfHeaderParser(input, identificationWindow);
+        boolean isPdf = headerParser.isPdf();
+        headerScanCount.incrementAndGet();
+        headerScanBytesRead.addAndGet(headerParser.getBytesRead());
+        return isPdf;
+    }
+
+    public int getIdentificationWindow() {
+        return identificationWindow;
+    }
+
+    public long getHeaderScanCount() {
+        return headerScanCount.get();
+    }
+
+    public long getHeaderScanBytesRead() {
+        return headerScanBytesRead.get();
     }
 
     @Override
     public IUnit prepare(String name, IInput data, IUnitProcessor unitProcessor, IUnitCreator parent) {
+        logger.debug("PDF identification: %d header scans read %d bytes (window: %d bytes)",
+                headerScanCount.get(), headerScanBytesRead.get(), identificationWindow);
         return new PdfFileUnit(name, data, unitProcessor, parent, pdm);
     }
 }
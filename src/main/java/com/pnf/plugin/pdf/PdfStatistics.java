@@ -31,6 +31,7 @@ import java.util.TreeSet;
 import com.pnf.plugin.pdf.obj.AbstractPdfParsableAttribute;
 import com.pnf.plugin.pdf.obj.IPdfAttribute;
 import com.pnf.plugin.pdf.obj.PdfIndirectObj;
+import com.pnf.plugin.pdf.obj.PdfObjId;
 import com.pnf.plugin.pdf.statistics.PdfUnitNotification;
 import com.pnf.plugin.pdf.unit.IPdfUnit;
 import com.pnfsoftware.jeb.core.units.IUnitNotification;
@@ -55,6 +56,12 @@ public class PdfStatistics implements IUnitNotificationManager {
 
     public static boolean BATCH_MODE = false;
 
+    /**
+     * Updates recorded by the current worker thread instead of being applied, see
+     * {@link #beginDeferredUpdates()}
+     */
+    private static final ThreadLocal<List<Runnable>> deferredUpdates = new ThreadLocal<>();
+
     public enum SuspiciousType {
         Malformed,
         StreamWithMultipleFilters,
@@ -94,6 +101,26 @@ public class PdfStatistics implements IUnitNotificationManager {
     @SerId(10)
     private String version = "";
 
+    @SerId(11)
+    /** Objects found by scanning the file but not listed in any xref section, by offset */
+    private Map<Long, String> unlistedObjects = new TreeMap<>();
+
+    @SerId(12)
+    /** Streams whose first filter failed over the parsed range and was decoded over /Length */
+    private int lengthFallbacks;
+
+    @SerId(13)
+    /** Length fallbacks avoided because the error lay before the end of both ranges */
+    private int lengthFallbacksSkipped;
+
+    @SerId(14)
+    /** Streams whose end was found right after their direct /Length */
+    private int streamLengthHits;
+
+    @SerId(15)
+    /** Streams with a direct /Length which did not end there, and were scanned for endstream */
+    private int streamLengthMisses;
+
     protected PdfStatistics(IPdfUnit unit) {
         this.unit = unit;
     }
@@ -149,6 +176,9 @@ public class PdfStatistics implements IUnitNotificationManager {
     }
 
     public void setEncrypted(boolean isEncrypted, boolean requiresUserPassword) {
+        if(defer(() -> setEncrypted(isEncrypted, requiresUserPassword))) {
+            return;
+        }
         this.isEncrypted |= isEncrypted;
         this.userPasswordRequired |= requiresUserPassword;
     }
@@ -158,9 +188,70 @@ public class PdfStatistics implements IUnitNotificationManager {
     }
 
     public void addFiltersUsed(String filter) {
+        if(defer(() -> addFiltersUsed(filter))) {
+            return;
+        }
         this.filtersUsed.add(filter);
     }
 
+    public void addUnlistedObject(long offset, PdfObjId id) {
+        unlistedObjects.put(offset, id.toString());
+    }
+
+    public Map<Long, String> getUnlistedObjects() {
+        return unlistedObjects;
+    }
+
+    /**
+     * Count a length fallback attempt of a stream decoding.
+     * 
+     * @param decoded false when the fallback was avoided by the error checkpoint
+     */
+    public void addLengthFallback(boolean decoded) {
+        if(defer(() -> addLengthFallback(decoded))) {
+            return;
+        }
+        if(decoded) {
+            lengthFallbacks++;
+        }
+        else {
+            lengthFallbacksSkipped++;
+        }
+    }
+
+    public int getLengthFallbacks() {
+        return lengthFallbacks;
+    }
+
+    public int getLengthFallbacksSkipped() {
+        return lengthFallbacksSkipped;
+    }
+
+    /**
+     * Count a lookup of endstream at the position given by a direct /Length.
+     * 
+     * @param hit false when the stream had to be scanned
+     */
+    public void addStreamLengthCheck(boolean hit) {
+        if(defer(() -> addStreamLengthCheck(hit))) {
+            return;
+        }
+        if(hit) {
+            streamLengthHits++;
+        }
+        else {
+            streamLengthMisses++;
+        }
+    }
+
+    public int getStreamLengthHits() {
+        return streamLengthHits;
+    }
+
+    public int getStreamLengthMisses() {
+        return streamLengthMisses;
+    }
+
     public Map<IPdfAttribute, List<IUnitNotification>> getAnomalies(PdfIndirectObj obj) {
         return anomalies.get(obj);
     }
@@ -183,6 +274,9 @@ public class PdfStatistics implements IUnitNotificationManager {
 
     public void addUnitNotification(IPdfAttribute element, SuspiciousType suspicious, String description, Throwable e,
             boolean dropSameLevel) {
+        if(defer(() -> addUnitNotification(element, suspicious, description, e, dropSameLevel))) {
+            return;
+        }
         if(element.getParent() == null) {
             addUnitNotification(element, (PdfIndirectObj)element, suspicious, description, dropSameLevel);
         }
@@ -192,6 +286,51 @@ public class PdfStatistics implements IUnitNotificationManager {
 
     }
 
+    /**
+     * Start recording statistics updates performed by the current thread instead of applying them.
+     * Used by parallel processing to keep notifications identical to a serial run: updates are
+     * replayed in a deterministic order with {@link #applyDeferredUpdates(List)}.
+     * 
+     * @return the recorder previously active on this thread, to be given back to
+     *         {@link #endDeferredUpdates(List)}
+     */
+    public static List<Runnable> beginDeferredUpdates() {
+        List<Runnable> previous = deferredUpdates.get();
+        deferredUpdates.set(new ArrayList<>());
+        return previous;
+    }
+
+    /**
+     * Stop recording statistics updates for the current thread and restore the previous recorder.
+     * 
+     * @return the updates recorded since {@link #beginDeferredUpdates()}
+     */
+    public static List<Runnable> endDeferredUpdates(List<Runnable> previous) {
+        List<Runnable> updates = deferredUpdates.get();
+        if(previous == null) {
+            deferredUpdates.remove();
+        }
+        else {
+            deferredUpdates.set(previous);
+        }
+        return updates == null ? new ArrayList<>(): updates;
+    }
+
+    public static void applyDeferredUpdates(List<Runnable> updates) {
+        for(Runnable update: updates) {
+            update.run();
+        }
+    }
+
+    private static boolean defer(Runnable update) {
+        List<Runnable> updates = deferredUpdates.get();
+        if(updates == null) {
+            return false;
+        }
+        updates.add(update);
+        return true;
+    }
+
     private void addUnitNotification(IPdfAttribute element, PdfIndirectObj parent, SuspiciousType suspicious,
             String description, boolean dropSameLevel) {
         Map<IPdfAttribute, List<IUnitNotification>> anomaliesByChild = anomalies.get(parent);
@@ -291,6 +430,17 @@ public class PdfStatistics implements IUnitNotificationManager {
         return stb.toString();
     }
 
+    public String toStringUnlistedObjects() {
+        StringBuilder stb = new StringBuilder();
+        for(Entry<Long, String> entry: unlistedObjects.entrySet()) {
+            stb.append("\n--- ").append(entry.getValue()).append(String.format(" obj at %x", entry.getKey()));
+        }
+        if(stb.length() > 0) {
+            stb.insert(0, "\n\nObjects not listed in xref:");
+        }
+        return stb.toString();
+    }
+
     public String toStringCorruptions() {
         StringBuilder stb = new StringBuilder();
         for(Entry<PdfIndirectObj, Map<IPdfAttribute, List<IUnitNotification>>> entry: anomalies.entrySet()) {
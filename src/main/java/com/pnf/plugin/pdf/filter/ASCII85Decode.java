@@ -18,9 +18,13 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.filter;
 
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.InputStream;
 
 import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
+import com.sun.pdfview.PDFParseException;
 
 /**
  * 
@@ -28,13 +32,180 @@ import com.pnf.plugin.pdf.obj.PdfDictionary;
  * @author PNF Software
  *
  */
-public class ASCII85Decode implements IFilter {
+public class ASCII85Decode extends BulkFilter {
+
+    private static final byte SEPARATOR = -1;
+    private static final byte ZERO_GROUP = -2;
+    private static final byte TILDE = -3;
+    private static final byte INVALID = -4;
+
+    /** Digit value, or character class when negative */
+    private static final byte[] CLASSES = new byte[256];
+    static {
+        for(int c = 0; c < 256; c++) {
+            if(c >= '!' && c <= 'u') {
+                CLASSES[c] = (byte)(c - '!');
+            }
+            else if(c == 'z') {
+                CLASSES[c] = ZERO_GROUP;
+            }
+            else if(c == '~') {
+                CLASSES[c] = TILDE;
+            }
+            else if(PdfSpecialCharacters.isSeparator((byte)c)) {
+                CLASSES[c] = SEPARATOR;
+            }
+            else {
+                CLASSES[c] = INVALID;
+            }
+        }
+    }
+
+    @Override
+    long decode(byte[] data, int fromByte, int length, byte[] out) throws PdfFilterException {
+        // a 'z' expands to 4 bytes: the decoded size of a large input does not fit in an int
+        long size = 0;
+        int end = fromByte + length;
+        int i = fromByte;
+        while(true) {
+            // same group semantics as the streaming decoder: on ~> the partial group keeps '~' as next digit
+            int value = 0;
+            int count = 0;
+            while(count < 5) {
+                while(i < end && CLASSES[data[i] & 0xFF] == SEPARATOR) {
+                    i++;
+                }
+                if(i >= end) {
+                    return fail("Bad character in ASCII85Decode: -1 (" + (char)-1 + ")", out, size, i - fromByte);
+                }
+                int c = data[i++];
+                int digit = CLASSES[c & 0xFF];
+                if(digit >= 0) {
+                    value = value * 85 + digit;
+                    count++;
+                }
+                else if(digit == TILDE) {
+                    while(i < end && CLASSES[data[i] & 0xFF] == SEPARATOR) {
+                        i++;
+                    }
+                    if(i >= end || data[i++] != '>') {
+                        return fail("Bad character in ASCII85Decode: not ~>", out, size, i - fromByte);
+                    }
+                    value = value * 85 + '~';
+                    for(int j = count + 1; j < 5; j++) {
+                        value *= 85;
+                    }
+                    break;
+                }
+                else if(digit == ZERO_GROUP) {
+                    if(count != 0) {
+                        return fail("Inappropriate 'z' in ASCII85Decode", out, size, i - fromByte);
+                    }
+                    count = 5;
+                }
+                else {
+                    c = (char)c;
+                    return fail("Bad character in ASCII85Decode: " + c + " (" + (char)c + ")", out, size,
+                            i - fromByte);
+                }
+            }
+            int decoded = count > 0 ? count - 1 : 0;
+            if(out != null) {
+                decoded = Math.min(decoded, out.length - (int)size);
+                for(int j = 0; j < decoded; j++) {
+                    out[(int)size + j] = (byte)(value >> (8 * (3 - j)));
+                }
+            }
+            size += decoded;
+            if(decoded != 4) {
+                return size;
+            }
+        }
+    }
+
+    private static long fail(String message, byte[] out, long size, int processed) throws PdfFilterException {
+        if(out == null) {
+            return size;
+        }
+        throw error(new PDFParseException(message), out, (int)size, processed);
+    }
 
     @Override
-    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
-            throws FilterStreamException {
-        ByteBuffer bb = com.sun.pdfview.decode.ASCII85Decode
-                .decode(ByteBufferUtils.getByteBuffer(data, fromByte, length), null);
-        return bb.array();
+    public InputStream decodeStream(InputStream encoded, PdfDictionary dictionary) {
+        return new ASCII85InputStream(encoded);
+    }
+
+    /**
+     * Streaming counterpart of {@link #decode(byte[], int, int, byte[])}
+     */
+    private static class ASCII85InputStream extends DecodingInputStream {
+        private final byte[] group = new byte[4];
+        private int position;
+        private int count;
+        private boolean finished;
+
+        ASCII85InputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        protected int decodeNext() throws IOException {
+            while(position >= count) {
+                if(finished) {
+                    return -1;
+                }
+                decodeGroup();
+            }
+            return group[position++] & 0xFF;
+        }
+
+        private void decodeGroup() throws IOException {
+            int[] five = new int[5];
+            int i;
+            for(i = 0; i < 5; i++) {
+                five[i] = nextChar();
+                if(five[i] == '~') {
+                    if(nextChar() == '>') {
+                        break;
+                    }
+                    throw new IOException("Bad character in ASCII85Decode: not ~>");
+                }
+                else if(five[i] >= '!' && five[i] <= 'u') {
+                    five[i] -= '!';
+                }
+                else if(five[i] == 'z') {
+                    if(i != 0) {
+                        throw new IOException("Inappropriate 'z' in ASCII85Decode");
+                    }
+                    five[i] = 0;
+                    i = 4;
+                }
+                else {
+                    throw new IOException(
+                            "Bad character in ASCII85Decode: " + five[i] + " (" + (char)five[i] + ")");
+                }
+            }
+            if(i > 0) {
+                i -= 1;
+            }
+            int value = five[0] * 85 * 85 * 85 * 85 + five[1] * 85 * 85 * 85 + five[2] * 85 * 85 + five[3] * 85
+                    + five[4];
+            for(int j = 0; j < i; j++) {
+                group[j] = (byte)((value >> (8 * (3 - j))) & 0xFF);
+            }
+            position = 0;
+            count = i;
+            finished = i != 4;
+        }
+
+        private int nextChar() throws IOException {
+            int c;
+            while((c = in.read()) != -1) {
+                if(!PdfSpecialCharacters.isSeparator((byte)c)) {
+                    return (char)(byte)c;
+                }
+            }
+            return -1;
+        }
     }
 }
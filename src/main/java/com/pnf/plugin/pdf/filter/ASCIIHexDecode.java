@@ -18,9 +18,13 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.filter;
 
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.InputStream;
 
 import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
+import com.sun.pdfview.PDFParseException;
 
 /**
  * 
@@ -28,13 +32,147 @@ import com.pnf.plugin.pdf.obj.PdfDictionary;
  * @author PNF Software
  *
  */
-public class ASCIIHexDecode implements IFilter {
+public class ASCIIHexDecode extends BulkFilter {
+
+    private static final byte SEPARATOR = -1;
+    private static final byte END = -2;
+    private static final byte INVALID = -3;
+
+    /** Digit value, or character class when negative */
+    private static final byte[] CLASSES = new byte[256];
+    static {
+        for(int c = 0; c < 256; c++) {
+            if(c >= '0' && c <= '9') {
+                CLASSES[c] = (byte)(c - '0');
+            }
+            else if(c >= 'a' && c <= 'f') {
+                CLASSES[c] = (byte)(c - 'a' + 10);
+            }
+            else if(c >= 'A' && c <= 'F') {
+                CLASSES[c] = (byte)(c - 'A' + 10);
+            }
+            else if(c == '>') {
+                CLASSES[c] = END;
+            }
+            else if(PdfSpecialCharacters.isSeparator((byte)c)) {
+                CLASSES[c] = SEPARATOR;
+            }
+            else {
+                CLASSES[c] = INVALID;
+            }
+        }
+    }
 
     @Override
-    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
-            throws FilterStreamException {
-        ByteBuffer bb = com.sun.pdfview.decode.ASCIIHexDecode
-                .decode(ByteBufferUtils.getByteBuffer(data, fromByte, length), null);
-        return bb.array();
+    long decode(byte[] data, int fromByte, int length, byte[] out) throws PdfFilterException {
+        int size = 0;
+        int first = -1;
+        int end = fromByte + length;
+        for(int i = fromByte; i < end; i++) {
+            int value = CLASSES[data[i] & 0xFF];
+            if(value >= 0) {
+                if(first < 0) {
+                    first = value;
+                    continue;
+                }
+                if(out != null) {
+                    if(size == out.length) {
+                        return size;
+                    }
+                    out[size] = (byte)((first << 4) | value);
+                }
+                size++;
+                first = -1;
+            }
+            else if(value == END) {
+                if(first < 0) {
+                    // digits are read by pair: the character following an initial '>' is still checked
+                    do {
+                        i++;
+                    }
+                    while(i < end && CLASSES[data[i] & 0xFF] == SEPARATOR);
+                    if(i < end && CLASSES[data[i] & 0xFF] == INVALID) {
+                        return fail(data[i], out, size, i + 1 - fromByte);
+                    }
+                }
+                break;
+            }
+            else if(value == INVALID) {
+                return fail(data[i], out, size, i + 1 - fromByte);
+            }
+        }
+        if(first >= 0) {
+            // odd number of digits: the last one is followed by an implicit 0
+            if(out != null) {
+                if(size == out.length) {
+                    return size;
+                }
+                out[size] = (byte)(first << 4);
+            }
+            size++;
+        }
+        return size;
+    }
+
+    private static int fail(byte c, byte[] out, int size, int processed) throws PdfFilterException {
+        if(out == null) {
+            return size;
+        }
+        throw error(new PDFParseException("Bad character " + c + "in ASCIIHex decode"), out, size, processed);
+    }
+
+    @Override
+    public InputStream decodeStream(InputStream encoded, PdfDictionary dictionary) {
+        return new ASCIIHexInputStream(encoded);
+    }
+
+    /**
+     * Streaming counterpart of {@link #decode(byte[], int, int, byte[])}
+     */
+    private static class ASCIIHexInputStream extends DecodingInputStream {
+        private boolean oddDigit;
+
+        ASCIIHexInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        protected int decodeNext() throws IOException {
+            if(oddDigit) {
+                return -1;
+            }
+            int first = readHexDigit();
+            int second = readHexDigit();
+            if(first == -1) {
+                return -1;
+            }
+            else if(second == -1) {
+                oddDigit = true;
+                return (first << 4) & 0xFF;
+            }
+            return ((first << 4) + second) & 0xFF;
+        }
+
+        private int readHexDigit() throws IOException {
+            int c;
+            while((c = in.read()) != -1) {
+                if(!PdfSpecialCharacters.isSeparator((byte)c)) {
+                    if(c >= '0' && c <= '9') {
+                        return c - '0';
+                    }
+                    else if(c >= 'a' && c <= 'f') {
+                        return c - 'a' + 10;
+                    }
+                    else if(c >= 'A' && c <= 'F') {
+                        return c - 'A' + 10;
+                    }
+                    else if(c == '>') {
+                        return -1;
+                    }
+                    throw new IOException("Bad character " + (byte)c + "in ASCIIHex decode");
+                }
+            }
+            return -1;
+        }
     }
 }
@@ -0,0 +1,74 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+
+/**
+ * Filter decoding a whole array in two passes: the first one computes the exact decoded size, the
+ * second one writes into an array of that size, or of the {@link OutputLimit} when smaller.
+ * {@link Decoder} chains such filters through reused buffers.
+ * 
+ * @author PNF Software
+ *
+ */
+abstract class BulkFilter implements IFilter {
+
+    /**
+     * Decode a range of data.
+     * 
+     * @param out destination of the decoded bytes; null to only compute the decoded size. Decoding
+     *            stops when out is full.
+     * @return decoded size, which may exceed the maximum array size when out is null. When out is
+     *         null, an error ends decoding without exception.
+     * @throws PdfFilterException on decoding error when out is not null, the decoded bytes being
+     *             available in out
+     */
+    abstract long decode(byte[] data, int fromByte, int length, byte[] out) throws PdfFilterException;
+
+    @Override
+    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
+            throws FilterStreamException {
+        long decodedSize = decode(data, fromByte, length, null);
+        int max = OutputLimit.getMaxSize(this, length);
+        byte[] out = new byte[(int)Math.min(decodedSize, max)];
+        decode(data, fromByte, length, out);
+        if(decodedSize > max) {
+            throw limitExceeded(out, decodedSize, length);
+        }
+        return out;
+    }
+
+    /**
+     * Build the error raised when the decoded size exceeds the output limit, out being the
+     * truncated result
+     */
+    static OutputLimitException limitExceeded(byte[] out, long decodedSize, int length) {
+        return new OutputLimitException(out, out.length, length, decodedSize, length);
+    }
+
+    /**
+     * Build the error raised in write mode
+     */
+    static PdfFilterException error(Exception cause, byte[] out, int size, int processed) {
+        return new PdfFilterException(cause, ByteBufferUtils.getByteArray(out, 0, size), processed);
+    }
+}
@@ -20,6 +20,7 @@ package com.pnf.plugin.pdf.filter;
 
 import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 /**
  * 
@@ -35,7 +36,29 @@ public class ByteBufferUtils {
         return bos;
     }
 
+    /**
+     * Wrap a range of data without copying it. The returned buffer is a view starting at position 0:
+     * its backing array is data, so use {@link #toByteArray(ByteBuffer)} to get its content.
+     */
     public static ByteBuffer getByteBuffer(byte[] data, int fromByte, int length) {
-        return ByteBuffer.wrap(getByteArray(data, fromByte, length).toByteArray());
+        return ByteBuffer.wrap(data, fromByte, length).slice();
+    }
+
+    /**
+     * Retrieve the remaining bytes of a buffer. The backing array is returned without copy when it
+     * matches these bytes exactly.
+     */
+    public static byte[] toByteArray(ByteBuffer buf) {
+        if(buf.hasArray()) {
+            byte[] array = buf.array();
+            int from = buf.arrayOffset() + buf.position();
+            if(from == 0 && buf.remaining() == array.length) {
+                return array;
+            }
+            return Arrays.copyOfRange(array, from, from + buf.remaining());
+        }
+        byte[] bytes = new byte[buf.remaining()];
+        buf.duplicate().get(bytes);
+        return bytes;
     }
 }
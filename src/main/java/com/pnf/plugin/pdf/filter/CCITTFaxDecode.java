@@ -19,33 +19,768 @@ limitations under the License.
 package com.pnf.plugin.pdf.filter;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.Arrays;
 
 import com.pnf.plugin.pdf.obj.PdfDictionary;
 
 /**
- * 
+ * CCITT Group 3 and Group 4 fax decoder. Bits are read from a 64-bit window over the encoded data
+ * and runs are painted directly into the output raster, inverted on the fly unless /BlackIs1 is set.
+ * The decoding state belongs to each call, so streams can be decoded concurrently. Code tables and
+ * the handling of malformed data are those of {@link com.sun.pdfview.decode.CCITTFaxDecoder}.
  * 
  * @author PNF Software
  *
  */
-public class CCITTFaxDecode implements IFilter {
-    private PdfDictionary decodeParms;
+public class CCITTFaxDecode extends ImageFilter {
+    // white runs, indexed by the next 10 bits: terminating flag, code length (4 bits) and run length
+    private static final short[] WHITE = {
+            6430, 6400, 6400, 6400, 3225, 3225, 3225, 3225, 944, 944, 944, 944,
+            976, 976, 976, 976, 1456, 1456, 1456, 1456, 1488, 1488, 1488, 1488,
+            718, 718, 718, 718, 718, 718, 718, 718, 750, 750, 750, 750,
+            750, 750, 750, 750, 1520, 1520, 1520, 1520, 1552, 1552, 1552, 1552,
+            428, 428, 428, 428, 428, 428, 428, 428, 428, 428, 428, 428,
+            428, 428, 428, 428, 654, 654, 654, 654, 654, 654, 654, 654,
+            1072, 1072, 1072, 1072, 1104, 1104, 1104, 1104, 1136, 1136, 1136, 1136,
+            1168, 1168, 1168, 1168, 1200, 1200, 1200, 1200, 1232, 1232, 1232, 1232,
+            622, 622, 622, 622, 622, 622, 622, 622, 1008, 1008, 1008, 1008,
+            1040, 1040, 1040, 1040, 44, 44, 44, 44, 44, 44, 44, 44,
+            44, 44, 44, 44, 44, 44, 44, 44, 396, 396, 396, 396,
+            396, 396, 396, 396, 396, 396, 396, 396, 396, 396, 396, 396,
+            1712, 1712, 1712, 1712, 1744, 1744, 1744, 1744, 846, 846, 846, 846,
+            846, 846, 846, 846, 1264, 1264, 1264, 1264, 1296, 1296, 1296, 1296,
+            1328, 1328, 1328, 1328, 1360, 1360, 1360, 1360, 1392, 1392, 1392, 1392,
+            1424, 1424, 1424, 1424, 686, 686, 686, 686, 686, 686, 686, 686,
+            910, 910, 910, 910, 910, 910, 910, 910, 1968, 1968, 1968, 1968,
+            2000, 2000, 2000, 2000, 2032, 2032, 2032, 2032, 16, 16, 16, 16,
+            10257, 10257, 10257, 10257, 12305, 12305, 12305, 12305, 330, 330, 330, 330,
+            330, 330, 330, 330, 330, 330, 330, 330, 330, 330, 330, 330,
+            330, 330, 330, 330, 330, 330, 330, 330, 330, 330, 330, 330,
+            330, 330, 330, 330, 362, 362, 362, 362, 362, 362, 362, 362,
+            362, 362, 362, 362, 362, 362, 362, 362, 362, 362, 362, 362,
+            362, 362, 362, 362, 362, 362, 362, 362, 362, 362, 362, 362,
+            878, 878, 878, 878, 878, 878, 878, 878, 1904, 1904, 1904, 1904,
+            1936, 1936, 1936, 1936, -18413, -18413, -16365, -16365, -14317, -14317, -10221, -10221,
+            590, 590, 590, 590, 590, 590, 590, 590, 782, 782, 782, 782,
+            782, 782, 782, 782, 1584, 1584, 1584, 1584, 1616, 1616, 1616, 1616,
+            1648, 1648, 1648, 1648, 1680, 1680, 1680, 1680, 814, 814, 814, 814,
+            814, 814, 814, 814, 1776, 1776, 1776, 1776, 1808, 1808, 1808, 1808,
+            1840, 1840, 1840, 1840, 1872, 1872, 1872, 1872, 6157, 6157, 6157, 6157,
+            6157, 6157, 6157, 6157, 6157, 6157, 6157, 6157, 6157, 6157, 6157, 6157,
+            -12275, -12275, -12275, -12275, -12275, -12275, -12275, -12275, -12275, -12275, -12275, -12275,
+            -12275, -12275, -12275, -12275, 14353, 14353, 14353, 14353, 16401, 16401, 16401, 16401,
+            22547, 22547, 24595, 24595, 20497, 20497, 20497, 20497, 18449, 18449, 18449, 18449,
+            26643, 26643, 28691, 28691, 30739, 30739, -32749, -32749, -30701, -30701, -28653, -28653,
+            -26605, -26605, -24557, -24557, -22509, -22509, -20461, -20461, 8207, 8207, 8207, 8207,
+            8207, 8207, 8207, 8207, 72, 72, 72, 72, 72, 72, 72, 72,
+            72, 72, 72, 72, 72, 72, 72, 72, 72, 72, 72, 72,
+            72, 72, 72, 72, 72, 72, 72, 72, 72, 72, 72, 72,
+            72, 72, 72, 72, 72, 72, 72, 72, 72, 72, 72, 72,
+            72, 72, 72, 72, 72, 72, 72, 72, 72, 72, 72, 72,
+            72, 72, 72, 72, 72, 72, 72, 72, 104, 104, 104, 104,
+            104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104,
+            104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104,
+            104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104,
+            104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104,
+            104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104, 104,
+            4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107,
+            4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107,
+            4107, 4107, 4107, 4107, 4107, 4107, 4107, 4107, 266, 266, 266, 266,
+            266, 266, 266, 266, 266, 266, 266, 266, 266, 266, 266, 266,
+            266, 266, 266, 266, 266, 266, 266, 266, 266, 266, 266, 266,
+            266, 266, 266, 266, 298, 298, 298, 298, 298, 298, 298, 298,
+            298, 298, 298, 298, 298, 298, 298, 298, 298, 298, 298, 298,
+            298, 298, 298, 298, 298, 298, 298, 298, 298, 298, 298, 298,
+            524, 524, 524, 524, 524, 524, 524, 524, 524, 524, 524, 524,
+            524, 524, 524, 524, 556, 556, 556, 556, 556, 556, 556, 556,
+            556, 556, 556, 556, 556, 556, 556, 556, 136, 136, 136, 136,
+            136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136,
+            136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136,
+            136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136,
+            136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136,
+            136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136, 136,
+            168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168,
+            168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168,
+            168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168,
+            168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168,
+            168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168, 168,
+            168, 168, 168, 168, 460, 460, 460, 460, 460, 460, 460, 460,
+            460, 460, 460, 460, 460, 460, 460, 460, 492, 492, 492, 492,
+            492, 492, 492, 492, 492, 492, 492, 492, 492, 492, 492, 492,
+            2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059,
+            2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059,
+            2059, 2059, 2059, 2059, 2059, 2059, 2059, 2059, 200, 200, 200, 200,
+            200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200,
+            200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200,
+            200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200,
+            200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200,
+            200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200, 200,
+            232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232,
+            232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232,
+            232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232,
+            232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232,
+            232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232, 232,
+            232, 232, 232, 232
+    };
+
+    // black runs longer than 4 bits, indexed by the 9 bits following the first 4
+    private static final short[] BLACK = {
+            62, 62, 30, 30, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 3225, 3225, 3225, 3225,
+            3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225,
+            3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225, 3225,
+            3225, 3225, 3225, 3225, 588, 588, 588, 588, 588, 588, 588, 588,
+            1680, 1680, 20499, 22547, 24595, 26643, 1776, 1776, 1808, 1808, -24557, -22509,
+            -20461, -18413, 1904, 1904, 1936, 1936, -16365, -14317, 782, 782, 782, 782,
+            814, 814, 814, 814, -12269, -10221, 10257, 10257, 12305, 12305, 14353, 14353,
+            16403, 18451, 1712, 1712, 1744, 1744, 28691, 30739, -32749, -30701, -28653, -26605,
+            2061, 2061, 2061, 2061, 2061, 2061, 2061, 2061, 424, 424, 424, 424,
+            424, 424, 424, 424, 424, 424, 424, 424, 424, 424, 424, 424,
+            424, 424, 424, 424, 424, 424, 424, 424, 424, 424, 424, 424,
+            424, 424, 424, 424, 750, 750, 750, 750, 1616, 1616, 1648, 1648,
+            1424, 1424, 1456, 1456, 1488, 1488, 1520, 1520, 1840, 1840, 1872, 1872,
+            1968, 1968, 8209, 8209, 524, 524, 524, 524, 524, 524, 524, 524,
+            556, 556, 556, 556, 556, 556, 556, 556, 1552, 1552, 1584, 1584,
+            2000, 2000, 2032, 2032, 976, 976, 1008, 1008, 1040, 1040, 1072, 1072,
+            1296, 1296, 1328, 1328, 718, 718, 718, 718, 456, 456, 456, 456,
+            456, 456, 456, 456, 456, 456, 456, 456, 456, 456, 456, 456,
+            456, 456, 456, 456, 456, 456, 456, 456, 456, 456, 456, 456,
+            456, 456, 456, 456, 326, 326, 326, 326, 326, 326, 326, 326,
+            326, 326, 326, 326, 326, 326, 326, 326, 326, 326, 326, 326,
+            326, 326, 326, 326, 326, 326, 326, 326, 326, 326, 326, 326,
+            326, 326, 326, 326, 326, 326, 326, 326, 326, 326, 326, 326,
+            326, 326, 326, 326, 326, 326, 326, 326, 326, 326, 326, 326,
+            326, 326, 326, 326, 326, 326, 326, 326, 358, 358, 358, 358,
+            358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358,
+            358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358,
+            358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358,
+            358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358,
+            358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358, 358,
+            490, 490, 490, 490, 490, 490, 490, 490, 490, 490, 490, 490,
+            490, 490, 490, 490, 4113, 4113, 6161, 6161, 848, 848, 880, 880,
+            912, 912, 944, 944, 622, 622, 622, 622, 654, 654, 654, 654,
+            1104, 1104, 1136, 1136, 1168, 1168, 1200, 1200, 1232, 1232, 1264, 1264,
+            686, 686, 686, 686, 1360, 1360, 1392, 1392, 12, 12, 12, 12,
+            12, 12, 12, 12, 390, 390, 390, 390, 390, 390, 390, 390,
+            390, 390, 390, 390, 390, 390, 390, 390, 390, 390, 390, 390,
+            390, 390, 390, 390, 390, 390, 390, 390, 390, 390, 390, 390,
+            390, 390, 390, 390, 390, 390, 390, 390, 390, 390, 390, 390,
+            390, 390, 390, 390, 390, 390, 390, 390, 390, 390, 390, 390,
+            390, 390, 390, 390, 390, 390, 390, 390
+    };
+
+    // additional make up codes shared by white and black runs
+    private static final short[] MAKEUP = {
+            28679, 28679, 31752, -32759, -31735, -30711, -29687, -28663,
+            29703, 29703, 30727, 30727, -27639, -26615, -25591, -24567
+    };
+
+    // black runs, indexed by the first 4 bits
+    private static final short[] INITIAL_BLACK = {
+            3226, 6412, 200, 168, 38, 38, 134, 134, 100, 100, 100, 100, 68, 68, 68, 68
+    };
+
+    // black runs of 7 to 9 pixels, indexed by the 2 bits following 0001
+    private static final short[] TWO_BIT_BLACK = {
+            292, 260, 226, 226
+    };
+
+    // two-dimensional codes, indexed by the next 7 bits: code and code length
+    private static final byte[] TWO_D_CODES = {
+            80, 88, 23, 71, 30, 30, 62, 62, 4, 4, 4, 4, 4, 4, 4, 4,
+            11, 11, 11, 11, 11, 11, 11, 11, 11, 11, 11, 11, 11, 11, 11, 11,
+            35, 35, 35, 35, 35, 35, 35, 35, 35, 35, 35, 35, 35, 35, 35, 35,
+            51, 51, 51, 51, 51, 51, 51, 51, 51, 51, 51, 51, 51, 51, 51, 51,
+            41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41,
+            41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41,
+            41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41,
+            41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41, 41
+    };
 
     public CCITTFaxDecode(PdfDictionary decodeParms) {
-        this.decodeParms = decodeParms;
+        super(decodeParms);
+    }
+
+    /**
+     * CCITT data has no header: the size comes from the decoding parameters, with the same defaults
+     * as the decoder.
+     */
+    @Override
+    public ImageHeader readHeader(byte[] data, int fromByte, int length, PdfDictionary dictionary) {
+        int width = getInt(dictionary, "/Width", getInt(dictionary, "/W", 1728));
+        int height = getInt(dictionary, "/Height", getInt(dictionary, "/H", 0));
+        return new ImageHeader(getInt(decodeParms, "/Columns", width), getInt(decodeParms, "/Rows", height), 1, 1);
     }
 
-    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
+    @Override
+    protected byte[] decodePixels(byte[] data, int fromByte, int length, PdfDictionary dictionary)
             throws FilterStreamException {
-        ByteBuffer buf = ByteBufferUtils.getByteBuffer(data, fromByte, length);
         try {
-            return com.sun.pdfview.decode.CCITTFaxDecode.decode(PDFObject.getInstance(dictionary),
-                    PDFObject.getInstance(decodeParms), buf.array());
+            PDFObject dict = PDFObject.getInstance(dictionary);
+            PDFObject params = PDFObject.getInstance(decodeParms);
+            int width = getIntOption(dict, "Width", getIntOption(dict, "W", 1728));
+            int height = getIntOption(dict, "Height", getIntOption(dict, "H", 0));
+            int columns = getIntOption(params, "Columns", width);
+            int rows = getIntOption(params, "Rows", height);
+            int k = getIntOption(params, "K", 0);
+            Decoding decoding = new Decoding(data, fromByte, length, columns, rows,
+                    getBooleanOption(params, "EncodedByteAlign", false), getBooleanOption(params, "BlackIs1", false));
+            if(k == 0) {
+                decoding.decodeT41D();
+            }
+            else if(k > 0) {
+                decoding.decodeT42D();
+            }
+            else {
+                decoding.decodeT6();
+            }
+            return decoding.out;
         }
         catch(IOException e) {
             throw new FilterStreamException(e);
         }
     }
 
+    private static int getIntOption(PDFObject dict, String name, int defaultValue) throws IOException {
+        PDFObject value = dict == null ? null: dict.getDictRef(name);
+        return value == null ? defaultValue: value.getIntValue();
+    }
+
+    private static boolean getBooleanOption(PDFObject dict, String name, boolean defaultValue) throws IOException {
+        PDFObject value = dict == null ? null: dict.getDictRef(name);
+        return value == null ? defaultValue: value.getBooleanValue();
+    }
+
+    /**
+     * State of one decoding. Malformed data raises runtime exceptions, as in the original decoder.
+     */
+    private static class Decoding {
+        private final byte[] data;
+        private final int start;
+        private final long end;
+        private long position;
+        private long window;
+        private long windowPosition = -64;
+
+        private final int columns;
+        private final int rows;
+        private final int stride;
+        private final boolean align;
+        private final boolean blackIs1;
+        final byte[] out;
+
+        // changing elements of the previous and of the current line
+        private int[] previousElements;
+        private int[] currentElements;
+        private int elementCount;
+        private int lastElement;
+        private int b1;
+        private int b2;
+
+        Decoding(byte[] data, int fromByte, int length, int columns, int rows, boolean align, boolean blackIs1) {
+            this.data = data;
+            this.start = fromByte;
+            this.end = (long)length << 3;
+            this.columns = columns;
+            this.rows = rows;
+            this.stride = (columns + 7) >> 3;
+            this.align = align;
+            this.blackIs1 = blackIs1;
+            this.out = new byte[rows * stride];
+            if(!blackIs1) {
+                Arrays.fill(out, (byte)0xFF);
+            }
+            this.previousElements = new int[columns];
+            this.currentElements = new int[columns];
+        }
+
+        void decodeT41D() {
+            int lineOffset = 0;
+            for(int line = 0; line < rows; line++) {
+                consumeEOL();
+                decodeLine(lineOffset, 0);
+                lineOffset += stride;
+            }
+        }
+
+        void decodeT42D() {
+            if(readEOL() != 1) {
+                throw new RuntimeException("First scanline must be 1D encoded.");
+            }
+            int lineOffset = 0;
+            decodeLine(lineOffset, 0);
+            lineOffset += stride;
+
+            for(int line = 1; line < rows; line++) {
+                if(readEOL() == 0) {
+                    // 2D encoded line
+                    swapLines();
+                    int[] elements = currentElements;
+                    int count = 0;
+                    int a0 = -1;
+                    boolean isWhite = true;
+                    int bitOffset = 0;
+                    while(bitOffset < columns) {
+                        nextChangingElement(a0, isWhite);
+                        int entry = TWO_D_CODES[peek(7)] & 0xFF;
+                        int code = (entry & 0x78) >>> 3;
+                        int bits = entry & 0x07;
+                        if(code == 0) {
+                            // pass
+                            if(!isWhite) {
+                                paint(lineOffset, bitOffset, b2 - bitOffset);
+                            }
+                            bitOffset = a0 = b2;
+                            skip(bits);
+                        }
+                        else if(code == 1) {
+                            // horizontal
+                            skip(bits);
+                            int run;
+                            if(isWhite) {
+                                bitOffset += whiteRun();
+                                elements[count++] = bitOffset;
+                                run = blackRun();
+                                paint(lineOffset, bitOffset, run);
+                                bitOffset += run;
+                                elements[count++] = bitOffset;
+                            }
+                            else {
+                                run = blackRun();
+                                paint(lineOffset, bitOffset, run);
+                                bitOffset += run;
+                                elements[count++] = bitOffset;
+                                bitOffset += whiteRun();
+                                elements[count++] = bitOffset;
+                            }
+                            a0 = bitOffset;
+                        }
+                        else if(code <= 8) {
+                            // vertical
+                            int a1 = b1 + code - 5;
+                            elements[count++] = a1;
+                            if(!isWhite) {
+                                paint(lineOffset, bitOffset, a1 - bitOffset);
+                            }
+                            bitOffset = a0 = a1;
+                            isWhite = !isWhite;
+                            skip(bits);
+                        }
+                        else {
+                            throw new RuntimeException(
+                                    "Invalid code encountered while decoding 2D group 3 compressed data.");
+                        }
+                    }
+                    elements[count++] = bitOffset;
+                    elementCount = count;
+                }
+                else {
+                    decodeLine(lineOffset, 0);
+                }
+                lineOffset += stride;
+            }
+        }
+
+        void decodeT6() {
+            // imaginary white line above the first one
+            elementCount = 0;
+            currentElements[elementCount++] = columns;
+            currentElements[elementCount++] = columns;
+
+            int lineOffset = 0;
+            for(int line = 0; line < rows; line++) {
+                swapLines();
+                int[] elements = currentElements;
+                int count = 0;
+                int a0 = -1;
+                boolean isWhite = true;
+                int bitOffset = 0;
+                while(bitOffset < columns) {
+                    nextChangingElement(a0, isWhite);
+                    int entry = TWO_D_CODES[peek(7)] & 0xFF;
+                    int code = (entry & 0x78) >>> 3;
+                    int bits = entry & 0x07;
+                    if(code == 0) {
+                        // pass, black runs clamped to the line
+                        int next = b2;
+                        if(!isWhite) {
+                            if(next > columns) {
+                                next = columns;
+                            }
+                            paint(lineOffset, bitOffset, next - bitOffset);
+                        }
+                        bitOffset = a0 = next;
+                        skip(bits);
+                    }
+                    else if(code == 1) {
+                        // horizontal, black runs clamped to the line
+                        skip(bits);
+                        int run;
+                        if(isWhite) {
+                            bitOffset += whiteRun();
+                            elements[count++] = bitOffset;
+                            run = Math.min(blackRun(), columns - bitOffset);
+                            paint(lineOffset, bitOffset, run);
+                            bitOffset += run;
+                            elements[count++] = bitOffset;
+                        }
+                        else {
+                            run = Math.min(blackRun(), columns - bitOffset);
+                            paint(lineOffset, bitOffset, run);
+                            bitOffset += run;
+                            elements[count++] = bitOffset;
+                            bitOffset += whiteRun();
+                            elements[count++] = bitOffset;
+                        }
+                        a0 = bitOffset;
+                    }
+                    else if(code <= 8) {
+                        // vertical
+                        int a1 = b1 + code - 5;
+                        elements[count++] = a1;
+                        if(!isWhite) {
+                            if(a1 > columns) {
+                                a1 = columns;
+                            }
+                            paint(lineOffset, bitOffset, a1 - bitOffset);
+                        }
+                        bitOffset = a0 = a1;
+                        isWhite = !isWhite;
+                        skip(bits);
+                    }
+                    else if(code == 11) {
+                        // uncompressed mode
+                        skip(7);
+                        if(read(3) != 7) {
+                            throw new RuntimeException(
+                                    "Invalid code encountered while decoding 2D group 4 compressed data.");
+                        }
+                        int zeros = 0;
+                        boolean exit = false;
+                        while(!exit) {
+                            while(read(1) != 1) {
+                                zeros++;
+                            }
+                            if(zeros > 5) {
+                                // exit code, after the zeros preceding it
+                                zeros = zeros - 6;
+                                if(!isWhite && zeros > 0) {
+                                    elements[count++] = bitOffset;
+                                }
+                                bitOffset += zeros;
+                                if(zeros > 0) {
+                                    isWhite = true;
+                                }
+                                // color of the following run
+                                if(read(1) == 0) {
+                                    if(!isWhite) {
+                                        elements[count++] = bitOffset;
+                                    }
+                                    isWhite = true;
+                                }
+                                else {
+                                    if(isWhite) {
+                                        elements[count++] = bitOffset;
+                                    }
+                                    isWhite = false;
+                                }
+                                exit = true;
+                            }
+                            if(zeros == 5) {
+                                if(!isWhite) {
+                                    elements[count++] = bitOffset;
+                                }
+                                bitOffset += zeros;
+                                isWhite = true;
+                            }
+                            else {
+                                bitOffset += zeros;
+                                elements[count++] = bitOffset;
+                                paint(lineOffset, bitOffset, 1);
+                                ++bitOffset;
+                                isWhite = false;
+                            }
+                        }
+                    }
+                    else {
+                        // invalid code, a common failure: the rest of the line is left white
+                        skip(bits);
+                        bitOffset = columns;
+                    }
+                }
+                alignInput();
+                // changing element beyond the line for the other color, when it fits
+                if(count <= columns) {
+                    elements[count++] = bitOffset;
+                }
+                elementCount = count;
+                lineOffset += stride;
+            }
+        }
+
+        /**
+         * Decode a 1D encoded line. An EOL code stops the line without consuming it.
+         */
+        private void decodeLine(int lineOffset, int bitOffset) {
+            elementCount = 0;
+            while(bitOffset < columns) {
+                int code;
+                do {
+                    code = whiteCode();
+                    if(code < 0) {
+                        return;
+                    }
+                    bitOffset += code >> 1;
+                }
+                while((code & 1) != 0);
+                currentElements[elementCount++] = bitOffset;
+                if(bitOffset == columns) {
+                    alignInput();
+                    break;
+                }
+
+                do {
+                    code = blackCode();
+                    if(code < 0) {
+                        return;
+                    }
+                    paint(lineOffset, bitOffset, code >> 1);
+                    bitOffset += code >> 1;
+                }
+                while((code & 1) != 0);
+                currentElements[elementCount++] = bitOffset;
+                if(bitOffset == columns) {
+                    alignInput();
+                    break;
+                }
+            }
+            currentElements[elementCount++] = bitOffset;
+        }
+
+        private int whiteRun() {
+            int run = 0;
+            int code;
+            do {
+                code = whiteCode();
+                if(code < 0) {
+                    throw new RuntimeException("EOL code word encountered in White run.");
+                }
+                run += code >> 1;
+            }
+            while((code & 1) != 0);
+            return run;
+        }
+
+        private int blackRun() {
+            int run = 0;
+            int code;
+            do {
+                code = blackCode();
+                if(code < 0) {
+                    throw new RuntimeException("EOL code word encountered in Black run.");
+                }
+                run += code >> 1;
+            }
+            while((code & 1) != 0);
+            return run;
+        }
+
+        /**
+         * @return the run length of the next white code shifted left by one, with bit 0 set when more
+         *         codes of the run follow; -1 for an EOL code, which is left unread
+         */
+        private int whiteCode() {
+            int current = peek(10);
+            int entry = WHITE[current];
+            int bits = (entry >>> 1) & 0x0F;
+            if(bits == 12) {
+                skip(10);
+                entry = MAKEUP[((current << 2) & 0x0C) | read(2)];
+                unread(4 - ((entry >>> 1) & 0x07));
+                return ((entry >>> 4) & 0x0FFF) << 1 | 1;
+            }
+            else if(bits == 0) {
+                throw new RuntimeException("Invalid code encountered.");
+            }
+            else if(bits == 15) {
+                return -1;
+            }
+            skip(bits);
+            return ((entry >>> 5) & 0x07FF) << 1 | (entry & 1);
+        }
+
+        /**
+         * @return the run length of the next black code shifted left by one, with bit 0 set when more
+         *         codes of the run follow; -1 for an EOL code, whose last 9 bits are left unread
+         */
+        private int blackCode() {
+            int entry = INITIAL_BLACK[peek(4)];
+            int bits = (entry >>> 1) & 0x0F;
+            int code = (entry >>> 5) & 0x07FF;
+            if(code == 100) {
+                skip(4);
+                entry = BLACK[peek(9)];
+                bits = (entry >>> 1) & 0x0F;
+                if(bits == 12) {
+                    skip(4);
+                    entry = MAKEUP[read(4)];
+                    unread(4 - ((entry >>> 1) & 0x07));
+                    return ((entry >>> 4) & 0x0FFF) << 1 | 1;
+                }
+                else if(bits == 15) {
+                    return -1;
+                }
+                skip(bits);
+                return ((entry >>> 5) & 0x07FF) << 1 | (entry & 1);
+            }
+            else if(code == 200) {
+                skip(4);
+                entry = TWO_BIT_BLACK[read(2)];
+                unread(2 - ((entry >>> 1) & 0x0F));
+                return ((entry >>> 5) & 0x07FF) << 1;
+            }
+            skip(bits);
+            return code << 1;
+        }
+
+        private void swapLines() {
+            int[] elements = previousElements;
+            previousElements = currentElements;
+            currentElements = elements;
+            lastElement = 0;
+        }
+
+        /**
+         * Find b1, the first changing element of the previous line after a0 with the color opposite to
+         * the current one, and b2 the next one. Both keep their value when not found.
+         */
+        private void nextChangingElement(int a0, boolean isWhite) {
+            int i = lastElement > 0 ? lastElement - 1: 0;
+            i = isWhite ? i & ~1: i | 1;
+            for(; i < elementCount; i += 2) {
+                int element = previousElements[i];
+                if(element > a0) {
+                    lastElement = i;
+                    b1 = element;
+                    break;
+                }
+            }
+            if(i + 1 < elementCount) {
+                b2 = previousElements[i + 1];
+            }
+        }
+
+        /**
+         * Paint black pixels, which are 0 bits unless BlackIs1 is set. As in the original decoder, the
+         * first byte must lie in the raster when the start is not byte aligned, even for an empty run.
+         */
+        private void paint(int lineOffset, int bitOffset, int count) {
+            int from = 8 * lineOffset + bitOffset;
+            int to = from + count;
+            if((from & 7) != 0 && (from >> 3 < 0 || from >> 3 >= out.length)) {
+                throw new ArrayIndexOutOfBoundsException(from >> 3);
+            }
+            if(from >= to) {
+                return;
+            }
+            if(from < 0 || to > (long)out.length << 3) {
+                throw new ArrayIndexOutOfBoundsException(from < 0 ? from >> 3: (to - 1) >> 3);
+            }
+            int first = from >> 3;
+            int last = (to - 1) >> 3;
+            int firstMask = 0xFF >>> (from & 7);
+            int lastMask = (0xFF << (7 - ((to - 1) & 7))) & 0xFF;
+            if(first == last) {
+                paintByte(first, firstMask & lastMask);
+                return;
+            }
+            paintByte(first, firstMask);
+            Arrays.fill(out, first + 1, last, blackIs1 ? (byte)0xFF: 0);
+            paintByte(last, lastMask);
+        }
+
+        private void paintByte(int index, int mask) {
+            if(blackIs1) {
+                out[index] |= mask;
+            }
+            else {
+                out[index] &= ~mask;
+            }
+        }
+
+        private void consumeEOL() {
+            if(peek(12) == 1) {
+                skip(12);
+            }
+        }
+
+        /**
+         * Skip to the end of the next EOL code. PDF has no fill bits parameter, so the EOL is not
+         * expected on a byte boundary.
+         * 
+         * @return the bit following the EOL: 1 when the next line is 1D encoded
+         */
+        private int readEOL() {
+            long last = end - 1;
+            while(position <= last - 12) {
+                int next12Bits = read(12);
+                while(next12Bits != 1 && position < last) {
+                    next12Bits = ((next12Bits & 0x07FF) << 1) | read(1);
+                }
+                if(next12Bits == 1) {
+                    return read(1);
+                }
+            }
+            throw new RuntimeException("EOL not found");
+        }
+
+        private void alignInput() {
+            if(align) {
+                position = (position + 7) & ~7L;
+            }
+        }
+
+        private int read(int count) {
+            int bits = peek(count);
+            position += count;
+            return bits;
+        }
+
+        /**
+         * Get the next bits, up to 16, without consuming them. Bits past the end of the data read as 0,
+         * but the first one must lie in the data.
+         */
+        private int peek(int count) {
+            if(position >= end) {
+                throw new ArrayIndexOutOfBoundsException("End of CCITT data");
+            }
+            long offset = position - windowPosition;
+            if(offset < 0 || offset > 48) {
+                fillWindow();
+                offset = position & 7;
+            }
+            return (int)(window << offset >>> (64 - count));
+        }
+
+        private void skip(int count) {
+            position += count;
+        }
+
+        private void unread(int count) {
+            position -= count;
+        }
+
+        private void fillWindow() {
+            long index = position >> 3;
+            windowPosition = index << 3;
+            int remaining = (int)Math.min(8, (end >> 3) - index);
+            int offset = start + (int)index;
+            long bits = 0;
+            for(int i = 0; i < 8; i++) {
+                bits = bits << 8 | (i < remaining ? data[offset + i] & 0xFF: 0);
+            }
+            window = bits;
+        }
+    }
 }
@@ -56,7 +56,7 @@ public class Crypt implements IFilter {
         ByteBuffer bais = ByteBufferUtils.getByteBuffer(data, fromByte, length);
         try {
             ByteBuffer bb = decrypter.decryptBuffer(cfName, null, bais);
-            return bb.array();
+            return ByteBufferUtils.toByteArray(bb); // identity decrypter returns its input view
         }
         catch(IOException e) {
             throw new FilterStreamException(e);
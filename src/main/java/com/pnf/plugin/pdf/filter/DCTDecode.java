@@ -18,34 +18,125 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.filter;
 
+import java.awt.image.Raster;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.MemoryCacheImageInputStream;
 
 import com.pnf.plugin.pdf.obj.PdfDictionary;
 
 /**
- * 
+ * JPEG decoder working on the raster of an ImageIO reader, without AWT toolkit. Decoded data holds
+ * the samples of each pixel, row by row.
  * 
  * @author PNF Software
  *
  */
-public class DCTDecode implements IFilter {
-    private PdfDictionary decodeParms;
+public class DCTDecode extends ImageFilter {
 
     public DCTDecode(PdfDictionary decodeParms) {
-        this.decodeParms = decodeParms;
+        super(decodeParms);
+    }
+
+    @Override
+    public ImageHeader readHeader(byte[] data, int fromByte, int length, PdfDictionary dictionary) {
+        return readHeader(data, fromByte, length);
     }
 
-    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
+    @Override
+    protected byte[] decodePixels(byte[] data, int fromByte, int length, PdfDictionary dictionary)
             throws FilterStreamException {
-        ByteBuffer buf = ByteBufferUtils.getByteBuffer(data, fromByte, length);
+        Iterator<ImageReader> readers = ImageIO.getImageReadersByFormatName("jpeg");
+        if(!readers.hasNext()) {
+            throw new FilterStreamException("DCTDecode failed. No reader available");
+        }
+        ImageReader reader = readers.next();
         try {
-            ByteBuffer bb = com.sun.pdfview.decode.DCTDecode.decode(PDFObject.getInstance(dictionary), buf,
-                    PDFObject.getInstance(decodeParms));
-            return bb.array();
+            reader.setInput(new MemoryCacheImageInputStream(new ByteArrayInputStream(data, fromByte, length)), true,
+                    true);
+            Raster raster;
+            if(reader.getRawImageType(0) == null) {
+                // no color conversion known by the reader (CMYK, YCCK): samples are read as stored
+                raster = reader.readRaster(0, null);
+            }
+            else {
+                raster = reader.read(0).getRaster();
+            }
+            return getSamples(raster);
         }
-        catch(IOException e) {
+        catch(IOException | RuntimeException e) {
             throw new FilterStreamException(e);
         }
+        finally {
+            reader.dispose();
+        }
+    }
+
+    private static byte[] getSamples(Raster raster) {
+        int width = raster.getWidth();
+        int height = raster.getHeight();
+        int rowSize = width * raster.getNumBands();
+        byte[] output = new byte[rowSize * height];
+        int[] row = new int[rowSize];
+        for(int y = 0; y < height; y++) {
+            raster.getPixels(raster.getMinX(), raster.getMinY() + y, width, 1, row);
+            int offset = y * rowSize;
+            for(int i = 0; i < rowSize; i++) {
+                output[offset + i] = (byte)row[i];
+            }
+        }
+        return output;
+    }
+
+    /**
+     * Read the frame header of JPEG data, without decoding the image.
+     * 
+     * @return the header, null when no frame header precedes the first scan
+     */
+    public static ImageHeader readHeader(byte[] data, int fromByte, int length) {
+        int end = fromByte + length;
+        if(length < 4 || (data[fromByte] & 0xFF) != 0xFF || (data[fromByte + 1] & 0xFF) != 0xD8) {
+            return null;
+        }
+        int i = fromByte + 2;
+        while(i < end) {
+            if((data[i++] & 0xFF) != 0xFF) {
+                continue; // garbage between segments
+            }
+            while(i < end && (data[i] & 0xFF) == 0xFF) {
+                i++; // fill bytes
+            }
+            if(i >= end) {
+                return null;
+            }
+            int marker = data[i++] & 0xFF;
+            if(marker == 0x01 || marker == 0xD8 || (marker >= 0xD0 && marker <= 0xD7)) {
+                continue; // no segment
+            }
+            if(marker == 0xD9 || marker == 0xDA || i + 2 > end) {
+                return null;
+            }
+            int segmentLength = ((data[i] & 0xFF) << 8) | (data[i + 1] & 0xFF);
+            if(isStartOfFrame(marker)) {
+                if(segmentLength < 8 || i + 8 > end) {
+                    return null;
+                }
+                int bits = data[i + 2] & 0xFF;
+                int height = ((data[i + 3] & 0xFF) << 8) | (data[i + 4] & 0xFF);
+                int width = ((data[i + 5] & 0xFF) << 8) | (data[i + 6] & 0xFF);
+                return new ImageHeader(width, height, data[i + 7] & 0xFF, bits);
+            }
+            i += segmentLength;
+        }
+        return null;
+    }
+
+    private static boolean isStartOfFrame(int marker) {
+        // SOF0 to SOF15, except DHT, JPG and DAC
+        return marker >= 0xC0 && marker <= 0xCF && marker != 0xC4 && marker != 0xC8 && marker != 0xCC;
     }
 }
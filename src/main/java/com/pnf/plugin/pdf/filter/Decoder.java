@@ -18,6 +18,11 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.filter;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+
 import com.pnf.plugin.pdf.obj.PdfDictionary;
 import com.pnf.plugin.pdf.parser.PdfFilterException;
 import com.pnfsoftware.jeb.util.logging.GlobalLog;
@@ -32,48 +37,88 @@ import com.pnfsoftware.jeb.util.logging.ILogger;
 public class Decoder {
     private static final ILogger logger = GlobalLog.getLogger(Decoder.class);
 
+    /**
+     * Bytes a filter may read past the input position it reports as processed when it fails (bits
+     * held by the inflater or the LZW code reader), and before the end of input changes decoding
+     */
+    private static final int CHECKPOINT_MARGIN = 8;
+
+    /** Outcome of the decoding of the first filter over the range given by /Length */
+    public enum LengthFallback {
+        /** not needed: the parsed range was decoded without error, or /Length gives no shorter range */
+        NONE,
+        /** the error lies before the end of both ranges: decoding the other range fails the same way */
+        SKIPPED,
+        /** the /Length range was decoded again from its start */
+        DECODED
+    }
+
     private PdfDictionary dictionary;
 
     private PdfFilterException decodingError;
 
     private int errorFilterIndex;
 
+    private LengthFallback lengthFallback = LengthFallback.NONE;
+
     public Decoder(PdfDictionary dictionary) {
         this.dictionary = dictionary;
     }
 
-    public byte[] parse(int filterIndex, IFilter filter, byte[] encodedData, byte[] data, int fromByte,
-            Integer lengthFromDictionary) throws Exception {
+    /**
+     * Decode the parsed stream data, or the shorter range given by /Length when decoding the parsed
+     * data fails.
+     */
+    public byte[] parse(int filterIndex, IFilter filter, byte[] encodedData, Integer lengthFromDictionary)
+            throws Exception {
+        boolean fallback = lengthFromDictionary != null && lengthFromDictionary >= 0
+                && lengthFromDictionary < encodedData.length;
         try {
             byte[] result = parse(filterIndex, filter, encodedData);
-            if(decodingError == null) {
+            if(decodingError == null || decodingError instanceof OutputLimitException) {
+                // another length would only decode more
                 return result;
             }
-
-            if(lengthFromDictionary == null || lengthFromDictionary == encodedData.length
-                    || fromByte + lengthFromDictionary > data.length) {
+            if(!fallback) {
                 // useless to process with another length
-                return decodingError.getBaos().toByteArray();
+                return result;
+            }
+            // filters read their input in order: an error met before the end of both ranges is met
+            // again at the same point, with the same partial output
+            if(decodingError.getProcessed() + CHECKPOINT_MARGIN <= lengthFromDictionary) {
+                lengthFallback = LengthFallback.SKIPPED;
+                return result;
             }
         }
         catch(Exception e) {
-            if(lengthFromDictionary == null || lengthFromDictionary == encodedData.length
-                    || fromByte + lengthFromDictionary > data.length) {
+            if(!fallback) {
                 throw e;
             }
         }
 
         // try to decode with argument length
-        return parse(filterIndex, filter,
-                ByteBufferUtils.getByteArray(data, fromByte, lengthFromDictionary).toByteArray());
+        lengthFallback = LengthFallback.DECODED;
+        return parse(filterIndex, filter, encodedData, 0, lengthFromDictionary);
     }
 
     public byte[] parse(int filterIndex, IFilter filter, byte[] data) throws Exception {
+        return parse(filterIndex, filter, data, 0, data.length);
+    }
+
+    private byte[] parse(int filterIndex, IFilter filter, byte[] data, int fromByte, int length) throws Exception {
         try {
-            return filter.decodeBytes(data, 0, data.length, dictionary);
+            byte[] decoded = filter.decodeBytes(data, fromByte, length, dictionary);
+            int max = OutputLimit.getMaxSize(filter, length);
+            if(decoded.length > max) {
+                // pass-through filters, such as image filters not decoding pixels, do not check the limit
+                throw new OutputLimitException(decoded, max, length, decoded.length, length);
+            }
+            OutputLimit.recordOutput(decoded.length);
+            return decoded;
         }
         catch(PdfFilterException e) {
             setDecodingError(e, filterIndex);
+            OutputLimit.recordOutput(e.getBaos().size());
             return e.getBaos().toByteArray();
         }
         catch(Exception | Error e) {
@@ -84,6 +129,67 @@ public class Decoder {
         }
     }
 
+    /**
+     * Apply the filters from fromIndex without keeping intermediate results: consecutive
+     * {@link BulkFilter}s decode into buffers reused from one filter to the next.
+     */
+    public byte[] parse(List<IFilter> filters, int fromIndex, byte[] data) throws Exception {
+        byte[] current = data;
+        int size = data.length;
+        byte[] spare = null;
+        for(int i = fromIndex; i < filters.size(); i++) {
+            if(size == 0) {
+                return new byte[0]; // a previous filter has nullify result
+            }
+            IFilter filter = filters.get(i);
+            byte[] previous = current;
+            if(filter instanceof BulkFilter) {
+                BulkFilter bulk = (BulkFilter)filter;
+                long decodedSize = bulk.decode(previous, 0, size, null);
+                int max = OutputLimit.getMaxSize(filter, size);
+                if(decodedSize > max) {
+                    current = new byte[max];
+                }
+                else {
+                    current = spare != null && spare.length >= decodedSize ? spare: new byte[(int)decodedSize];
+                }
+                try {
+                    int length = size;
+                    size = (int)bulk.decode(previous, 0, length, current);
+                    if(decodedSize > max) {
+                        throw BulkFilter.limitExceeded(current, decodedSize, length);
+                    }
+                }
+                catch(PdfFilterException e) {
+                    setDecodingError(e, i);
+                    size = e.getBaos().size();
+                }
+                OutputLimit.recordOutput(size);
+            }
+            else {
+                current = parse(i, filter, previous, 0, size);
+                size = current.length;
+            }
+            if(previous != data && previous != current) {
+                spare = previous;
+            }
+        }
+        return size == current.length ? current: Arrays.copyOf(current, size);
+    }
+
+    /**
+     * Chain the streaming variants of the filters: nothing is decoded until the returned stream is
+     * read, and reading stops decoding as soon as the caller stops reading.
+     */
+    public InputStream openStream(List<IFilter> filters, InputStream encoded)
+            throws IOException, FilterStreamException {
+        InputStream stream = encoded;
+        for(IFilter filter: filters) {
+            stream = filter.decodeStream(stream, dictionary);
+        }
+        return stream;
+    }
+
     public PdfFilterException getDecodingError() {
         return decodingError;
     }
@@ -92,6 +198,10 @@ public class Decoder {
         return errorFilterIndex;
     }
 
+    public LengthFallback getLengthFallback() {
+        return lengthFallback;
+    }
+
     private void setDecodingError(PdfFilterException decodingError, int filterIndex) {
         if(this.decodingError == null) {
             this.decodingError = decodingError;
@@ -0,0 +1,120 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.filter;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Base of the streaming filters that decode one byte at a time. A decoding error is reported once
+ * the bytes decoded before it have been read.
+ * 
+ * @author PNF Software
+ *
+ */
+abstract class DecodingInputStream extends FilterInputStream {
+
+    private boolean eod;
+
+    private IOException pendingError;
+
+    protected DecodingInputStream(InputStream in) {
+        super(in);
+    }
+
+    /**
+     * @return a stream reading data, then failing with error
+     */
+    static InputStream truncated(byte[] data, final IOException error) {
+        return new DecodingInputStream(new ByteArrayInputStream(data)) {
+            @Override
+            protected int decodeNext() throws IOException {
+                int c = in.read();
+                if(c == -1) {
+                    throw error;
+                }
+                return c;
+            }
+        };
+    }
+
+    /**
+     * @return next decoded byte, or -1 at end of data
+     */
+    protected abstract int decodeNext() throws IOException;
+
+    @Override
+    public int read() throws IOException {
+        if(pendingError != null) {
+            IOException e = pendingError;
+            pendingError = null;
+            throw e;
+        }
+        if(eod) {
+            return -1;
+        }
+        int c = decodeNext();
+        if(c == -1) {
+            eod = true;
+        }
+        return c;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        int i = 0;
+        try {
+            for(; i < len; i++) {
+                int c = read();
+                if(c == -1) {
+                    break;
+                }
+                b[off + i] = (byte)c;
+            }
+        }
+        catch(IOException e) {
+            if(i == 0) {
+                throw e;
+            }
+            pendingError = e;
+        }
+        return i == 0 && len > 0 ? -1: i;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long i = 0;
+        while(i < n && read() != -1) {
+            i++;
+        }
+        return i;
+    }
+
+    @Override
+    public int available() {
+        return 0;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+}
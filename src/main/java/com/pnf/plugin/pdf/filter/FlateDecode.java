@@ -16,20 +16,38 @@ See the License for the specific language governing permissions and
 limitations under the License.
 */
 
+
 package com.pnf.plugin.pdf.filter;
 
-import java.nio.ByteBuffer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
+import com.pnf.plugin.pdf.obj.IPdfAttribute;
+import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
 import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.obj.PdfNumber;
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+import com.sun.pdfview.decode.Predictor;
 
 /**
- * 
+ * Inflate with pooled {@link Inflater}s. The output is pre-sized from /DL, or from the predictor
+ * rows of an image; otherwise it is inflated into a per-thread buffer. Inflating stops at the
+ * {@link OutputLimit} of the stream.
  * 
  * @author PNF Software
  *
  */
 public class FlateDecode implements IFilter {
 
+    /** Deflate can not expand data more than this ratio */
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    private static final int MAX_SIZE_HINT = 64 * 1024 * 1024;
+
     private PdfDictionary decodeParms;
 
     public FlateDecode(PdfDictionary decodeParms) {
@@ -38,8 +56,123 @@ public class FlateDecode implements IFilter {
 
     public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
             throws FilterStreamException {
-        ByteBuffer bb = com.sun.pdfview.decode.FlateDecode.decode(PDFObject.getInstance(dictionary),
-                ByteBufferUtils.getByteBuffer(data, fromByte, length), PDFObject.getInstance(decodeParms));
-        return bb.array();
+        int sizeHint = getSizeHint(length, dictionary);
+        boolean pooled = sizeHint <= 0;
+        byte[] out = pooled ? PooledBuffer.take(length * 4L): new byte[sizeHint];
+        int size = 0;
+        int max = OutputLimit.getMaxSize(this, length);
+        Inflater inflater = InflaterPool.acquire();
+        try {
+            inflater.setInput(ByteBufferUtils.getByteBuffer(data, fromByte, length));
+            while(!inflater.finished()) {
+                if(size == out.length) {
+                    out = Arrays.copyOf(out, (int)Math.min(out.length * 2L, max + 1L));
+                }
+                int read = inflater.inflate(out, size, out.length - size);
+                if(read <= 0) {
+                    if(inflater.needsDictionary()) {
+                        throw new PdfFilterException("Don't know how to ask for a dictionary in FlateDecode",
+                                ByteBufferUtils.getByteArray(out, 0, size), length - inflater.getRemaining());
+                    }
+                    return new byte[0]; // truncated input
+                }
+                size += read;
+                if(size > max) {
+                    throw new OutputLimitException(out, max, length - inflater.getRemaining(), size, length);
+                }
+            }
+
+            // undo a predictor algorithm, if any was used
+            PDFObject params = PDFObject.getInstance(decodeParms);
+            try {
+                if(params != null && params.getDictionary().containsKey("Predictor")) {
+                    Predictor predictor = Predictor.getPredictor(params);
+                    if(predictor != null) {
+                        return predictor.unpredict(out, 0, size);
+                    }
+                }
+            }
+            catch(IOException e) {
+                throw new PdfFilterException(e, ByteBufferUtils.getByteArray(out, 0, size),
+                        length - inflater.getRemaining());
+            }
+            return !pooled && size == out.length ? out: Arrays.copyOf(out, size);
+        }
+        catch(DataFormatException e) {
+            throw new PdfFilterException(e, ByteBufferUtils.getByteArray(out, 0, size),
+                    length - inflater.getRemaining());
+        }
+        finally {
+            InflaterPool.release(inflater);
+            if(pooled) {
+                PooledBuffer.release(out);
+            }
+        }
+    }
+
+    /**
+     * @return expected inflated size, or 0 when it can not be estimated
+     */
+    private int getSizeHint(int length, PdfDictionary dictionary) {
+        long hint = 0;
+        if(decodeParms != null && decodeParms.getAttributeKeys().contains("Predictor")) {
+            int predictor = getInt(decodeParms, "/Predictor", 1);
+            int height = getInt(dictionary, "/Height", 0);
+            if(predictor >= 2 && height > 0) {
+                long bitsPerRow = (long)getInt(decodeParms, "/Columns", 1) * getInt(decodeParms, "/Colors", 1)
+                        * getInt(decodeParms, "/BitsPerComponent", 8);
+                long rowSize = (bitsPerRow + 7) / 8 + (predictor >= 10 ? 1: 0); // PNG rows start with a tag
+                hint = rowSize * height;
+            }
+        }
+        else {
+            hint = getInt(dictionary, "/DL", 0);
+        }
+        if(hint <= 0 || hint > (long)length * MAX_DEFLATE_RATIO || hint > MAX_SIZE_HINT) {
+            return 0;
+        }
+        return (int)hint;
+    }
+
+    private static int getInt(PdfDictionary dictionary, String key, int defaultValue) {
+        if(dictionary == null) {
+            return defaultValue;
+        }
+        IPdfAttribute attribute = dictionary.getAttribute(key);
+        if(attribute == null || attribute.getType() != Type.Number) {
+            return defaultValue;
+        }
+        PdfNumber number = (PdfNumber)attribute;
+        if(!number.isInt()) {
+            return defaultValue;
+        }
+        int value = number.intValue();
+        return value > 0 ? value: defaultValue;
+    }
+
+    /**
+     * End the idle Inflaters kept for the next decodings.
+     */
+    public static void releasePooledResources() {
+        InflaterPool.clear();
+    }
+
+    /**
+     * Inflates on the fly, and undoes the predictor row by row. Unlike {@link #decodeBytes}, a
+     * truncated zlib stream yields the bytes inflated so far before the error instead of an empty
+     * result.
+     */
+    @Override
+    public InputStream decodeStream(InputStream encoded, PdfDictionary dictionary)
+            throws IOException, FilterStreamException {
+        InputStream inflated = new InflaterInputStream(encoded);
+        PDFObject params = PDFObject.getInstance(decodeParms);
+        if(params != null && params.getDictionary().containsKey("Predictor")) {
+            Predictor predictor = Predictor.getPredictor(params);
+            if(predictor != null) {
+                return predictor.unpredict(inflated);
+            }
+        }
+        return inflated;
     }
 }
@@ -18,7 +18,13 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.filter;
 
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
 import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+import com.pnfsoftware.jeb.util.io.IO;
 
 /**
  * 
@@ -29,4 +35,23 @@ import com.pnf.plugin.pdf.obj.PdfDictionary;
 public interface IFilter {
     public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
             throws FilterStreamException;
+
+    /**
+     * Streaming variant of {@link #decodeBytes(byte[], int, int, PdfDictionary)}: the returned
+     * stream decodes data while it is read from the encoded stream. Errors found while reading are
+     * reported as {@link IOException}, after the bytes decoded so far.
+     * <p>
+     * The default implementation reads the whole encoded stream and decodes it at once; filters that
+     * can work on a bounded window override it.
+     */
+    public default InputStream decodeStream(InputStream encoded, PdfDictionary dictionary)
+            throws IOException, FilterStreamException {
+        byte[] data = IO.readInputStream(encoded);
+        try {
+            return new ByteArrayInputStream(decodeBytes(data, 0, data.length, dictionary));
+        }
+        catch(PdfFilterException e) {
+            return DecodingInputStream.truncated(e.getBaos().toByteArray(), new IOException(e));
+        }
+    }
 }
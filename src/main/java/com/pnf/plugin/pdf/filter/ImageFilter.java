@@ -0,0 +1,123 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import java.util.Arrays;
+
+import com.pnf.plugin.pdf.obj.IPdfAttribute;
+import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
+import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.obj.PdfNumber;
+
+/**
+ * Filter decoding an image, whose header can be read without decoding the pixels. The header of the
+ * last decoded data is kept by the filter.
+ * 
+ * @author PNF Software
+ *
+ */
+public abstract class ImageFilter implements IFilter {
+    protected PdfDictionary decodeParms;
+
+    private boolean pixelDecoding = true;
+
+    private boolean headerRead;
+
+    private ImageHeader header;
+
+    public ImageFilter(PdfDictionary decodeParms) {
+        this.decodeParms = decodeParms;
+    }
+
+    /**
+     * @param pixelDecoding when false, the encoded image is returned as is: only its header is read
+     */
+    public void setPixelDecoding(boolean pixelDecoding) {
+        this.pixelDecoding = pixelDecoding;
+    }
+
+    public boolean isPixelDecoding() {
+        return pixelDecoding;
+    }
+
+    @Override
+    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
+            throws FilterStreamException {
+        header = readHeader(data, fromByte, length, dictionary);
+        headerRead = true;
+        if(!pixelDecoding) {
+            return Arrays.copyOfRange(data, fromByte, fromByte + length);
+        }
+        if(header != null && header.getDecodedSize() > OutputLimit.getMaxSize(this, length)) {
+            // the pixels are not decoded at all: decoders allocate the whole image upfront
+            throw new OutputLimitException(new byte[0], 0, 0, header.getDecodedSize(), length);
+        }
+        return decodePixels(data, fromByte, length, dictionary);
+    }
+
+    /**
+     * @return true if this filter was given data to decode
+     */
+    public boolean isHeaderRead() {
+        return headerRead;
+    }
+
+    /**
+     * @return the header of the last decoded image, null when unreadable
+     */
+    public ImageHeader getHeader() {
+        return header;
+    }
+
+    /**
+     * Read the header of an encoded image.
+     * 
+     * @param dictionary stream dictionary
+     * @return the header, null when it can not be read
+     */
+    public abstract ImageHeader readHeader(byte[] data, int fromByte, int length, PdfDictionary dictionary);
+
+    protected abstract byte[] decodePixels(byte[] data, int fromByte, int length, PdfDictionary dictionary)
+            throws FilterStreamException;
+
+    protected static int getInt(PdfDictionary dictionary, String key, int defaultValue) {
+        if(dictionary == null) {
+            return defaultValue;
+        }
+        IPdfAttribute attribute = dictionary.getAttribute(key);
+        if(attribute == null || attribute.getType() != Type.Number) {
+            return defaultValue;
+        }
+        PdfNumber number = (PdfNumber)attribute;
+        if(!number.isInt()) {
+            return defaultValue;
+        }
+        int value = number.intValue();
+        return value > 0 ? value: defaultValue;
+    }
+
+    protected static int readUnsignedShort(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    protected static long readUnsignedInt(byte[] data, int offset) {
+        return ((long)readUnsignedShort(data, offset) << 16) | readUnsignedShort(data, offset + 2);
+    }
+}
@@ -0,0 +1,71 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+/**
+ * Image properties read from the header of an encoded image, without decoding its pixels
+ * 
+ * @author PNF Software
+ *
+ */
+public class ImageHeader {
+    private final int width;
+    private final int height;
+    private final int components;
+    private final int bitsPerComponent;
+
+    public ImageHeader(int width, int height, int components, int bitsPerComponent) {
+        this.width = width;
+        this.height = height;
+        this.components = components;
+        this.bitsPerComponent = bitsPerComponent;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return the height, 0 when it is only defined after the first scan (JPEG DNL marker)
+     */
+    public int getHeight() {
+        return height;
+    }
+
+    public int getComponents() {
+        return components;
+    }
+
+    public int getBitsPerComponent() {
+        return bitsPerComponent;
+    }
+
+    /**
+     * @return the size of the decoded samples, rows being padded to a byte boundary
+     */
+    public long getDecodedSize() {
+        return ((long)width * components * bitsPerComponent + 7) / 8 * height;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("%dx%d, %d components of %d bits", width, height, components, bitsPerComponent);
+    }
+}
@@ -0,0 +1,73 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.Inflater;
+
+/**
+ * Bounded pool of idle {@link Inflater}s. An Inflater is either pooled or ended, so its native zlib
+ * memory never waits for the garbage collector.
+ * 
+ * @author PNF Software
+ *
+ */
+class InflaterPool {
+
+    private static final int MAX_IDLE = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+    private static final ConcurrentLinkedQueue<Inflater> idle = new ConcurrentLinkedQueue<>();
+
+    private static final AtomicInteger idleCount = new AtomicInteger();
+
+    private InflaterPool() {
+    }
+
+    static Inflater acquire() {
+        Inflater inflater = idle.poll();
+        if(inflater == null) {
+            return new Inflater(false);
+        }
+        idleCount.decrementAndGet();
+        return inflater;
+    }
+
+    static void release(Inflater inflater) {
+        if(idleCount.incrementAndGet() > MAX_IDLE) {
+            idleCount.decrementAndGet();
+            inflater.end();
+            return;
+        }
+        inflater.reset();
+        idle.offer(inflater);
+    }
+
+    /**
+     * End all idle Inflaters.
+     */
+    static void clear() {
+        Inflater inflater;
+        while((inflater = idle.poll()) != null) {
+            idleCount.decrementAndGet();
+            inflater.end();
+        }
+    }
+}
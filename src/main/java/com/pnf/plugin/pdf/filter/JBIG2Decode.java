@@ -32,14 +32,68 @@ import com.pnf.plugin.pdf.obj.PdfDictionary;
  * @author PNF Software
  *
  */
-public class JBIG2Decode implements IFilter {
-    private PdfDictionary decodeParms;
+public class JBIG2Decode extends ImageFilter {
+    private static final int SEGMENT_PAGE_INFORMATION = 48;
+    private static final long UNKNOWN_LENGTH = 0xFFFFFFFFL;
 
     public JBIG2Decode(PdfDictionary decodeParms) {
-        this.decodeParms = decodeParms;
+        super(decodeParms);
     }
 
-    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
+    /**
+     * Read the page information segment. Embedded JBIG2 streams have no file header: segments
+     * directly follow each other.
+     */
+    @Override
+    public ImageHeader readHeader(byte[] data, int fromByte, int length, PdfDictionary dictionary) {
+        int end = fromByte + length;
+        int i = fromByte;
+        while(i + 6 <= end) {
+            long segmentNumber = readUnsignedInt(data, i);
+            int flags = data[i + 4] & 0xFF;
+            i += 5;
+            // referred-to segments: count in 3 bits, or in 29 bits followed by retention flags
+            int referredCount = (data[i] & 0xFF) >>> 5;
+            if(referredCount == 7) {
+                if(i + 4 > end) {
+                    return null;
+                }
+                referredCount = (int)(readUnsignedInt(data, i) & 0x1FFFFFFF);
+                i += 4 + (referredCount + 8) / 8;
+            }
+            else {
+                i++;
+            }
+            int referredSize = segmentNumber <= 256 ? 1: segmentNumber <= 65536 ? 2: 4;
+            long next = (long)i + (long)referredCount * referredSize + ((flags & 0x40) != 0 ? 4: 1);
+            if(next + 4 > end) {
+                return null;
+            }
+            i = (int)next;
+            long dataLength = readUnsignedInt(data, i);
+            i += 4;
+            if((flags & 0x3F) == SEGMENT_PAGE_INFORMATION) {
+                if(i + 8 > end) {
+                    return null;
+                }
+                long width = readUnsignedInt(data, i);
+                long height = readUnsignedInt(data, i + 4);
+                if(width > Integer.MAX_VALUE) {
+                    return null;
+                }
+                // height may be unknown until the end of the page is met
+                return new ImageHeader((int)width, height > Integer.MAX_VALUE ? 0: (int)height, 1, 1);
+            }
+            if(dataLength == UNKNOWN_LENGTH || dataLength > end - i) {
+                return null;
+            }
+            i += (int)dataLength;
+        }
+        return null;
+    }
+
+    @Override
+    protected byte[] decodePixels(byte[] data, int fromByte, int length, PdfDictionary dictionary)
             throws FilterStreamException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         ByteArrayInputStream bais = new ByteArrayInputStream(data, fromByte, length);
@@ -29,14 +29,17 @@ import com.pnf.plugin.pdf.obj.PdfDictionary;
  * @author PNF Software
  *
  */
-public class JPXDecode implements IFilter {
-    private PdfDictionary decodeParms;
+public class JPXDecode extends ImageFilter {
+    private static final int BOX_JP2_HEADER = 0x6A703268; // jp2h
+    private static final int BOX_IMAGE_HEADER = 0x69686472; // ihdr
+    private static final int BOX_CODESTREAM = 0x6A703263; // jp2c
 
     public JPXDecode(PdfDictionary decodeParms) {
-        this.decodeParms = decodeParms;
+        super(decodeParms);
     }
 
-    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
+    @Override
+    protected byte[] decodePixels(byte[] data, int fromByte, int length, PdfDictionary dictionary)
             throws FilterStreamException {
         try {
             ByteBuffer bb = com.sun.pdfview.decode.JPXDecode.decode(PDFObject.getInstance(dictionary),
@@ -48,4 +51,71 @@ public class JPXDecode implements IFilter {
         }
     }
 
+    /**
+     * Read the image header box of a JP2 file, or the SIZ marker segment of a raw codestream.
+     */
+    @Override
+    public ImageHeader readHeader(byte[] data, int fromByte, int length, PdfDictionary dictionary) {
+        int end = fromByte + length;
+        if(length >= 2 && readUnsignedShort(data, fromByte) == 0xFF4F) {
+            return readCodestreamHeader(data, fromByte, end);
+        }
+        return readBoxes(data, fromByte, end);
+    }
+
+    private static ImageHeader readBoxes(byte[] data, int from, int end) {
+        int i = from;
+        while(i + 8 <= end) {
+            long boxLength = readUnsignedInt(data, i);
+            int type = (int)readUnsignedInt(data, i + 4);
+            int contentStart = i + 8;
+            if(boxLength == 1) {
+                if(i + 16 > end || readUnsignedInt(data, i + 8) != 0) {
+                    return null;
+                }
+                boxLength = readUnsignedInt(data, i + 12);
+                contentStart = i + 16;
+            }
+            long boxEnd = boxLength == 0 ? end: i + boxLength;
+            if(boxEnd < contentStart || boxEnd > end) {
+                return null;
+            }
+            if(type == BOX_JP2_HEADER) {
+                return readBoxes(data, contentStart, (int)boxEnd);
+            }
+            else if(type == BOX_IMAGE_HEADER) {
+                if(contentStart + 11 > boxEnd) {
+                    return null;
+                }
+                long height = readUnsignedInt(data, contentStart);
+                long width = readUnsignedInt(data, contentStart + 4);
+                int components = readUnsignedShort(data, contentStart + 8);
+                int bpc = data[contentStart + 10] & 0xFF;
+                return createHeader(width, height, components, bpc == 0xFF ? 0: (bpc & 0x7F) + 1);
+            }
+            else if(type == BOX_CODESTREAM) {
+                return readCodestreamHeader(data, contentStart, (int)boxEnd);
+            }
+            i = (int)boxEnd;
+        }
+        return null;
+    }
+
+    private static ImageHeader readCodestreamHeader(byte[] data, int from, int end) {
+        // SOC, SIZ marker, Lsiz, Rsiz, image and tile sizes, Csiz, then Ssiz of the first component
+        if(from + 43 > end || readUnsignedShort(data, from) != 0xFF4F || readUnsignedShort(data, from + 2) != 0xFF51) {
+            return null;
+        }
+        long width = readUnsignedInt(data, from + 8) - readUnsignedInt(data, from + 16);
+        long height = readUnsignedInt(data, from + 12) - readUnsignedInt(data, from + 20);
+        int components = readUnsignedShort(data, from + 40);
+        return createHeader(width, height, components, (data[from + 42] & 0x7F) + 1);
+    }
+
+    private static ImageHeader createHeader(long width, long height, int components, int bitsPerComponent) {
+        if(width < 0 || width > Integer.MAX_VALUE || height < 0 || height > Integer.MAX_VALUE) {
+            return null;
+        }
+        return new ImageHeader((int)width, (int)height, components, bitsPerComponent);
+    }
 }
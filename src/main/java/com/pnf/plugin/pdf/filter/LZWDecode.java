@@ -19,16 +19,28 @@ limitations under the License.
 package com.pnf.plugin.pdf.filter;
 
 import java.io.IOException;
+import java.util.Arrays;
 
+import com.pnf.plugin.pdf.obj.IPdfAttribute;
+import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
 import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+import com.sun.pdfview.decode.Predictor;
 
 /**
- * 
+ * LZW decoder working on a flat code table, without allocation per code. Like
+ * {@link com.sun.pdfview.decode.LZWDecode}, decoding stops when the last input byte is reached.
  * 
  * @author PNF Software
  *
  */
 public class LZWDecode implements IFilter {
+    private static final int CLEAR_TABLE = 256;
+    private static final int EOD = 257;
+    private static final int FIRST_CODE = 258;
+    private static final int MAX_CODES = 4096;
+    private static final int MAX_CODE_LENGTH = 12;
+
     private PdfDictionary decodeParms;
 
     public LZWDecode(PdfDictionary decodeParms) {
@@ -38,14 +50,184 @@ public class LZWDecode implements IFilter {
     @Override
     public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
             throws FilterStreamException {
+        Decoding decoding = new Decoding(data, fromByte, length, PooledBuffer.take(length * 3L),
+                OutputLimit.getMaxSize(this, length));
         try {
-            return com.sun.pdfview.decode.LZWDecode
-                    .decode(ByteBufferUtils.getByteBuffer(data, fromByte, length), PDFObject.getInstance(decodeParms))
-                    .array();
+            decoding.run(getEarlyChange());
+
+            // undo a predictor algorithm, if any was used
+            PDFObject params = PDFObject.getInstance(decodeParms);
+            if(params != null && params.getDictRef("Predictor") != null) {
+                Predictor predictor = Predictor.getPredictor(params);
+                if(predictor != null) {
+                    return predictor.unpredict(decoding.out, 0, decoding.size);
+                }
+            }
+            return Arrays.copyOf(decoding.out, decoding.size);
         }
         catch(IOException e) {
             throw new FilterStreamException(e);
         }
+        finally {
+            PooledBuffer.release(decoding.out);
+        }
+    }
+
+    private int getEarlyChange() {
+        IPdfAttribute attribute = decodeParms == null ? null: decodeParms.getAttribute("/EarlyChange");
+        if(attribute != null && attribute.getType() == Type.Number && attribute.toString().equals("0")) {
+            return 0;
+        }
+        return 1;
     }
 
+    /**
+     * The string of a table entry always lies in the output already: the previous string followed by
+     * the first byte of the next one. Entries are offsets in the output, so writing a string is an
+     * array copy.
+     */
+    private static class Decoding {
+        private final int[] offset = new int[MAX_CODES];
+        private final int[] length = new int[MAX_CODES];
+        private int tableSize = FIRST_CODE;
+
+        private final byte[] data;
+        private final int start;
+        private final int end;
+        private int position;
+        private long bitBuffer;
+        private int bitCount;
+
+        byte[] out;
+        int size;
+        private final int max;
+
+        Decoding(byte[] data, int fromByte, int length, byte[] out, int max) {
+            this.data = data;
+            this.start = fromByte;
+            this.end = fromByte + length;
+            this.position = fromByte;
+            this.out = out;
+            this.max = max;
+            for(int i = 0; i < 256; i++) {
+                this.length[i] = 1;
+            }
+        }
+
+        void run(int earlyChange) throws PdfFilterException {
+            int codeLength = 9;
+            int code = CLEAR_TABLE;
+            int previousOffset = 0;
+            while(true) {
+                if(size > max) {
+                    throw new OutputLimitException(out, max, getProcessed(), size, end - start);
+                }
+                int previous = code;
+                code = nextCode(codeLength);
+                if(code == -1) {
+                    throw new PdfFilterException("Missed the stop code in LZWDecode!",
+                            ByteBufferUtils.getByteArray(out, 0, size), getProcessed());
+                }
+                if(code == EOD) {
+                    break;
+                }
+                else if(code == CLEAR_TABLE) {
+                    tableSize = FIRST_CODE;
+                    codeLength = 9;
+                }
+                else if(previous == CLEAR_TABLE) {
+                    if(code >= FIRST_CODE) {
+                        // the table is empty: entries left before a clear are stale
+                        throw invalidCode();
+                    }
+                    previousOffset = size;
+                    write(code);
+                }
+                else {
+                    int codeOffset = size;
+                    if(code < tableSize) {
+                        write(code);
+                        add(previousOffset, previous);
+                    }
+                    else if(code > tableSize) {
+                        throw invalidCode();
+                    }
+                    else {
+                        // code being defined: previous string followed by its first byte
+                        add(previousOffset, previous);
+                        write(previousOffset, length[previous]);
+                        out[size++] = out[previousOffset];
+                    }
+                    previousOffset = codeOffset;
+                    if(tableSize + earlyChange >= 1 << codeLength && codeLength < MAX_CODE_LENGTH) {
+                        codeLength++;
+                    }
+                }
+            }
+        }
+
+        /**
+         * @return next code, or -1 when the last input byte is reached
+         */
+        private int nextCode(int codeLength) {
+            int consumedBits = (position - start) * 8 - bitCount;
+            if(consumedBits >> 3 >= end - start - 1) {
+                return -1;
+            }
+            while(bitCount <= 56 && position < end) {
+                bitBuffer = bitBuffer << 8 | (data[position++] & 0xFF);
+                bitCount += 8;
+            }
+            if(bitCount < codeLength) {
+                return -1;
+            }
+            bitCount -= codeLength;
+            return (int)(bitBuffer >>> bitCount) & ((1 << codeLength) - 1);
+        }
+
+        private int getProcessed() {
+            return position - start - bitCount / 8;
+        }
+
+        private void add(int previousOffset, int previous) throws PdfFilterException {
+            if(tableSize == MAX_CODES || length[previous] == 0) {
+                throw invalidCode();
+            }
+            offset[tableSize] = previousOffset;
+            length[tableSize] = length[previous] + 1;
+            tableSize++;
+        }
+
+        private void write(int code) throws PdfFilterException {
+            if(code < 256) {
+                ensureCapacity(1);
+                out[size++] = (byte)code;
+            }
+            else if(length[code] == 0) {
+                throw invalidCode();
+            }
+            else {
+                write(offset[code], length[code]);
+            }
+        }
+
+        private void write(int from, int count) {
+            ensureCapacity(count + 1);
+            System.arraycopy(out, from, out, size, count);
+            size += count;
+        }
+
+        private void ensureCapacity(int count) {
+            if(size + count > out.length) {
+                // a string is shorter than the table, so the output overshoots the limit by less than that
+                long capacity = Math.min(Math.max(out.length * 2L, size + count), (long)max + MAX_CODES + 1);
+                out = Arrays.copyOf(out, (int)Math.max(capacity, size + count));
+            }
+        }
+
+        private PdfFilterException invalidCode() {
+            return new PdfFilterException("Invalid code in LZWDecode", ByteBufferUtils.getByteArray(out, 0, size),
+                    getProcessed());
+        }
+    }
 }
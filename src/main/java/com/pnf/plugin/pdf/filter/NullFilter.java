@@ -18,6 +18,9 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.filter;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+
 import com.pnf.plugin.pdf.obj.PdfDictionary;
 
 /**
@@ -33,4 +36,9 @@ public class NullFilter implements IFilter {
             throws FilterStreamException {
         return new byte[0];
     }
+
+    @Override
+    public InputStream decodeStream(InputStream encoded, PdfDictionary dictionary) {
+        return new ByteArrayInputStream(new byte[0]);
+    }
 }
@@ -0,0 +1,245 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.filter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Ceilings on the size of decoded data. While a stream is decoded, its limit is set for the
+ * current thread, and filters check it as their output grows: past the maximum stream size, filters
+ * stop with an {@link OutputLimitException} carrying the bytes decoded up to the limit.
+ * <p>
+ * A document has a budget shared by its streams, charged with the size of their decoded data once
+ * they are decoded. Streams decoded on the worker pool record their charges, which the parser
+ * applies in object order: the streams kept within the budget do not depend on scheduling. A stream
+ * whose filters output more than what is left of the budget is decoded again under that ceiling,
+ * so decoded data never exceeds the budget.
+ * <p>
+ * Past {@link #RATIO_CHECK_FLOOR} bytes, the output of a filter is also limited by its expansion
+ * ratio threshold, if any: the output size divided by the input size of the filter.
+ * 
+ * @author PNF Software
+ *
+ */
+public class OutputLimit {
+    /** Output size under which expansion ratios are not checked */
+    public static final int RATIO_CHECK_FLOOR = 10_000_000;
+
+    private static final int MAX_ARRAY_SIZE = Integer.MAX_VALUE - 8;
+
+    private static final ThreadLocal<OutputLimit> current = new ThreadLocal<>();
+
+    private static final ThreadLocal<List<BooleanSupplier>> deferredCharges = new ThreadLocal<>();
+
+    private final long maxStreamSize;
+
+    /** Expansion ratio thresholds by filter name, e.g. FlateDecode */
+    private final Map<String, Integer> maxRatios;
+
+    /** Decoded bytes left to the streams of a document limit */
+    private final AtomicLong documentBytesLeft;
+
+    /** Largest output of the filters of a stream, only updated by the decoding thread */
+    private long peakOutput;
+
+    /**
+     * @param maxStreamSize maximum size of the output of a filter
+     * @param maxDocumentSize budget of decoded data shared by all streams of the document
+     * @param maxRatios expansion ratio thresholds by filter name, 0 or missing for no threshold
+     */
+    public OutputLimit(long maxStreamSize, long maxDocumentSize, Map<String, Integer> maxRatios) {
+        this(maxStreamSize, maxRatios, new AtomicLong(maxDocumentSize));
+    }
+
+    private OutputLimit(long maxStreamSize, Map<String, Integer> maxRatios, AtomicLong documentBytesLeft) {
+        this.maxStreamSize = maxStreamSize;
+        this.maxRatios = maxRatios;
+        this.documentBytesLeft = documentBytesLeft;
+    }
+
+    /**
+     * @return the limit of a stream decoded for the first time, to be charged with
+     *         {@link #charge(OutputLimit, long)}
+     */
+    public OutputLimit forStream() {
+        return forStream(maxStreamSize);
+    }
+
+    /**
+     * @return the limit of a stream with the given fixed ceiling and the ratio thresholds of this
+     *         limit
+     */
+    public OutputLimit forStream(long ceiling) {
+        return new OutputLimit(ceiling, maxRatios, null);
+    }
+
+    /**
+     * Charge the budget of the document with the decoded data of a stream, unless its filters
+     * output more than what is left of the budget.
+     * 
+     * @param stream limit the stream was decoded under
+     * @param size size of the decoded data
+     * @return false, nothing being charged, when the stream must be decoded again under
+     *         {@link #getDocumentBytesLeft()}
+     */
+    public boolean charge(OutputLimit stream, long size) {
+        while(true) {
+            long left = documentBytesLeft.get();
+            if(stream.peakOutput > left) {
+                return false;
+            }
+            if(documentBytesLeft.compareAndSet(left, left - size)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Charge the budget of the document with decoded data.
+     */
+    public void charge(long size) {
+        documentBytesLeft.addAndGet(-size);
+    }
+
+    /**
+     * @return decoded bytes left to the streams of the document
+     */
+    public long getDocumentBytesLeft() {
+        return documentBytesLeft.get();
+    }
+
+    /**
+     * @return ceiling of this stream limit; decoding again under this fixed ceiling yields the same
+     *         data
+     */
+    public long getCeiling() {
+        return maxStreamSize;
+    }
+
+    /**
+     * @return largest output of the filters decoded under this stream limit
+     */
+    public long getPeakOutput() {
+        return peakOutput;
+    }
+
+    /**
+     * Set the limit of the stream decoded by the current thread.
+     * 
+     * @return the limit previously set, to be given back to {@link #end(OutputLimit)}
+     */
+    public static OutputLimit begin(OutputLimit limit) {
+        OutputLimit previous = current.get();
+        current.set(limit);
+        return previous;
+    }
+
+    public static void end(OutputLimit previous) {
+        if(previous == null) {
+            current.remove();
+        }
+        else {
+            current.set(previous);
+        }
+    }
+
+    /**
+     * Record the output size of a filter of the stream decoded by the current thread.
+     */
+    public static void recordOutput(long size) {
+        OutputLimit limit = current.get();
+        if(limit != null && size > limit.peakOutput) {
+            limit.peakOutput = size;
+        }
+    }
+
+    /**
+     * Start recording the budget charges of the current thread instead of applying them.
+     * 
+     * @return the charges previously recorded, to be given back to
+     *         {@link #endDeferredCharges(List)}
+     */
+    public static List<BooleanSupplier> beginDeferredCharges() {
+        List<BooleanSupplier> previous = deferredCharges.get();
+        deferredCharges.set(new ArrayList<BooleanSupplier>());
+        return previous;
+    }
+
+    /**
+     * @return the charges recorded since {@link #beginDeferredCharges()}
+     */
+    public static List<BooleanSupplier> endDeferredCharges(List<BooleanSupplier> previous) {
+        List<BooleanSupplier> recorded = deferredCharges.get();
+        if(previous == null) {
+            deferredCharges.remove();
+        }
+        else {
+            deferredCharges.set(previous);
+        }
+        return recorded == null ? Collections.<BooleanSupplier> emptyList(): recorded;
+    }
+
+    /**
+     * Apply a budget charge, or record it if the current thread defers its charges.
+     * 
+     * @return false if the charge was applied and failed
+     */
+    public static boolean applyOrDefer(BooleanSupplier charge) {
+        List<BooleanSupplier> recorded = deferredCharges.get();
+        if(recorded != null) {
+            recorded.add(charge);
+            return true;
+        }
+        return charge.getAsBoolean();
+    }
+
+    /**
+     * Apply recorded charges in their order.
+     * 
+     * @return false if a charge failed
+     */
+    public static boolean applyDeferredCharges(List<BooleanSupplier> charges) {
+        boolean charged = true;
+        for(BooleanSupplier charge: charges) {
+            charged &= charge.getAsBoolean();
+        }
+        return charged;
+    }
+
+    /**
+     * @return the maximum output size of a filter given inputLength bytes, on the current thread
+     */
+    public static int getMaxSize(IFilter filter, int inputLength) {
+        OutputLimit limit = current.get();
+        if(limit == null) {
+            return MAX_ARRAY_SIZE;
+        }
+        long max = limit.maxStreamSize;
+        Integer ratio = limit.maxRatios.get(filter.getClass().getSimpleName());
+        if(ratio != null && ratio > 0) {
+            max = Math.min(max, Math.max(RATIO_CHECK_FLOOR, (long)inputLength * ratio));
+        }
+        return (int)Math.min(max, MAX_ARRAY_SIZE);
+    }
+}
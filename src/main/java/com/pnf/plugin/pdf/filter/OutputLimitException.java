@@ -0,0 +1,58 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.filter;
+
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+
+/**
+ * Raised by a filter whose output exceeds its {@link OutputLimit}. The decoded bytes are truncated
+ * to the limit; image filters, which check the size given by the image header, decode nothing.
+ * 
+ * @author PNF Software
+ *
+ */
+public class OutputLimitException extends PdfFilterException {
+
+    private static final long serialVersionUID = 3342071518612304781L;
+
+    private long minDecodedSize;
+
+    private int inputLength;
+
+    /**
+     * @param out decoded bytes
+     * @param size number of decoded bytes kept
+     * @param processed number of input bytes processed
+     * @param minDecodedSize lower bound of the size of the whole decoded data
+     * @param inputLength size of the input of the filter
+     */
+    public OutputLimitException(byte[] out, int size, int processed, long minDecodedSize, int inputLength) {
+        super(String.format("Decoded data exceeds %d bytes", size), ByteBufferUtils.getByteArray(out, 0, size),
+                processed);
+        this.minDecodedSize = minDecodedSize;
+        this.inputLength = inputLength;
+    }
+
+    /**
+     * @return lower bound of the expansion ratio of the filter: decoded size divided by input size
+     */
+    public long getExpansionRatio() {
+        return inputLength == 0 ? minDecodedSize: minDecodedSize / inputLength;
+    }
+}
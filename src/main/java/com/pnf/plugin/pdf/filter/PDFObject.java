@@ -34,6 +34,7 @@ import com.pnf.plugin.pdf.obj.PdfArray;
 import com.pnf.plugin.pdf.obj.PdfDictionary;
 import com.pnf.plugin.pdf.obj.PdfDictionaryAttribute;
 import com.pnf.plugin.pdf.obj.PdfIndirectReference;
+import com.pnf.plugin.pdf.obj.PdfNumber;
 import com.pnf.plugin.pdf.obj.PdfStream;
 import com.sun.pdfview.PDFStringUtil;
 
@@ -103,16 +104,9 @@ public class PDFObject {
             return dereference().getIntValue();
         }
         else if(type == NUMBER) {
-            try {
-                return Integer.valueOf(dict.toString());
-            }
-            catch(Exception e) {
-                try {
-                    return Long.valueOf(dict.toString()).intValue();
-                }
-                catch(Exception e2) {
-                    e.printStackTrace();
-                }
+            PdfNumber number = (PdfNumber)dict;
+            if(number.isLong()) {
+                return (int)number.longValue();
             }
         }
 
@@ -149,7 +143,7 @@ public class PDFObject {
             return dereference().getFloatValue();
         }
         else if(type == NUMBER) {
-            return Double.valueOf(dict.toString()).floatValue();
+            return (float)((PdfNumber)dict).doubleValue();
         }
 
         // wrong type
@@ -273,7 +267,8 @@ public class PDFObject {
             if(stream == null) {
                 return null;
             }
-            return ByteBufferUtils.getByteBuffer(stream.getDecodedData(), 0, stream.getDecodedData().length);
+            byte[] data = stream.getDecodedData();
+            return ByteBufferUtils.getByteBuffer(data, 0, data.length).asReadOnlyBuffer(); // shared with the stream
         }
         else if(type == STRING) {
             String src = getStringValue();
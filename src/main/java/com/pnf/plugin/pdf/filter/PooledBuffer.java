@@ -0,0 +1,63 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+/**
+ * Per-thread scratch buffer that decoders fill before copying the exact result out. A buffer taken
+ * from the pool must be released once its content was copied.
+ * 
+ * @author PNF Software
+ *
+ */
+class PooledBuffer {
+
+    private static final int MAX_POOLED_SIZE = 4 * 1024 * 1024;
+
+    private static final int MIN_SIZE = 4096;
+
+    private static final ThreadLocal<byte[]> pooled = new ThreadLocal<>();
+
+    private PooledBuffer() {
+    }
+
+    /**
+     * @param expectedSize estimated output size
+     * @return the pooled buffer, or a new one when it is in use or too small
+     */
+    static byte[] take(long expectedSize) {
+        int wanted = (int)Math.min(MAX_POOLED_SIZE, Math.max(MIN_SIZE, expectedSize));
+        byte[] buffer = pooled.get();
+        if(buffer == null || buffer.length < wanted) {
+            return new byte[wanted];
+        }
+        pooled.set(null); // in use
+        return buffer;
+    }
+
+    /**
+     * Keep the largest released buffer, up to a bounded size.
+     */
+    static void release(byte[] buffer) {
+        byte[] current = pooled.get();
+        if(buffer.length <= MAX_POOLED_SIZE && (current == null || current.length < buffer.length)) {
+            pooled.set(buffer);
+        }
+    }
+}
@@ -18,23 +18,70 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.filter;
 
-import java.nio.ByteBuffer;
+import java.util.Arrays;
 
-import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.parser.PdfFilterException;
 
 /**
- * 
+ * RunLengthDecode: a length byte n in [0, 127] is followed by n + 1 literal bytes, a length byte in [129, 255] by a
+ * byte to repeat 257 - n times, and 128 marks the end of data. A missing end of data marker is tolerated.
  * 
  * @author PNF Software
  *
  */
-public class RunLengthDecode implements IFilter {
+public class RunLengthDecode extends BulkFilter {
+    private static final int EOD = 128;
 
     @Override
-    public byte[] decodeBytes(byte[] data, int fromByte, int length, PdfDictionary dictionary)
-            throws FilterStreamException {
-        ByteBuffer bb = com.sun.pdfview.decode.RunLengthDecode
-                .decode(ByteBufferUtils.getByteBuffer(data, fromByte, length), null);
-        return bb.array();
+    long decode(byte[] data, int fromByte, int length, byte[] out) throws PdfFilterException {
+        // 2 input bytes expand to 128: the decoded size of a large input does not fit in an int
+        long size = 0;
+        int end = fromByte + length;
+        int i = fromByte;
+        while(i < end) {
+            int n = data[i++] & 0xFF;
+            if(n == EOD) {
+                break;
+            }
+            if(n < EOD) {
+                int count = Math.min(n + 1, end - i);
+                if(out != null) {
+                    if(size + count > out.length) {
+                        System.arraycopy(data, i, out, (int)size, out.length - (int)size);
+                        return out.length;
+                    }
+                    System.arraycopy(data, i, out, (int)size, count);
+                }
+                size += count;
+                i += count;
+                if(count != n + 1) {
+                    return fail(out, size, i - fromByte);
+                }
+            }
+            else {
+                if(i >= end) {
+                    return fail(out, size, i - fromByte);
+                }
+                int count = 257 - n;
+                if(out != null) {
+                    if(size + count > out.length) {
+                        Arrays.fill(out, (int)size, out.length, data[i]);
+                        return out.length;
+                    }
+                    Arrays.fill(out, (int)size, (int)size + count, data[i]);
+                }
+                size += count;
+                i++;
+            }
+        }
+        return size;
+    }
+
+    private static long fail(byte[] out, long size, int processed) throws PdfFilterException {
+        if(out == null) {
+            return size;
+        }
+        throw new PdfFilterException("Truncated run in RunLengthDecode",
+                ByteBufferUtils.getByteArray(out, 0, (int)size), processed);
     }
 }
@@ -18,6 +18,8 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.filter;
 
+import java.io.InputStream;
+
 import com.pnf.plugin.pdf.obj.PdfDictionary;
 
 /**
@@ -34,4 +36,9 @@ public class VoidFilter implements IFilter {
         System.arraycopy(data, fromByte, decodedData, 0, length);
         return decodedData;
     }
+
+    @Override
+    public InputStream decodeStream(InputStream encoded, PdfDictionary dictionary) {
+        return encoded;
+    }
 }
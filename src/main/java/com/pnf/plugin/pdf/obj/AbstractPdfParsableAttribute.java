@@ -22,6 +22,7 @@ import com.pnf.plugin.pdf.PdfStatistics;
 import com.pnf.plugin.pdf.parser.IPdfParsable;
 import com.pnf.plugin.pdf.parser.InputOffset;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
+import com.pnfsoftware.jeb.util.serialization.annotations.SerCustomInit;
 import com.pnfsoftware.jeb.util.serialization.annotations.SerId;
 
 /**
@@ -36,17 +37,34 @@ public abstract class AbstractPdfParsableAttribute implements IPdfAttribute, IPd
     @SerId(1)
     private AbstractPdfParsableAttribute parent;
 
+    /** int offsets of projects saved before offsets were long, migrated on load */
     @SerId(2)
-    protected int startIndex;
+    private int legacyStartIndex;
 
     @SerId(3)
-    protected int endIndex;
+    private int legacyEndIndex;
 
-    public AbstractPdfParsableAttribute(AbstractPdfParsableAttribute parent, int startIndex) {
+    @SerId(4)
+    protected long startIndex;
+
+    @SerId(5)
+    protected long endIndex;
+
+    public AbstractPdfParsableAttribute(AbstractPdfParsableAttribute parent, long startIndex) {
         this.parent = parent;
         this.startIndex = startIndex;
     }
 
+    @SerCustomInit
+    private void migrateOffsets() {
+        if(legacyStartIndex != 0 || legacyEndIndex != 0) {
+            startIndex = legacyStartIndex;
+            endIndex = legacyEndIndex;
+            legacyStartIndex = 0;
+            legacyEndIndex = 0;
+        }
+    }
+
     @Override
     public IPdfAttribute getPdfAttribute() {
         return this;
@@ -80,11 +98,11 @@ public abstract class AbstractPdfParsableAttribute implements IPdfAttribute, IPd
         return getMainParent().getId();
     }
 
-    public int getStartIndex() {
+    public long getStartIndex() {
         return startIndex;
     }
 
-    public int getEndIndex() {
+    public long getEndIndex() {
         return endIndex;
     }
 
@@ -93,7 +111,7 @@ public abstract class AbstractPdfParsableAttribute implements IPdfAttribute, IPd
         return InputOffset.getInstance(this, startIndex);
     }
 
-    protected void setEndIndex(int cursor) {
+    protected void setEndIndex(long cursor) {
         this.endIndex = cursor;
     }
 
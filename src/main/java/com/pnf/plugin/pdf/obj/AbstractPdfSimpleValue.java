@@ -20,6 +20,7 @@ package com.pnf.plugin.pdf.obj;
 
 import com.pnf.plugin.pdf.parser.InputOffset;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
+import com.pnfsoftware.jeb.util.serialization.annotations.SerCustomInit;
 import com.pnfsoftware.jeb.util.serialization.annotations.SerId;
 
 /**
@@ -37,15 +38,27 @@ public abstract class AbstractPdfSimpleValue implements IPdfAttribute {
     @SerId(2)
     private AbstractPdfParsableAttribute parent;
 
+    /** int offset of projects saved before offsets were long, migrated on load */
     @SerId(3)
-    protected int startIndex;
+    private int legacyStartIndex;
 
-    public AbstractPdfSimpleValue(String value, AbstractPdfParsableAttribute parent, int startIndex) {
+    @SerId(4)
+    protected long startIndex;
+
+    public AbstractPdfSimpleValue(String value, AbstractPdfParsableAttribute parent, long startIndex) {
         this.value = value;
         this.parent = parent;
         this.startIndex = startIndex;
     }
 
+    @SerCustomInit
+    private void migrateOffsets() {
+        if(legacyStartIndex != 0) {
+            startIndex = legacyStartIndex;
+            legacyStartIndex = 0;
+        }
+    }
+
     @Override
     public String toString() {
         return value;
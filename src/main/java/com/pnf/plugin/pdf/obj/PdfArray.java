@@ -21,8 +21,9 @@ package com.pnf.plugin.pdf.obj;
 import java.util.ArrayList;
 import java.util.List;
 
+import com.pnf.plugin.pdf.parser.IByteSource;
+import com.pnf.plugin.pdf.parser.PdfLexer;
 import com.pnf.plugin.pdf.parser.PdfObjectParser;
-import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
 import com.pnf.plugin.pdf.parser.StartObjFoundException;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
 import com.pnfsoftware.jeb.util.serialization.annotations.SerId;
@@ -39,22 +40,22 @@ public class PdfArray extends AbstractPdfParsableAttribute {
     @SerId(1)
     private List<IPdfAttribute> attributes = new ArrayList<IPdfAttribute>();
 
-    public PdfArray(AbstractPdfParsableAttribute parent, int startIndex) {
+    public PdfArray(AbstractPdfParsableAttribute parent, long startIndex) {
         super(parent, startIndex);
     }
 
     @Override
-    public int parse(byte[] data, int cursor) throws StartObjFoundException {
+    public long parse(IByteSource data, long cursor) throws StartObjFoundException {
         cursor++; // skip first [
-        for(; cursor < data.length; cursor++) {
-            if(PdfSpecialCharacters.isSeparator(data[cursor])) {
+        PdfObjectParser parser = new PdfObjectParser(this);
+        for(; cursor < data.length(); cursor++) {
+            if(PdfLexer.isWhitespace(data.get(cursor))) {
                 // ignore spaces
             }
             else if(isEndToken(data, cursor)) {
                 break;
             }
             else {
-                PdfObjectParser parser = new PdfObjectParser(this);
                 cursor = parser.parse(data, cursor);
                 IPdfAttribute attribute = parser.getPdfAttribute();
                 if(attribute != null) {
@@ -65,12 +66,12 @@ public class PdfArray extends AbstractPdfParsableAttribute {
         return cursor;
     }
 
-    public static boolean isStartToken(byte[] data, int cursor) {
-        return data[cursor] == '[';
+    public static boolean isStartToken(IByteSource data, long cursor) {
+        return data.get(cursor) == '[';
     }
 
-    public boolean isEndToken(byte[] data, int cursor) {
-        return data[cursor] == ']';
+    public boolean isEndToken(IByteSource data, long cursor) {
+        return data.get(cursor) == ']';
     }
 
     public List<IPdfAttribute> getAttributes() {
@@ -29,7 +29,7 @@ import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
 @Ser
 public class PdfBoolean extends AbstractPdfSimpleValue {
 
-    public PdfBoolean(String value, AbstractPdfParsableAttribute parent, int startIndex) {
+    public PdfBoolean(String value, AbstractPdfParsableAttribute parent, long startIndex) {
         super(value, parent, startIndex);
     }
 
@@ -19,11 +19,16 @@ limitations under the License.
 package com.pnf.plugin.pdf.obj;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 
 import com.pnf.plugin.pdf.PdfStatistics.SuspiciousType;
+import com.pnf.plugin.pdf.obj.PdfNameTable.Symbol;
+import com.pnf.plugin.pdf.parser.IByteSource;
 import com.pnf.plugin.pdf.parser.PdfComment;
+import com.pnf.plugin.pdf.parser.PdfLexer;
 import com.pnf.plugin.pdf.parser.PdfObjectParser;
 import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
 import com.pnf.plugin.pdf.parser.StartObjFoundException;
@@ -41,6 +46,9 @@ import com.pnfsoftware.jeb.util.serialization.annotations.SerTransient;
 @Ser
 public class PdfDictionary extends AbstractPdfParsableAttribute {
 
+    /** Dictionaries with more attributes are searched through a {@link KeyIndex} */
+    private static final int INDEX_THRESHOLD = 8;
+
     @SerId(1)
     private List<PdfDictionaryAttribute> attributes = new ArrayList<PdfDictionaryAttribute>();
 
@@ -53,34 +61,39 @@ public class PdfDictionary extends AbstractPdfParsableAttribute {
     @SerTransient
     private String subtype;
 
-    public PdfDictionary(AbstractPdfParsableAttribute parent, int startIndex) {
+    @SerTransient
+    private volatile KeyIndex keyIndex;
+
+    public PdfDictionary(AbstractPdfParsableAttribute parent, long startIndex) {
         super(parent, startIndex);
     }
 
-    public static boolean isStartToken(byte[] data, int cursor) {
-        return data[cursor] == '<' && data[cursor + 1] == '<';
+    public static boolean isStartToken(IByteSource data, long cursor) {
+        return data.get(cursor) == '<' && data.get(cursor + 1) == '<';
     }
 
-    public boolean isEndToken(byte[] data, int cursor) {
-        return data[cursor] == '>' && data[cursor + 1] == '>';
+    public boolean isEndToken(IByteSource data, long cursor) {
+        return data.get(cursor) == '>' && data.get(cursor + 1) == '>';
     }
 
     @Override
-    public int parse(byte[] data, int cursor) throws StartObjFoundException {
+    public long parse(IByteSource data, long cursor) throws StartObjFoundException {
         cursor++; // ignore next '<'
         cursor++; // ignore next '<'
         PdfDictionaryAttribute currentAttribute = null;
-        for(; cursor < data.length; cursor++) {
-            if(PdfSpecialCharacters.isSeparator(data[cursor])) {
+        PdfObjectParser parser = new PdfObjectParser(this);
+        PdfLexer lexer = parser.getLexer();
+        for(; cursor < data.length(); cursor++) {
+            if(PdfLexer.isWhitespace(data.get(cursor))) {
                 // ignore spaces
             }
-            else if(PdfSpecialCharacters.isComment(data[cursor])) {
+            else if(PdfSpecialCharacters.isComment(data.get(cursor))) {
                 cursor = PdfComment.skipCommentsIfSome(data, cursor - 1);
             }
             else if(isEndToken(data, cursor)) {
                 // is it a stream?
                 cursor++; // ignore next '>'
-                while(PdfSpecialCharacters.isSeparator(data, cursor + 1) && cursor + 1 < data.length) {
+                while(PdfSpecialCharacters.isSeparator(data, cursor + 1) && cursor + 1 < data.length()) {
                     cursor++;
                 }
                 if(PdfSpecialCharacters.isStartStream(data, cursor + 1)) {
@@ -91,13 +104,15 @@ public class PdfDictionary extends AbstractPdfParsableAttribute {
                 break;
             }
             else if(currentAttribute == null) {
-                if(data[cursor] == '/') {
+                if(data.get(cursor) == '/') {
                     // key
-                    int startLine = cursor;
-                    while(!PdfSpecialCharacters.isDelimitorOrSeparator(data, cursor + 1)) {
-                        cursor++;
-                    }
-                    PdfName key = new PdfName(new String(data, startLine, cursor - startLine + 1), this, startLine);
+                    long startLine = cursor;
+                    lexer.scanBare(data, cursor);
+                    cursor = lexer.getEnd();
+                    int length = lexer.getLength();
+                    Symbol symbol = PdfNameTable.intern(data, startLine, length);
+                    PdfName key = symbol != null ? new PdfName(symbol, this, startLine)
+                            : new PdfName(new String(data.getBytes(startLine, length)), this, startLine);
                     currentAttribute = new PdfDictionaryAttribute(this, key, startLine);
                 }
                 else {
@@ -108,7 +123,6 @@ public class PdfDictionary extends AbstractPdfParsableAttribute {
                 }
             }
             else {
-                PdfObjectParser parser = new PdfObjectParser(this);
                 cursor = parser.parse(data, cursor);
                 IPdfAttribute attribute = parser.getPdfAttribute();
                 if(attribute != null) {
@@ -136,22 +150,44 @@ public class PdfDictionary extends AbstractPdfParsableAttribute {
         return keys;
     }
 
-    private IPdfAttribute getDirectAttribute(String name) {
-        for(PdfDictionaryAttribute dicAttr: getAttributes()) {
-            if(dicAttr.getKey().toString().equals(name)) {
-                return dicAttr.getValue();
+    /** Search for an attribute value, without resolving indirect references */
+    IPdfAttribute getDirectAttribute(Symbol name) {
+        int size = attributes.size();
+        if(size <= INDEX_THRESHOLD) {
+            for(int i = 0; i < size; i++) {
+                PdfDictionaryAttribute dicAttr = attributes.get(i);
+                if(dicAttr.getKey().getSymbol().equals(name)) {
+                    return dicAttr.getValue();
+                }
             }
+            return null;
         }
-        return null;
+        KeyIndex index = keyIndex;
+        if(index == null || index.size != size) {
+            // attributes are still being parsed when the stream reads its /Length
+            index = new KeyIndex(attributes, size);
+            keyIndex = index;
+        }
+        PdfDictionaryAttribute dicAttr = index.attributes.get(name);
+        return dicAttr == null ? null: dicAttr.getValue();
     }
 
     public boolean hasAttribute(String name) {
+        return hasAttribute(PdfNameTable.lookup(name));
+    }
+
+    public boolean hasAttribute(Symbol name) {
         IPdfAttribute attribute = getDirectAttribute(name);
         return attribute != null && attribute.getType() != Type.Null;
     }
 
     /** Search for an attribute value. It is an indirect reference, return the correct object */
     public IPdfAttribute getAttribute(String name) {
+        return getAttribute(PdfNameTable.lookup(name));
+    }
+
+    /** Search for an attribute value by symbol, see {@link PdfNameTable#get(int)} for well-known names */
+    public IPdfAttribute getAttribute(Symbol name) {
         return retrieveDirectObject(getDirectAttribute(name));
     }
 
@@ -167,14 +203,14 @@ public class PdfDictionary extends AbstractPdfParsableAttribute {
 
     public String getDictionaryType() {
         if(type == null) {
-            type = Objects.toString(getAttribute("/Type"), null);
+            type = Objects.toString(getAttribute(PdfNameTable.get(PdfNameTable.TYPE)), null);
         }
         return type;
     }
 
     public String getDictionarySubtype() {
         if(subtype == null) {
-            subtype = Objects.toString(getAttribute("/Subtype"), null);
+            subtype = Objects.toString(getAttribute(PdfNameTable.get(PdfNameTable.SUBTYPE)), null);
         }
         return subtype;
     }
@@ -220,4 +256,24 @@ public class PdfDictionary extends AbstractPdfParsableAttribute {
         return this;
     }
 
+    /**
+     * Attributes by key, built from the first attributes of a dictionary. The first attribute of a
+     * duplicate key is kept, as by a search in order. An index is not modified once built, so
+     * concurrent readers either see a complete index or build their own.
+     */
+    private static class KeyIndex {
+        private final int size;
+
+        private final Map<Symbol, PdfDictionaryAttribute> attributes;
+
+        KeyIndex(List<PdfDictionaryAttribute> attributes, int size) {
+            this.size = size;
+            this.attributes = new HashMap<>(size * 2);
+            for(int i = 0; i < size; i++) {
+                PdfDictionaryAttribute attribute = attributes.get(i);
+                this.attributes.putIfAbsent(attribute.getKey().getSymbol(), attribute);
+            }
+        }
+    }
+
 }
@@ -36,12 +36,12 @@ public class PdfDictionaryAttribute extends AbstractPdfSimpleValue {
     @SerId(2)
     private IPdfAttribute value;
 
-    public PdfDictionaryAttribute(PdfDictionary parent, PdfName key, int startIndex) {
+    public PdfDictionaryAttribute(PdfDictionary parent, PdfName key, long startIndex) {
         super(null, parent, startIndex);
         this.key = key;
     }
 
-    public PdfDictionaryAttribute(PdfDictionary parent, PdfName key, IPdfAttribute value, int startIndex) {
+    public PdfDictionaryAttribute(PdfDictionary parent, PdfName key, IPdfAttribute value, long startIndex) {
         super(null, parent, startIndex);
         this.key = key;
         this.value = value;
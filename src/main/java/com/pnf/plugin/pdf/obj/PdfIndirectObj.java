@@ -24,12 +24,15 @@ import java.util.Map;
 import com.pnf.plugin.pdf.PdfFileUnit;
 import com.pnf.plugin.pdf.PdfStatistics;
 import com.pnf.plugin.pdf.PdfStatistics.SuspiciousType;
+import com.pnf.plugin.pdf.parser.IByteSource;
 import com.pnf.plugin.pdf.parser.InputOffset;
 import com.pnf.plugin.pdf.parser.PdfAttributeValue;
 import com.pnf.plugin.pdf.parser.PdfComment;
 import com.pnf.plugin.pdf.parser.PdfFile;
+import com.pnf.plugin.pdf.parser.PdfLexer;
 import com.pnf.plugin.pdf.parser.PdfObjectParser;
 import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
+import com.pnf.plugin.pdf.parser.PdfXrefLoader;
 import com.pnf.plugin.pdf.parser.StartObjFoundException;
 import com.pnfsoftware.jeb.util.logging.GlobalLog;
 import com.pnfsoftware.jeb.util.logging.ILogger;
@@ -65,18 +68,19 @@ public class PdfIndirectObj extends AbstractPdfParsableAttribute implements Comp
     /** Represent the version of this object (and associated encrypter/derypter) */
     private PdfFile file;
 
-    public PdfIndirectObj(PdfFile file, PdfFileUnit unit, int startIndex) {
+    public PdfIndirectObj(PdfFile file, PdfFileUnit unit, long startIndex) {
         super(null, startIndex);
         this.file = file;
         this.unit = unit;
     }
 
     @Override
-    public int parse(byte[] data, int cursor) {
+    public long parse(IByteSource data, long cursor) {
         return parse(data, cursor, PdfObjId.getObjId(data, cursor));
     }
 
-    public int parse(byte[] data, int cursor, List<PdfAttributeValue> previousTokens) throws StartObjFoundException {
+    public long parse(IByteSource data, long cursor, List<PdfAttributeValue> previousTokens)
+            throws StartObjFoundException {
         PdfObjId objId = PdfObjId.getObjId(previousTokens);
         if(objId == null) {
             objId = PdfObjId.getObjId(data, cursor);
@@ -84,7 +88,7 @@ public class PdfIndirectObj extends AbstractPdfParsableAttribute implements Comp
         return parse(data, cursor, objId);
     }
 
-    public int parse(byte[] data, int cursor, PdfObjId objId) {
+    public long parse(IByteSource data, long cursor, PdfObjId objId) {
         this.id = objId;
         if(this.id != null) {
             startIndex = this.id.getStartAddress();
@@ -93,11 +97,11 @@ public class PdfIndirectObj extends AbstractPdfParsableAttribute implements Comp
         // Retrieve the ID of the obj
         cursor += getStartToken().length;
 
-        for(; cursor < data.length; cursor++) {
-            if(PdfSpecialCharacters.isSeparator(data[cursor])) {
+        for(; cursor < data.length(); cursor++) {
+            if(PdfLexer.isWhitespace(data.get(cursor))) {
                 // ignore spacings
             }
-            else if(PdfSpecialCharacters.isComment(data[cursor])) {
+            else if(PdfSpecialCharacters.isComment(data.get(cursor))) {
                 cursor = PdfComment.skipCommentsIfSome(data, cursor - 1);
             }
             else if(isEndToken(data, cursor)) {
@@ -140,7 +144,7 @@ public class PdfIndirectObj extends AbstractPdfParsableAttribute implements Comp
         return PdfSpecialCharacters.OBJ_END_SEPARATOR;
     }
 
-    public boolean isEndToken(byte[] data, int cursor) {
+    public boolean isEndToken(IByteSource data, long cursor) {
         return PdfSpecialCharacters.isEndObj(data, cursor);
     }
 
@@ -209,6 +213,10 @@ public class PdfIndirectObj extends AbstractPdfParsableAttribute implements Comp
         return unit.getStatistics();
     }
 
+    public PdfFileUnit getUnit() {
+        return unit;
+    }
+
     public PDFDecrypter getDecrypter() {
         return file.getDecrypter();
     }
@@ -220,7 +228,9 @@ public class PdfIndirectObj extends AbstractPdfParsableAttribute implements Comp
     public PdfIndirectObj getDirectObject(PdfObjId indirectId) {
         PdfFile refFile = unit.getObjects().get(indirectId);
         if(refFile == null) {
-            return null;
+            // not parsed yet in xref mode
+            PdfXrefLoader loader = unit.getObjectLoader();
+            return loader == null ? null: loader.load(indirectId);
         }
         return unit.getObjects().get(indirectId).getObject(indirectId);
     }
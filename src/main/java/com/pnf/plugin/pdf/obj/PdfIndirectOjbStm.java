@@ -18,9 +18,16 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.obj;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.pnf.plugin.pdf.PdfFileUnit;
+import com.pnf.plugin.pdf.parser.HeapByteSource;
+import com.pnf.plugin.pdf.parser.IByteSource;
+import com.pnf.plugin.pdf.parser.PdfAttributeValue;
 import com.pnf.plugin.pdf.parser.PdfFile;
 import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
+import com.pnf.plugin.pdf.parser.StartObjFoundException;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
 
 /**
@@ -32,19 +39,55 @@ import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
 @Ser
 public class PdfIndirectOjbStm extends PdfIndirectObj {
 
-    public PdfIndirectOjbStm(PdfFile file, PdfFileUnit unit, int startIndex) {
+    public PdfIndirectOjbStm(PdfFile file, PdfFileUnit unit, long startIndex) {
         super(file, unit, startIndex);
     }
 
     @Override
-    public int parse(byte[] data, int cursor) {
+    public long parse(IByteSource data, long cursor) {
         throw new UnsupportedOperationException();
     }
 
     public void parse(byte[] data, int cursor, String objId) {
+        parse(new HeapByteSource(data), cursor, objId);
+    }
+
+    public void parse(IByteSource data, long cursor, String objId) {
         super.parse(data, cursor, new PdfObjId(Integer.valueOf(objId), 0, 0));
     }
 
+    /**
+     * Parse all the objects contained in an ObjStm stream. The stream must be decoded.
+     * 
+     * @param file version of the file the ObjStm belongs to
+     * @return the contained objects, in stream order
+     */
+    public static List<PdfIndirectOjbStm> parseObjStm(PdfFile file, PdfFileUnit unit, PdfStream stream)
+            throws StartObjFoundException {
+        List<PdfIndirectOjbStm> objects = new ArrayList<>();
+        IByteSource data = new HeapByteSource(stream.getDecodedData());
+        int n = PdfNumber.intValue(stream.getAttribute("/N"));
+        int firstOffset = PdfNumber.intValue(stream.getAttribute("/First"));
+        long idCursor = 0;
+        for(int i = 0; i < n; i++) {
+            // parse id
+            PdfAttributeValue pdfValue = new PdfAttributeValue(stream, 0);
+            idCursor = pdfValue.parseNexToken(data, idCursor) + 1;
+            IPdfAttribute objNumber = PdfIndirectReference.retrieveDirectObject(pdfValue.getPdfAttribute());
+
+            // start offset
+            pdfValue = new PdfAttributeValue(stream, 0);
+            idCursor = pdfValue.parseNexToken(data, idCursor) + 1;
+            IPdfAttribute startOffset = PdfIndirectReference.retrieveDirectObject(pdfValue.getPdfAttribute());
+
+            int startIndex = firstOffset + PdfNumber.intValue(startOffset);
+            PdfIndirectOjbStm newobj = new PdfIndirectOjbStm(file, unit, startIndex);
+            newobj.parse(data, startIndex, objNumber.toString());
+            objects.add(newobj);
+        }
+        return objects;
+    }
+
     @Override
     public Type getType() {
         return Type.IndirectObjectStream;
@@ -61,7 +104,7 @@ public class PdfIndirectOjbStm extends PdfIndirectObj {
     }
 
     @Override
-    public boolean isEndToken(byte[] data, int cursor) {
+    public boolean isEndToken(IByteSource data, long cursor) {
         return false;
     }
 
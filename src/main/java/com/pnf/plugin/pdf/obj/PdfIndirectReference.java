@@ -22,6 +22,7 @@ import com.pnf.plugin.pdf.parser.InputOffset;
 import com.pnfsoftware.jeb.util.logging.GlobalLog;
 import com.pnfsoftware.jeb.util.logging.ILogger;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
+import com.pnfsoftware.jeb.util.serialization.annotations.SerCustomInit;
 import com.pnfsoftware.jeb.util.serialization.annotations.SerId;
 
 /**
@@ -41,15 +42,27 @@ public class PdfIndirectReference implements IPdfAttribute {
     @SerId(2)
     private AbstractPdfParsableAttribute parent;
 
+    /** int offset of projects saved before offsets were long, migrated on load */
     @SerId(3)
-    protected int startIndex;
+    private int legacyStartIndex;
 
-    public PdfIndirectReference(PdfObjId id, AbstractPdfParsableAttribute parent, int startIndex) {
+    @SerId(4)
+    protected long startIndex;
+
+    public PdfIndirectReference(PdfObjId id, AbstractPdfParsableAttribute parent, long startIndex) {
         this.id = id;
         this.parent = parent;
         this.startIndex = startIndex;
     }
 
+    @SerCustomInit
+    private void migrateOffsets() {
+        if(legacyStartIndex != 0) {
+            startIndex = legacyStartIndex;
+            legacyStartIndex = 0;
+        }
+    }
+
     @Override
     public PdfObjId getId() {
         return id;
@@ -22,9 +22,12 @@ import java.util.Arrays;
 import java.util.List;
 
 import com.pnf.plugin.pdf.PdfStatistics.SuspiciousType;
+import com.pnf.plugin.pdf.obj.PdfNameTable.Suspicion;
+import com.pnf.plugin.pdf.obj.PdfNameTable.Symbol;
 import com.pnfsoftware.jeb.util.logging.GlobalLog;
 import com.pnfsoftware.jeb.util.logging.ILogger;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
+import com.pnfsoftware.jeb.util.serialization.annotations.SerTransient;
 
 /**
  * 
@@ -47,26 +50,40 @@ public class PdfName extends AbstractPdfSimpleValue {
 
     public static final List<String> SUSPICIOUS_XFA = Arrays.asList("/XFA");
 
-    public PdfName(String value, AbstractPdfParsableAttribute parent, int startIndex) {
-        super(escapeValue(value), parent, startIndex);
-        if(SUSPICIOUS_JS.contains(value)) {
-            parent.getPdfStatictics().addUnitNotification(this, SuspiciousType.PotentialHarmfulToken, "Javascript",
-                    null, value.equals("/JS"));
-        }
-        else if(SUSPICIOUS_AUTOMATIC_ACTION.contains(value)) {
+    @SerTransient
+    private Symbol symbol;
+
+    public PdfName(String value, AbstractPdfParsableAttribute parent, long startIndex) {
+        this(PdfNameTable.intern(escapeValue(value)), value.indexOf('#') < 0, parent, startIndex);
+    }
+
+    /**
+     * Create a name from its interned symbol, as parsed from bytes without any #xx escape.
+     */
+    public PdfName(Symbol symbol, AbstractPdfParsableAttribute parent, long startIndex) {
+        this(symbol, true, parent, startIndex);
+    }
+
+    /**
+     * @param unescaped whether the name was written as is: suspicious names are only reported on
+     *            their raw value
+     */
+    private PdfName(Symbol symbol, boolean unescaped, AbstractPdfParsableAttribute parent, long startIndex) {
+        super(symbol.getName(), parent, startIndex);
+        this.symbol = symbol;
+        Suspicion suspicion = symbol.getSuspicion();
+        if(unescaped && suspicion != null) {
             parent.getPdfStatictics().addUnitNotification(this, SuspiciousType.PotentialHarmfulToken,
-                    "Automatic Action");
+                    suspicion.getDescription(), null, symbol.getId() == PdfNameTable.JS);
         }
-        else if(SUSPICIOUS_FLASH.contains(value)) {
-            parent.getPdfStatictics().addUnitNotification(this, SuspiciousType.PotentialHarmfulToken, "Flash");
-        }
-        else if(SUSPICIOUS_FORM.contains(value)) {
-            parent.getPdfStatictics().addUnitNotification(this, SuspiciousType.PotentialHarmfulToken, "AcroForm");
-        }
-        else if(SUSPICIOUS_XFA.contains(value)) {
-            parent.getPdfStatictics().addUnitNotification(this, SuspiciousType.PotentialHarmfulToken,
-                    "XML Forms Architecture");
+    }
+
+    public Symbol getSymbol() {
+        if(symbol == null) {
+            // deserialized
+            symbol = PdfNameTable.intern(toString());
         }
+        return symbol;
     }
 
     private static String escapeValue(String value) {
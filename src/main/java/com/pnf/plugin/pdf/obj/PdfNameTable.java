@@ -0,0 +1,308 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.obj;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.pnf.plugin.pdf.parser.IByteSource;
+
+/**
+ * Symbol table of the names found in documents. Names are interned by content, so that parsing a
+ * name already seen does not allocate a new String, and each distinct name gets a small integer
+ * id. The first ids are reserved for the well-known names below, which makes them usable as
+ * switch labels.
+ * <p>
+ * The table is global and bounded by {@link #MAX_SYMBOLS}: once full, new names are returned as
+ * uninterned symbols (id {@link #UNINTERNED}), which still compare equal to interned symbols of the
+ * same name. Names longer than {@link #MAX_NAME_LENGTH} are never interned, so that the table does
+ * not keep more than a few MB after the documents that filled it are closed. A full table is not locked anymore, so workers of a later document do not serialize on
+ * its unknown names.
+ * 
+ * @author PNF Software
+ *
+ */
+public final class PdfNameTable {
+
+    public static final int UNINTERNED = -1;
+
+    public static final int MAX_SYMBOLS = 1 << 16;
+
+    /** Maximum length of an interned name, slash included: 127 bytes is the PDF implementation limit */
+    public static final int MAX_NAME_LENGTH = 128;
+
+    private static final int BUCKETS = 1 << 12;
+
+    public static final int TYPE = 0;
+    public static final int SUBTYPE = 1;
+    public static final int LENGTH = 2;
+    public static final int FILTER = 3;
+    public static final int DECODE_PARMS = 4;
+    public static final int JAVASCRIPT = 5;
+    public static final int JS = 6;
+    public static final int OPEN_ACTION = 7;
+    public static final int AA = 8;
+    public static final int RICH_MEDIA = 9;
+    public static final int ACRO_FORM = 10;
+    public static final int XFA = 11;
+
+    /** Well-known names, by id */
+    private static final String[] PREDEFINED = {"/Type", "/Subtype", "/Length", "/Filter", "/DecodeParms",
+            "/JavaScript", "/JS", "/OpenAction", "/AA", "/RichMedia", "/AcroForm", "/XFA"};
+
+    /**
+     * Reason why a name is a potentially harmful token, with the notification reported for it.
+     */
+    public enum Suspicion {
+        JAVASCRIPT("Javascript"),
+        AUTOMATIC_ACTION("Automatic Action"),
+        FLASH("Flash"),
+        FORM("AcroForm"),
+        XFA("XML Forms Architecture");
+
+        private final String description;
+
+        private Suspicion(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    /**
+     * Interned name. Interned symbols are unique per name and compared by identity.
+     */
+    public static final class Symbol {
+        private final int id;
+
+        private final String name;
+
+        private final Suspicion suspicion;
+
+        private Symbol(int id, String name, Suspicion suspicion) {
+            this.id = id;
+            this.name = name;
+            this.suspicion = suspicion;
+        }
+
+        public int getId() {
+            return id;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return why the name is suspicious, null if it is not
+         */
+        public Suspicion getSuspicion() {
+            return suspicion;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if(this == obj) {
+                return true;
+            }
+            if(!(obj instanceof Symbol)) {
+                return false;
+            }
+            Symbol other = (Symbol)obj;
+            return (id == UNINTERNED || other.id == UNINTERNED) && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+    /** Raw bytes of a name, chained in its bucket; entries are never modified once published */
+    private static final class Entry {
+        private final byte[] raw;
+
+        private final int hash;
+
+        private final Symbol symbol;
+
+        private final Entry next;
+
+        private Entry(byte[] raw, int hash, Symbol symbol, Entry next) {
+            this.raw = raw;
+            this.hash = hash;
+            this.symbol = symbol;
+            this.next = next;
+        }
+    }
+
+    private static final ConcurrentHashMap<String, Symbol> symbols = new ConcurrentHashMap<>();
+
+    private static final AtomicReferenceArray<Entry> entries = new AtomicReferenceArray<>(BUCKETS);
+
+    /** Guarded by {@link #symbols} */
+    private static int nbEntries;
+
+    /** No name can be interned anymore */
+    private static volatile boolean full;
+
+    static {
+        for(String name: PREDEFINED) {
+            intern(name);
+        }
+    }
+
+    private PdfNameTable() {
+    }
+
+    /**
+     * Intern a name by its raw bytes. Names with #xx escapes are not handled here since their value
+     * differs from their bytes.
+     * 
+     * @return the symbol of the name, null if it contains an escape
+     */
+    public static Symbol intern(IByteSource data, long position, int length) {
+        if(length > MAX_NAME_LENGTH) {
+            return intern(new String(data.getBytes(position, length)));
+        }
+        int hash = 0;
+        for(int i = 0; i < length; i++) {
+            byte b = data.get(position + i);
+            if(b == '#') {
+                return null;
+            }
+            hash = 31 * hash + b;
+        }
+        int bucket = hash & (BUCKETS - 1);
+        Entry entry = find(entries.get(bucket), data, position, length, hash);
+        if(entry != null) {
+            return entry.symbol;
+        }
+        byte[] raw = data.getBytes(position, length);
+        if(full) {
+            return intern(new String(raw));
+        }
+        synchronized(symbols) {
+            Entry head = entries.get(bucket);
+            entry = find(head, data, position, length, hash);
+            if(entry != null) {
+                return entry.symbol;
+            }
+            Symbol symbol = intern(new String(raw));
+            if(symbol.id == UNINTERNED || nbEntries >= MAX_SYMBOLS) {
+                return symbol;
+            }
+            entries.set(bucket, new Entry(raw, hash, symbol, head));
+            nbEntries++;
+            return symbol;
+        }
+    }
+
+    private static Entry find(Entry entry, IByteSource data, long position, int length, int hash) {
+        for(; entry != null; entry = entry.next) {
+            if(entry.hash == hash && entry.raw.length == length && matches(entry.raw, data, position)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static boolean matches(byte[] raw, IByteSource data, long position) {
+        for(int i = 0; i < raw.length; i++) {
+            if(raw[i] != data.get(position + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Intern a name by its value (#xx escapes already decoded).
+     */
+    public static Symbol intern(String name) {
+        Symbol symbol = symbols.get(name);
+        if(symbol != null) {
+            return symbol;
+        }
+        if(full || name.length() > MAX_NAME_LENGTH) {
+            return new Symbol(UNINTERNED, name, getSuspicion(name));
+        }
+        synchronized(symbols) {
+            symbol = symbols.get(name);
+            if(symbol != null) {
+                return symbol;
+            }
+            int size = symbols.size();
+            if(size >= MAX_SYMBOLS) {
+                full = true;
+                return new Symbol(UNINTERNED, name, getSuspicion(name));
+            }
+            symbol = new Symbol(size, name, getSuspicion(name));
+            symbols.put(name, symbol);
+            return symbol;
+        }
+    }
+
+    /**
+     * Retrieve the symbol of a name without interning it.
+     * 
+     * @return the interned symbol, or an uninterned one if the name was never seen
+     */
+    public static Symbol lookup(String name) {
+        Symbol symbol = symbols.get(name);
+        return symbol != null ? symbol: new Symbol(UNINTERNED, name, getSuspicion(name));
+    }
+
+    /**
+     * Retrieve a well-known symbol.
+     */
+    public static Symbol get(int id) {
+        if(id < 0 || id >= PREDEFINED.length) {
+            throw new IllegalArgumentException("Not a predefined name id: " + id);
+        }
+        return symbols.get(PREDEFINED[id]);
+    }
+
+    private static Suspicion getSuspicion(String name) {
+        if(PdfName.SUSPICIOUS_JS.contains(name)) {
+            return Suspicion.JAVASCRIPT;
+        }
+        else if(PdfName.SUSPICIOUS_AUTOMATIC_ACTION.contains(name)) {
+            return Suspicion.AUTOMATIC_ACTION;
+        }
+        else if(PdfName.SUSPICIOUS_FLASH.contains(name)) {
+            return Suspicion.FLASH;
+        }
+        else if(PdfName.SUSPICIOUS_FORM.contains(name)) {
+            return Suspicion.FORM;
+        }
+        else if(PdfName.SUSPICIOUS_XFA.contains(name)) {
+            return Suspicion.XFA;
+        }
+        return null;
+    }
+
+}
@@ -29,7 +29,7 @@ import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
 @Ser
 public class PdfNull extends AbstractPdfSimpleValue {
 
-    public PdfNull(AbstractPdfParsableAttribute parent, int startIndex) {
+    public PdfNull(AbstractPdfParsableAttribute parent, long startIndex) {
         super(null, parent, startIndex);
     }
 
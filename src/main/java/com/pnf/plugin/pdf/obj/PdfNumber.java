@@ -18,13 +18,12 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.obj;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
+import com.pnfsoftware.jeb.util.serialization.annotations.SerTransient;
 
 /**
- * 
+ * Number (integer or real). The value is scanned once from the token text, which is only kept for
+ * display.
  * 
  * @author PNF Software
  *
@@ -32,8 +31,51 @@ import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
 @Ser
 public class PdfNumber extends AbstractPdfSimpleValue {
 
-    public PdfNumber(String value, AbstractPdfParsableAttribute parent, int startIndex) {
+    private static final int UNSCANNED = 0;
+
+    private static final int INTEGER = 1;
+
+    private static final int REAL = 2;
+
+    private static final int INVALID = 3;
+
+    /** Text of the most frequent integers: object numbers, generations, small sizes */
+    private static final String[] SMALL_INTEGERS = new String[1024];
+
+    static {
+        for(int i = 0; i < SMALL_INTEGERS.length; i++) {
+            SMALL_INTEGERS[i] = Integer.toString(i);
+        }
+    }
+
+    @SerTransient
+    private int kind;
+
+    /** Integer value, if it fits in a long */
+    @SerTransient
+    private long integerValue;
+
+    @SerTransient
+    private boolean longRange;
+
+    @SerTransient
+    private double realValue;
+
+    public PdfNumber(String value, AbstractPdfParsableAttribute parent, long startIndex) {
         super(value, parent, startIndex);
+        scan();
+    }
+
+    /**
+     * Create an integer already scanned, whose text is the decimal representation of its value.
+     */
+    public PdfNumber(long value, AbstractPdfParsableAttribute parent, long startIndex) {
+        super(value >= 0 && value < SMALL_INTEGERS.length ? SMALL_INTEGERS[(int)value]: Long.toString(value), parent,
+                startIndex);
+        kind = INTEGER;
+        integerValue = value;
+        longRange = true;
+        realValue = value;
     }
 
     @Override
@@ -41,17 +83,130 @@ public class PdfNumber extends AbstractPdfSimpleValue {
         return Type.Number;
     }
 
+    /**
+     * Check if a token is a number: an optional sign followed by digits with at most one dot.
+     */
     public static boolean isNumeric(String value) {
-        Pattern p = Pattern.compile("[\\+\\-]?(\\d*)\\.?(\\d*)");
-        Matcher m = p.matcher(value);
-        if(m.matches()) {
-            return !m.group(1).isEmpty() || !m.group(2).isEmpty();
+        return getKind(value) != INVALID;
+    }
+
+    private static int getKind(String value) {
+        int length = value.length();
+        int i = 0;
+        if(length > 0 && (value.charAt(0) == '+' || value.charAt(0) == '-')) {
+            i++;
+        }
+        boolean dot = false;
+        boolean digits = false;
+        for(; i < length; i++) {
+            char c = value.charAt(i);
+            if(c >= '0' && c <= '9') {
+                digits = true;
+            }
+            else if(c == '.' && !dot) {
+                dot = true;
+            }
+            else {
+                return INVALID;
+            }
         }
-        return false;
+        if(!digits) {
+            return INVALID;
+        }
+        return dot ? REAL: INTEGER;
     }
 
+    private void scan() {
+        String value = toString();
+        kind = getKind(value);
+        if(kind == INTEGER) {
+            boolean negative = value.charAt(0) == '-';
+            int i = negative || value.charAt(0) == '+' ? 1: 0;
+            // accumulate negatively so that Long.MIN_VALUE is representable
+            long result = 0;
+            longRange = true;
+            for(; i < value.length(); i++) {
+                int digit = value.charAt(i) - '0';
+                if(result < (Long.MIN_VALUE + digit) / 10) {
+                    longRange = false;
+                    break;
+                }
+                result = result * 10 - digit;
+            }
+            if(longRange && !negative) {
+                longRange = result != Long.MIN_VALUE;
+                result = -result;
+            }
+            integerValue = result;
+            realValue = longRange ? result: Double.parseDouble(value);
+        }
+        else if(kind == REAL) {
+            realValue = Double.parseDouble(value);
+        }
+    }
+
+    private int getScannedKind() {
+        if(kind == UNSCANNED) {
+            // deserialized
+            scan();
+        }
+        return kind;
+    }
+
+    /**
+     * @return true if {@link #longValue()} can be called
+     */
+    public boolean isLong() {
+        return getScannedKind() == INTEGER && longRange;
+    }
+
+    /**
+     * @return true if {@link #intValue()} can be called
+     */
+    public boolean isInt() {
+        return isLong() && integerValue == (int)integerValue;
+    }
+
+    /**
+     * @throws NumberFormatException if the number is not an integer in int range
+     */
     public int intValue() {
-        return Integer.parseInt(toString());
+        if(!isInt()) {
+            throw new NumberFormatException("Not an int: " + toString());
+        }
+        return (int)integerValue;
+    }
+
+    /**
+     * @throws NumberFormatException if the number is not an integer in long range
+     */
+    public long longValue() {
+        if(!isLong()) {
+            throw new NumberFormatException("Not a long: " + toString());
+        }
+        return integerValue;
+    }
+
+    /**
+     * @throws NumberFormatException if the text is not a number
+     */
+    public double doubleValue() {
+        if(getScannedKind() == INVALID) {
+            throw new NumberFormatException("Not a number: " + toString());
+        }
+        return realValue;
+    }
+
+    /**
+     * Integer value of an attribute expected to be a number.
+     * 
+     * @throws NumberFormatException if it is not an integer in int range
+     */
+    public static int intValue(IPdfAttribute attribute) {
+        if(attribute instanceof PdfNumber) {
+            return ((PdfNumber)attribute).intValue();
+        }
+        return Integer.parseInt(attribute.toString());
     }
 
 }
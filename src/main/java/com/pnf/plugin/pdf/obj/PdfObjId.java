@@ -22,12 +22,14 @@ import java.util.ArrayList;
 import java.util.List;
 
 import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
+import com.pnf.plugin.pdf.parser.IByteSource;
 import com.pnf.plugin.pdf.parser.PdfAttributeValue;
 import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
 import com.pnf.plugin.pdf.parser.StartObjFoundException;
 import com.pnfsoftware.jeb.util.logging.GlobalLog;
 import com.pnfsoftware.jeb.util.logging.ILogger;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
+import com.pnfsoftware.jeb.util.serialization.annotations.SerCustomInit;
 import com.pnfsoftware.jeb.util.serialization.annotations.SerId;
 
 /**
@@ -47,15 +49,27 @@ public class PdfObjId implements Comparable<PdfObjId> {
     @SerId(2)
     private int generationNumber;
 
+    /** int address of projects saved before offsets were long, migrated on load */
     @SerId(3)
-    private int startAddress;
+    private int legacyStartAddress;
 
-    public PdfObjId(int objectNumber, int generationNumber, int startAddress) {
+    @SerId(4)
+    private long startAddress;
+
+    public PdfObjId(int objectNumber, int generationNumber, long startAddress) {
         this.objectNumber = objectNumber;
         this.generationNumber = generationNumber;
         this.startAddress = startAddress;
     }
 
+    @SerCustomInit
+    private void migrateOffsets() {
+        if(legacyStartAddress != 0) {
+            startAddress = legacyStartAddress;
+            legacyStartAddress = 0;
+        }
+    }
+
     public int getObjectNumber() {
         return objectNumber;
     }
@@ -64,7 +78,7 @@ public class PdfObjId implements Comparable<PdfObjId> {
         return generationNumber;
     }
 
-    public int getStartAddress() {
+    public long getStartAddress() {
         return startAddress;
     }
 
@@ -82,21 +96,21 @@ public class PdfObjId implements Comparable<PdfObjId> {
             IPdfAttribute objN = previousTokens.get(previousTokens.size() - 2).getPdfAttribute();
             IPdfAttribute genN = previousTokens.get(previousTokens.size() - 1).getPdfAttribute();
             if(objN.getType() == Type.Number && genN.getType() == Type.Number) {
-                return new PdfObjId(Integer.valueOf(objN.toString()), Integer.valueOf(genN.toString()),
+                return new PdfObjId(((PdfNumber)objN).intValue(), ((PdfNumber)genN).intValue(),
                         ((PdfNumber)objN).startIndex);
             }
         }
         return null;
     }
 
-    public static PdfObjId getObjId(byte[] data, int cursor) {
-        int startAddress = cursor - 1;
+    public static PdfObjId getObjId(IByteSource data, long cursor) {
+        long startAddress = cursor - 1;
         int previousSeparator = 0;
         List<Integer> objIdentifier = new ArrayList<Integer>();
         StringBuilder stb = new StringBuilder();
         while(startAddress >= 0) {
-            if(PdfSpecialCharacters.isSeparator(data[startAddress])) {
-                if(!PdfSpecialCharacters.isSeparator(data[startAddress + 1])) {
+            if(PdfSpecialCharacters.isSeparator(data.get(startAddress))) {
+                if(!PdfSpecialCharacters.isSeparator(data.get(startAddress + 1))) {
                     previousSeparator++;
                     if(stb.length() > 0) {
                         objIdentifier.add(Integer.valueOf(stb.toString()));
@@ -108,10 +122,10 @@ public class PdfObjId implements Comparable<PdfObjId> {
                     }
                 } // else consecutive spaces to be ignored
             }
-            else if(Character.isDigit(data[startAddress])) {
-                stb.insert(0, (char)data[startAddress]);
+            else if(Character.isDigit(data.get(startAddress))) {
+                stb.insert(0, (char)data.get(startAddress));
             }
-            else if(previousSeparator == 2 && PdfSpecialCharacters.isDelimitor(data[startAddress])) {
+            else if(previousSeparator == 2 && PdfSpecialCharacters.isDelimitor(data.get(startAddress))) {
                 // character before id can be any delimiter since endobj may be optional
                 if(stb.length() > 0) {
                     objIdentifier.add(Integer.valueOf(stb.toString()));
@@ -119,7 +133,8 @@ public class PdfObjId implements Comparable<PdfObjId> {
                 break;
             }
             else {
-                logger.error("Unsupported sequence in obj id '%s' at address: %x", (char)data[startAddress], cursor);
+                logger.error("Unsupported sequence in obj id '%s' at address: %x", (char)data.get(startAddress),
+                        cursor);
                 break;
             }
             startAddress--;
@@ -18,21 +18,36 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.obj;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import com.pnf.plugin.pdf.PdfFileUnit;
+import com.pnf.plugin.pdf.PdfStatistics;
 import com.pnf.plugin.pdf.PdfStatistics.SuspiciousType;
 import com.pnf.plugin.pdf.filter.ByteBufferUtils;
+import com.pnf.plugin.pdf.filter.DCTDecode;
 import com.pnf.plugin.pdf.filter.Decoder;
+import com.pnf.plugin.pdf.filter.Decoder.LengthFallback;
 import com.pnf.plugin.pdf.filter.FilterFactory;
+import com.pnf.plugin.pdf.filter.FilterStreamException;
 import com.pnf.plugin.pdf.filter.IFilter;
+import com.pnf.plugin.pdf.filter.ImageFilter;
+import com.pnf.plugin.pdf.filter.ImageHeader;
+import com.pnf.plugin.pdf.filter.OutputLimit;
+import com.pnf.plugin.pdf.filter.OutputLimitException;
 import com.pnf.plugin.pdf.filter.PDFObject;
+import com.pnf.plugin.pdf.parser.DecodedStreamCache;
+import com.pnf.plugin.pdf.parser.IByteSource;
+import com.pnf.plugin.pdf.parser.PdfKeywordScanner;
 import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
 import com.pnfsoftware.jeb.core.units.WellKnownUnitTypes;
 import com.pnfsoftware.jeb.util.format.Strings;
@@ -85,6 +100,19 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
             return startBy;
         }
 
+        /**
+         * @return number of leading bytes needed by {@link #getStreamType(byte[])}
+         */
+        public static int getSignatureLength() {
+            int length = 0;
+            for(StreamType type: StreamType.values()) {
+                for(byte[] startBy: type.getStartBy()) {
+                    length = Math.max(length, startBy.length);
+                }
+            }
+            return length;
+        }
+
         public static StreamType getStreamType(byte[] data) {
             for(StreamType type: StreamType.values()) {
                 if(isType(data, type)) {
@@ -119,20 +147,29 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     private byte[] encodedData;
     @SerId(3)
     /** decoded data */
-    private byte[] decodedData;
+    private volatile byte[] decodedData;
     @SerId(4)
-    /** list of intermediate encoded data (when multiple filters/encryption) */
-    private List<byte[]> encodedDataList = new ArrayList<byte[]>();
+    /**
+     * list of intermediate encoded data (when multiple filters/encryption), null when not kept by
+     * the last decoding
+     */
+    private volatile List<byte[]> encodedDataList = new ArrayList<byte[]>();
 
     @SerId(5)
     private StreamType streamType; // when no type is internally defined
 
     @SerId(6)
-    /** start byte of encoded data */
-    private int fromByte;
+    /** int start byte of projects saved before offsets were long, migrated on load */
+    private int legacyFromByte;
     @SerId(7)
+    /** int end byte of projects saved before offsets were long, migrated on load */
+    private int legacyToByte;
+    @SerId(15)
+    /** start byte of encoded data */
+    private long fromByte;
+    @SerId(16)
     /** end byte of encoded data */
-    private int toByte;
+    private long toByte;
 
     @SerId(8)
     /** objects defined in stream if type is ObjStm */
@@ -142,6 +179,22 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     /** Indicate the objects that represent a collection */
     private Map<PdfObjId, PdfIndirectObj> extendedByObjects = null;
 
+    @SerId(10)
+    /** stream was decoded at least once (decoded data may have been released since) */
+    private volatile boolean decoded;
+    @SerId(11)
+    /** length of decoded data, kept when decoded data is released */
+    private int decodedLength;
+    @SerId(12)
+    /** type infered from decoded data, kept when decoded data is released */
+    private StreamType inferredType;
+    @SerId(13)
+    /** image whose pixels are decoded when requested (lazy image decoding) */
+    private boolean pixelsOnDemand;
+    @SerId(14)
+    /** decoded size limit applied by the first decoding, null until then */
+    private Long outputCeiling;
+
     @SerTransient
     /** Only for XRef Stream */
     private PdfXref xref;
@@ -153,9 +206,15 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     @SerCustomInit
     private void init() {
         extraChars = new byte[2];
+        if(legacyFromByte != 0 || legacyToByte != 0) {
+            fromByte = legacyFromByte;
+            toByte = legacyToByte;
+            legacyFromByte = 0;
+            legacyToByte = 0;
+        }
     }
 
-    public PdfStream(PdfDictionary dictionary, int startIndex) {
+    public PdfStream(PdfDictionary dictionary, long startIndex) {
         super(dictionary.getParent(), startIndex); // same parent
         this.dictionary = dictionary;
     }
@@ -190,13 +249,15 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     }
 
     @Override
-    public int parse(byte[] data, int cursor) {
+    public long parse(IByteSource data, long cursor) {
         cursor = retrieveStartOfStream(data, cursor);
         fromByte = cursor;
-        for(; cursor < data.length; cursor++) {
-            if(isEndToken(data, cursor)) {
-                break;
-            }
+        long endToken = getEndTokenFromLength(data);
+        if(endToken >= 0) {
+            cursor = endToken;
+        }
+        else {
+            cursor = PdfKeywordScanner.indexOf(data, cursor, PdfKeywordScanner.ENDSTREAM);
         }
 
         toByte = retrieveEndOfStream(data, cursor);
@@ -205,16 +266,58 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
             // => start of stream is after 0A, end of stream should be before 0D
             toByte = fromByte - 1;
         }
-        encodedData = new byte[getParsedLength()];
-        System.arraycopy(data, fromByte, encodedData, 0, getParsedLength());
-        if((toByte + 2) < data.length) {
-            extraChars[0] = data[toByte + 1];
-            extraChars[1] = data[toByte + 2];
+        if(getDecodedStreamCache() == null) {
+            encodedData = data.getBytes(fromByte, getParsedLength());
+        } // else read from the unit input when needed, see getEncodedData()
+        if((toByte + 2) < data.length()) {
+            extraChars[0] = data.get(toByte + 1);
+            extraChars[1] = data.get(toByte + 2);
         }
         return cursor;
     }
 
-    private int retrieveStartOfStream(byte[] data, int cursor) {
+    /**
+     * Locate endstream right after the data when /Length is a direct number, so that the data is not
+     * scanned. The end of the data is then computed as if endstream was found by a scan, and a wrong
+     * length is still reported by {@link #checkSize()}. An endstream keyword inside the data, which a
+     * scan would have stopped at, is reported: it may hide objects from the scan parser.
+     * 
+     * @return position of endstream, -1 if the length is not direct or endstream does not follow
+     */
+    private long getEndTokenFromLength(IByteSource data) {
+        IPdfAttribute attribute = dictionary.getDirectAttribute(PdfNameTable.get(PdfNameTable.LENGTH));
+        if(attribute == null || attribute.getType() != Type.Number || !((PdfNumber)attribute).isLong()) {
+            // missing or indirect: resolved after parsing only
+            return -1;
+        }
+        long length = ((PdfNumber)attribute).longValue();
+        long endToken = -1;
+        if(length >= 0 && length < data.length() - fromByte) {
+            endToken = fromByte + length;
+            int endLine = PdfSpecialCharacters.testEndLine(data, endToken);
+            if(endLine > 0) {
+                endToken += endLine;
+            }
+            if(!PdfSpecialCharacters.isEndStream(data, endToken)) {
+                endToken = -1;
+            }
+        }
+        PdfFileUnit unit = getMainParent().getUnit();
+        PdfStatistics statistics = unit == null ? null: unit.getStatistics();
+        if(statistics != null) {
+            statistics.addStreamLengthCheck(endToken >= 0);
+            if(endToken >= 0) {
+                long inner = PdfKeywordScanner.indexOf(data, fromByte, endToken, PdfKeywordScanner.ENDSTREAM);
+                if(inner < endToken) {
+                    statistics.addUnitNotification(this, SuspiciousType.MalformedStream,
+                            String.format("endstream keyword inside the stream data at address %X", inner));
+                }
+            }
+        }
+        return endToken;
+    }
+
+    private long retrieveStartOfStream(IByteSource data, long cursor) {
         cursor++;
         cursor += PdfSpecialCharacters.STREAM_START_SEPARATOR.length;
         int endLine = PdfSpecialCharacters.testEndLine(data, cursor);
@@ -230,7 +333,7 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
         return cursor;
     }
 
-    private int retrieveEndOfStream(byte[] data, int cursor) {
+    private long retrieveEndOfStream(IByteSource data, long cursor) {
         cursor--;
         int endLine = PdfSpecialCharacters.testPreviousEndLine(data, cursor);
         if(endLine == -1) {
@@ -242,7 +345,7 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
         return cursor;
     }
 
-    public boolean isEndToken(byte[] data, int cursor) {
+    public boolean isEndToken(IByteSource data, long cursor) {
         return PdfSpecialCharacters.isEndStream(data, cursor);
     }
 
@@ -270,14 +373,30 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     }
 
     public byte[] getEncodedData() {
-        return encodedData;
+        if(encodedData != null) {
+            return encodedData;
+        }
+        PdfFileUnit unit = getMainParent().getUnit();
+        try {
+            return unit.getSource().getBytes(fromByte, getParsedLength());
+        }
+        catch(Exception e) {
+            logger.catching(e);
+            logger.error("Unable to read Stream %s from input", getId());
+            return new byte[0];
+        }
     }
 
     public byte[] getDecodedData() {
-        if(decodedData == null) {
-            decodeStream();
+        byte[] data = decodedData;
+        if(data == null) {
+            return decodePayload();
+        }
+        DecodedStreamCache cache = getDecodedStreamCache();
+        if(cache != null) {
+            cache.touch(this);
         }
-        return decodedData;
+        return data;
     }
 
     /** Search for an attribute value. It is an indirect reference, return the correct object */
@@ -285,13 +404,17 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
         return dictionary.getAttribute(name);
     }
 
+    public IPdfAttribute getAttribute(int predefinedNameId) {
+        return dictionary.getAttribute(PdfNameTable.get(predefinedNameId));
+    }
+
     public Integer getLengthFromDictionary() {
-        IPdfAttribute attribute = getAttribute("/Length");
+        IPdfAttribute attribute = getAttribute(PdfNameTable.LENGTH);
         if(attribute == null) {
             // no length defined
         }
         else if(attribute.getType() == Type.Number) {
-            return Integer.valueOf(attribute.toString());
+            return ((PdfNumber)attribute).intValue();
         }
         else {
             getPdfStatictics().addUnitNotification(this, SuspiciousType.Malformed,
@@ -300,12 +423,54 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
         return null;
     }
 
+    /**
+     * Report an image header which does not match the size declared by the dictionary.
+     * 
+     * @param pixelsSkipped pixels were not decoded: an unreadable header is the only sign of a
+     *            decoding failure
+     */
+    private void checkImageHeader(ImageHeader header, boolean pixelsSkipped) {
+        if(header == null) {
+            if(pixelsSkipped) {
+                getPdfStatictics().addUnitNotification(this, SuspiciousType.MalformedStream,
+                        "Unable to read image header");
+            }
+            return;
+        }
+        IPdfAttribute width = getAttribute("/Width");
+        IPdfAttribute height = getAttribute("/Height");
+        if(width == null || width.getType() != Type.Number || height == null || height.getType() != Type.Number) {
+            return;
+        }
+        // height may be defined at the end of the image data
+        if(!isEqual(width, header.getWidth()) || (header.getHeight() != 0 && !isEqual(height, header.getHeight()))) {
+            getPdfStatictics().addUnitNotification(this, SuspiciousType.MalformedStream,
+                    String.format("Image size is %dx%d, declared %sx%s", header.getWidth(), header.getHeight(),
+                            width, height));
+        }
+    }
+
+    private static boolean isEqual(IPdfAttribute number, int value) {
+        try {
+            return ((PdfNumber)number).doubleValue() == value;
+        }
+        catch(NumberFormatException e) {
+            return true; // not comparable
+        }
+    }
+
     public int getParsedLength() {
-        return toByte - fromByte + 1;
+        return (int)(toByte - fromByte + 1);
     }
 
     public List<IFilter> getFilters(IPdfAttribute decodeParms, PDFDecrypter decrypter) {
-        return getFilters(getAttribute("/Filter"), decodeParms, decrypter);
+        List<IFilter> filters = getFilters(getAttribute(PdfNameTable.FILTER), decodeParms, decrypter);
+        IFilter lastFilter = filters.isEmpty() ? null: filters.get(filters.size() - 1);
+        if(lastFilter instanceof DCTDecode && isDeclaredImage()) {
+            // JPEG images are given encoded to a child unit, see PdfFileUnit
+            ((DCTDecode)lastFilter).setPixelDecoding(false);
+        }
+        return filters;
     }
 
     private List<IFilter> getFilters(IPdfAttribute attribute, IPdfAttribute decodeParms, PDFDecrypter decrypter) {
@@ -355,23 +520,163 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
         return attribute;
     }
 
+    /**
+     * Decode the stream. In lazy image decoding mode, images are only decoded up to their header:
+     * pixels are decoded when the decoded data is requested.
+     */
     public void decodeStream() {
-        if(decodedData != null) {
+        if(!decoded && isDeclaredImage() && isLazyImageDecoding()) {
+            List<byte[]> intermediateData = getDecodedStreamCache() == null ? new ArrayList<byte[]>(): null;
+            byte[] data = decode(intermediateData, true);
+            decoded = true;
+            if(data != null) {
+                // no pixels to decode
+                storeDecodedData(data, intermediateData);
+            }
+            else {
+                pixelsOnDemand = true;
+            }
             return;
         }
-        PDFDecrypter decrypter = getMainParent().getDecrypter();
+        decodePayload();
+    }
+
+    private byte[] decodePayload() {
+        return decodePayload(false);
+    }
+
+    /**
+     * Decode the stream unless its decoded data is available.
+     * 
+     * @param withIntermediates also require the intermediate encoded data
+     * @return the decoded data
+     */
+    private byte[] decodePayload(boolean withIntermediates) {
+        byte[] data = decodedData;
+        if(data != null && (!withIntermediates || encodedDataList != null)) {
+            return data;
+        }
+        if(!decoded) {
+            return decode(withIntermediates);
+        }
+        // payload was evicted or decoded without intermediates: anomalies were already reported by
+        // the first decoding
+        List<Runnable> previous = PdfStatistics.beginDeferredUpdates();
+        try {
+            return decode(withIntermediates);
+        }
+        finally {
+            PdfStatistics.endDeferredUpdates(previous);
+        }
+    }
+
+    private byte[] decode(boolean withIntermediates) {
+        // with a decoded stream cache, intermediates are only decoded for display
+        boolean keepIntermediates = withIntermediates || getDecodedStreamCache() == null;
+        List<byte[]> intermediateData = keepIntermediates ? new ArrayList<byte[]>(): null;
+        byte[] data = decode(intermediateData, false);
+        storeDecodedData(data, intermediateData);
+        return data;
+    }
+
+    private void storeDecodedData(byte[] data, List<byte[]> intermediateData) {
+        encodedDataList = intermediateData;
+        decodedData = data;
+        decodedLength = data.length;
+        inferredType = StreamType.getStreamType(data);
+        decoded = true;
+        DecodedStreamCache cache = getDecodedStreamCache();
+        if(cache != null) {
+            long retainedSize = data.length;
+            if(intermediateData != null) {
+                for(byte[] intermediate: intermediateData) {
+                    retainedSize += intermediate.length;
+                }
+            }
+            cache.put(this, retainedSize);
+        }
+    }
+
+    /**
+     * @param encodedDataList receive the intermediate encoded data, may be null when they are not
+     *            needed
+     * @param imageHeaderOnly do not decode the pixels of an image, only read its header
+     * @return the decoded data, null when the pixels of an image were not decoded
+     */
+    private byte[] decode(List<byte[]> encodedDataList, boolean imageHeaderOnly) {
+        PdfFileUnit unit = getMainParent().getUnit();
+        OutputLimit limit = unit == null ? null: unit.getOutputLimit();
+        if(limit == null) {
+            return decodeFilters(encodedDataList, imageHeaderOnly);
+        }
+        Long ceiling = outputCeiling;
+        if(ceiling != null) {
+            // decoding again yields the same data: the ceiling is kept, the decoded size is charged once
+            return decodeFilters(limit.forStream(ceiling), encodedDataList, imageHeaderOnly);
+        }
+        OutputLimit streamLimit = limit.forStream();
+        byte[] data = decodeFilters(streamLimit, encodedDataList, imageHeaderOnly);
+        // the budget bounds the output of filters: raw data of unfiltered streams is not charged
+        if(data != null && streamLimit.getPeakOutput() > 0) {
+            int size = data.length;
+            if(!OutputLimit.applyOrDefer(() -> chargeDocumentBudget(limit, streamLimit, size))) {
+                if(encodedDataList != null) {
+                    encodedDataList.clear();
+                }
+                data = decodeFilters(limit.forStream(outputCeiling), encodedDataList, imageHeaderOnly);
+            }
+        }
+        return data;
+    }
+
+    private byte[] decodeFilters(OutputLimit streamLimit, List<byte[]> encodedDataList, boolean imageHeaderOnly) {
+        OutputLimit previous = OutputLimit.begin(streamLimit);
+        try {
+            return decodeFilters(encodedDataList, imageHeaderOnly);
+        }
+        finally {
+            OutputLimit.end(previous);
+        }
+    }
+
+    /**
+     * Charge the document budget with the decoded data. When the filters output more than what is
+     * left of the budget, the stream is bounded by it instead: what is left is charged, and the
+     * decoded data is released so that the stream is decoded again under that ceiling.
+     * 
+     * @return false if the stream must be decoded again
+     */
+    private boolean chargeDocumentBudget(OutputLimit limit, OutputLimit streamLimit, int size) {
+        if(limit.charge(streamLimit, size)) {
+            outputCeiling = streamLimit.getCeiling();
+            return true;
+        }
+        long left = Math.max(0, limit.getDocumentBytesLeft());
+        limit.charge(left);
+        outputCeiling = left;
+        decodedData = null;
+        encodedDataList = null;
+        decoded = false;
+        return false;
+    }
+
+    private byte[] decodeFilters(List<byte[]> encodedDataList, boolean imageHeaderOnly) {
+        // XRef streams must be decodable before the encryption dictionary is reachable
         boolean isEncrypted = isEncrypted();
+        PDFDecrypter decrypter = isEncrypted ? getMainParent().getDecrypter(): null;
         IPdfAttribute extFile = getAttribute("/F");
         if(extFile != null && extFile.getType() != Type.Null) {
             getPdfStatictics().addUnitNotification(this, SuspiciousType.StreamUnfiltered,
                     "External Stream data is not implemented");
-            decodedData = new byte[0];
-            return;
+            return new byte[0];
         }
+        byte[] encodedData = getEncodedData();
         byte[] rawData = encodedData;
 
-        if(isEncrypted) {
+        if(isEncrypted && encodedDataList != null) {
             encodedDataList.add(rawData); // add encrypted
+        }
+        if(isEncrypted) {
             if(decrypter != null) {
                 ByteBuffer in = ByteBufferUtils.getByteBuffer(rawData, 0, getParsedLength());
                 try {
@@ -381,78 +686,194 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
                 catch(PDFParseException e) {
                     logger.catching(e);
                     getPdfStatictics().addUnitNotification(this, SuspiciousType.StreamUnfiltered, "Encrypted");
-                    decodedData = new byte[0];
-                    return;
+                    return new byte[0];
                 }
             }
             else {
                 getPdfStatictics().addUnitNotification(this, SuspiciousType.StreamUnfiltered, "Encrypted");
-                decodedData = new byte[0];
-                return;
+                return new byte[0];
             }
         }
 
-        IPdfAttribute decodeParms = getAttribute("/DecodeParms");
+        IPdfAttribute decodeParms = getAttribute(PdfNameTable.DECODE_PARMS);
         List<IFilter> filters = getFilters(decodeParms, decrypter);
         if(filters.isEmpty()) {
-            decodedData = rawData;
+            return rawData;
         }
-        else {
-            Decoder d = new Decoder(dictionary);
+        IFilter lastFilter = filters.get(filters.size() - 1);
+        ImageFilter imageFilter = lastFilter instanceof ImageFilter ? (ImageFilter)lastFilter: null;
+        boolean pixelsSkipped = imageHeaderOnly && imageFilter != null && imageFilter.isPixelDecoding();
+        if(pixelsSkipped) {
+            imageFilter.setPixelDecoding(false);
+        }
+        Decoder d = new Decoder(dictionary);
+        if(encodedDataList != null) {
             encodedDataList.add(rawData);
-            try {
-                if(isEncrypted) {
-                    rawData = d.parse(0, filters.get(0), rawData);
-                }
-                else {
-                    rawData = d.parse(0, filters.get(0), rawData, encodedData, fromByte, getLengthFromDictionary());
+        }
+        try {
+            if(isEncrypted) {
+                rawData = d.parse(0, filters.get(0), rawData);
+            }
+            else {
+                rawData = d.parse(0, filters.get(0), rawData, getLengthFromDictionary());
+                if(d.getLengthFallback() != LengthFallback.NONE) {
+                    getPdfStatictics().addLengthFallback(d.getLengthFallback() == LengthFallback.DECODED);
                 }
-                if(filters.size() > 1) {
-                    encodedDataList.add(rawData);
-                    for(int i = 1; i < filters.size(); i++) {
-                        if(rawData.length == 0) {
-                            decodedData = new byte[0];
-                            return; // a previous filter has nullify result
-                        }
-                        rawData = d.parse(i, filters.get(i), rawData);
-                        if(i < filters.size() - 1) {
-                            encodedDataList.add(rawData);
-                        }
+            }
+            if(filters.size() > 1 && encodedDataList == null) {
+                rawData = d.parse(filters, 1, rawData);
+            }
+            else if(filters.size() > 1) {
+                encodedDataList.add(rawData);
+                for(int i = 1; i < filters.size(); i++) {
+                    if(rawData.length == 0) {
+                        return new byte[0]; // a previous filter has nullify result
+                    }
+                    rawData = d.parse(i, filters.get(i), rawData);
+                    if(i < filters.size() - 1) {
+                        encodedDataList.add(rawData);
                     }
                 }
-                if(rawData.length != 0) {
-                    decodedData = rawData;
-                }
-                else {
-                    decodedData = new byte[0];
-                }
-                if(isDecodedStreamTooBig()) {
-                    getPdfStatictics().addUnitNotification(this, SuspiciousType.PotentialHarmfulFile,
-                            String.format("Decoded stream is %d Mb", decodedData.length / 1_000_000,
-                                    getMaxDecodedSize() / 1_000_000));
-                    // byte[] newDecodedData = new byte[getMaxDecodedSize()];
-                    // System.arraycopy(decodedData, 0, newDecodedData, 0, getMaxDecodedSize());
-                    // decodedData = newDecodedData;
-                }
+            }
+            byte[] data = rawData.length != 0 ? rawData: new byte[0];
+            if(data.length > getMaxDecodedSize()) {
+                getPdfStatictics().addUnitNotification(this, SuspiciousType.PotentialHarmfulFile,
+                        String.format("Decoded stream is %d Mb", data.length / 1_000_000,
+                                getMaxDecodedSize() / 1_000_000));
+                // byte[] newDecodedData = new byte[getMaxDecodedSize()];
+                // System.arraycopy(decodedData, 0, newDecodedData, 0, getMaxDecodedSize());
+                // decodedData = newDecodedData;
+            }
 
-                if(d.getDecodingError() != null) {
-                    logger.error(
-                            "Unable to parse Stream %s over filter [%d] error while decoding: %s. Processed bytes: %d",
-                            getId(), d.getFilterIndex(), d.getDecodingError(), d.getDecodingError().getProcessed());
-                    getPdfStatictics().addUnitNotification(this, SuspiciousType.MalformedStream,
-                            "Unable to parse Stream: filter failed");
-                }
+            if(d.getDecodingError() instanceof OutputLimitException) {
+                OutputLimitException e = (OutputLimitException)d.getDecodingError();
+                logger.error("Stream %s over filter [%d]: %s", getId(), d.getFilterIndex(), e.getMessage());
+                getPdfStatictics().addUnitNotification(this, SuspiciousType.PotentialHarmfulFile,
+                        String.format("Decoded stream truncated to %d bytes: expansion ratio over %d", data.length,
+                                e.getExpansionRatio()));
             }
-            catch(Exception e) {
-                e.printStackTrace();
-                logger.error("Unable to parse Stream %s can not be read: %s", getId(), e.getMessage());
+            else if(d.getDecodingError() != null) {
+                logger.error(
+                        "Unable to parse Stream %s over filter [%d] error while decoding: %s. Processed bytes: %d",
+                        getId(), d.getFilterIndex(), d.getDecodingError(), d.getDecodingError().getProcessed());
                 getPdfStatictics().addUnitNotification(this, SuspiciousType.MalformedStream,
                         "Unable to parse Stream: filter failed");
-                decodedData = new byte[0];
             }
+            if(imageFilter != null && imageFilter.isHeaderRead()) {
+                checkImageHeader(imageFilter.getHeader(), pixelsSkipped);
+            }
+            return pixelsSkipped ? null: data;
+        }
+        catch(Exception e) {
+            e.printStackTrace();
+            logger.error("Unable to parse Stream %s can not be read: %s", getId(), e.getMessage());
+            getPdfStatictics().addUnitNotification(this, SuspiciousType.MalformedStream,
+                    "Unable to parse Stream: filter failed");
+            return new byte[0];
         }
     }
 
+    /**
+     * Open the decoded content of this stream without materializing it: filters are chained as
+     * streams, so reading stops decoding. The array decoder remains the reference: this does not
+     * retry with the dictionary /Length, and anomalies met while opening are not reported.
+     */
+    public InputStream openDecodedStream() throws IOException, FilterStreamException {
+        byte[] data = decodedData;
+        if(data != null) {
+            return new ByteArrayInputStream(data);
+        }
+        IPdfAttribute extFile = getAttribute("/F");
+        if(extFile != null && extFile.getType() != Type.Null) {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        byte[] rawData = getEncodedData();
+        PDFDecrypter decrypter = null;
+        if(isEncrypted()) {
+            decrypter = getMainParent().getDecrypter();
+            if(decrypter == null) {
+                throw new IOException("Encrypted");
+            }
+            try {
+                ByteBuffer in = ByteBufferUtils.getByteBuffer(rawData, 0, getParsedLength());
+                rawData = decrypter.decryptBuffer(null, PDFObject.getInstance(getParent()), in).array();
+            }
+            catch(PDFParseException e) {
+                throw new IOException(e);
+            }
+        }
+        List<IFilter> filters;
+        List<Runnable> previous = PdfStatistics.beginDeferredUpdates();
+        try {
+            filters = getFilters(getAttribute(PdfNameTable.DECODE_PARMS), decrypter);
+        }
+        finally {
+            PdfStatistics.endDeferredUpdates(previous);
+        }
+        return new Decoder(dictionary).openStream(filters, new ByteArrayInputStream(rawData));
+    }
+
+    /**
+     * Decode at most maxLength bytes of this stream.
+     * 
+     * @return the decoded prefix, possibly shorter when decoding failed
+     */
+    public byte[] getDecodedPrefix(int maxLength) {
+        byte[] data = decodedData;
+        if(data != null) {
+            return data.length <= maxLength ? data: Arrays.copyOf(data, maxLength);
+        }
+        ByteArrayOutputStream prefix = new ByteArrayOutputStream(maxLength);
+        try(InputStream in = openDecodedStream()) {
+            byte[] buffer = new byte[Math.min(maxLength, 4096)];
+            int read;
+            while(prefix.size() < maxLength
+                    && (read = in.read(buffer, 0, Math.min(buffer.length, maxLength - prefix.size()))) > 0) {
+                prefix.write(buffer, 0, read);
+            }
+        }
+        catch(Exception e) {
+            // keep what was decoded so far
+        }
+        return prefix.toByteArray();
+    }
+
+    /**
+     * Drop the decoded data and intermediate buffers of a stream whose encoded data can be read again
+     * from the input. They are decoded again when requested.
+     */
+    public void releaseDecodedData() {
+        if(isSourceBacked()) {
+            decodedData = null;
+            encodedDataList = null;
+        }
+    }
+
+    /**
+     * Indicate that decoded data is not available until requested: it is read from the unit input,
+     * or it is an image whose pixels were not decoded yet.
+     */
+    public boolean isDecodedOnDemand() {
+        return isSourceBacked() || pixelsOnDemand;
+    }
+
+    /**
+     * Indicate that encoded data is not kept in memory but read from the unit input when needed
+     */
+    public boolean isSourceBacked() {
+        return encodedData == null;
+    }
+
+    private boolean isLazyImageDecoding() {
+        PdfFileUnit unit = getMainParent().getUnit();
+        return unit != null && unit.isLazyImageDecoding();
+    }
+
+    private DecodedStreamCache getDecodedStreamCache() {
+        PdfFileUnit unit = getMainParent().getUnit();
+        return unit == null ? null: unit.getDecodedStreamCache();
+    }
+
     public void checkSize() {
         Integer lengthFromDictionary = getLengthFromDictionary();
         if(lengthFromDictionary == null) {
@@ -461,6 +882,7 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
         else if(getParsedLength() != lengthFromDictionary) {
             boolean extraEOL = PdfSpecialCharacters.isEndLine(extraChars[0]);
             boolean extra2ndEOL = PdfSpecialCharacters.isEndLine(extraChars[1]);
+            byte[] encodedData = getEncodedData();
             boolean lastIsEOL = encodedData.length > 0 ? (encodedData[getParsedLength() - 1] == 0x0D): true;
             if((getParsedLength() + 1 == lengthFromDictionary && extraEOL)
                     || (getParsedLength() + 2 == lengthFromDictionary && extraEOL && extra2ndEOL)) {
@@ -477,7 +899,7 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     }
 
     private PdfName getLastFilter() {
-        IPdfAttribute filter = getAttribute("/Filter");
+        IPdfAttribute filter = getAttribute(PdfNameTable.FILTER);
         if(filter == null) {
             return null;
         }
@@ -496,7 +918,8 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     }
 
     private boolean isDecodedStreamTooBig() {
-        return decodedData != null && decodedData.length > getMaxDecodedSize();
+        byte[] data = decodedData;
+        return (data != null ? data.length: decodedLength) > getMaxDecodedSize();
     }
 
     private int getMaxDecodedSize() {
@@ -525,13 +948,22 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
             return dictionary.getDictionaryFullType();
         }
         // try to inferate type
-        if(decodedData != null) {
-            StreamType type = StreamType.getStreamType(decodedData);
+        byte[] data = decodedData;
+        if(data != null) {
+            StreamType type = StreamType.getStreamType(data);
             if(type == StreamType.Stream) {
                 // other determination
             }
             return type.toString();
         }
+        if(inferredType == null && !decoded) {
+            // not decoded yet: the signature is enough
+            inferredType = StreamType.getStreamType(getDecodedPrefix(StreamType.getSignatureLength()));
+        }
+        if(inferredType != null) {
+            // decoded data was released, or only its signature was decoded
+            return inferredType.toString();
+        }
         return StreamType.Stream.toString();
     }
 
@@ -589,7 +1021,11 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     }
 
     public List<byte[]> getEncodedDataList() {
-        return encodedDataList;
+        if(decoded) {
+            decodePayload(true);
+        }
+        List<byte[]> list = encodedDataList;
+        return list != null ? list: new ArrayList<byte[]>();
     }
 
     public void setType(StreamType type) {
@@ -597,15 +1033,17 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
     }
 
     public boolean isEncrypted() {
-        boolean isEncrypted = getMainParent().isEncrypted();
         if("/XRef".equals(dictionary.getDictionaryType())) {
-            isEncrypted = false; // XRef is not encrypted
+            return false; // XRef is not encrypted
         }
-        return isEncrypted;
+        return getMainParent().isEncrypted();
     }
 
     public String getAsText() {
-        if(decodedData == null || decodedData.length == 0) {
+        if(decodedData == null && !decoded) {
+            return null;
+        }
+        if(getDecodedData().length == 0) {
             return null;
         }
 
@@ -624,6 +1062,13 @@ public class PdfStream extends AbstractPdfParsableAttribute implements Comparabl
         return null;
     }
 
+    /**
+     * Same as {@link #isImage()}, without decoding to infer the type
+     */
+    private boolean isDeclaredImage() {
+        return streamType == null && "/XObject/Image".equals(dictionary.getDictionaryFullType());
+    }
+
     public boolean isImage() {
         return getStreamType().equals("/XObject/Image");
     }
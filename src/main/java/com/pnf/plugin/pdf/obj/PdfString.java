@@ -22,6 +22,7 @@ import java.util.HashMap;
 import java.util.Map;
 
 import com.pnf.plugin.pdf.PdfStatistics.SuspiciousType;
+import com.pnf.plugin.pdf.parser.IByteSource;
 import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
 import com.pnfsoftware.jeb.util.serialization.annotations.SerId;
@@ -56,7 +57,7 @@ public class PdfString extends AbstractPdfParsableAttribute {
     @SerId(2)
     private String decryptedValue;
 
-    public PdfString(AbstractPdfParsableAttribute parent, int startIndex) {
+    public PdfString(AbstractPdfParsableAttribute parent, long startIndex) {
         super(parent, startIndex);
     }
 
@@ -68,22 +69,26 @@ public class PdfString extends AbstractPdfParsableAttribute {
         return decryptedValue;
     }
 
+    public void setDecryptedValue(String decryptedValue) {
+        this.decryptedValue = decryptedValue;
+    }
+
     @Override
-    public int parse(byte[] data, int cursor) {
+    public long parse(IByteSource data, long cursor) {
         boolean isHexa = false;
         int intermediateParenthesis = 0;
-        if(data[cursor] == '<') {
+        if(data.get(cursor) == '<') {
             isHexa = true;
         }
         cursor++; // skip first (
-        int startLine = cursor;
+        long startLine = cursor;
         StringBuilder stb = new StringBuilder();
-        while(cursor < data.length && !isEndToken(data, cursor, isHexa, intermediateParenthesis)) {
+        while(cursor < data.length() && !isEndToken(data, cursor, isHexa, intermediateParenthesis)) {
             if(isHexa) {
                 // post process
             }
             else {
-                if(data[cursor] == '\\') {
+                if(data.get(cursor) == '\\') {
                     // escape
                     int endLine = PdfSpecialCharacters.testEndLine(data, cursor + 1);
                     Character c;
@@ -93,15 +98,15 @@ public class PdfString extends AbstractPdfParsableAttribute {
                     else if(endLine > 0) {
                         cursor += endLine; // skip current char + number of EOL chars
                     }
-                    else if((c = escapedCharacters.get((char)data[cursor + 1])) != null) {
+                    else if((c = escapedCharacters.get((char)data.get(cursor + 1))) != null) {
                         stb.append(c);
                         cursor++;
                     }
-                    else if(Character.isDigit(data[cursor + 1])) {
+                    else if(Character.isDigit(data.get(cursor + 1))) {
                         int nbDigit = 1;
-                        while(cursor + nbDigit < data.length && nbDigit < 3) {
+                        while(cursor + nbDigit < data.length() && nbDigit < 3) {
                             // look for all digit
-                            if(Character.isDigit(data[cursor + nbDigit + 1])) {
+                            if(Character.isDigit(data.get(cursor + nbDigit + 1))) {
                                 nbDigit++;
                             }
                             else {
@@ -109,7 +114,8 @@ public class PdfString extends AbstractPdfParsableAttribute {
                             }
                         }
                         if(nbDigit == 3) {
-                            stb.append((char)Integer.valueOf(new String(data, cursor + 1, nbDigit), 8).byteValue());
+                            String octal = new String(data.getBytes(cursor + 1, nbDigit));
+                            stb.append((char)Integer.valueOf(octal, 8).byteValue());
                             cursor += nbDigit; // skip interpreted digit
                         } // else ignore unnecessary/malformed escape
                     }
@@ -117,19 +123,19 @@ public class PdfString extends AbstractPdfParsableAttribute {
                         // just ignore the unnecessary escape
                     }
                 }
-                else if(data[cursor] == '(') {
+                else if(data.get(cursor) == '(') {
                     intermediateParenthesis++;
                 }
-                else if(data[cursor] == ')') {
+                else if(data.get(cursor) == ')') {
                     intermediateParenthesis--;
                 }
                 else {
-                    stb.append((char)data[cursor]);
+                    stb.append((char)data.get(cursor));
                 }
             }
             cursor++;
         }
-        if(cursor >= data.length) {
+        if(cursor >= data.length()) {
             getPdfStatictics().addUnitNotification(this, SuspiciousType.Malformed, "Unclosed string");
         }
         setEndIndex(cursor);
@@ -138,12 +144,12 @@ public class PdfString extends AbstractPdfParsableAttribute {
         return cursor;
     }
 
-    private String decodeHexa(byte[] data, int fromIndex, int toIndex) {
+    private String decodeHexa(IByteSource data, long fromIndex, long toIndex) {
         // first build pure string without any space char
         StringBuilder dataWitoutSpace = new StringBuilder();
-        for(int i = fromIndex; i < toIndex; i++) {
-            if(!PdfSpecialCharacters.isSeparator(data[i])) {
-                dataWitoutSpace.append((char)data[i]);
+        for(long i = fromIndex; i < toIndex; i++) {
+            if(!PdfSpecialCharacters.isSeparator(data.get(i))) {
+                dataWitoutSpace.append((char)data.get(i));
             }
         }
         if(dataWitoutSpace.length() % 2 == 1) {
@@ -161,7 +167,7 @@ public class PdfString extends AbstractPdfParsableAttribute {
             }
             catch(Exception e) {
                 getPdfStatictics().addUnitNotification(this, SuspiciousType.Malformed, "Incorrect String format", e);
-                return '<' + new String(data, fromIndex, toIndex - fromIndex) + '>';
+                return '<' + new String(data.getBytes(fromIndex, (int)(toIndex - fromIndex))) + '>';
             }
         }
         return stb.toString();
@@ -172,12 +178,13 @@ public class PdfString extends AbstractPdfParsableAttribute {
         return decryptedValue == null ? value: decryptedValue;
     }
 
-    public static boolean isStartToken(byte[] data, int cursor) {
-        return data[cursor] == '(' || (data[cursor] == '<' && data[cursor + 1] != '<');
+    public static boolean isStartToken(IByteSource data, long cursor) {
+        return data.get(cursor) == '(' || (data.get(cursor) == '<' && data.get(cursor + 1) != '<');
     }
 
-    public boolean isEndToken(byte[] data, int cursor, boolean isHexa, int intermediateParenthesis) {
-        return (!isHexa && data[cursor] == ')' && intermediateParenthesis == 0) || (isHexa && data[cursor] == '>');
+    public boolean isEndToken(IByteSource data, long cursor, boolean isHexa, int intermediateParenthesis) {
+        return (!isHexa && data.get(cursor) == ')' && intermediateParenthesis == 0)
+                || (isHexa && data.get(cursor) == '>');
     }
 
     @Override
@@ -19,6 +19,7 @@ limitations under the License.
 package com.pnf.plugin.pdf.obj;
 
 import com.pnf.plugin.pdf.PdfFileUnit;
+import com.pnf.plugin.pdf.parser.IByteSource;
 import com.pnf.plugin.pdf.parser.PdfFile;
 import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
 import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
@@ -37,7 +38,7 @@ public class PdfTrailer extends PdfIndirectObj {
     public static class PdfTrailerId extends PdfObjId {
         public static final int TRAILER_ID = -1;
 
-        public PdfTrailerId(int generationNumber, int startAddress) {
+        public PdfTrailerId(int generationNumber, long startAddress) {
             super(TRAILER_ID, generationNumber, startAddress);
         }
 
@@ -51,7 +52,7 @@ public class PdfTrailer extends PdfIndirectObj {
     @SerId(1)
     private PdfTrailer prev;
 
-    public PdfTrailer(PdfFile file, PdfFileUnit unit, int startIndex, int cursor, int trailerCount) {
+    public PdfTrailer(PdfFile file, PdfFileUnit unit, long startIndex, long cursor, int trailerCount) {
         super(file, unit, startIndex);
         this.id = new PdfTrailerId(trailerCount, cursor);
     }
@@ -81,7 +82,7 @@ public class PdfTrailer extends PdfIndirectObj {
             if(prev == null) {
                 IPdfAttribute prevObj = dictionary.getAttribute("/Prev");
                 if(prevObj != null && prevObj.getType() == Type.Number) {
-                    prev = unit.getTrailers().get(((PdfNumber)prevObj).intValue());
+                    prev = unit.getTrailers().get(((PdfNumber)prevObj).longValue());
                 }
             }
             if(prev != null) {
@@ -96,7 +97,7 @@ public class PdfTrailer extends PdfIndirectObj {
     }
 
     @Override
-    public int parse(byte[] data, int cursor) {
+    public long parse(IByteSource data, long cursor) {
         return super.parse(data, cursor, this.id);
     }
 
@@ -116,7 +117,7 @@ public class PdfTrailer extends PdfIndirectObj {
     }
 
     @Override
-    public boolean isEndToken(byte[] data, int cursor) {
+    public boolean isEndToken(IByteSource data, long cursor) {
         return PdfSpecialCharacters.isStartXref(data, cursor);
     }
 
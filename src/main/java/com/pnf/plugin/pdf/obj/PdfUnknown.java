@@ -29,7 +29,7 @@ import com.pnfsoftware.jeb.util.serialization.annotations.Ser;
 @Ser
 public class PdfUnknown extends AbstractPdfSimpleValue {
 
-    public PdfUnknown(String value, AbstractPdfParsableAttribute parent, int startIndex) {
+    public PdfUnknown(String value, AbstractPdfParsableAttribute parent, long startIndex) {
         super(value, parent, startIndex);
     }
 
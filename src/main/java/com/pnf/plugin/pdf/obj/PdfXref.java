@@ -43,6 +43,37 @@ public class PdfXref {
         byte[] type;
         byte[] field2;
         byte[] field3;
+
+        /**
+         * @return 0 for free objects, 1 for objects in file, 2 for objects in an ObjStm
+         */
+        public int getType() {
+            return (int)toNumber(type);
+        }
+
+        /**
+         * @return the byte offset (type 1) or the ObjStm object number (type 2)
+         */
+        public long getField2() {
+            return toNumber(field2);
+        }
+
+        /**
+         * @return the generation number (type 1) or the index in the ObjStm (type 2)
+         */
+        public int getField3() {
+            return (int)toNumber(field3);
+        }
+
+        private static long toNumber(byte[] r) {
+            long value = 0;
+            if(r != null) {
+                for(byte b: r) {
+                    value = (value << 8) | (b & 0xFF);
+                }
+            }
+            return value;
+        }
     }
 
     public static class XrefSubsection {
@@ -57,6 +88,14 @@ public class PdfXref {
             }
             return objectSize;
         }
+
+        public int getFirstObjectNumber() {
+            return index[0];
+        }
+
+        public List<Xref> getXrefs() {
+            return xrefs;
+        }
     }
 
     public PdfXref(PdfStream stream) {
@@ -97,10 +136,17 @@ public class PdfXref {
 
     public static XrefSubsection[] populateReferences(PdfStream stream) {
         XrefSubsection[] indexes = getXRefSubsections(stream.getDictionary());
+        if(indexes == null) {
+            return null;
+        }
         byte[] decoded = stream.getDecodedData();
         int cursor = 0;
         for(XrefSubsection index: indexes) {
             for(int i = 0; i < index.index[1]; i++) {
+                if(cursor + index.getObjectSize() > decoded.length) {
+                    logger.error("XRef stream %s is truncated", stream.getId());
+                    return indexes;
+                }
                 Xref xref = new Xref();
                 int offset = 0;
                 if(index.w[0] == 0) {
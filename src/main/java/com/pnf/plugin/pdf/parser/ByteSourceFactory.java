@@ -0,0 +1,54 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+
+import com.pnfsoftware.jeb.core.input.IInput;
+import com.pnfsoftware.jeb.util.io.IO;
+import com.pnfsoftware.jeb.util.logging.GlobalLog;
+import com.pnfsoftware.jeb.util.logging.ILogger;
+
+/**
+ * Build the {@link IByteSource} best suited to an input: file-backed inputs are memory-mapped,
+ * other inputs are read on the heap.
+ * 
+ * @author PNF Software
+ *
+ */
+public class ByteSourceFactory {
+    private static final ILogger logger = GlobalLog.getLogger(ByteSourceFactory.class);
+
+    public static IByteSource create(IInput input) throws IOException {
+        try(SeekableByteChannel channel = input.getChannel()) {
+            if(channel instanceof FileChannel) {
+                return new MappedByteSource((FileChannel)channel);
+            }
+        }
+        catch(IOException e) {
+            logger.catching(e);
+        }
+        try(InputStream in = input.getStream()) {
+            return new HeapByteSource(IO.readInputStream(in));
+        }
+    }
+}
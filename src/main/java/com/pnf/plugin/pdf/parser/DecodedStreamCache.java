@@ -0,0 +1,99 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.pnf.plugin.pdf.obj.PdfStream;
+
+/**
+ * Keeps the decoded data of source-backed streams under a per-unit budget. When the budget is
+ * exceeded, the least recently used streams release their decoded data; it is decoded again from
+ * the input when requested.
+ * 
+ * @author PNF Software
+ *
+ */
+public class DecodedStreamCache {
+
+    private final long budget;
+
+    /** Streams by access order, with the number of bytes they retain */
+    private final Map<PdfStream, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    private long evictionCount;
+
+    public DecodedStreamCache(long budget) {
+        this.budget = budget;
+    }
+
+    /**
+     * Register the data retained by a stream that has just been decoded and release the least
+     * recently used streams if the budget is exceeded. The given stream is never released here, even
+     * when it is larger than the budget on its own.
+     */
+    public void put(PdfStream stream, long retainedSize) {
+        List<PdfStream> evicted = new ArrayList<>();
+        synchronized(this) {
+            Long previous = entries.put(stream, retainedSize);
+            if(previous != null) {
+                size -= previous;
+            }
+            size += retainedSize;
+            Iterator<Map.Entry<PdfStream, Long>> it = entries.entrySet().iterator();
+            while(size > budget && it.hasNext()) {
+                Map.Entry<PdfStream, Long> entry = it.next();
+                if(entry.getKey() == stream) {
+                    continue;
+                }
+                size -= entry.getValue();
+                it.remove();
+                evicted.add(entry.getKey());
+                evictionCount++;
+            }
+        }
+        // release outside the lock: streams may be decoding concurrently
+        for(PdfStream e: evicted) {
+            e.releaseDecodedData();
+        }
+    }
+
+    /** Mark a stream as recently used */
+    public synchronized void touch(PdfStream stream) {
+        entries.get(stream);
+    }
+
+    public long getBudget() {
+        return budget;
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+}
@@ -0,0 +1,62 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * {@link IByteSource} backed by an in-memory byte array.
+ * 
+ * @author PNF Software
+ *
+ */
+public class HeapByteSource implements IByteSource {
+
+    private final byte[] data;
+
+    public HeapByteSource(byte[] data) {
+        this.data = data;
+    }
+
+    @Override
+    public long length() {
+        return data.length;
+    }
+
+    @Override
+    public byte get(long position) {
+        return data[(int)position];
+    }
+
+    @Override
+    public byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        System.arraycopy(data, (int)position, bytes, 0, length);
+        return bytes;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer(long position, int length) {
+        return ByteBuffer.wrap(data, (int)position, length).slice().asReadOnlyBuffer();
+    }
+
+    public byte[] getData() {
+        return data;
+    }
+}
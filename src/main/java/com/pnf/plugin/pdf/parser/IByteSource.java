@@ -0,0 +1,54 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Random access to the bytes of a PDF input. Offsets are <code>long</code> so that files larger
+ * than 2 GB can be addressed; implementations decide whether bytes live on the heap or in mapped
+ * file windows.
+ * 
+ * @author PNF Software
+ *
+ */
+public interface IByteSource {
+
+    /**
+     * @return total number of bytes available
+     */
+    long length();
+
+    /**
+     * Read one byte. The caller is responsible for checking the position against
+     * {@link #length()}.
+     */
+    byte get(long position);
+
+    /**
+     * Copy a range of bytes into a new array.
+     */
+    byte[] getBytes(long position, int length);
+
+    /**
+     * Retrieve a read-only buffer over a range of bytes. Implementations return a view on the
+     * underlying storage when possible, so the result must not be modified.
+     */
+    ByteBuffer getByteBuffer(long position, int length);
+}
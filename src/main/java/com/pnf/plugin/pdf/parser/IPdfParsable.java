@@ -28,7 +28,7 @@ import com.pnf.plugin.pdf.obj.IPdfAttribute;
  */
 public interface IPdfParsable {
 
-    int parse(byte[] data, int cursor) throws StartObjFoundException;
+    long parse(IByteSource data, long cursor) throws StartObjFoundException;
 
     IPdfAttribute getPdfAttribute() throws StartObjFoundException;
 }
@@ -33,13 +33,13 @@ public class InputOffset {
 
     private PdfObjId streamId;
 
-    private int startIndex;
+    private long startIndex;
 
-    private InputOffset(int startIndex) {
+    private InputOffset(long startIndex) {
         this.startIndex = startIndex;
     }
 
-    private InputOffset(PdfObjId stream, int startIndex) {
+    private InputOffset(PdfObjId stream, long startIndex) {
         this.streamId = stream;
         this.startIndex = startIndex;
     }
@@ -52,18 +52,18 @@ public class InputOffset {
         return streamId;
     }
 
-    public int getStartIndex() {
+    public long getStartIndex() {
         return startIndex;
     }
 
-    public static InputOffset getInstance(IPdfAttribute attribute, int startIndex) {
+    public static InputOffset getInstance(IPdfAttribute attribute, long startIndex) {
         if(attribute.getParent() == null) {
             return createInstanceOf((PdfIndirectObj)attribute, startIndex);
         }
         return createInstanceOf(attribute.getParent().getMainParent(), startIndex);
     }
 
-    public static InputOffset createInstanceOf(PdfIndirectObj attribute, int startIndex) {
+    public static InputOffset createInstanceOf(PdfIndirectObj attribute, long startIndex) {
         if(attribute.getType() == Type.IndirectObjectStream) {
             return new InputOffset(attribute.getId(), startIndex);
         }
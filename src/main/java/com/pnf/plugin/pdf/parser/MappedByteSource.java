@@ -0,0 +1,96 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+
+/**
+ * {@link IByteSource} backed by read-only memory-mapped windows of a file. Bytes are paged in by
+ * the OS on access, so the file does not need to fit in the Java heap, and files larger than 2 GB
+ * are split over several windows.
+ * 
+ * @author PNF Software
+ *
+ */
+public class MappedByteSource implements IByteSource {
+
+    private static final int WINDOW_SHIFT = 30;
+    private static final long WINDOW_SIZE = 1L << WINDOW_SHIFT;
+    private static final long WINDOW_MASK = WINDOW_SIZE - 1;
+
+    private final MappedByteBuffer[] windows;
+
+    private final long length;
+
+    /**
+     * Map the whole channel. The mapping stays valid after the channel is closed.
+     */
+    public MappedByteSource(FileChannel channel) throws IOException {
+        length = channel.size();
+        int nbWindows = (int)((length + WINDOW_SIZE - 1) >>> WINDOW_SHIFT);
+        windows = new MappedByteBuffer[nbWindows];
+        for(int i = 0; i < nbWindows; i++) {
+            long position = (long)i << WINDOW_SHIFT;
+            windows[i] = channel.map(MapMode.READ_ONLY, position, Math.min(WINDOW_SIZE, length - position));
+        }
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public byte get(long position) {
+        return windows[(int)(position >>> WINDOW_SHIFT)].get((int)(position & WINDOW_MASK));
+    }
+
+    @Override
+    public byte[] getBytes(long position, int length) {
+        byte[] bytes = new byte[length];
+        int copied = 0;
+        while(copied < length) {
+            ByteBuffer window = windows[(int)(position >>> WINDOW_SHIFT)].duplicate();
+            window.position((int)(position & WINDOW_MASK));
+            int chunk = Math.min(length - copied, window.remaining());
+            window.get(bytes, copied, chunk);
+            copied += chunk;
+            position += chunk;
+        }
+        return bytes;
+    }
+
+    @Override
+    public ByteBuffer getByteBuffer(long position, int length) {
+        int windowIndex = (int)(position >>> WINDOW_SHIFT);
+        int offset = (int)(position & WINDOW_MASK);
+        if(offset + (long)length <= windows[windowIndex].capacity()) {
+            ByteBuffer window = windows[windowIndex].duplicate();
+            window.position(offset);
+            window.limit(offset + length);
+            return window.slice().asReadOnlyBuffer();
+        }
+        // range crosses a window boundary
+        return ByteBuffer.wrap(getBytes(position, length)).asReadOnlyBuffer();
+    }
+}
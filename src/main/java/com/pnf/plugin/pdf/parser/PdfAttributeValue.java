@@ -23,6 +23,8 @@ import com.pnf.plugin.pdf.obj.IPdfAttribute;
 import com.pnf.plugin.pdf.obj.PdfBoolean;
 import com.pnf.plugin.pdf.obj.PdfIndirectReference;
 import com.pnf.plugin.pdf.obj.PdfName;
+import com.pnf.plugin.pdf.obj.PdfNameTable;
+import com.pnf.plugin.pdf.obj.PdfNameTable.Symbol;
 import com.pnf.plugin.pdf.obj.PdfNull;
 import com.pnf.plugin.pdf.obj.PdfNumber;
 import com.pnf.plugin.pdf.obj.PdfObjId;
@@ -38,71 +40,110 @@ public class PdfAttributeValue implements IPdfParsable {
 
     private String value;
 
+    private Symbol symbol;
+
+    /** Integer whose text is not built, see {@link PdfLexer#isCanonical()} */
+    private boolean canonicalInteger;
+
+    private long integerValue;
+
     private PdfIndirectReference id = null;
 
     private AbstractPdfParsableAttribute parent;
 
-    protected int startIndex;
+    protected long startIndex;
 
-    public PdfAttributeValue(AbstractPdfParsableAttribute parent, int startIndex) {
+    public PdfAttributeValue(AbstractPdfParsableAttribute parent, long startIndex) {
         this.parent = parent;
         this.startIndex = startIndex;
     }
 
     @Override
-    public int parse(byte[] data, int cursor) {
-        startIndex = cursor;
-        while(!isEndToken(data, cursor + 1) && cursor < data.length) {
-            // do not process next char since it can be a meaningful delimiter (for example an array: [16])
-            cursor++;
+    public long parse(IByteSource data, long cursor) {
+        PdfLexer lexer = new PdfLexer();
+        lexer.scanBare(data, cursor);
+        return parse(data, lexer);
+    }
+
+    /**
+     * Parse the token just scanned by the lexer. The lexer is reused to scan the rest of an indirect
+     * reference.
+     */
+    long parse(IByteSource data, PdfLexer lexer) {
+        if(!lexer.isBare()) {
+            lexer.scanBare(data, lexer.getStart());
+        }
+        startIndex = lexer.getStart();
+        long cursor = lexer.getEnd();
+        symbol = null;
+        canonicalInteger = false;
+        value = null;
+        int kind = lexer.getKind();
+        if(kind == PdfLexer.NONE) {
+            value = "";
+            return cursor;
+        }
+        if(kind == PdfLexer.NAME) {
+            symbol = PdfNameTable.intern(data, startIndex, lexer.getLength());
+            if(symbol != null) {
+                value = symbol.getName();
+                return cursor;
+            }
+        }
+        if(lexer.isCanonical()) {
+            // text is rebuilt from the value when needed
+            canonicalInteger = true;
+            integerValue = lexer.getIntegerValue();
         }
-        this.value = new String(data, startIndex, cursor - startIndex + 1);
-        if(value.matches("\\d+")) {
-            int referenceCursor = cursor + 1;
+        else {
+            value = new String(data.getBytes(startIndex, lexer.getLength()));
+        }
+        if(lexer.isUnsigned()) {
+            long referenceCursor = cursor + 1;
             // test for an indirect reference?
             if(PdfSpecialCharacters.isSeparator(data, referenceCursor)) {
-                return testIndirectReference(data, referenceCursor, cursor);
+                return testIndirectReference(data, lexer, referenceCursor, cursor);
             }
         }
         return cursor;
     }
 
-    private int testIndirectReference(byte[] data, int referenceCursor, int cursor) {
+    private long testIndirectReference(IByteSource data, PdfLexer lexer, long referenceCursor, long cursor) {
+        boolean objectNumberInRange = lexer.isIntRange();
+        int objectNumber = (int)lexer.getIntegerValue();
         referenceCursor = PdfSpecialCharacters.jumpSeparators(data, referenceCursor);
-        if(referenceCursor >= data.length) {
+        if(referenceCursor >= data.length()) {
             return cursor;
         }
 
-        StringBuilder generationNumber = new StringBuilder();
-        while(Character.isDigit((char)data[referenceCursor]) && referenceCursor < data.length) {
-            generationNumber.append((char)data[referenceCursor]);
-            referenceCursor++;
-        }
-        if(!PdfSpecialCharacters.isSeparator(data, referenceCursor) || generationNumber.length() == 0) {
+        lexer.scanBare(data, referenceCursor);
+        if(!lexer.isUnsigned() || !PdfSpecialCharacters.isSeparator(data, lexer.getEnd() + 1)) {
             // not followed by a digit or followed by (digit + NotASpace)
             return cursor;
         }
 
-        referenceCursor = PdfSpecialCharacters.jumpSeparators(data, referenceCursor);
-        if(referenceCursor >= data.length) {
+        referenceCursor = PdfSpecialCharacters.jumpSeparators(data, lexer.getEnd() + 1);
+        if(referenceCursor >= data.length()) {
             return cursor;
         }
 
         if(PdfSpecialCharacters.isChar(data, referenceCursor, 'R')) {
+            if(!objectNumberInRange || !lexer.isIntRange()) {
+                throw new NumberFormatException("Indirect reference out of range at " + startIndex);
+            }
             // this is indirect reference object
-            id = new PdfIndirectReference(
-                    new PdfObjId(Integer.valueOf(value), Integer.valueOf(generationNumber.toString()), startIndex),
+            id = new PdfIndirectReference(new PdfObjId(objectNumber, (int)lexer.getIntegerValue(), startIndex),
                     parent, startIndex);
             return referenceCursor;
         }
         return cursor;
     }
 
-    public int parseNexToken(byte[] data, int cursor) {
-        while(PdfSpecialCharacters.isSeparator(data, cursor) && cursor < data.length) {
+    public long parseNexToken(IByteSource data, long cursor) {
+        while(PdfSpecialCharacters.isSeparator(data, cursor) && cursor < data.length()) {
             cursor++;
         }
-        if(cursor >= data.length) {
+        if(cursor >= data.length()) {
             return cursor;
         }
         return parse(data, cursor);
@@ -118,11 +159,11 @@ public class PdfAttributeValue implements IPdfParsable {
         }
     }
 
-    public static boolean isStartToken(byte[] data, int cursor) {
-        return !PdfSpecialCharacters.isDelimitor(data[cursor]);
+    public static boolean isStartToken(IByteSource data, long cursor) {
+        return !PdfSpecialCharacters.isDelimitor(data.get(cursor));
     }
 
-    public boolean isEndToken(byte[] data, int cursor) {
+    public boolean isEndToken(IByteSource data, long cursor) {
         return PdfSpecialCharacters.isDelimitorOrSeparator(data, cursor);
     }
 
@@ -131,6 +172,12 @@ public class PdfAttributeValue implements IPdfParsable {
         if(id != null) {
             return id;
         }
+        else if(symbol != null) {
+            return new PdfName(symbol, parent, startIndex);
+        }
+        else if(canonicalInteger) {
+            return new PdfNumber(integerValue, parent, startIndex);
+        }
         else if(value == null || value.length() == 0) {
             return new PdfNull(parent, startIndex);
         }
@@ -33,16 +33,16 @@ public class PdfComment {
 
     private static final ILogger logger = GlobalLog.getLogger(PdfComment.class);
 
-    public static int skipCommentsIfSome(byte[] data, int cursor) {
-        int startLine = cursor;
-        if(PdfSpecialCharacters.isComment(data[cursor + 1])) {
-            for(; cursor < data.length; cursor++) {
+    public static long skipCommentsIfSome(IByteSource data, long cursor) {
+        long startLine = cursor;
+        if(PdfSpecialCharacters.isComment(data.get(cursor + 1))) {
+            for(; cursor < data.length(); cursor++) {
                 if(PdfSpecialCharacters.isEndComment(data, cursor + 1)) {
                     return cursor;
                 }
             }
         }
-        logger.info("Found comment: %s", new String(data, startLine, cursor - startLine));
+        logger.info("Found comment: %s", new String(data.getBytes(startLine, (int)(cursor - startLine))));
         return cursor;
     }
 
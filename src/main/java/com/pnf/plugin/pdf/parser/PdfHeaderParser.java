@@ -22,12 +22,13 @@ import java.io.IOException;
 import java.io.InputStream;
 
 import com.pnfsoftware.jeb.core.input.IInput;
-import com.pnfsoftware.jeb.util.io.IO;
 import com.pnfsoftware.jeb.util.logging.GlobalLog;
 import com.pnfsoftware.jeb.util.logging.ILogger;
 
 /**
- * 
+ * Look for a PDF header in the first bytes of an input. The specification tolerates junk before
+ * the header up to 1024 bytes, but readers (and malware) accept it much further, so the scanned
+ * prefix is configurable. The input is streamed: only the prefix window is ever read.
  * 
  * @author PNF Software
  *
@@ -35,35 +36,54 @@ import com.pnfsoftware.jeb.util.logging.ILogger;
 public class PdfHeaderParser {
     private static final ILogger logger = GlobalLog.getLogger(PdfHeaderParser.class);
 
+    /** Default number of bytes scanned for a header */
+    public static final int DEFAULT_PREFIX_WINDOW = 1024 * 1024;
+
     private static final byte[] PDF_HEADER = "%PDF-1".getBytes();
+
+    private static final int BUFFER_SIZE = 8192;
+
     private IInput input;
 
+    /** Maximum offset of the header, 0 to scan the whole input */
+    private int prefixWindow;
+
+    private long bytesRead;
+
     public PdfHeaderParser(IInput input) {
+        this(input, DEFAULT_PREFIX_WINDOW);
+    }
+
+    public PdfHeaderParser(IInput input, int prefixWindow) {
         this.input = input;
+        this.prefixWindow = prefixWindow;
     }
 
     public boolean isPdf() {
+        bytesRead = 0;
         if(input == null) {
             return false;
         }
 
         try(InputStream in = input.getStream()) {
-            // PDF can start with a comment or any white space character
-            byte[] data = IO.readInputStream(in);
-
-            for(int cursor = 0; cursor < data.length; cursor++) {
-                if(PdfSpecialCharacters.isSeparator(data[cursor])) {
-                    // ignore spacings
+            // PDF can start with a comment, white spaces or junk: look for the header pattern
+            // a header starting on the last byte of the window is still accepted
+            long limit = prefixWindow > 0 ? (long)prefixWindow + PDF_HEADER.length - 1: Long.MAX_VALUE;
+            byte[] buffer = new byte[BUFFER_SIZE + PDF_HEADER.length - 1];
+            int kept = 0;
+            while(bytesRead < limit) {
+                int n = in.read(buffer, kept, (int)Math.min(BUFFER_SIZE, limit - bytesRead));
+                if(n < 0) {
+                    break;
                 }
-                else if(PdfSpecialCharacters.isComment(data[cursor])) {
-                    if(isPdfHeader(data, cursor)) {
-                        return true;
-                    }
-                    cursor = PdfComment.skipCommentsIfSome(data, cursor - 1);
-                }
-                else {
-                    // return false;
+                bytesRead += n;
+                int end = kept + n;
+                if(PdfSpecialCharacters.indexOf(buffer, 0, end, PDF_HEADER) >= 0) {
+                    return true;
                 }
+                // keep the tail: the header may straddle two reads
+                kept = Math.min(end, PDF_HEADER.length - 1);
+                System.arraycopy(buffer, end - kept, buffer, 0, kept);
             }
         }
         catch(IOException e) {
@@ -72,14 +92,10 @@ public class PdfHeaderParser {
         return false;
     }
 
-    private boolean isPdfHeader(byte[] data, int cursor) {
-        if(cursor + 5 >= data.length) {
-            return false;
-        }
-        if(data[cursor + 1] == PDF_HEADER[1] && data[cursor + 2] == PDF_HEADER[2] && data[cursor + 3] == PDF_HEADER[3]
-                && data[cursor + 4] == PDF_HEADER[4] && data[cursor + 5] == PDF_HEADER[5]) {
-            return true;
-        }
-        return false;
+    /**
+     * @return the number of bytes read by the last call to {@link #isPdf()}
+     */
+    public long getBytesRead() {
+        return bytesRead;
     }
 }
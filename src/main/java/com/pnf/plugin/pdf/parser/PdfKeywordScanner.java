@@ -0,0 +1,136 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Search of the keywords delimiting the file structure: <code>obj</code>, <code>endstream</code>,
+ * <code>trailer</code>, <code>xref</code>, <code>startxref</code> and <code>%%EOF</code>.
+ * <p>
+ * Candidates are located by their first byte, through a dispatch table at a given position, or in
+ * bulk by {@link #indexOf(IByteSource, long, int)}, which tests 8 bytes at a time. Each candidate
+ * is then checked by {@link PdfSpecialCharacters}, so that the keyword boundaries are the same as
+ * for a byte by byte search.
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfKeywordScanner {
+
+    public static final int NONE = 0;
+    public static final int OBJ = 1;
+    public static final int ENDSTREAM = 2;
+    public static final int TRAILER = 3;
+    public static final int XREF = 4;
+    public static final int STARTXREF = 5;
+    public static final int EOF = 6;
+
+    private static final byte[][] KEYWORDS = {null, PdfSpecialCharacters.OBJ_START_SEPARATOR,
+            PdfSpecialCharacters.STREAM_END_SEPARATOR, PdfSpecialCharacters.TRAILER_START_SEPARATOR,
+            PdfSpecialCharacters.XREF_SEPARATOR, PdfSpecialCharacters.XREF_START_SEPARATOR, PdfSpecialCharacters.EOF};
+
+    /** Keywords that can be found between objects, by first byte */
+    private static final byte[] TOP_LEVEL = new byte[256];
+
+    static {
+        for(int keyword: new int[]{OBJ, TRAILER, XREF, STARTXREF, EOF}) {
+            TOP_LEVEL[KEYWORDS[keyword][0] & 0xFF] = (byte)keyword;
+        }
+    }
+
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final long ONES = 0x0101010101010101L;
+
+    private static final long HIGH_BITS = 0x8080808080808080L;
+
+    /**
+     * Identify the keyword which can start at a position between objects: all keywords but
+     * <code>endstream</code>.
+     * 
+     * @return the keyword, {@link #NONE} if there is none
+     */
+    public static int match(IByteSource data, long cursor) {
+        int keyword = TOP_LEVEL[data.get(cursor) & 0xFF];
+        return keyword != NONE && isKeyword(data, cursor, keyword) ? keyword: NONE;
+    }
+
+    public static boolean isKeyword(IByteSource data, long cursor, int keyword) {
+        switch(keyword) {
+        case OBJ:
+            return PdfSpecialCharacters.isStartObj(data, cursor);
+        case ENDSTREAM:
+            return PdfSpecialCharacters.isEndStream(data, cursor);
+        case TRAILER:
+            return PdfSpecialCharacters.isStartTrailer(data, cursor);
+        case XREF:
+            return PdfSpecialCharacters.isXref(data, cursor);
+        case STARTXREF:
+            return PdfSpecialCharacters.isStartXref(data, cursor);
+        case EOF:
+            return PdfSpecialCharacters.isEOF(data, cursor);
+        default:
+            return false;
+        }
+    }
+
+    /**
+     * Search for the first occurrence of a keyword.
+     * 
+     * @return position of the keyword, or the end of data if not found
+     */
+    public static long indexOf(IByteSource data, long from, int keyword) {
+        return indexOf(data, from, data.length(), keyword);
+    }
+
+    /**
+     * Search for the first occurrence of a keyword starting before a position.
+     * 
+     * @return position of the keyword, or to if not found
+     */
+    public static long indexOf(IByteSource data, long from, long to, int keyword) {
+        byte first = KEYWORDS[keyword][0];
+        long pattern = (first & 0xFFL) * ONES;
+        long length = Math.min(to, data.length());
+        for(long position = from; position < length; position += CHUNK_SIZE) {
+            int size = (int)Math.min(CHUNK_SIZE, length - position);
+            ByteBuffer chunk = data.getByteBuffer(position, size);
+            int i = 0;
+            for(; i + 8 <= size; i += 8) {
+                long word = chunk.getLong(i) ^ pattern;
+                if(((word - ONES) & ~word & HIGH_BITS) != 0) {
+                    // some byte of the word may be the first byte of the keyword
+                    for(int j = i; j < i + 8; j++) {
+                        if(chunk.get(j) == first && isKeyword(data, position + j, keyword)) {
+                            return position + j;
+                        }
+                    }
+                }
+            }
+            for(; i < size; i++) {
+                if(chunk.get(i) == first && isKeyword(data, position + i, keyword)) {
+                    return position + i;
+                }
+            }
+        }
+        return Math.max(from, to);
+    }
+
+}
@@ -0,0 +1,297 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+/**
+ * Table-driven tokenizer of the object grammar. Bytes are classified through a 256-entry table and
+ * a token is described by its kind and its span in the source, so that no String is built while
+ * scanning. Bare tokens (names, numbers, keywords) are classified in the same pass, and the value
+ * of integers is computed on the way.
+ * <p>
+ * A lexer holds the last scanned token only and can be reused for successive tokens.
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfLexer {
+
+    /** Character classes */
+    public static final int REGULAR = 0;
+    public static final int WHITESPACE = 1;
+    public static final int DELIMITER = 2;
+
+    /** Token kinds */
+    public static final int NONE = 0;
+    public static final int DICT_START = 1;
+    public static final int DICT_END = 2;
+    public static final int ARRAY_START = 3;
+    public static final int ARRAY_END = 4;
+    public static final int STRING_START = 5;
+    public static final int HEX_STRING_START = 6;
+    public static final int COMMENT = 7;
+    /** Bare tokens: a run of regular characters, see {@link #scanBare(IByteSource, long)} */
+    public static final int NAME = 8;
+    public static final int INTEGER = 9;
+    public static final int REAL = 10;
+    public static final int KEYWORD = 11;
+
+    private static final byte[] CLASSES = new byte[256];
+
+    static {
+        for(byte b: new byte[]{0x00, 0x09, 0x0A, 0x0C, 0x0D, 0x20}) {
+            CLASSES[b & 0xFF] = WHITESPACE;
+        }
+        for(byte b: "()<>[]{}/%".getBytes()) {
+            CLASSES[b & 0xFF] = DELIMITER;
+        }
+    }
+
+    private int kind = NONE;
+
+    private long start;
+
+    private long end;
+
+    private long integerValue;
+
+    private boolean longRange;
+
+    private boolean unsigned;
+
+    private boolean canonical;
+
+    public static int classOf(byte b) {
+        return CLASSES[b & 0xFF];
+    }
+
+    public static boolean isWhitespace(byte b) {
+        return CLASSES[b & 0xFF] == WHITESPACE;
+    }
+
+    public static boolean isDelimiter(byte b) {
+        return CLASSES[b & 0xFF] == DELIMITER;
+    }
+
+    public static boolean isRegular(byte b) {
+        return CLASSES[b & 0xFF] == REGULAR;
+    }
+
+    /**
+     * @return the first position from cursor which is not a whitespace, or the data length
+     */
+    public static long skipWhitespaces(IByteSource data, long cursor) {
+        long length = data.length();
+        while(cursor < length && isWhitespace(data.get(cursor))) {
+            cursor++;
+        }
+        return cursor;
+    }
+
+    /**
+     * Scan the token starting at cursor. Only the opening bytes of strings are scanned: strings
+     * have their own grammar, see {@link com.pnf.plugin.pdf.obj.PdfString}.
+     * 
+     * @return the token kind, {@link #NONE} if cursor is out of data
+     */
+    public int scan(IByteSource data, long cursor) {
+        start = cursor;
+        end = cursor;
+        if(cursor >= data.length()) {
+            kind = NONE;
+            return kind;
+        }
+        switch(data.get(cursor)) {
+        case '<':
+            if(cursor + 1 < data.length() && data.get(cursor + 1) == '<') {
+                end = cursor + 1;
+                kind = DICT_START;
+            }
+            else {
+                kind = HEX_STRING_START;
+            }
+            return kind;
+        case '>':
+            if(cursor + 1 < data.length() && data.get(cursor + 1) == '>') {
+                end = cursor + 1;
+                kind = DICT_END;
+                return kind;
+            }
+            return scanBare(data, cursor);
+        case '[':
+            kind = ARRAY_START;
+            return kind;
+        case ']':
+            kind = ARRAY_END;
+            return kind;
+        case '(':
+            kind = STRING_START;
+            return kind;
+        case '%':
+            kind = COMMENT;
+            return kind;
+        default:
+            return scanBare(data, cursor);
+        }
+    }
+
+    /**
+     * Scan a bare token: the byte at cursor, whatever its class, followed by all the regular bytes.
+     * 
+     * @return {@link #NAME} if the token starts with a slash, {@link #INTEGER} or {@link #REAL} for
+     *         an optional sign followed by digits with at most one dot, {@link #KEYWORD} otherwise
+     */
+    public int scanBare(IByteSource data, long cursor) {
+        start = cursor;
+        integerValue = 0;
+        longRange = true;
+        unsigned = true;
+        canonical = true;
+        long length = data.length();
+        if(cursor >= length) {
+            end = cursor;
+            kind = NONE;
+            return kind;
+        }
+        byte first = data.get(cursor);
+        boolean numeric = first != '/';
+        boolean negative = false;
+        boolean dot = false;
+        int digits = 0;
+        // accumulate negatively so that Long.MIN_VALUE is representable
+        long value = 0;
+        long i = cursor;
+        while(true) {
+            byte b = data.get(i);
+            if(!numeric) {
+                // only look for the end of the token
+            }
+            else if(b >= '0' && b <= '9') {
+                if(digits == 1 && value == 0) {
+                    canonical = false; // leading zero
+                }
+                digits++;
+                int digit = b - '0';
+                if(dot) {
+                    // fractional part
+                }
+                else if(value < (Long.MIN_VALUE + digit) / 10) {
+                    longRange = false;
+                }
+                else if(longRange) {
+                    value = value * 10 - digit;
+                }
+            }
+            else if(i == cursor && (b == '+' || b == '-')) {
+                negative = b == '-';
+                unsigned = false;
+                canonical = negative;
+            }
+            else if(b == '.' && !dot) {
+                dot = true;
+            }
+            else {
+                numeric = false;
+            }
+            if(i + 1 >= length || !isRegular(data.get(i + 1))) {
+                break;
+            }
+            i++;
+        }
+        end = i;
+        if(!numeric) {
+            kind = first == '/' ? NAME: KEYWORD;
+        }
+        else if(digits == 0) {
+            kind = KEYWORD;
+        }
+        else if(dot) {
+            kind = REAL;
+        }
+        else {
+            kind = INTEGER;
+            if(longRange && !negative) {
+                longRange = value != Long.MIN_VALUE;
+                value = -value;
+            }
+            integerValue = value;
+            canonical = canonical && longRange && !(negative && value == 0);
+        }
+        return kind;
+    }
+
+    public int getKind() {
+        return kind;
+    }
+
+    /**
+     * @return true if the token is a name, number or keyword
+     */
+    public boolean isBare() {
+        return kind >= NAME;
+    }
+
+    /**
+     * @return position of the first byte of the token
+     */
+    public long getStart() {
+        return start;
+    }
+
+    /**
+     * @return position of the last byte of the token
+     */
+    public long getEnd() {
+        return end;
+    }
+
+    public int getLength() {
+        return (int)(end - start + 1);
+    }
+
+    /**
+     * @return value of an {@link #INTEGER} token, if {@link #isLongRange()}
+     */
+    public long getIntegerValue() {
+        return integerValue;
+    }
+
+    public boolean isLongRange() {
+        return kind == INTEGER && longRange;
+    }
+
+    public boolean isIntRange() {
+        return isLongRange() && integerValue == (int)integerValue;
+    }
+
+    /**
+     * @return true for an {@link #INTEGER} made of digits only
+     */
+    public boolean isUnsigned() {
+        return kind == INTEGER && unsigned;
+    }
+
+    /**
+     * @return true for an {@link #INTEGER} whose text is the decimal representation of its value,
+     *         which can then be rebuilt from the value
+     */
+    public boolean isCanonical() {
+        return kind == INTEGER && canonical;
+    }
+
+}
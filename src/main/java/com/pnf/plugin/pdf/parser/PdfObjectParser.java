@@ -36,30 +36,48 @@ public class PdfObjectParser {
 
     private AbstractPdfParsableAttribute parent;
 
+    private final PdfLexer lexer = new PdfLexer();
+
+    /**
+     * @param parent container of the parsed objects. A parser can be reused for the successive
+     *            objects of a container.
+     */
     public PdfObjectParser(AbstractPdfParsableAttribute parent) {
         this.parent = parent;
     }
 
-    public int parse(byte[] data, int cursor) throws StartObjFoundException {
-        if(PdfDictionary.isStartToken(data, cursor)) {
+    public long parse(IByteSource data, long cursor) throws StartObjFoundException {
+        switch(lexer.scan(data, cursor)) {
+        case PdfLexer.DICT_START:
             attribute = new PdfDictionary(parent, cursor);
-        }
-        else if(PdfString.isStartToken(data, cursor)) {
+            break;
+        case PdfLexer.STRING_START:
+        case PdfLexer.HEX_STRING_START:
             attribute = new PdfString(parent, cursor);
-        }
-        else if(PdfArray.isStartToken(data, cursor)) {
+            break;
+        case PdfLexer.ARRAY_START:
             attribute = new PdfArray(parent, cursor);
-        }
-        else if(PdfSpecialCharacters.isComment(data[cursor])) {
+            break;
+        case PdfLexer.COMMENT:
+            attribute = null;
             return PdfComment.skipCommentsIfSome(data, cursor - 1);
-        }
-        else {
+        default:
             // boolean or number
-            attribute = new PdfAttributeValue(parent, cursor);
+            PdfAttributeValue value = new PdfAttributeValue(parent, cursor);
+            attribute = value;
+            return value.parse(data, lexer);
         }
         return attribute.parse(data, cursor);
     }
 
+    /**
+     * @return lexer of the parser, free to use between two calls to
+     *         {@link #parse(IByteSource, long)}
+     */
+    public PdfLexer getLexer() {
+        return lexer;
+    }
+
     public IPdfAttribute getPdfAttribute() throws StartObjFoundException {
         return attribute != null ? attribute.getPdfAttribute(): null;
     }
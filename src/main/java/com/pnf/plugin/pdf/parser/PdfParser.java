@@ -22,16 +22,25 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.function.BooleanSupplier;
 
 import com.pnf.plugin.pdf.PdfFileUnit;
 import com.pnf.plugin.pdf.PdfStatistics;
 import com.pnf.plugin.pdf.PdfStatistics.SuspiciousType;
+import com.pnf.plugin.pdf.filter.FlateDecode;
+import com.pnf.plugin.pdf.filter.OutputLimit;
 import com.pnf.plugin.pdf.obj.IPdfAttribute;
 import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
 import com.pnf.plugin.pdf.obj.PdfArray;
@@ -59,6 +68,9 @@ import com.pnfsoftware.jeb.util.logging.ILogger;
 public class PdfParser {
     private static final ILogger logger = GlobalLog.getLogger(PdfParser.class);
 
+    /** Maximum number of objects whose strings are decrypted by a same task */
+    private static final int STRING_DECRYPTION_BATCH = 256;
+
     private String version = "";
 
     /** Master streams to be displayed (all except /Extends ones) */
@@ -75,23 +87,57 @@ public class PdfParser {
     /** Objects displayed in simple view: all elements encountered with stream filtered */
     private List<Object> simpleView = new ArrayList<>();
 
+    /** Locate objects from the xref sections instead of scanning the whole file */
+    private boolean xrefParsing;
+
+    /**
+     * In xref mode, scan the file for objects not listed in xref sections. Off by default: the scan
+     * reads every byte outside the listed objects, as costly as the full file scan.
+     */
+    private boolean xrefReportUnlisted;
+
+    /** Maximum number of threads used to expand ObjStm streams and decode streams */
+    private int parallelism = Runtime.getRuntime().availableProcessors();
+
+    /** Worker pool, created on first use and shut down at the end of {@link #parse(IByteSource)} */
+    private ForkJoinPool pool;
+
     public PdfParser(PdfFileUnit unit) {
         this.unit = unit;
     }
 
     /**
      * Parse Bytes representing a PDF. Once an object is detected, it is processed in
-     * {@link IPdfParsable#parse(byte[], int)}
+     * {@link IPdfParsable#parse(IByteSource, long)}
      */
     public void parse(InputStream data) throws IOException {
-        parseBytes(data);
+        parse(new HeapByteSource(IO.readInputStream(data)));
+    }
+
+    /**
+     * Parse a PDF from a (possibly memory-mapped) byte source. Once an object is detected, it is
+     * processed in {@link IPdfParsable#parse(IByteSource, long)}
+     */
+    public void parse(IByteSource data) throws IOException {
+        if(!xrefParsing || !parseFromXref(data)) {
+            parseBytes(data);
+        }
         logger.debug("PDF Ojbect parsing terminated. Parsing streams...");
         PdfStatistics statistics = unit.getStatistics();
         statistics.setVersion(version);
-        statistics.setNbIndirectObjects(unit.getObjects().size());
+        statistics.setNbIndirectObjects(getNbFileObjects());
 
-        processObjStm();
-        processDecryptionAndDecoding();
+        try {
+            processObjStm();
+            processDecryptionAndDecoding();
+        }
+        finally {
+            if(pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
+            FlateDecode.releasePooledResources();
+        }
         statistics.setNbStreams(streams.size());
         statistics.setNbStreamedObjects(unit.getObjects().size() - statistics.getNbIndirectObjects());
         processFuntional();
@@ -100,40 +146,126 @@ public class PdfParser {
         logger.debug("Found %d indirect objects", unit.getObjects().size());
     }
 
-    private void parseBytes(InputStream input) throws IOException {
-        int cursor = 0;
-        byte[] data = IO.readInputStream(input);
-        // Map<PdfObjId, PdfIndirectObj> objects = new TreeMap<PdfObjId, PdfIndirectObj>();
+    public void setXrefParsing(boolean xrefParsing) {
+        this.xrefParsing = xrefParsing;
+    }
+
+    public void setXrefReportUnlisted(boolean xrefReportUnlisted) {
+        this.xrefReportUnlisted = xrefReportUnlisted;
+    }
+
+    public void setParallelism(int parallelism) {
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Xref-indexed parsing: objects are located with the xref sections instead of scanning the whole
+     * file, and references met while parsing an object are loaded first (see {@link PdfXrefLoader}).
+     * All listed objects are materialized: the passes over the whole document are the same as after
+     * a scan.
+     * 
+     * @return false if xref sections are unusable, the full file scan must be used instead
+     */
+    private boolean parseFromXref(IByteSource data) {
+        readVersion(data);
+        PdfXrefLoader loader = new PdfXrefLoader(unit, data, trailerCount);
+        unit.setObjectLoader(loader);
+        try {
+            // statistics of the xref sections are dropped when the whole file is scanned instead
+            List<Runnable> previous = PdfStatistics.beginDeferredUpdates();
+            boolean usable;
+            List<Runnable> updates;
+            try {
+                usable = loader.readXrefChain();
+            }
+            finally {
+                updates = PdfStatistics.endDeferredUpdates(previous);
+            }
+            if(!usable) {
+                logger.warn("Xref sections are unusable: scanning the whole file");
+                unit.getObjects().clear();
+                unit.getTrailers().clear();
+                return false;
+            }
+            PdfStatistics.applyDeferredUpdates(updates);
+            loader.loadAll();
+        }
+        finally {
+            unit.setObjectLoader(null);
+        }
+        trailerCount = loader.getTrailerCount();
+
+        List<PdfIndirectObj> elements = new ArrayList<>(loader.getLoadedObjects());
+        elements.addAll(loader.getTrailers());
+        Collections.sort(elements, Comparator.comparingLong(PdfIndirectObj::getStartIndex));
+        simpleView.addAll(elements);
+
+        if(xrefReportUnlisted && !loader.getTrailers().isEmpty()) {
+            List<PdfIndirectObj> unlisted = loader.findUnlistedObjects();
+            for(PdfIndirectObj o: unlisted) {
+                unit.getStatistics().addUnlistedObject(o.getStartIndex(), o.getId());
+            }
+            if(!unlisted.isEmpty()) {
+                unit.getStatistics().addUnitNotification(loader.getTrailers().get(0), SuspiciousType.Malformed,
+                        String.format("%d objects are not listed in xref sections", unlisted.size()));
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of objects defined in the file (excluding the ones contained in ObjStm)
+     */
+    private int getNbFileObjects() {
+        int nbObjects = 0;
+        for(Entry<PdfObjId, PdfFile> objectEntrySet: unit.getObjects().entrySet()) {
+            PdfIndirectObj o = objectEntrySet.getValue().getObject(objectEntrySet.getKey());
+            if(o == null || o.getType() != Type.IndirectObjectStream) {
+                nbObjects++;
+            }
+        }
+        return nbObjects;
+    }
+
+    private long readVersion(IByteSource data) {
+        long cursor = 0;
         // retrieve PDF Version
-        if(data.length > 8 && PdfSpecialCharacters.isComment(data[0])) {
+        if(data.length() > 8 && PdfSpecialCharacters.isComment(data.get(0))) {
             // optional PDF version header
-            if(data[1] == 'P' && data[2] == 'D' && data[3] == 'F' && data[4] == '-') {
+            if(data.get(1) == 'P' && data.get(2) == 'D' && data.get(3) == 'F' && data.get(4) == '-') {
                 StringBuilder v = new StringBuilder();
-                for(cursor = 5; cursor < data.length && !PdfSpecialCharacters.isEndComment(data, cursor); cursor++) {
-                    v.append((char)data[cursor]);
+                for(cursor = 5; cursor < data.length() && !PdfSpecialCharacters.isEndComment(data, cursor); cursor++) {
+                    v.append((char)data.get(cursor));
                 }
                 version = v.toString();
             }
         }
+        return cursor;
+    }
+
+    private void parseBytes(IByteSource data) throws IOException {
+        long cursor = readVersion(data);
 
         PdfFile file = new PdfFile(unit);
         List<PdfAttributeValue> nonProcessedAttributes = new ArrayList<>();
-        int xrefStart = -1;
-        for(; cursor < data.length; cursor++) {
-            if(PdfSpecialCharacters.isSeparator(data[cursor])) {
+        long xrefStart = -1;
+        for(; cursor < data.length(); cursor++) {
+            int keyword = PdfKeywordScanner.match(data, cursor);
+            if(PdfSpecialCharacters.isSeparator(data.get(cursor))) {
                 // ignore spacings
+                cursor = PdfLexer.skipWhitespaces(data, cursor) - 1;
             }
-            else if(PdfSpecialCharacters.isEOF(data, cursor)) {
+            else if(keyword == PdfKeywordScanner.EOF) {
                 cursor = cursor + PdfSpecialCharacters.EOF.length;
                 postProcessDictionaries(file);
                 file = new PdfFile(unit);
                 xrefStart = -1;
                 simpleView.add(new String(PdfSpecialCharacters.EOF));
             }
-            else if(PdfSpecialCharacters.isComment(data[cursor])) {
+            else if(PdfSpecialCharacters.isComment(data.get(cursor))) {
                 cursor = PdfComment.skipCommentsIfSome(data, cursor - 1);
             }
-            else if(PdfSpecialCharacters.isStartObj(data, cursor)) {
+            else if(keyword == PdfKeywordScanner.OBJ) {
                 try {
                     PdfIndirectObj o = new PdfIndirectObj(file, unit, cursor);
                     cursor = o.parse(data, cursor, nonProcessedAttributes);
@@ -146,13 +278,13 @@ public class PdfParser {
                     logger.error("Error while parsing obj at address %x", cursor);
                 }
             }
-            else if(PdfSpecialCharacters.isXref(data, cursor)) {
+            else if(keyword == PdfKeywordScanner.XREF) {
                 xrefStart = cursor;
-                while(cursor + 1 < data.length && isXrefChar(data[cursor + 1])) {
+                while(cursor + 1 < data.length() && isXrefChar(data.get(cursor + 1))) {
                     cursor++;
                 }
             }
-            else if(PdfSpecialCharacters.isStartXref(data, cursor)) {
+            else if(keyword == PdfKeywordScanner.STARTXREF) {
                 cursor = cursor + PdfSpecialCharacters.XREF_START_SEPARATOR.length;
                 PdfAttributeValue value = new PdfAttributeValue(null, cursor);
                 cursor = value.parseNexToken(data, cursor);
@@ -160,7 +292,7 @@ public class PdfParser {
                     IPdfAttribute startxref = value.getPdfAttribute();
                     simpleView.add(new String(PdfSpecialCharacters.XREF_START_SEPARATOR) + " " + startxref.toString());
                     if(startxref.getType() == Type.Number) {
-                        int startxrefPos = ((PdfNumber)startxref).intValue();
+                        long startxrefPos = ((PdfNumber)startxref).longValue();
                         if(startxrefPos != 0) {
                             file.setStartXref(unit.getTrailers().get(startxrefPos));
                         }
@@ -170,9 +302,9 @@ public class PdfParser {
                     logger.catching(e);
                 }
             }
-            else if(PdfSpecialCharacters.isStartTrailer(data, cursor)) {
+            else if(keyword == PdfKeywordScanner.TRAILER) {
                 try {
-                    int startIndex = xrefStart == -1 ? cursor: xrefStart;
+                    long startIndex = xrefStart == -1 ? cursor: xrefStart;
                     PdfTrailer o = new PdfTrailer(file, unit, startIndex, cursor, trailerCount);
                     cursor = o.parse(data, cursor);
                     file.putObject(o.getId(), o);
@@ -251,6 +383,41 @@ public class PdfParser {
      * /filter can be an indirect reference to an object which is still not processed.
      */
     private void processDecryptionAndDecoding() {
+        // decode all streams on the worker pool, then merge in object order
+        Map<PdfStream, StreamDecodingTask> tasks = new IdentityHashMap<>();
+        List<StreamDecodingTask> orderedTasks = new ArrayList<>();
+        Set<PdfStream> referencedStreams = Collections.newSetFromMap(new IdentityHashMap<>());
+        for(Entry<PdfObjId, PdfFile> objectEntrySet: unit.getObjects().entrySet()) {
+            PdfIndirectObj o = objectEntrySet.getValue().getObject(objectEntrySet.getKey());
+            IPdfAttribute attribute = o.getAttribute();
+            if(attribute != null && attribute.getType() == Type.Stream) {
+                PdfStream stream = (PdfStream)attribute;
+                StreamDecodingTask task = new StreamDecodingTask(stream);
+                tasks.put(stream, task);
+                orderedTasks.add(task);
+                try {
+                    // encryption is lazily initialized per file: do it before forking
+                    stream.isEncrypted();
+                    collectReferencedStreams(stream.getAttribute("/DecodeParms"), referencedStreams, 0);
+                }
+                catch(Exception e) {
+                    // reported when the stream is decoded
+                }
+            }
+        }
+        // streams used as decoding parameters (e.g. /JBIG2Globals) are decoded on demand by their
+        // users: decode them first so that no stream is decoded by two workers at once
+        List<DeferredTask> dependencies = new ArrayList<>();
+        List<DeferredTask> others = new ArrayList<>();
+        for(StreamDecodingTask task: orderedTasks) {
+            (referencedStreams.contains(task.stream) ? dependencies: others).add(task);
+        }
+        // strings are decrypted while the other streams are decoded
+        Map<PdfIndirectObj, StringDecryptionTask> stringTasks = createStringDecryptionTasks();
+        others.addAll(new LinkedHashSet<>(stringTasks.values()));
+        runTasks(dependencies);
+        runTasks(others);
+
         for(Entry<PdfObjId, PdfFile> objectEntrySet: unit.getObjects().entrySet()) {
             PdfFile file = objectEntrySet.getValue();
             PdfIndirectObj o = file.getObject(objectEntrySet.getKey());
@@ -259,10 +426,12 @@ public class PdfParser {
                 case Stream:
                     PdfStream stream = (PdfStream)o.getAttribute();
 
-                    stream.checkSize();
-
-                    // decrypt
-                    stream.decodeStream();
+                    // check size + decrypt, already done by the task
+                    StreamDecodingTask task = tasks.get(stream);
+                    task.merge();
+                    if(task.error != null) {
+                        throw task.error;
+                    }
 
                     if(!stream.isObjStmExtends()) {
                         // extends streams are bound to their parent stream,
@@ -274,22 +443,80 @@ public class PdfParser {
                     break;
                 }
 
+                StringDecryptionTask stringTask = stringTasks.get(o);
+                if(stringTask != null) {
+                    // strings decrypted by the task
+                    stringTask.merge(o);
+                }
+            }
+            catch(Exception e) {
+                logger.catching(e);
+            }
+        }
+    }
+
+    /**
+     * Split the objects of encrypted files in string decryption tasks. A task decrypts a range of
+     * objects of a same file: they share its decrypter, and keys are derived per object.
+     * 
+     * @return the tasks by object
+     */
+    private Map<PdfIndirectObj, StringDecryptionTask> createStringDecryptionTasks() {
+        Map<PdfIndirectObj, StringDecryptionTask> tasks = new IdentityHashMap<>();
+        Map<PdfFile, StringDecryptionTask> lastTasks = new IdentityHashMap<>();
+        for(Entry<PdfObjId, PdfFile> objectEntrySet: unit.getObjects().entrySet()) {
+            PdfFile file = objectEntrySet.getValue();
+            PdfIndirectObj o = file.getObject(objectEntrySet.getKey());
+            try {
+                // encryption is lazily initialized per file: do it before forking
                 if(o.getType() == Type.IndirectObject && file.getStringDecrypt() != null
                         && !o.getId().equals(file.getEncryptDictionary().getId())) {
                     // when encryption is set, decrypt all string except /U and /O
                     // TODO can also be indirect references? Need to manage this
-                    file.getStringDecrypt().browseElement(o.getAttribute(), null);
+                    StringDecryptionTask task = lastTasks.get(file);
+                    if(task == null || task.objects.size() == STRING_DECRYPTION_BATCH) {
+                        task = new StringDecryptionTask(file.getStringDecrypt());
+                        lastTasks.put(file, task);
+                    }
+                    task.objects.add(o);
+                    tasks.put(o, task);
                 }
             }
             catch(Exception e) {
                 logger.catching(e);
             }
         }
+        return tasks;
+    }
+
+    private static void collectReferencedStreams(IPdfAttribute attribute, Set<PdfStream> referencedStreams,
+            int depth) {
+        if(attribute == null || depth > 2) {
+            return;
+        }
+        switch(attribute.getType()) {
+        case Array:
+            for(IPdfAttribute element: ((PdfArray)attribute).getAttributes()) {
+                collectReferencedStreams(PdfDictionary.retrieveDirectObject(element), referencedStreams, depth + 1);
+            }
+            break;
+        case Dictionary:
+            for(PdfDictionaryAttribute entry: ((PdfDictionary)attribute).getAttributes()) {
+                collectReferencedStreams(PdfDictionary.retrieveDirectObject(entry.getValue()), referencedStreams,
+                        depth + 1);
+            }
+            break;
+        case Stream:
+            referencedStreams.add((PdfStream)attribute);
+            break;
+        default:
+            break;
+        }
     }
 
     private void processObjStm() {
         // Unpack ObjStm streams first in case they contains necessary data for other objects
-        Map<PdfObjId, PdfFile> createdObjects = new TreeMap<>();
+        List<ObjStmTask> tasks = new ArrayList<>();
         for(Entry<PdfObjId, PdfFile> objectEntrySet: unit.getObjects().entrySet()) {
             PdfIndirectObj o = objectEntrySet.getValue().getObject(objectEntrySet.getKey());
             try {
@@ -303,40 +530,11 @@ public class PdfParser {
                         extendsAttribute.addExtendedBy(o);
                     }
 
-                    // decode objStm
-                    if(stream.isObjStm()) {
-                        // decrypt
-                        stream.decodeStream();
-                        if(stream.getDecodedData().length > 0) {
-                            // parse sub object
-                            byte[] data = ((PdfStream)o.getAttribute()).getDecodedData();
-                            int n = Integer.valueOf(stream.getAttribute("/N").toString());
-                            int firstOffset = Integer.valueOf(stream.getAttribute("/First").toString());
-                            int idCursor = 0;
-                            for(int i = 0; i < n; i++) {
-                                // parse id
-                                PdfAttributeValue pdfValue = new PdfAttributeValue(stream, 0);
-                                idCursor = pdfValue.parseNexToken(data, idCursor) + 1;
-                                IPdfAttribute objNumber = PdfIndirectReference
-                                        .retrieveDirectObject(pdfValue.getPdfAttribute());
-
-                                // start offset
-                                pdfValue = new PdfAttributeValue(stream, 0);
-                                idCursor = pdfValue.parseNexToken(data, idCursor) + 1;
-                                IPdfAttribute startOffset = PdfIndirectReference
-                                        .retrieveDirectObject(pdfValue.getPdfAttribute());
-
-                                int startIndex = firstOffset + Integer.valueOf(startOffset.toString());
-                                PdfFile file = objectEntrySet.getValue();
-                                PdfIndirectOjbStm newobj = new PdfIndirectOjbStm(file, unit, startIndex);
-                                newobj.parse(data, startIndex, objNumber.toString());
-
-                                file.putObject(newobj.getId(), newobj);
-                                createdObjects.put(newobj.getId(), file);
-
-                                stream.addObjStmChild(newobj);
-                            }
-                        }
+                    // decode objStm (unless already expanded by the xref loader)
+                    if(stream.isObjStm() && stream.getObjStmList().isEmpty()) {
+                        // encryption is lazily initialized per file: do it before forking
+                        stream.isEncrypted();
+                        tasks.add(new ObjStmTask(o, objectEntrySet.getValue(), stream));
                     }
                     break;
                 default:
@@ -344,18 +542,205 @@ public class PdfParser {
                 }
             }
             catch(Exception e) {
-                logger.catching(e);
-                logger.error("Unable to parse Stream %s, an error occurred during parsing ObjStm: %s", o.getId(),
-                        e.getMessage());
-                if(o.getAttribute() != null) {
-                    unit.getStatistics().addUnitNotification(o.getAttribute(), SuspiciousType.MalformedStream,
-                            String.format("Unable to parse Stream/ObjStm stream"), e);
-                }
+                reportObjStmError(o, e);
+            }
+        }
+
+        runTasks(tasks);
+
+        // merge in the serial order so that objects and notifications do not depend on scheduling
+        Map<PdfObjId, PdfFile> createdObjects = new TreeMap<>();
+        for(ObjStmTask task: tasks) {
+            task.merge();
+            if(task.error != null) {
+                reportObjStmError(task.obj, task.error);
+                continue;
+            }
+            for(PdfIndirectOjbStm newobj: task.children) {
+                task.file.putObject(newobj.getId(), newobj);
+                createdObjects.put(newobj.getId(), task.file);
+
+                task.stream.addObjStmChild(newobj);
             }
         }
         unit.getObjects().putAll(createdObjects);
     }
 
+    /**
+     * Run independent tasks on the worker pool (inline when there is nothing to share) and wait for
+     * their completion.
+     */
+    private void runTasks(List<? extends DeferredTask> tasks) {
+        if(tasks.size() < 2 || parallelism < 2) {
+            for(DeferredTask task: tasks) {
+                task.invoke();
+            }
+            return;
+        }
+        if(pool == null) {
+            pool = new ForkJoinPool(parallelism);
+        }
+        pool.invoke(new RecursiveAction() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected void compute() {
+                invokeAll(tasks);
+            }
+        });
+    }
+
+    private void reportObjStmError(PdfIndirectObj o, Exception e) {
+        logger.catching(e);
+        logger.error("Unable to parse Stream %s, an error occurred during parsing ObjStm: %s", o.getId(),
+                e.getMessage());
+        if(o.getAttribute() != null) {
+            unit.getStatistics().addUnitNotification(o.getAttribute(), SuspiciousType.MalformedStream,
+                    String.format("Unable to parse Stream/ObjStm stream"), e);
+        }
+    }
+
+    /**
+     * Unit of work run on the worker pool. Statistics updates and decoded size charges are recorded
+     * instead of being applied, {@link #merge()} replays them from the parsing thread in a
+     * deterministic order.
+     */
+    private abstract static class DeferredTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private List<Runnable> deferredUpdates = Collections.emptyList();
+
+        private List<BooleanSupplier> deferredCharges = Collections.emptyList();
+
+        protected Exception error;
+
+        @Override
+        protected final void compute() {
+            List<Runnable> previous = PdfStatistics.beginDeferredUpdates();
+            List<BooleanSupplier> previousCharges = OutputLimit.beginDeferredCharges();
+            try {
+                run();
+            }
+            catch(Exception e) {
+                error = e;
+            }
+            finally {
+                deferredCharges = OutputLimit.endDeferredCharges(previousCharges);
+                deferredUpdates = PdfStatistics.endDeferredUpdates(previous);
+            }
+        }
+
+        protected abstract void run() throws Exception;
+
+        void merge() {
+            if(!OutputLimit.applyDeferredCharges(deferredCharges)) {
+                // a stream exceeds the budget left by the previous ones: run again, the stream being
+                // decoded under that ceiling, and drop the updates of the first run
+                error = null;
+                compute();
+                OutputLimit.applyDeferredCharges(deferredCharges);
+            }
+            deferredCharges = Collections.emptyList();
+            PdfStatistics.applyDeferredUpdates(deferredUpdates);
+            deferredUpdates = Collections.emptyList();
+        }
+    }
+
+    /**
+     * Decode an ObjStm and parse its children. Children are registered by
+     * {@link PdfParser#processObjStm()}.
+     */
+    private class ObjStmTask extends DeferredTask {
+        private static final long serialVersionUID = 1L;
+
+        private final PdfIndirectObj obj;
+
+        private final PdfFile file;
+
+        private final PdfStream stream;
+
+        private List<PdfIndirectOjbStm> children = Collections.emptyList();
+
+        ObjStmTask(PdfIndirectObj obj, PdfFile file, PdfStream stream) {
+            this.obj = obj;
+            this.file = file;
+            this.stream = stream;
+        }
+
+        @Override
+        protected void run() throws Exception {
+            // decrypt
+            stream.decodeStream();
+            if(stream.getDecodedData().length > 0) {
+                // parse sub object
+                children = PdfIndirectOjbStm.parseObjStm(file, unit, stream);
+            }
+        }
+    }
+
+    /**
+     * Check size, decrypt and decode a stream.
+     */
+    private static class StreamDecodingTask extends DeferredTask {
+        private static final long serialVersionUID = 1L;
+
+        private final PdfStream stream;
+
+        StreamDecodingTask(PdfStream stream) {
+            this.stream = stream;
+        }
+
+        @Override
+        protected void run() {
+            stream.checkSize();
+            stream.decodeStream();
+        }
+    }
+
+    /**
+     * Decrypt the strings of objects of a file. Statistics updates are recorded per object, to be
+     * replayed with the other updates of the object.
+     */
+    private static class StringDecryptionTask extends DeferredTask {
+        private static final long serialVersionUID = 1L;
+
+        private final PdfStringDecrypter decrypter;
+
+        private final List<PdfIndirectObj> objects = new ArrayList<>();
+
+        private final Map<PdfIndirectObj, List<Runnable>> updates = new IdentityHashMap<>();
+
+        StringDecryptionTask(PdfStringDecrypter decrypter) {
+            this.decrypter = decrypter;
+        }
+
+        @Override
+        protected void run() {
+            for(PdfIndirectObj o: objects) {
+                List<Runnable> previous = PdfStatistics.beginDeferredUpdates();
+                try {
+                    decrypter.decryptStrings(o.getAttribute());
+                }
+                catch(Exception e) {
+                    logger.catching(e);
+                }
+                finally {
+                    List<Runnable> recorded = PdfStatistics.endDeferredUpdates(previous);
+                    if(!recorded.isEmpty()) {
+                        updates.put(o, recorded);
+                    }
+                }
+            }
+        }
+
+        void merge(PdfIndirectObj o) {
+            List<Runnable> recorded = updates.remove(o);
+            if(recorded != null) {
+                PdfStatistics.applyDeferredUpdates(recorded);
+            }
+        }
+    }
+
     private void processFuntional() {
         for(Entry<PdfObjId, PdfFile> objectEntrySet: unit.getObjects().entrySet()) {
             PdfIndirectObj o = objectEntrySet.getValue().getObject(objectEntrySet.getKey());
@@ -49,36 +49,36 @@ public class PdfSpecialCharacters {
 
     private static final ILogger logger = GlobalLog.getLogger(PdfSpecialCharacters.class);
 
-    public static boolean isSeparator(byte[] data, int cursor) {
-        if(cursor >= data.length) {
+    public static boolean isSeparator(IByteSource data, long cursor) {
+        if(cursor >= data.length()) {
             return true;
         }
-        return isSeparator(data[cursor]);
+        return isSeparator(data.get(cursor));
     }
 
     public static boolean isSeparator(byte b) {
-        return b == 0x00 || b == 0x09 || b == 0x0A || b == 0x0C || b == 0x0D || b == 0x20;
+        return PdfLexer.isWhitespace(b);
     }
 
-    public static int jumpSeparators(byte[] data, int cursor) {
-        while(isSeparator(data, cursor) && cursor < data.length) {
+    public static long jumpSeparators(IByteSource data, long cursor) {
+        while(isSeparator(data, cursor) && cursor < data.length()) {
             cursor++;
         }
         return cursor;
     }
 
-    public static int testEndLine(byte[] data, int cursor) {
-        if(cursor >= data.length) {
+    public static int testEndLine(IByteSource data, long cursor) {
+        if(cursor >= data.length()) {
             return 0;
         }
-        if(data[cursor] == 0x0A) {
+        if(data.get(cursor) == 0x0A) {
             return 1;
         }
-        else if(data[cursor] == 0x0D) {
-            if(cursor + 1 >= data.length) {
+        else if(data.get(cursor) == 0x0D) {
+            if(cursor + 1 >= data.length()) {
                 return 1; // end of stream
             }
-            else if(data[cursor + 1] == 0x0A) {
+            else if(data.get(cursor + 1) == 0x0A) {
                 return 2;
             }
             else {
@@ -88,39 +88,39 @@ public class PdfSpecialCharacters {
         return -1;
     }
 
-    public static int testPreviousEndLine(byte[] data, int cursor) {
+    public static int testPreviousEndLine(IByteSource data, long cursor) {
         if(cursor < 0) {
             return 0;
         }
-        if(data[cursor] == 0x0A) {
+        if(data.get(cursor) == 0x0A) {
             if(cursor == 0) {
                 return 1; // beginning of stream
             }
-            else if(data[cursor - 1] == 0x0D) {
+            else if(data.get(cursor - 1) == 0x0D) {
                 return 2;
             }
             else {
                 return 1;
             }
         }
-        if(data[cursor] == 0x0D) {
+        if(data.get(cursor) == 0x0D) {
             return 1;
         }
         return -1;
     }
 
-    public static boolean isChar(byte[] data, int cursor, char expected) {
-        if(cursor >= data.length) {
+    public static boolean isChar(IByteSource data, long cursor, char expected) {
+        if(cursor >= data.length()) {
             return false;
         }
-        return (char)data[cursor] == expected;
+        return (char)data.get(cursor) == expected;
     }
 
-    public static boolean isEndComment(byte[] data, int cursor) {
-        if(cursor >= data.length) {
+    public static boolean isEndComment(IByteSource data, long cursor) {
+        if(cursor >= data.length()) {
             return true;
         }
-        return isEndComment(data[cursor]);
+        return isEndComment(data.get(cursor));
     }
 
     public static boolean isEndComment(byte b) {
@@ -131,60 +131,59 @@ public class PdfSpecialCharacters {
         return b == 0x0A || b == 0x0D;
     }
 
-    public static boolean isDelimitorOrSeparator(byte[] data, int cursor) {
-        if(cursor >= data.length) {
+    public static boolean isDelimitorOrSeparator(IByteSource data, long cursor) {
+        if(cursor >= data.length()) {
             return true;
         }
-        return isDelimitor(data[cursor]) || isSeparator(data[cursor]);
+        return !PdfLexer.isRegular(data.get(cursor));
     }
 
     public static boolean isDelimitor(byte b) {
-        return b == '(' || b == ')' || b == '<' || b == '>' || b == '[' || b == ']' || b == '{' || b == '}' || b == '/'
-                || b == '%';
+        return PdfLexer.isDelimiter(b);
     }
 
     public static boolean isComment(byte b) {
         return b == '%';
     }
 
-    public static boolean isStartObj(byte[] data, int i) {
+    public static boolean isStartObj(IByteSource data, long i) {
         return isObj(data, i, OBJ_START_SEPARATOR, true);
     }
 
-    public static boolean isEndObj(byte[] data, int i) {
+    public static boolean isEndObj(IByteSource data, long i) {
         return isObj(data, i, OBJ_END_SEPARATOR, true);
     }
 
-    public static boolean isStartStream(byte[] data, int i) {
+    public static boolean isStartStream(IByteSource data, long i) {
         return isObj(data, i, STREAM_START_SEPARATOR, true);
     }
 
-    public static boolean isEndStream(byte[] data, int i) {
+    public static boolean isEndStream(IByteSource data, long i) {
         return isObj(data, i, STREAM_END_SEPARATOR, false);
     }
 
-    public static boolean isStartTrailer(byte[] data, int i) {
+    public static boolean isStartTrailer(IByteSource data, long i) {
         return isObj(data, i, TRAILER_START_SEPARATOR, true);
     }
 
-    public static boolean isStartXref(byte[] data, int i) {
+    public static boolean isStartXref(IByteSource data, long i) {
         return isObj(data, i, XREF_START_SEPARATOR, true);
     }
 
-    public static boolean isXref(byte[] data, int i) {
+    public static boolean isXref(IByteSource data, long i) {
         return isObj(data, i, XREF_SEPARATOR, true);
     }
 
-    public static boolean isEOF(byte[] data, int i) {
+    public static boolean isEOF(IByteSource data, long i) {
         return isObj(data, i, EOF, true);
     }
 
-    private static boolean isObj(byte[] data, int i, byte[] objSeparator, boolean previousCharShallBeSeparator) {
-        if(i + objSeparator.length > data.length) {
+    private static boolean isObj(IByteSource data, long i, byte[] objSeparator, boolean previousCharShallBeSeparator) {
+        if(i + objSeparator.length > data.length()) {
             return false;
         }
         for(int j = 0; j < objSeparator.length; j++) {
-            if(data[i + j] != objSeparator[j]) {
+            if(data.get(i + j) != objSeparator[j]) {
                 return false;
             }
         }
@@ -192,11 +191,39 @@ public class PdfSpecialCharacters {
             // the previous char in not separator => this is not the expected token
             return false;
         }
-        if(i + objSeparator.length <= data.length || isDelimitorOrSeparator(data, i + objSeparator.length)) {
+        if(i + objSeparator.length <= data.length() || isDelimitorOrSeparator(data, i + objSeparator.length)) {
             return true;
         }
         logger.error("%s is not at index %x", new String(objSeparator), i);
         return false;
     }
 
+    /**
+     * Search a byte pattern in a range of a byte array. The scan loops on the first pattern byte
+     * only, which is the cheap part the JIT can unroll, and compares the rest of the pattern on
+     * candidates.
+     * 
+     * @return the index of the first occurrence in [from, to), -1 if not found
+     */
+    public static int indexOf(byte[] data, int from, int to, byte[] pattern) {
+        if(pattern.length == 0) {
+            return from;
+        }
+        byte first = pattern[0];
+        int last = to - pattern.length;
+        for(int i = from; i <= last; i++) {
+            if(data[i] != first) {
+                continue;
+            }
+            int j = 1;
+            while(j < pattern.length && data[i + j] == pattern[j]) {
+                j++;
+            }
+            if(j == pattern.length) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
 }
@@ -18,19 +18,25 @@ limitations under the License.
 
 package com.pnf.plugin.pdf.parser;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import com.pnf.plugin.pdf.obj.IPdfAttribute;
 import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
 import com.pnf.plugin.pdf.obj.PdfDictionaryAttribute;
+import com.pnf.plugin.pdf.obj.PdfObjId;
 import com.pnf.plugin.pdf.obj.PdfString;
+import com.sun.pdfview.PDFParseException;
 import com.sun.pdfview.decrypt.PDFDecrypter;
 
 /**
- * 
+ * Decrypt the strings of an object. They are collected first, then decrypted together: the key of
+ * the object is derived once.
  * 
  * @author PNF Software
  *
  */
-public class PdfStringDecrypter extends PdfHierarchyProcessor<Object> {
+public class PdfStringDecrypter extends PdfHierarchyProcessor<List<PdfString>> {
 
     private PDFDecrypter decrypter;
 
@@ -38,35 +44,73 @@ public class PdfStringDecrypter extends PdfHierarchyProcessor<Object> {
         this.decrypter = decrypter;
     }
 
-    private void decryptString(PdfString attribute) {
-        attribute.decrypt(decrypter);
+    /**
+     * Decrypt the strings of an object, except those of the indirect objects it references.
+     */
+    public void decryptStrings(IPdfAttribute attribute) {
+        List<PdfString> strings = new ArrayList<>();
+        browseElement(attribute, strings);
+        int from = 0;
+        while(from < strings.size()) {
+            // strings of a same object share its key
+            PdfObjId id = strings.get(from).getId();
+            int to = from + 1;
+            while(to < strings.size() && strings.get(to).getId().equals(id)) {
+                to++;
+            }
+            decryptStrings(strings.subList(from, to), id);
+            from = to;
+        }
+    }
+
+    private void decryptStrings(List<PdfString> strings, PdfObjId id) {
+        String[] values = new String[strings.size()];
+        for(int i = 0; i < values.length; i++) {
+            values[i] = strings.get(i).getValue();
+        }
+        String[] decrypted;
+        try {
+            decrypted = decrypter.decryptStrings(id.getObjectNumber(), id.getGenerationNumber(), values);
+        }
+        catch(PDFParseException e) {
+            decrypted = new String[values.length];
+        }
+        for(int i = 0; i < decrypted.length; i++) {
+            if(decrypted[i] != null) {
+                strings.get(i).setDecryptedValue(decrypted[i]);
+            }
+            else {
+                // decrypt alone to report the error
+                strings.get(i).decrypt(decrypter);
+            }
+        }
     }
 
     @Override
-    public void processSimpleObject(IPdfAttribute attribute, Object t) {
+    public void processSimpleObject(IPdfAttribute attribute, List<PdfString> strings) {
         if(attribute.getType() == Type.String) {
-            decryptString((PdfString)attribute);
+            strings.add((PdfString)attribute);
         }
     }
 
     @Override
-    public void processIndirectReference(IPdfAttribute attribute, Object t) {
+    public void processIndirectReference(IPdfAttribute attribute, List<PdfString> strings) {
         // nothing to do
     }
 
     @Override
-    public boolean processArrayElement(IPdfAttribute attribute, int i, Object t) {
+    public boolean processArrayElement(IPdfAttribute attribute, int i, List<PdfString> strings) {
         if(attribute.getType() == Type.String) {
-            decryptString((PdfString)attribute);
+            strings.add((PdfString)attribute);
             return false;
         }
         return true;
     }
 
     @Override
-    public boolean processDictionaryAttribute(PdfDictionaryAttribute attribute, Object t) {
+    public boolean processDictionaryAttribute(PdfDictionaryAttribute attribute, List<PdfString> strings) {
         if(attribute.getValue().getType() == Type.String) {
-            decryptString((PdfString)attribute.getValue());
+            strings.add((PdfString)attribute.getValue());
             return false;
         }
         return true;
@@ -0,0 +1,138 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import com.pnf.plugin.pdf.obj.PdfObjId;
+
+/**
+ * Object offsets read from the xref sections of a file, keyed by {@link PdfObjId}. Sections must be
+ * added from the most recent to the oldest: the first entry registered for an id wins.
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfXrefIndex {
+
+    public static class Entry {
+        private final PdfFile file;
+        private final long offset;
+        private final int objStmNumber;
+        private final int objStmIndex;
+        /** position of the obj keyword, once checked, -1 if not found */
+        private long objCursor = -1;
+
+        /**
+         * Object located in file at the given offset
+         */
+        public Entry(PdfFile file, long offset) {
+            this(file, offset, -1, -1);
+        }
+
+        /**
+         * Object located in an ObjStm
+         */
+        public Entry(PdfFile file, int objStmNumber, int objStmIndex) {
+            this(file, -1, objStmNumber, objStmIndex);
+        }
+
+        private Entry(PdfFile file, long offset, int objStmNumber, int objStmIndex) {
+            this.file = file;
+            this.offset = offset;
+            this.objStmNumber = objStmNumber;
+            this.objStmIndex = objStmIndex;
+        }
+
+        /**
+         * @return the version of the file (xref section) which defines this object
+         */
+        public PdfFile getFile() {
+            return file;
+        }
+
+        public boolean isCompressed() {
+            return objStmNumber >= 0;
+        }
+
+        public long getOffset() {
+            return offset;
+        }
+
+        public int getObjStmNumber() {
+            return objStmNumber;
+        }
+
+        public int getObjStmIndex() {
+            return objStmIndex;
+        }
+
+        /**
+         * @return false for an in-file object whose obj definition was not found
+         */
+        public boolean isResolved() {
+            return isCompressed() || objCursor >= 0;
+        }
+
+        public long getObjCursor() {
+            return objCursor;
+        }
+
+        public void setObjCursor(long objCursor) {
+            this.objCursor = objCursor;
+        }
+    }
+
+    private Map<PdfObjId, Entry> entries = new LinkedHashMap<>();
+
+    /** offsets of all in-file objects, including the ones overridden by a more recent section */
+    private Set<Long> offsets = new HashSet<>();
+
+    public void put(PdfObjId id, Entry entry) {
+        if(!entries.containsKey(id)) {
+            entries.put(id, entry);
+        }
+    }
+
+    public Entry get(PdfObjId id) {
+        return entries.get(id);
+    }
+
+    public Map<PdfObjId, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Register the start address of an object which is listed in a xref section (in any revision).
+     */
+    public void addListedOffset(long offset) {
+        offsets.add(offset);
+    }
+
+    public boolean isListedOffset(long offset) {
+        return offsets.contains(offset);
+    }
+
+    public int size() {
+        return entries.size();
+    }
+}
@@ -0,0 +1,575 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+
+import com.pnf.plugin.pdf.PdfFileUnit;
+import com.pnf.plugin.pdf.PdfStatistics.SuspiciousType;
+import com.pnf.plugin.pdf.obj.IPdfAttribute;
+import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
+import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.obj.PdfIndirectObj;
+import com.pnf.plugin.pdf.obj.PdfIndirectOjbStm;
+import com.pnf.plugin.pdf.obj.PdfNumber;
+import com.pnf.plugin.pdf.obj.PdfObjId;
+import com.pnf.plugin.pdf.obj.PdfStream;
+import com.pnf.plugin.pdf.obj.PdfTrailer;
+import com.pnf.plugin.pdf.obj.PdfXref;
+import com.pnf.plugin.pdf.obj.PdfXref.Xref;
+import com.pnf.plugin.pdf.obj.PdfXref.XrefSubsection;
+import com.pnfsoftware.jeb.util.logging.GlobalLog;
+import com.pnfsoftware.jeb.util.logging.ILogger;
+
+/**
+ * Xref-indexed reader of a PDF file. It follows the startxref/xref/trailer chain (classic tables
+ * and XRef streams) to build a {@link PdfXrefIndex}, then parses the listed objects at their
+ * offsets, without scanning the rest of the file. A {@link PdfFile} is created for each xref
+ * section.
+ * <p>
+ * The index only replaces the scan, objects are not materialized lazily: {@link #loadAll()} parses
+ * every listed object up front, and the parser then expands ObjStm streams and decodes streams for
+ * the whole document, as after a scan. {@link #load(PdfObjId)} resolves the references met while
+ * parsing an object to objects not parsed yet, and is not used once parsing is over.
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfXrefLoader {
+    private static final ILogger logger = GlobalLog.getLogger(PdfXrefLoader.class);
+
+    /** Number of bytes searched for startxref, from the end of file */
+    private static final int STARTXREF_SEARCH_WINDOW = 4096;
+
+    /** Maximum distance between an xref offset and its obj keyword */
+    private static final int OBJ_HEADER_MAX_LENGTH = 64;
+
+    /** Number of bytes searched on each side of an xref offset which does not point to its object */
+    private static final int OFFSET_SEARCH_WINDOW = 1024;
+
+    private final PdfFileUnit unit;
+
+    private final IByteSource data;
+
+    private PdfXrefIndex index = new PdfXrefIndex();
+
+    /** Trailers, from the most recent section to the oldest */
+    private List<PdfTrailer> trailers = new ArrayList<>();
+
+    /** Versions of the file, from the most recent section to the oldest */
+    private List<PdfFile> files = new ArrayList<>();
+
+    /** XRef stream objects parsed while reading the chain, by obj keyword position */
+    private Map<Long, PdfIndirectObj> sectionObjects = new HashMap<>();
+
+    /** Objects materialized from the index */
+    private List<PdfIndirectObj> loadedObjects = new ArrayList<>();
+
+    /** Objects being loaded: protect against reference loops */
+    private Set<PdfObjId> loading = new HashSet<>();
+
+    private int trailerCount;
+
+    /** End of the last number read by {@link #readNumber(long)} */
+    private long numberEnd;
+
+    public PdfXrefLoader(PdfFileUnit unit, IByteSource data, int trailerCount) {
+        this.unit = unit;
+        this.data = data;
+        this.trailerCount = trailerCount;
+    }
+
+    /**
+     * Read all xref sections, from startxref and following /Prev. Entries which do not point to
+     * their object are relocated or left unresolved, see {@link #checkOffsets()}.
+     * 
+     * @return false if the xref sections can not be used to locate the objects
+     */
+    public boolean readXrefChain() {
+        long offset = findStartXref();
+        if(offset < 0) {
+            logger.warn("No startxref found");
+            return false;
+        }
+        Set<Long> visited = new HashSet<>();
+        while(offset >= 0) {
+            if(!visited.add(offset)) {
+                logger.warn("Loop in xref chain at address %x", offset);
+                break;
+            }
+            PdfFile file = new PdfFile(unit);
+            PdfTrailer trailer = readXrefSection(file, offset);
+            if(trailer == null) {
+                return false;
+            }
+            unit.getTrailers().put(offset, trailer);
+            trailers.add(trailer);
+            files.add(file);
+            offset = getOffset(trailer, "/Prev");
+        }
+        // as for startxref in full scan: the most recent trailer defines encryption for all versions
+        for(PdfFile file: files) {
+            file.setStartXref(trailers.get(0));
+        }
+        logger.debug("Xref sections list %d objects", index.size());
+        return checkOffsets();
+    }
+
+    private long findStartXref() {
+        long from = Math.max(0, data.length() - STARTXREF_SEARCH_WINDOW);
+        byte[] tail = data.getBytes(from, (int)(data.length() - from));
+        int last = -1;
+        for(int i = 0; (i = PdfSpecialCharacters.indexOf(tail, i, tail.length,
+                PdfSpecialCharacters.XREF_START_SEPARATOR)) >= 0; i++) {
+            last = i;
+        }
+        if(last < 0) {
+            return -1;
+        }
+        return readNumber(from + last + PdfSpecialCharacters.XREF_START_SEPARATOR.length);
+    }
+
+    private PdfTrailer readXrefSection(PdfFile file, long offset) {
+        if(offset >= data.length()) {
+            logger.error("Xref address %x is out of file", offset);
+            return null;
+        }
+        long cursor = PdfSpecialCharacters.jumpSeparators(data, offset);
+        if(PdfSpecialCharacters.isXref(data, cursor)) {
+            cursor = readXrefTable(file, cursor + PdfSpecialCharacters.XREF_SEPARATOR.length);
+            if(cursor < 0) {
+                return null;
+            }
+            PdfTrailer trailer = new PdfTrailer(file, unit, offset, cursor, trailerCount++);
+            trailer.parse(data, cursor);
+            file.putObject(trailer.getId(), trailer);
+            unit.getObjects().put(trailer.getId(), file);
+            file.setTrailer(trailer);
+
+            // hybrid file: compressed objects are listed in an additional XRef stream
+            long xrefStm = getOffset(trailer, "/XRefStm");
+            if(xrefStm >= 0) {
+                PdfStream stream = readXrefStream(file, xrefStm);
+                if(stream == null || !indexXrefStream(file, stream)) {
+                    logger.warn("Can not read /XRefStm at address %x", xrefStm);
+                }
+            }
+            return trailer;
+        }
+
+        PdfStream stream = readXrefStream(file, offset);
+        if(stream == null) {
+            logger.error("No xref found at address %x", offset);
+            return null;
+        }
+        // trailer must be set before decoding: it defines encryption
+        PdfTrailer trailer = new PdfTrailer(file, stream.getDictionary(), unit, trailerCount++);
+        file.putObject(trailer.getId(), trailer);
+        file.setTrailer(trailer);
+        return indexXrefStream(file, stream) ? trailer: null;
+    }
+
+    /**
+     * @return the cursor on the trailer keyword, -1 if the table is malformed
+     */
+    private long readXrefTable(PdfFile file, long cursor) {
+        while(true) {
+            cursor = PdfSpecialCharacters.jumpSeparators(data, cursor);
+            if(cursor >= data.length()) {
+                logger.error("No trailer after xref table");
+                return -1;
+            }
+            if(PdfSpecialCharacters.isStartTrailer(data, cursor)) {
+                return cursor;
+            }
+            long first = readNumber(cursor);
+            long count = readNumber(numberEnd);
+            if(first < 0 || count < 0) {
+                logger.error("Malformed xref subsection at address %x", cursor);
+                return -1;
+            }
+            cursor = numberEnd;
+            for(long i = 0; i < count; i++) {
+                long offset = readNumber(cursor);
+                long generation = readNumber(numberEnd);
+                cursor = PdfSpecialCharacters.jumpSeparators(data, numberEnd);
+                if(offset < 0 || generation < 0 || cursor >= data.length()) {
+                    logger.error("Malformed xref entry at address %x", cursor);
+                    return -1;
+                }
+                byte type = data.get(cursor++);
+                if(type == 'n') {
+                    index.put(new PdfObjId((int)(first + i), (int)generation, 0), new PdfXrefIndex.Entry(file, offset));
+                    index.addListedOffset(PdfSpecialCharacters.jumpSeparators(data, offset));
+                }
+                else if(type != 'f') {
+                    logger.error("Malformed xref entry at address %x", cursor - 1);
+                    return -1;
+                }
+            }
+        }
+    }
+
+    private PdfStream readXrefStream(PdfFile file, long offset) {
+        long objCursor = findObjKeyword(offset);
+        if(objCursor < 0) {
+            return null;
+        }
+        PdfIndirectObj o = new PdfIndirectObj(file, unit, objCursor);
+        o.parse(data, objCursor);
+        if(o.getAttribute() == null || o.getAttribute().getType() != Type.Stream) {
+            return null;
+        }
+        PdfStream stream = (PdfStream)o.getAttribute();
+        if(!"/XRef".equals(stream.getDictionary().getDictionaryType())) {
+            return null;
+        }
+        file.putObject(o.getId(), o);
+        sectionObjects.put(objCursor, o);
+        index.addListedOffset(o.getId().getStartAddress());
+        return stream;
+    }
+
+    private boolean indexXrefStream(PdfFile file, PdfStream stream) {
+        stream.decodeStream();
+        XrefSubsection[] subsections = PdfXref.populateReferences(stream);
+        if(subsections == null) {
+            return false;
+        }
+        for(XrefSubsection subsection: subsections) {
+            int objectNumber = subsection.getFirstObjectNumber();
+            for(Xref xref: subsection.getXrefs()) {
+                switch(xref.getType()) {
+                case 1:
+                    index.put(new PdfObjId(objectNumber, xref.getField3(), 0),
+                            new PdfXrefIndex.Entry(file, xref.getField2()));
+                    index.addListedOffset(PdfSpecialCharacters.jumpSeparators(data, xref.getField2()));
+                    break;
+                case 2:
+                    index.put(new PdfObjId(objectNumber, 0, 0),
+                            new PdfXrefIndex.Entry(file, (int)xref.getField2(), xref.getField3()));
+                    break;
+                default:
+                    // free object
+                    break;
+                }
+                objectNumber++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Check that every in-file entry points to the expected obj definition. An entry pointing
+     * elsewhere is relocated to the definition of its object found near its offset, if any, else it
+     * is left unresolved: the object is not loaded. Both are reported on the trailer of the section.
+     * 
+     * @return false if no in-file entry points to its object: the offsets do not describe this file
+     */
+    private boolean checkOffsets() {
+        Map<PdfFile, Integer> relocatedCounts = new LinkedHashMap<>();
+        int nbInFile = 0;
+        int nbUnresolved = 0;
+        for(Entry<PdfObjId, PdfXrefIndex.Entry> e: index.getEntries().entrySet()) {
+            PdfXrefIndex.Entry entry = e.getValue();
+            if(entry.isCompressed()) {
+                continue;
+            }
+            nbInFile++;
+            long objCursor = findObjKeyword(entry.getOffset());
+            PdfObjId id = objCursor < 0 ? null: PdfObjId.getObjId(data, objCursor);
+            if(id == null || !id.equals(e.getKey())) {
+                objCursor = searchObjKeyword(e.getKey(), entry.getOffset());
+                if(objCursor < 0) {
+                    logger.warn("Xref entry of object %s does not point to it (address %x)", e.getKey(),
+                            entry.getOffset());
+                    unit.getStatistics().addUnitNotification(getTrailer(entry.getFile()), SuspiciousType.Malformed,
+                            String.format("Object %s is not found at its xref address %X", e.getKey(),
+                                    entry.getOffset()));
+                    nbUnresolved++;
+                    continue;
+                }
+                id = PdfObjId.getObjId(data, objCursor);
+                relocatedCounts.merge(entry.getFile(), 1, Integer::sum);
+            }
+            entry.setObjCursor(objCursor);
+            index.addListedOffset(id.getStartAddress());
+        }
+        for(Entry<PdfFile, Integer> e: relocatedCounts.entrySet()) {
+            unit.getStatistics().addUnitNotification(getTrailer(e.getKey()), SuspiciousType.Malformed,
+                    String.format("%d xref entries do not point to their object", e.getValue()));
+        }
+        return nbInFile == 0 || nbUnresolved < nbInFile;
+    }
+
+    /**
+     * @return the position of the obj keyword of the definition of an object nearest to an address,
+     *         -1 if none within {@link #OFFSET_SEARCH_WINDOW} bytes
+     */
+    private long searchObjKeyword(PdfObjId id, long offset) {
+        long from = Math.max(0, offset - OFFSET_SEARCH_WINDOW);
+        long to = Math.min(data.length(), offset + OFFSET_SEARCH_WINDOW + OBJ_HEADER_MAX_LENGTH);
+        long nearest = -1;
+        long nearestDistance = Long.MAX_VALUE;
+        for(long cursor = from; cursor < to; cursor++) {
+            if(data.get(cursor) != PdfSpecialCharacters.OBJ_START_SEPARATOR[0]
+                    || !PdfSpecialCharacters.isStartObj(data, cursor)) {
+                continue;
+            }
+            PdfObjId found = PdfObjId.getObjId(data, cursor);
+            if(found != null && found.equals(id)) {
+                long distance = Math.abs(found.getStartAddress() - offset);
+                if(distance < nearestDistance) {
+                    nearest = cursor;
+                    nearestDistance = distance;
+                }
+            }
+        }
+        return nearestDistance <= OFFSET_SEARCH_WINDOW ? nearest: -1;
+    }
+
+    /**
+     * @return the trailer of a section
+     */
+    private PdfTrailer getTrailer(PdfFile file) {
+        return trailers.get(files.indexOf(file));
+    }
+
+    /**
+     * @return the position of the obj keyword following an object address, -1 if none
+     */
+    private long findObjKeyword(long offset) {
+        if(offset < 0 || offset >= data.length()) {
+            return -1;
+        }
+        long max = Math.min(data.length(), offset + OBJ_HEADER_MAX_LENGTH);
+        for(long cursor = offset; cursor < max; cursor++) {
+            byte b = data.get(cursor);
+            if(b == PdfSpecialCharacters.OBJ_START_SEPARATOR[0]) {
+                return PdfSpecialCharacters.isStartObj(data, cursor) ? cursor: -1;
+            }
+            if(!isDigit(b) && !PdfSpecialCharacters.isSeparator(b)) {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Parse an object listed in the xref sections.
+     * 
+     * @return the object, null if it is not listed or can not be parsed
+     */
+    public PdfIndirectObj load(PdfObjId id) {
+        PdfXrefIndex.Entry entry = index.get(id);
+        if(entry == null || !entry.isResolved() || !loading.add(id)) {
+            return null;
+        }
+        try {
+            PdfFile file = unit.getObjects().get(id);
+            if(file != null) {
+                // materialized while expanding an ObjStm
+                return file.getObject(id);
+            }
+            return entry.isCompressed() ? loadFromObjStm(id, entry): loadFromFile(entry);
+        }
+        catch(Exception e) {
+            logger.catching(e);
+            logger.error("Error while loading obj %s", id);
+            return null;
+        }
+        finally {
+            loading.remove(id);
+        }
+    }
+
+    private PdfIndirectObj loadFromFile(PdfXrefIndex.Entry entry) {
+        PdfIndirectObj o = sectionObjects.get(entry.getObjCursor());
+        if(o == null) {
+            o = new PdfIndirectObj(entry.getFile(), unit, entry.getObjCursor());
+            o.parse(data, entry.getObjCursor());
+        }
+        register(entry.getFile(), o);
+        return o;
+    }
+
+    private PdfIndirectObj loadFromObjStm(PdfObjId id, PdfXrefIndex.Entry entry) throws StartObjFoundException {
+        PdfObjId objStmId = new PdfObjId(entry.getObjStmNumber(), 0, 0);
+        PdfFile objStmFile = unit.getObjects().get(objStmId);
+        PdfIndirectObj objStm = objStmFile == null ? load(objStmId): objStmFile.getObject(objStmId);
+        if(objStm == null || objStm.getAttribute() == null || objStm.getAttribute().getType() != Type.Stream
+                || !((PdfStream)objStm.getAttribute()).isObjStm()) {
+            logger.error("ObjStm %s of object %s not found", objStmId, id);
+            return null;
+        }
+        PdfStream stream = (PdfStream)objStm.getAttribute();
+        if(stream.getObjStmList().isEmpty()) {
+            expandObjStm(objStm, stream);
+        }
+        PdfFile file = unit.getObjects().get(id);
+        return file == null ? null: file.getObject(id);
+    }
+
+    private void expandObjStm(PdfIndirectObj objStm, PdfStream stream) throws StartObjFoundException {
+        stream.decodeStream();
+        if(stream.getDecodedData().length == 0) {
+            return;
+        }
+        PdfFile file = unit.getObjects().get(objStm.getId());
+        int objStmNumber = objStm.getId().getObjectNumber();
+        for(PdfIndirectOjbStm child: PdfIndirectOjbStm.parseObjStm(file, unit, stream)) {
+            stream.addObjStmChild(child);
+            // do not override an object redefined in a more recent section
+            PdfXrefIndex.Entry childEntry = index.get(child.getId());
+            if(!unit.getObjects().containsKey(child.getId()) && (childEntry == null
+                    || (childEntry.isCompressed() && childEntry.getObjStmNumber() == objStmNumber))) {
+                file.putObject(child.getId(), child);
+                unit.getObjects().put(child.getId(), file);
+            }
+        }
+    }
+
+    private void register(PdfFile file, PdfIndirectObj o) {
+        file.putObject(o.getId(), o);
+        unit.getObjects().put(o.getId(), file);
+        loadedObjects.add(o);
+    }
+
+    /**
+     * Materialize all the objects listed in the xref sections, in file order, then expand the
+     * ObjStm streams.
+     */
+    public void loadAll() {
+        List<Entry<PdfObjId, PdfXrefIndex.Entry>> entries = new ArrayList<>(index.getEntries().entrySet());
+        Collections.sort(entries, Comparator.comparing((Entry<PdfObjId, PdfXrefIndex.Entry> e) -> e.getValue()
+                .isCompressed()).thenComparingLong(e -> e.getValue().getObjCursor()));
+        for(Entry<PdfObjId, PdfXrefIndex.Entry> e: entries) {
+            if(e.getValue().isResolved() && !unit.getObjects().containsKey(e.getKey())) {
+                load(e.getKey());
+            }
+        }
+
+        // XRef streams are not always listed
+        for(PdfFile file: files) {
+            for(PdfIndirectObj o: new ArrayList<>(file.getObjects().values())) {
+                if(o.getType() != Type.Trailer && !unit.getObjects().containsKey(o.getId())) {
+                    register(file, o);
+                }
+            }
+        }
+
+        for(PdfIndirectObj o: new ArrayList<>(loadedObjects)) {
+            IPdfAttribute attribute = o.getAttribute();
+            if(attribute != null && attribute.getType() == Type.Stream && ((PdfStream)attribute).isObjStm()
+                    && ((PdfStream)attribute).getObjStmList().isEmpty()) {
+                try {
+                    expandObjStm(o, (PdfStream)attribute);
+                }
+                catch(Exception e) {
+                    logger.catching(e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Brute-force scan of the file for obj definitions which are not listed in any xref section
+     * (skipping the objects already parsed). Such objects are invisible to PDF readers.
+     */
+    public List<PdfIndirectObj> findUnlistedObjects() {
+        List<PdfIndirectObj> parsed = new ArrayList<>(loadedObjects);
+        Collections.sort(parsed, Comparator.comparingLong(PdfIndirectObj::getStartIndex));
+        List<PdfIndirectObj> unlisted = new ArrayList<>();
+        int next = 0;
+        long cursor = 0;
+        while(cursor < data.length()) {
+            while(next < parsed.size() && parsed.get(next).getEndIndex() < cursor) {
+                next++;
+            }
+            if(next < parsed.size() && parsed.get(next).getStartIndex() <= cursor) {
+                cursor = parsed.get(next).getEndIndex() + 1;
+                continue;
+            }
+            if(PdfSpecialCharacters.isComment(data.get(cursor))) {
+                cursor = Math.max(cursor + 1, PdfComment.skipCommentsIfSome(data, cursor - 1));
+                continue;
+            }
+            if(data.get(cursor) == PdfSpecialCharacters.OBJ_START_SEPARATOR[0]
+                    && PdfSpecialCharacters.isStartObj(data, cursor)
+                    && !index.isListedOffset(PdfObjId.getObjId(data, cursor).getStartAddress())) {
+                PdfIndirectObj o = new PdfIndirectObj(new PdfFile(unit), unit, cursor);
+                cursor = Math.max(cursor + 1, o.parse(data, cursor));
+                unlisted.add(o);
+                continue;
+            }
+            cursor++;
+        }
+        return unlisted;
+    }
+
+    private long readNumber(long cursor) {
+        cursor = PdfSpecialCharacters.jumpSeparators(data, cursor);
+        long value = 0;
+        int digits = 0;
+        while(cursor < data.length() && isDigit(data.get(cursor)) && digits < 18) {
+            value = value * 10 + (data.get(cursor) - '0');
+            cursor++;
+            digits++;
+        }
+        numberEnd = cursor;
+        return digits == 0 ? -1: value;
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static long getOffset(PdfTrailer trailer, String key) {
+        IPdfAttribute dictionary = trailer.getAttribute();
+        if(dictionary == null || dictionary.getType() != Type.Dictionary) {
+            return -1;
+        }
+        IPdfAttribute value = ((PdfDictionary)dictionary).getAttribute(key);
+        if(value == null || value.getType() != Type.Number) {
+            return -1;
+        }
+        return ((PdfNumber)value).longValue();
+    }
+
+    public List<PdfTrailer> getTrailers() {
+        return trailers;
+    }
+
+    public List<PdfIndirectObj> getLoadedObjects() {
+        return loadedObjects;
+    }
+
+    public int getTrailerCount() {
+        return trailerCount;
+    }
+}
@@ -21,6 +21,7 @@ package com.pnf.plugin.pdf.unit;
 import com.pnf.plugin.pdf.PdfStatistics;
 import com.pnf.plugin.pdf.obj.PdfStream;
 import com.pnfsoftware.jeb.core.input.BytesInput;
+import com.pnfsoftware.jeb.core.input.IInput;
 import com.pnfsoftware.jeb.core.output.IUnitFormatter;
 import com.pnfsoftware.jeb.core.units.AbstractBinaryUnit;
 import com.pnfsoftware.jeb.core.units.IUnit;
@@ -48,13 +49,23 @@ public abstract class AbstractStreamUnit extends AbstractBinaryUnit implements I
     }
 
     public AbstractStreamUnit(IUnit parent, PdfStream stream, String identifier, PdfStatistics statistics) {
-        super(null, new BytesInput(stream.getDecodedData()), stream.getStreamType(), stream.getName(),
-                parent.getUnitProcessor(), parent, parent.getPropertyDefinitionManager());
+        super(null, new BytesInput(stream.isDecodedOnDemand() ? new byte[0]: stream.getDecodedData()),
+                stream.getStreamType(), stream.getName(), parent.getUnitProcessor(), parent,
+                parent.getPropertyDefinitionManager());
         this.stream = stream;
         this.identifier = identifier;
         this.statistics = statistics;
     }
 
+    @Override
+    public IInput getInput() {
+        if(stream.isDecodedOnDemand()) {
+            // decoded on demand, under the decoded data budget of the pdf unit
+            return new BytesInput(stream.getDecodedData());
+        }
+        return super.getInput();
+    }
+
     @Override
     public IUnitFormatter getFormatter() {
         return new StreamUnitProvider(null, stream).getFormatter();
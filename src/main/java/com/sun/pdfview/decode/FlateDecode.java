@@ -52,13 +52,9 @@ public class FlateDecode {
 
         int bufSize = buf.remaining();
 
-        // copy the data, since the array() method is not supported
-        // on raf-based ByteBuffers
-        byte[] data = new byte[bufSize];
-        buf.get(data);
-
-        // set the input to the inflater
-        inf.setInput(data);
+        // set the input to the inflater: it reads the buffer in place,
+        // including read-only and direct views
+        inf.setInput(buf);
 
         // output to a byte-array output stream, since we don't
         // know how big the output will be
@@ -22,10 +22,6 @@
 package com.sun.pdfview.decode;
 
 import java.io.IOException;
-import java.nio.ByteBuffer;
-import java.util.ArrayList;
-import java.util.Iterator;
-import java.util.List;
 
 /**
  * Undo prediction based on the PNG algorithm.
@@ -36,79 +32,59 @@ public class PNGPredictor extends Predictor {
         super (PNG);
     }
     
+    @Override
+    protected int getEncodedRowSize() {
+        // the first byte of each row determines the algorithm
+        return getRowSize() + 1;
+    }
+
+    @Override
+    protected boolean isIncompleteRowIgnored() {
+        return true;
+    }
+
     /**
      * Undo data based on the png algorithm
      */
     @Override
-    public ByteBuffer unpredict(ByteBuffer imageData)
-        throws IOException
+    protected void unpredictRow(byte[] encoded, int encodedOffset,
+            byte[] row, int rowOffset, byte[] prevRow, int prevOffset)
     {
-        List<byte[]> rows = new ArrayList<byte[]>();
-        
-        byte[] curLine = null;
-        byte[] prevLine = null;
-        
-        // get the number of bytes per row
-        int rowSize = getColumns() * getColors() * getBitsPerComponent();
-        rowSize = (int) Math.ceil(rowSize / 8.0);
-        
-        while(imageData.remaining() >= rowSize + 1) {
-            // the first byte determines the algorithm
-            int algorithm = imageData.get() & 0xff;
-            
-            // read the rest of the line
-            curLine = new byte[rowSize];
-            imageData.get(curLine);
-            
-            // use the algorithm, Luke
-            switch (algorithm) {
-                case 0:
-                    // none
-                    break;
-                case 1:
-                    doSubLine(curLine);
-                    break;
-                case 2:
-                    doUpLine(curLine, prevLine);
-                    break;
-                case 3:
-                    doAverageLine(curLine, prevLine);
-                    break;
-                case 4:
-                    doPaethLine(curLine, prevLine);
-                    break;
-            }
-            
-            rows.add(curLine);
-            prevLine = curLine;
-        }
-        
-        // turn into byte array
-        ByteBuffer outBuf = ByteBuffer.allocate(rows.size() * rowSize);
-        for(Iterator<byte[]> i = rows.iterator(); i.hasNext();) {
-            outBuf.put(i.next());
+        int rowSize = getRowSize();
+        System.arraycopy(encoded, encodedOffset + 1, row, rowOffset, rowSize);
+
+        // use the algorithm, Luke
+        switch (encoded[encodedOffset] & 0xff) {
+            case 0:
+                // none
+                break;
+            case 1:
+                doSubLine(row, rowOffset, rowSize);
+                break;
+            case 2:
+                doUpLine(row, rowOffset, rowSize, prevRow, prevOffset);
+                break;
+            case 3:
+                doAverageLine(row, rowOffset, rowSize, prevRow, prevOffset);
+                break;
+            case 4:
+                doPaethLine(row, rowOffset, rowSize, prevRow, prevOffset);
+                break;
         }
-        
-        // reset start pointer
-        outBuf.flip();
-        
-        // return
-        return outBuf;
-        
     }
     
     /**
      * Return the value of the Sub algorithm on the line (compare bytes to
      * the previous byte of the same color on this line).
      */
-    protected void doSubLine(byte[] curLine) {
+    protected void doSubLine(byte[] curLine, int offset, int length) {
         // get the number of bytes per sample
-        int sub = (int) Math.ceil((getBitsPerComponent() * getColors()) / 8.0); 
+        int sub = getBytesPerPixel();
         
-        for (int i = 0; i < curLine.length; i++) {
+        for (int i = 0; i < length; i++) {
             int prevIdx = i - sub;
             if (prevIdx >= 0) {
-                curLine[i] += curLine[prevIdx];
+                curLine[offset + i] += curLine[offset + prevIdx];
             }
         }
     }
@@ -117,14 +93,15 @@ public class PNGPredictor extends Predictor {
      * Return the value of the up algorithm on the line (compare bytes to
      * the same byte in the previous line)
      */
-    protected void doUpLine(byte[] curLine, byte[] prevLine) {
+    protected void doUpLine(byte[] curLine, int offset, int length,
+            byte[] prevLine, int prevOffset) {
         if (prevLine == null) {
             // do nothing if this is the first line
             return;
         }
         
-        for (int i = 0; i < curLine.length; i++) {
-            curLine[i] += prevLine[i];
+        for (int i = 0; i < length; i++) {
+            curLine[offset + i] += prevLine[prevOffset + i];
         }
     }
     
@@ -133,27 +110,28 @@ public class PNGPredictor extends Predictor {
      * bytes to the average of the previous byte of the same color and 
      * the same byte on the previous line)
      */
-    protected void doAverageLine(byte[] curLine, byte[] prevLine) {
+    protected void doAverageLine(byte[] curLine, int offset, int length,
+            byte[] prevLine, int prevOffset) {
          // get the number of bytes per sample
-        int sub = (int) Math.ceil((getBitsPerComponent() * getColors()) / 8.0); 
+        int sub = getBytesPerPixel();
         
-        for (int i = 0; i < curLine.length; i++) {
+        for (int i = 0; i < length; i++) {
             int raw = 0;
             int prior = 0;
             
             // get the last value of this color
             int prevIdx = i - sub;
             if (prevIdx >= 0) {
-                raw = curLine[prevIdx] & 0xff;
+                raw = curLine[offset + prevIdx] & 0xff;
             }
             
             // get the value on the previous line
             if (prevLine != null) {
-                prior = prevLine[i] & 0xff;
+                prior = prevLine[prevOffset + i] & 0xff;
             }
             
             // add the average
-            curLine[i] += (byte) Math.floor((raw + prior) / 2);
+            curLine[offset + i] += (byte) ((raw + prior) / 2);
         }      
     }
     
@@ -162,11 +140,12 @@ public class PNGPredictor extends Predictor {
      * bytes to the average of the previous byte of the same color and 
      * the same byte on the previous line)
      */
-    protected void doPaethLine(byte[] curLine, byte[] prevLine) {
+    protected void doPaethLine(byte[] curLine, int offset, int length,
+            byte[] prevLine, int prevOffset) {
          // get the number of bytes per sample
-        int sub = (int) Math.ceil((getBitsPerComponent() * getColors()) / 8.0); 
+        int sub = getBytesPerPixel();
         
-        for (int i = 0; i < curLine.length; i++) {
+        for (int i = 0; i < length; i++) {
             int left = 0;
             int up = 0;
             int upLeft = 0;
@@ -174,20 +153,20 @@ public class PNGPredictor extends Predictor {
             // get the last value of this color
             int prevIdx = i - sub;
             if (prevIdx >= 0) {
-                left = curLine[prevIdx] & 0xff;
+                left = curLine[offset + prevIdx] & 0xff;
             }
             
             // get the value on the previous line
             if (prevLine != null) {
-                up = prevLine[i] & 0xff;
+                up = prevLine[prevOffset + i] & 0xff;
             }
             
             if (prevIdx > 0 && prevLine != null) {
-                upLeft = prevLine[prevIdx] & 0xff;
+                upLeft = prevLine[prevOffset + prevIdx] & 0xff;
             }
             
             // add the average
-            curLine[i] += (byte) paeth(left, up, upLeft);
+            curLine[offset + i] += (byte) paeth(left, up, upLeft);
         }      
     }
     
@@ -21,7 +21,10 @@
 
 package com.sun.pdfview.decode;
 
+import java.io.EOFException;
+import java.io.FilterInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.ByteBuffer;
 
 import com.pnf.plugin.pdf.filter.PDFObject;
@@ -47,6 +50,12 @@ public abstract class Predictor {
     
     /** the number of columns per row */
     private int columns = 1;
+
+    /** the number of bytes in a decoded row, -1 if invalid */
+    private int rowSize = 1;
+
+    /** the number of bytes per pixel */
+    private int bytesPerPixel = 1;
     
     /** 
      * Create an instance of a predictor.  Use <code>getPredictor()</code>
@@ -58,10 +67,207 @@ public abstract class Predictor {
     
     /**
      * Actually perform this algorithm on decoded image data.
-     * Subclasses must implement this method
      */
-    public abstract ByteBuffer unpredict(ByteBuffer imageData)
-        throws IOException;
+    public ByteBuffer unpredict(ByteBuffer imageData)
+        throws IOException
+    {
+        int length = imageData.remaining();
+        if (imageData.hasArray()) {
+            return ByteBuffer.wrap(unpredict(imageData.array(),
+                    imageData.arrayOffset() + imageData.position(), length));
+        }
+        byte[] data = new byte[length];
+        imageData.duplicate().get(data);
+        return ByteBuffer.wrap(unpredict(data, 0, length));
+    }
+
+    /**
+     * Undo the prediction of a range of decoded data into a single,
+     * exactly sized array. Each row is computed in place from the previous
+     * output row.
+     */
+    public byte[] unpredict(byte[] data, int offset, int length)
+        throws IOException
+    {
+        checkRowSize();
+        int encodedRowSize = getEncodedRowSize();
+        if (encodedRowSize == 0) {
+            return new byte[0];
+        }
+        int rows = getRowCount(length);
+        byte[] out = new byte[rows * rowSize];
+        for (int i = 0; i < rows; i++) {
+            int outOffset = i * rowSize;
+            unpredictRow(data, offset + i * encodedRowSize, out, outOffset,
+                    i == 0 ? null : out, outOffset - rowSize);
+        }
+        return out;
+    }
+
+    /**
+     * Undo the prediction of rows as they are read from a decoded stream,
+     * using two row buffers.
+     */
+    public InputStream unpredict(InputStream imageData)
+        throws IOException
+    {
+        checkRowSize();
+        return new RowInputStream(imageData);
+    }
+
+    /**
+     * Number of complete rows in some encoded data
+     */
+    private int getRowCount(int length) throws IOException {
+        int encodedRowSize = getEncodedRowSize();
+        if (length % encodedRowSize != 0 && !isIncompleteRowIgnored()) {
+            throw new PDFParseException("Incomplete predictor row");
+        }
+        return length / encodedRowSize;
+    }
+
+    /**
+     * Whether trailing data shorter than a row is dropped, or is an error
+     */
+    protected abstract boolean isIncompleteRowIgnored();
+
+    /**
+     * Size of an encoded row
+     */
+    protected abstract int getEncodedRowSize();
+
+    /**
+     * Undo the prediction of one row.
+     *
+     * @param encoded the encoded data
+     * @param encodedOffset start of the encoded row
+     * @param row the output, receiving <code>getRowSize()</code> bytes
+     * @param rowOffset start of the output row
+     * @param prevRow the array holding the previous output row, or null for
+     *        the first row
+     * @param prevOffset start of the previous output row
+     */
+    protected abstract void unpredictRow(byte[] encoded, int encodedOffset,
+            byte[] row, int rowOffset, byte[] prevRow, int prevOffset);
+
+    /**
+     * Get the number of bytes in a decoded row, or -1 if the parameters are
+     * invalid
+     */
+    public int getRowSize() {
+        return rowSize;
+    }
+
+    /**
+     * Get the number of bytes per pixel, at least one
+     */
+    protected int getBytesPerPixel() {
+        return bytesPerPixel;
+    }
+
+    private void checkRowSize() throws IOException {
+        if (rowSize < 0) {
+            throw new PDFParseException("Invalid predictor row size");
+        }
+    }
+
+    private void updateSizes() {
+        long bits = (long) columns * colors * bpc;
+        long size = (bits + 7) / 8;
+        rowSize = bits < 0 || size > Integer.MAX_VALUE - 1 ? -1 : (int) size;
+        bytesPerPixel = (int) Math.ceil((bpc * colors) / 8.0);
+    }
+
+    /**
+     * Stream of decoded rows, computed one at a time
+     */
+    private class RowInputStream extends FilterInputStream {
+        private final byte[] encodedRow;
+        private byte[] row;
+        private byte[] prevRow;
+        private boolean first = true;
+        private int position;
+
+        RowInputStream(InputStream in) {
+            super(in);
+            encodedRow = new byte[getEncodedRowSize()];
+            row = new byte[rowSize];
+            prevRow = new byte[rowSize];
+            position = rowSize;
+        }
+
+        @Override
+        public int read() throws IOException {
+            while (position >= row.length) {
+                if (!nextRow()) {
+                    return -1;
+                }
+            }
+            return row[position++] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (position >= row.length) {
+                if (!nextRow()) {
+                    return -1;
+                }
+            }
+            int count = Math.min(len, row.length - position);
+            System.arraycopy(row, position, b, off, count);
+            position += count;
+            return count;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = 0;
+            while (skipped < n && read() != -1) {
+                skipped++;
+            }
+            return skipped;
+        }
+
+        @Override
+        public int available() {
+            return row.length - position;
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        private boolean nextRow() throws IOException {
+            if (encodedRow.length == 0) {
+                return false;
+            }
+            int read = 0;
+            while (read < encodedRow.length) {
+                int count = in.read(encodedRow, read, encodedRow.length - read);
+                if (count < 0) {
+                    break;
+                }
+                read += count;
+            }
+            if (read < encodedRow.length) {
+                if (read > 0 && !isIncompleteRowIgnored()) {
+                    throw new EOFException("Incomplete predictor row");
+                }
+                return false;
+            }
+            byte[] previous = row;
+            row = prevRow;
+            prevRow = previous;
+            unpredictRow(encodedRow, 0, row, 0, first ? null : prevRow, 0);
+            first = false;
+            position = 0;
+            return true;
+        }
+    }
     
     /**
      * Get an instance of a predictor
@@ -143,6 +349,7 @@ public abstract class Predictor {
      */
     protected void setColors(int colors) {
         this.colors = colors;
+        updateSizes();
     }
     
     /**
@@ -157,6 +364,7 @@ public abstract class Predictor {
      */
     public void setBitsPerComponent(int bpc) {
         this.bpc = bpc;
+        updateSizes();
     }
     
     /**
@@ -171,5 +379,6 @@ public abstract class Predictor {
      */
     public void setColumns(int columns) {
         this.columns = columns;
+        updateSizes();
     }
 }
@@ -21,9 +21,6 @@
 
 package com.sun.pdfview.decode;
 
-import java.io.IOException;
-import java.nio.ByteBuffer;
-
 /**
  * Undo prediction based on the TIFF Predictor 2 algorithm
  */
@@ -33,90 +30,86 @@ public class TIFFPredictor extends Predictor {
         super (TIFF);
     }
 
+    @Override
+    protected int getEncodedRowSize() {
+        return getRowSize();
+    }
+
+    @Override
+    protected boolean isIncompleteRowIgnored() {
+        return false;
+    }
+
     /**
-     * Undo data based on the png algorithm
+     * Undo data based on the tiff algorithm
      */
-    public ByteBuffer unpredict(ByteBuffer imageData)
-        throws IOException
+    @Override
+    protected void unpredictRow(byte[] encoded, int encodedOffset,
+            byte[] row, int rowOffset, byte[] prevRow, int prevOffset)
     {
-        ByteBuffer out = ByteBuffer.allocate(imageData.limit());
-
         final int numComponents = getColors();
         final int pixelBits = numComponents * getBitsPerComponent();
+        final int bytePerRow = getRowSize();
 
-        int bytePerRow = (getColumns() * pixelBits + 7) / 8;
-
-        final byte[] row = new byte[bytePerRow];
+        System.arraycopy(encoded, encodedOffset, row, rowOffset, bytePerRow);
 
-        while(imageData.remaining() > 0) {
-            imageData.get(row);
-            if (getBitsPerComponent() == 8) {
-                for (int i = numComponents; i < row.length; i += numComponents) {
-                    for (int c = 0; c < numComponents; ++c) {
-                        final int pos = i + c;
-                        row[pos] += row[pos - numComponents];
-                    }
+        if (getBitsPerComponent() == 8) {
+            for (int i = numComponents; i < bytePerRow; i += numComponents) {
+                for (int c = 0; c < numComponents; ++c) {
+                    final int pos = rowOffset + i + c;
+                    row[pos] += row[pos - numComponents];
                 }
-            } else if (getBitsPerComponent() == 16) {
-                final short[] prev = new short[numComponents];
+            }
+        } else if (getBitsPerComponent() == 16) {
+            final short[] prev = new short[numComponents];
+            for (int c = 0; c < numComponents; c += 1) {
+                final int pos = rowOffset + c * 2;
+                prev[c] = (short) ((row[pos] << 8 | (row[pos + 1]) & 0xFFFF));
+            }
+            for (int i = numComponents * 2; i < bytePerRow; i += numComponents * 2) {
                 for (int c = 0; c < numComponents; c += 1) {
-                    final int pos = c * 2;
-                    prev[c] = (short) ((row[pos] << 8 | (row[pos + 1]) & 0xFFFF));
-                }
-                for (int i = numComponents * 2; i < row.length; i += numComponents * 2) {
-                    for (int c = 0; c < numComponents; c += 1) {
-                        final int pos = i + c * 2;
-                        short cur = (short) ((row[pos] << 8 | (row[pos + 1]) & 0xFFFF));
-                        cur += prev[c];
-                        row[pos] = (byte) (cur >>> 8 & 0xFF);
-                        row[pos + 1] = (byte) (cur & 0xFF);
-                        prev[c] = cur;
-                    }
+                    final int pos = rowOffset + i + c * 2;
+                    short cur = (short) ((row[pos] << 8 | (row[pos + 1]) & 0xFFFF));
+                    cur += prev[c];
+                    row[pos] = (byte) (cur >>> 8 & 0xFF);
+                    row[pos + 1] = (byte) (cur & 0xFF);
+                    prev[c] = cur;
                 }
-            } else {
-                assert getBitsPerComponent() == 1 || getBitsPerComponent() == 2 || getBitsPerComponent() == 4 : "we don't want to grab components across pixel boundaries";
-                int bitsOnRow = pixelBits * getColumns(); // may be less than bytesOnRow * 8
-                byte prev[] = new byte[numComponents];
-                final int shiftWhenAligned = 8 - getBitsPerComponent();
-                final int mask = (1 << getBitsPerComponent()) - 1;
+            }
+        } else {
+            assert getBitsPerComponent() == 1 || getBitsPerComponent() == 2 || getBitsPerComponent() == 4 : "we don't want to grab components across pixel boundaries";
+            int bitsOnRow = pixelBits * getColumns(); // may be less than bytesOnRow * 8
+            byte prev[] = new byte[numComponents];
+            final int shiftWhenAligned = 8 - getBitsPerComponent();
+            final int mask = (1 << getBitsPerComponent()) - 1;
+            for (int c = 0; c < numComponents; ++c) {
+                prev[c] = getbits(row, rowOffset, c * getBitsPerComponent(), shiftWhenAligned, mask);
+            }
+            for (int i = pixelBits; i < bitsOnRow; i += pixelBits) {
                 for (int c = 0; c < numComponents; ++c) {
-                    prev[c] = getbits(row, c * getBitsPerComponent(), shiftWhenAligned, mask);
-                }
-                for (int i = pixelBits; i < bitsOnRow; i += pixelBits) {
-                    for (int c = 0; c < numComponents; ++c) {
-                        byte cur = getbits(row, i + c * getBitsPerComponent(), shiftWhenAligned, mask);
-                        cur += prev[c];
-                        prev[c] = cur;
-                        setbits(row, i + c * getBitsPerComponent(), shiftWhenAligned, mask, cur);
-                    }
+                    byte cur = getbits(row, rowOffset, i + c * getBitsPerComponent(), shiftWhenAligned, mask);
+                    cur += prev[c];
+                    prev[c] = cur;
+                    setbits(row, rowOffset, i + c * getBitsPerComponent(), shiftWhenAligned, mask, cur);
                 }
             }
-            out.put(row);
         }
-
-
-        // reset start pointer
-        out.flip();
-
-        // return
-        return out;
-
     }
 
-    private static byte getbits(byte[] data, int bitIndex, int shiftWhenByteAligned, int mask)
+    private static byte getbits(byte[] data, int offset, int bitIndex, int shiftWhenByteAligned, int mask)
     {
-        final int b = data[(bitIndex >> 3)];
+        final int b = data[offset + (bitIndex >> 3)];
         final int bitIndexInB = bitIndex & 7;
         final int shift =  shiftWhenByteAligned - bitIndexInB;
         return (byte) ((b >>> shift) & mask);
     }
 
-    private static void setbits(byte[] data, int bitIndex, int shiftWhenByteAligned, int mask, byte bits)
+    private static void setbits(byte[] data, int offset, int bitIndex, int shiftWhenByteAligned, int mask, byte bits)
     {
-        final int b = data[(bitIndex >> 3)];
+        final int b = data[offset + (bitIndex >> 3)];
         final int bitIndexInB = bitIndex & 7;
         final int shift =  shiftWhenByteAligned - bitIndexInB;
-        data[bitIndex >> 3] = (byte) ((b & ~(mask << shift)) | (bits << shift));
+        data[offset + (bitIndex >> 3)] = (byte) ((b & ~(mask << shift)) | (bits << shift));
     }
 
 
@@ -108,6 +108,11 @@ public class CryptFilterDecrypter implements PDFDecrypter {
         return defaultStringDecrypter.decryptString(objNum, objGen, inputBasicString);
     }
 
+    public String[] decryptStrings(int objNum, int objGen, String[] inputBasicStrings)
+            throws PDFParseException {
+        return defaultStringDecrypter.decryptStrings(objNum, objGen, inputBasicStrings);
+    }
+
     public boolean isEncryptionPresent() {
         for (final PDFDecrypter decrypter : decrypters.values()) {
             if (decrypter.isEncryptionPresent()) {
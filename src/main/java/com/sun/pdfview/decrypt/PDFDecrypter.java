@@ -78,6 +78,29 @@ public interface PDFDecrypter {
     public String decryptString(int objNum, int objGen, String inputBasicString)
             throws PDFParseException;
 
+    /**
+     * Decrypt the {@link PDFStringUtil basic strings} of an object. The key
+     * of the object is computed once for all strings.
+     * @param objNum the object number of the containing object
+     * @param objGen the generation number of the containing object
+     * @param inputBasicStrings the strings to be decrypted
+     * @return the decrypted strings, null for those which can not be
+     *  decrypted: {@link #decryptString(int, int, String)} tells why
+     * @throws PDFParseException if the key of the object can not be computed
+     */
+    public default String[] decryptStrings(int objNum, int objGen,
+            String[] inputBasicStrings) throws PDFParseException {
+        final String[] decrypted = new String[inputBasicStrings.length];
+        for (int i = 0; i < inputBasicStrings.length; ++i) {
+            try {
+                decrypted[i] = decryptString(objNum, objGen, inputBasicStrings[i]);
+            } catch (PDFParseException e) {
+                // left null
+            }
+        }
+        return decrypted;
+    }
+
     /**
      * Determine whether the password known by the decrypter indicates that
      * the user is the owner of the document. Can be used, in conjunction
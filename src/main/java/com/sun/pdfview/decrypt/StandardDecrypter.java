@@ -120,6 +120,11 @@ public class StandardDecrypter implements PDFDecrypter {
      */
     private EncryptionAlgorithm encryptionAlgorithm;
 
+    /**
+     * Content cipher of each thread, initialised again for each decryption
+     */
+    private final ThreadLocal<Cipher> contentCipher = new ThreadLocal<>();
+
     /**
      * Class constructor
      *
@@ -232,8 +237,27 @@ public class StandardDecrypter implements PDFDecrypter {
     @Override
     public String decryptString(int objNum, int objGen, String inputBasicString)
             throws PDFParseException {
-        final byte[] crypted = PDFStringUtil.asBytes(inputBasicString);
+        return decryptString(inputBasicString, getObjectSaltedDecryptionKey(objNum, objGen));
+    }
+
+    @Override
+    public String[] decryptStrings(int objNum, int objGen, String[] inputBasicStrings)
+            throws PDFParseException {
         final byte[] decryptionKey = getObjectSaltedDecryptionKey(objNum, objGen);
+        final String[] decrypted = new String[inputBasicStrings.length];
+        for (int i = 0; i < inputBasicStrings.length; ++i) {
+            try {
+                decrypted[i] = decryptString(inputBasicStrings[i], decryptionKey);
+            } catch (PDFParseException e) {
+                // left null, see PDFDecrypter#decryptStrings
+            }
+        }
+        return decrypted;
+    }
+
+    private String decryptString(String inputBasicString, byte[] decryptionKey)
+            throws PDFParseException {
+        final byte[] crypted = PDFStringUtil.asBytes(inputBasicString);
         final ByteBuffer decrypted = decryptBuffer(ByteBuffer.wrap(crypted), decryptionKey);
         return PDFStringUtil.asBasicString(decrypted.array(), decrypted.arrayOffset(), decrypted.limit());
     }
@@ -402,10 +426,10 @@ public class StandardDecrypter implements PDFDecrypter {
 
         final Cipher cipher;
         if (encryptionAlgorithm.isRC4()) {
-            cipher = Cipher.getInstance(CIPHER_RC4);
+            cipher = getContentCipher();
             cipher.init(Cipher.DECRYPT_MODE, createRC4Key(decryptionKeyBytes));
         } else if (encryptionAlgorithm.isAES()) {
-            cipher = createAESCipher();
+            cipher = getContentCipher();
             final byte[] initialisationVector = new byte[16];
             if (encrypted.remaining() >= initialisationVector.length) {
                 encrypted.get(initialisationVector);
@@ -428,6 +452,27 @@ public class StandardDecrypter implements PDFDecrypter {
         return cipher;
     }
 
+    /**
+     * Get the content cipher of the current thread, created on first use.
+     * Getting a cipher from the JCE providers costs much more than
+     * initialising it again.
+     *
+     * @return the cipher of the content encryption algorithm
+     * @throws NoSuchAlgorithmException if the cipher algorithm is not supported
+     * by the platform
+     * @throws NoSuchPaddingException if the cipher padding is not supported by
+     * the platform
+     */
+    private Cipher getContentCipher()
+            throws NoSuchAlgorithmException, NoSuchPaddingException {
+        Cipher cipher = contentCipher.get();
+        if (cipher == null) {
+            cipher = encryptionAlgorithm.isRC4() ? createRC4Cipher() : createAESCipher();
+            contentCipher.set(cipher);
+        }
+        return cipher;
+    }
+
     /**
      * Get the unsalted content decryption key, used for streams with specific
      * crypt filters, which aren't specific to particular objects
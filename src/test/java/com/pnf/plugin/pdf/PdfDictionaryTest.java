@@ -23,6 +23,9 @@ import junit.framework.TestCase;
 import com.pnf.plugin.pdf.obj.PdfDictionary;
 import com.pnf.plugin.pdf.obj.PdfIndirectObj;
 import com.pnf.plugin.pdf.obj.PdfIndirectReference;
+import com.pnf.plugin.pdf.obj.PdfName;
+import com.pnf.plugin.pdf.obj.PdfNameTable;
+import com.pnf.plugin.pdf.obj.PdfNameTable.Symbol;
 import com.pnf.plugin.pdf.obj.PdfObjId;
 
 /**
@@ -44,4 +47,49 @@ public class PdfDictionaryTest extends TestCase {
         assertEquals(new PdfObjId(9, 0, 0), attribute3.getId());
     }
 
+    public void testLargeDictionaryLookup() {
+        StringBuilder stb = new StringBuilder("8 0 obj <<");
+        for(int i = 0; i < 20; i++) {
+            stb.append("/K").append(i).append(' ').append(i);
+        }
+        stb.append("/K3 (duplicate)/Empty null>> endobj");
+        PdfIndirectObj o = PdfIndirectObjectHelper.parseIndirectObject(stb.toString());
+        PdfDictionary dictionary = (PdfDictionary)o.getAttribute();
+        assertEquals(22, dictionary.getAttributes().size());
+        assertEquals("0", dictionary.getAttribute("/K0").toString());
+        assertEquals("19", dictionary.getAttribute("/K19").toString());
+        // first value of a duplicate key
+        assertEquals("3", dictionary.getAttribute("/K3").toString());
+        assertNull(dictionary.getAttribute("/K20"));
+        assertFalse(dictionary.hasAttribute("/Empty"));
+        assertEquals("K3", dictionary.getAttributeKeys().get(20));
+    }
+
+    public void testNameSymbols() {
+        PdfDictionary first = (PdfDictionary)PdfIndirectObjectHelper
+                .parseIndirectObject("9 0 obj <</Type /XObject/Len#67th 4>> endobj").getAttribute();
+        PdfDictionary second = (PdfDictionary)PdfIndirectObjectHelper
+                .parseIndirectObject("5 0 obj <</Type/XObject>> endobj").getAttribute();
+        Symbol type = first.getAttributes().get(0).getKey().getSymbol();
+        assertEquals(PdfNameTable.TYPE, type.getId());
+        assertSame(type, second.getAttributes().get(0).getKey().getSymbol());
+        assertSame(((PdfName)first.getAttribute(type)).getSymbol(), ((PdfName)second.getAttribute(type)).getSymbol());
+        // escaped names are interned by value
+        assertEquals("/Length", first.getAttributes().get(1).getKey().toString());
+        assertEquals("4", first.getAttribute(PdfNameTable.get(PdfNameTable.LENGTH)).toString());
+    }
+
+    public void testLongNameNotInterned() {
+        StringBuilder name = new StringBuilder("/");
+        for(int i = 0; i < PdfNameTable.MAX_NAME_LENGTH; i++) {
+            name.append('N');
+        }
+        PdfDictionary dictionary = (PdfDictionary)PdfIndirectObjectHelper
+                .parseIndirectObject("6 0 obj <<" + name + " 1>> endobj").getAttribute();
+        Symbol symbol = dictionary.getAttributes().get(0).getKey().getSymbol();
+        assertEquals(PdfNameTable.UNINTERNED, symbol.getId());
+        assertEquals("1", dictionary.getAttribute(name.toString()).toString());
+        assertEquals(PdfNameTable.UNINTERNED, PdfNameTable.lookup(name.toString()).getId());
+    }
+
 }
@@ -0,0 +1,74 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf;
+
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.parser.PdfHeaderParser;
+import com.pnfsoftware.jeb.core.input.BytesInput;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfHeaderParserTest extends TestCase {
+
+    private static byte[] withJunk(int junkLength) {
+        byte[] data = new byte[junkLength + 20];
+        Arrays.fill(data, (byte)'A');
+        byte[] header = "%PDF-1.7\n".getBytes();
+        System.arraycopy(header, 0, data, junkLength, header.length);
+        return data;
+    }
+
+    public void testHeaderAfterJunk() {
+        assertTrue(new PdfHeaderParser(new BytesInput(withJunk(1000)), 1024).isPdf());
+    }
+
+    public void testHeaderStraddlingReads() {
+        assertTrue(new PdfHeaderParser(new BytesInput(withJunk(8190)), 0).isPdf());
+    }
+
+    public void testHeaderOutsideWindow() {
+        PdfHeaderParser parser = new PdfHeaderParser(new BytesInput(withJunk(5000)), 1024);
+        assertFalse(parser.isPdf());
+        assertTrue(parser.getBytesRead() < 1100);
+    }
+
+    public void testNoHeader() {
+        byte[] data = new byte[20000];
+        PdfHeaderParser parser = new PdfHeaderParser(new BytesInput(data), 0);
+        assertFalse(parser.isPdf());
+        assertEquals(data.length, parser.getBytesRead());
+    }
+
+    public void testPluginWindow() {
+        PdfPlugin plugin = new PdfPlugin(1024);
+        assertTrue(plugin.canIdentify(new BytesInput(withJunk(1000)), null));
+        assertFalse(plugin.canIdentify(new BytesInput(withJunk(5000)), null));
+        assertTrue(new PdfPlugin(0).canIdentify(new BytesInput(withJunk(5000)), null));
+        assertEquals(2, plugin.getHeaderScanCount());
+        assertTrue(plugin.getHeaderScanBytesRead() < 2200);
+    }
+
+}
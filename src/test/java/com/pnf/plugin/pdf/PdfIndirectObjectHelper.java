@@ -19,6 +19,7 @@ limitations under the License.
 package com.pnf.plugin.pdf;
 
 import com.pnf.plugin.pdf.obj.PdfIndirectObj;
+import com.pnf.plugin.pdf.parser.HeapByteSource;
 
 /**
  * 
@@ -34,7 +35,7 @@ public class PdfIndirectObjectHelper {
 
     public static PdfIndirectObj parseIndirectObject(String data, int fromByte) {
         PdfIndirectObj o = new PdfIndirectObj(null, null, fromByte);
-        o.parse(data.getBytes(), fromByte);
+        o.parse(new HeapByteSource(data.getBytes()), fromByte);
         return o;
     }
 }
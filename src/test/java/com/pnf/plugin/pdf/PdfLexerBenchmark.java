@@ -0,0 +1,119 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.mockito.Mockito;
+
+import com.pnf.plugin.pdf.obj.PdfIndirectObj;
+import com.pnf.plugin.pdf.obj.PdfObjId;
+import com.pnf.plugin.pdf.obj.PdfTrailer;
+import com.pnf.plugin.pdf.parser.HeapByteSource;
+import com.pnf.plugin.pdf.parser.IByteSource;
+import com.pnf.plugin.pdf.parser.PdfFile;
+import com.pnf.plugin.pdf.parser.PdfLexer;
+import com.pnf.plugin.pdf.parser.PdfSpecialCharacters;
+
+/**
+ * Throughput benchmark of the object parsers: objects parsed per second on a corpus (the test
+ * resources by default, or the directory given as argument), compared with the raw tokenization
+ * rate of the same bytes. Not part of the test suite: run its main from the project directory.
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfLexerBenchmark {
+
+    private static final int WARMUP_ROUNDS = 2;
+
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws IOException {
+        File corpus = new File(args.length > 0 ? args[0]: "src/test/resources");
+        File[] files = corpus.listFiles();
+        if(files == null) {
+            throw new IOException("No corpus directory: " + corpus);
+        }
+        List<IByteSource> sources = new ArrayList<>();
+        for(File file: files) {
+            if(file.isFile() && !file.getName().endsWith(".txt")) {
+                sources.add(new HeapByteSource(Files.readAllBytes(file.toPath())));
+            }
+        }
+        PdfFileUnit unit = Mockito.mock(PdfFileUnit.class);
+        Map<PdfObjId, PdfFile> objects = new TreeMap<PdfObjId, PdfFile>();
+        Mockito.when(unit.getStatistics()).thenReturn(new PdfStatistics(unit));
+        Mockito.when(unit.getObjects()).thenReturn(objects);
+        Mockito.when(unit.getTrailers()).thenReturn(new TreeMap<Long, PdfTrailer>());
+
+        long nbObjects = 0;
+        long nbTokens = 0;
+        double objectSeconds = Double.MAX_VALUE;
+        double tokenSeconds = Double.MAX_VALUE;
+        for(int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            nbObjects = parseObjects(sources, unit);
+            long middle = System.nanoTime();
+            nbTokens = scanTokens(sources);
+            long end = System.nanoTime();
+            if(round >= WARMUP_ROUNDS) {
+                // best round: least disturbed by the JIT and the GC
+                objectSeconds = Math.min(objectSeconds, (middle - start) / 1e9);
+                tokenSeconds = Math.min(tokenSeconds, (end - middle) / 1e9);
+            }
+        }
+
+        System.out.format("%d objects: %.0f objects/s, %d tokens: %.0f tokens/s%n", nbObjects,
+                nbObjects / objectSeconds, nbTokens, nbTokens / tokenSeconds);
+    }
+
+    private static long parseObjects(List<IByteSource> sources, PdfFileUnit unit) {
+        long count = 0;
+        for(IByteSource data: sources) {
+            for(long cursor = 0; cursor < data.length(); cursor++) {
+                if(PdfSpecialCharacters.isStartObj(data, cursor) && PdfObjId.getObjId(data, cursor) != null) {
+                    PdfIndirectObj o = new PdfIndirectObj(null, unit, cursor);
+                    cursor = Math.max(cursor, o.parse(data, cursor));
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private static long scanTokens(List<IByteSource> sources) {
+        PdfLexer lexer = new PdfLexer();
+        long count = 0;
+        for(IByteSource data: sources) {
+            long cursor = PdfLexer.skipWhitespaces(data, 0);
+            while(lexer.scan(data, cursor) != PdfLexer.NONE) {
+                cursor = PdfLexer.skipWhitespaces(data, lexer.getEnd() + 1);
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,80 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.parser.HeapByteSource;
+import com.pnf.plugin.pdf.parser.IByteSource;
+import com.pnf.plugin.pdf.parser.PdfLexer;
+
+/**
+ * Tokenizer tests. See {@link PdfLexerBenchmark} for the throughput of the object parsers.
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfLexerTest extends TestCase {
+
+    public void testScan() {
+        IByteSource data = new HeapByteSource("<</Key [-12 007 +3 4.5 true]>>(s)<AB>%c".getBytes());
+        PdfLexer lexer = new PdfLexer();
+        assertEquals(PdfLexer.DICT_START, lexer.scan(data, 0));
+        assertEquals(1, lexer.getEnd());
+        assertEquals(PdfLexer.NAME, lexer.scan(data, 2));
+        assertEquals(4, lexer.getLength());
+        assertEquals(PdfLexer.ARRAY_START, lexer.scan(data, 7));
+
+        assertEquals(PdfLexer.INTEGER, lexer.scan(data, 8));
+        assertEquals(-12, lexer.getIntegerValue());
+        assertTrue(lexer.isCanonical());
+        assertFalse(lexer.isUnsigned());
+        assertEquals(PdfLexer.INTEGER, lexer.scan(data, 12));
+        assertEquals(7, lexer.getIntegerValue());
+        assertFalse(lexer.isCanonical());
+        assertTrue(lexer.isUnsigned());
+        assertEquals(PdfLexer.INTEGER, lexer.scan(data, 16));
+        assertFalse(lexer.isCanonical());
+        assertEquals(PdfLexer.REAL, lexer.scan(data, 19));
+        assertEquals(PdfLexer.KEYWORD, lexer.scan(data, 23));
+        // the end of the array is not part of the keyword
+        assertEquals(26, lexer.getEnd());
+
+        assertEquals(PdfLexer.ARRAY_END, lexer.scan(data, 27));
+        assertEquals(PdfLexer.DICT_END, lexer.scan(data, 28));
+        assertEquals(PdfLexer.STRING_START, lexer.scan(data, 30));
+        assertEquals(PdfLexer.HEX_STRING_START, lexer.scan(data, 33));
+        assertEquals(PdfLexer.COMMENT, lexer.scan(data, 37));
+        assertEquals(PdfLexer.NONE, lexer.scan(data, data.length()));
+    }
+
+    public void testLargeIntegers() {
+        IByteSource data = new HeapByteSource(
+                "9223372036854775807 -9223372036854775808 9223372036854775808".getBytes());
+        PdfLexer lexer = new PdfLexer();
+        lexer.scan(data, 0);
+        assertEquals(Long.MAX_VALUE, lexer.getIntegerValue());
+        assertFalse(lexer.isIntRange());
+        lexer.scan(data, 20);
+        assertEquals(Long.MIN_VALUE, lexer.getIntegerValue());
+        assertTrue(lexer.isCanonical());
+        assertEquals(PdfLexer.INTEGER, lexer.scan(data, 41));
+        assertFalse(lexer.isLongRange());
+    }
+}
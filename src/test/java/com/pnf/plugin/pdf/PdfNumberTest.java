@@ -0,0 +1,75 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.obj.PdfArray;
+import com.pnf.plugin.pdf.obj.PdfIndirectObj;
+import com.pnf.plugin.pdf.obj.PdfNumber;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfNumberTest extends TestCase {
+
+    public void testNumeric() {
+        assertTrue(PdfNumber.isNumeric("12"));
+        assertTrue(PdfNumber.isNumeric("-.5"));
+        assertTrue(PdfNumber.isNumeric("+4."));
+        assertFalse(PdfNumber.isNumeric("."));
+        assertFalse(PdfNumber.isNumeric("-"));
+        assertFalse(PdfNumber.isNumeric("1.2.3"));
+        assertFalse(PdfNumber.isNumeric("1e5"));
+    }
+
+    public void testValues() {
+        PdfIndirectObj o = PdfIndirectObjectHelper
+                .parseIndirectObject("5 0 obj [-12 +7 0.5 3000000000 -9223372036854775808 9223372036854775808] endobj");
+        PdfArray array = (PdfArray)o.getAttribute();
+        PdfNumber negative = (PdfNumber)array.getAttributes().get(0);
+        assertEquals(-12, negative.intValue());
+        assertEquals("-12", negative.toString());
+        assertEquals(7, ((PdfNumber)array.getAttributes().get(1)).intValue());
+
+        PdfNumber real = (PdfNumber)array.getAttributes().get(2);
+        assertFalse(real.isLong());
+        assertEquals(0.5, real.doubleValue());
+
+        PdfNumber large = (PdfNumber)array.getAttributes().get(3);
+        assertFalse(large.isInt());
+        assertEquals(3000000000L, large.longValue());
+        assertEquals(Long.MIN_VALUE, ((PdfNumber)array.getAttributes().get(4)).longValue());
+
+        PdfNumber overflow = (PdfNumber)array.getAttributes().get(5);
+        assertFalse(overflow.isLong());
+        assertEquals(9223372036854775808.0, overflow.doubleValue());
+        try {
+            overflow.longValue();
+            fail();
+        }
+        catch(NumberFormatException e) {
+            // expected
+        }
+    }
+
+}
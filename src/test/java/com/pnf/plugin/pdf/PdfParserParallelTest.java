@@ -0,0 +1,315 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+
+import junit.framework.TestCase;
+
+import org.mockito.Mockito;
+
+import com.pnf.plugin.pdf.filter.OutputLimit;
+import com.pnf.plugin.pdf.obj.IPdfAttribute;
+import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
+import com.pnf.plugin.pdf.obj.PdfArray;
+import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.obj.PdfDictionaryAttribute;
+import com.pnf.plugin.pdf.obj.PdfIndirectObj;
+import com.pnf.plugin.pdf.obj.PdfNameTable;
+import com.pnf.plugin.pdf.obj.PdfObjId;
+import com.pnf.plugin.pdf.obj.PdfStream;
+import com.pnf.plugin.pdf.obj.PdfString;
+import com.pnf.plugin.pdf.obj.PdfTrailer;
+import com.pnf.plugin.pdf.parser.HeapByteSource;
+import com.pnf.plugin.pdf.parser.PdfFile;
+import com.pnf.plugin.pdf.parser.PdfParser;
+import com.pnfsoftware.jeb.core.units.IUnitNotification;
+
+/**
+ * Parallel processing of the parser must give the same objects, decoded data and notifications as
+ * a single-threaded run, including when the decoded bytes budget of the document runs out.
+ * 
+ * @author PNF Software
+ *
+ */
+public class PdfParserParallelTest extends TestCase {
+
+    private static final File CORPUS = new File("src/test/resources");
+
+    private static final int PARALLELISM = 4;
+
+    public void testParallelDecoding() throws IOException {
+        int nbStreams = 0;
+        for(File file: listCorpus(null)) {
+            ParsedFile serial = parse(file, 1);
+            ParsedFile parallel = parse(file, PARALLELISM);
+            assertEquals(file.getName(), getDecodingState(serial), getDecodingState(parallel));
+            assertEquals(file.getName(), getNotifications(serial), getNotifications(parallel));
+            assertEquals(file.getName(), getCounters(serial), getCounters(parallel));
+            nbStreams += serial.parser.getStreams().size();
+        }
+        assertTrue(nbStreams > 0);
+    }
+
+    public void testParallelObjStm() throws IOException {
+        int nbExpanded = 0;
+        for(File file: listCorpus("/ObjStm")) {
+            ParsedFile serial = parse(file, 1);
+            ParsedFile parallel = parse(file, PARALLELISM);
+            assertEquals(file.getName(), getObjectState(serial), getObjectState(parallel));
+            assertEquals(file.getName(), getNotifications(serial), getNotifications(parallel));
+            nbExpanded += serial.statistics.getNbStreamedObjects();
+        }
+        assertTrue(nbExpanded > 0);
+    }
+
+    public void testParallelStringDecryption() throws IOException {
+        int nbDecrypted = 0;
+        for(File file: listCorpus("/Encrypt")) {
+            ParsedFile serial = parse(file, 1);
+            ParsedFile parallel = parse(file, PARALLELISM);
+            List<String> strings = getStrings(serial);
+            assertEquals(file.getName(), strings, getStrings(parallel));
+            assertEquals(file.getName(), getNotifications(serial), getNotifications(parallel));
+            for(String string: strings) {
+                if(string.contains(" -> ")) {
+                    nbDecrypted++;
+                }
+            }
+        }
+        assertTrue(nbDecrypted > 0);
+    }
+
+    public void testParallelDocumentBudget() throws IOException {
+        int nbTruncated = 0;
+        for(File file: listCorpus(null)) {
+            long decodedSize = getDecodedSize(parse(file, 1));
+            if(decodedSize < 2) {
+                continue;
+            }
+            // the budget runs out in the middle of the document
+            long budget = decodedSize / 2;
+            ParsedFile serial = parse(file, 1, budget);
+            ParsedFile parallel = parse(file, PARALLELISM, budget);
+            assertEquals(file.getName(), getDecodingState(serial), getDecodingState(parallel));
+            assertEquals(file.getName(), getNotifications(serial), getNotifications(parallel));
+            assertEquals(file.getName(), getCounters(serial), getCounters(parallel));
+            assertTrue(file.getName(), getDecodedSize(parallel) <= budget);
+            nbTruncated++;
+        }
+        assertTrue(nbTruncated > 0);
+    }
+
+    /**
+     * @param marker keep only the files containing it, null to keep all files
+     */
+    private static List<File> listCorpus(String marker) throws IOException {
+        List<File> files = new ArrayList<>();
+        File[] entries = CORPUS.listFiles();
+        assertNotNull("run from the project directory", entries);
+        Arrays.sort(entries);
+        for(File entry: entries) {
+            File[] children = entry.isDirectory() && !entry.getName().equals("expectedImages") ? entry.listFiles()
+                    : new File[]{entry};
+            Arrays.sort(children);
+            for(File file: children) {
+                if(file.isFile() && !file.getName().endsWith(".txt") && (marker == null
+                        || new String(Files.readAllBytes(file.toPath()), "ISO-8859-1").contains(marker))) {
+                    files.add(file);
+                }
+            }
+        }
+        return files;
+    }
+
+    private static class ParsedFile {
+        final PdfFileUnit unit = Mockito.mock(PdfFileUnit.class);
+        final PdfStatistics statistics = new PdfStatistics(unit);
+        final Map<PdfObjId, PdfFile> objects = new TreeMap<>();
+        final PdfParser parser = new PdfParser(unit);
+
+        ParsedFile() {
+            Mockito.when(unit.getStatistics()).thenReturn(statistics);
+            Mockito.when(unit.getObjects()).thenReturn(objects);
+            Mockito.when(unit.getTrailers()).thenReturn(new TreeMap<Long, PdfTrailer>());
+        }
+    }
+
+    private static ParsedFile parse(File file, int parallelism) throws IOException {
+        return parse(file, parallelism, -1);
+    }
+
+    /**
+     * @param budget decoded bytes budget of the document, -1 for no output limit
+     */
+    private static ParsedFile parse(File file, int parallelism, long budget) throws IOException {
+        ParsedFile parsed = new ParsedFile();
+        if(budget >= 0) {
+            Mockito.when(parsed.unit.getOutputLimit())
+                    .thenReturn(new OutputLimit(256_000_000, budget, Collections.<String, Integer> emptyMap()));
+        }
+        parsed.parser.setParallelism(parallelism);
+        parsed.parser.parse(new HeapByteSource(Files.readAllBytes(file.toPath())));
+        return parsed;
+    }
+
+    private static List<String> getDecodingState(ParsedFile parsed) {
+        List<String> state = new ArrayList<>();
+        for(PdfIndirectObj o: getObjects(parsed)) {
+            IPdfAttribute attribute = o.getAttribute();
+            if(attribute != null && attribute.getType() == Type.Stream) {
+                PdfStream stream = (PdfStream)attribute;
+                StringBuilder stb = new StringBuilder().append(o.getId()).append(' ').append(stream.getStreamType());
+                for(byte[] data: stream.getEncodedDataList()) {
+                    stb.append(' ').append(data.length).append(':').append(Arrays.hashCode(data));
+                }
+                byte[] decoded = stream.getDecodedData();
+                stb.append(" -> ").append(decoded == null ? -1: decoded.length).append(':')
+                        .append(Arrays.hashCode(decoded));
+                state.add(stb.toString());
+            }
+        }
+        for(PdfStream stream: parsed.parser.getStreams()) {
+            state.add("displayed " + stream.getId());
+        }
+        return state;
+    }
+
+    /**
+     * @return size of the decoded data of filtered streams
+     */
+    private static long getDecodedSize(ParsedFile parsed) {
+        long size = 0;
+        for(PdfIndirectObj o: getObjects(parsed)) {
+            IPdfAttribute attribute = o.getAttribute();
+            if(attribute != null && attribute.getType() == Type.Stream) {
+                PdfStream stream = (PdfStream)attribute;
+                if(!stream.getFilters(stream.getAttribute(PdfNameTable.DECODE_PARMS), null).isEmpty()) {
+                    byte[] decoded = stream.getDecodedData();
+                    size += decoded == null ? 0: decoded.length;
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return objects in map order, with the children of ObjStm streams in stream order
+     */
+    private static List<String> getObjectState(ParsedFile parsed) {
+        List<String> state = new ArrayList<>();
+        for(PdfIndirectObj o: getObjects(parsed)) {
+            String value = String.valueOf(o.getAttribute());
+            StringBuilder stb = new StringBuilder().append(o.getId()).append(' ').append(o.getType()).append(' ')
+                    .append(o.getStartIndex()).append('-').append(o.getEndIndex()).append(' ')
+                    .append(value.length()).append(':').append(value.hashCode());
+            if(o.getAttribute() != null && o.getAttribute().getType() == Type.Stream) {
+                stb.append(" children ").append(((PdfStream)o.getAttribute()).getObjStmId());
+            }
+            state.add(stb.toString());
+        }
+        return state;
+    }
+
+    /**
+     * @return strings of the objects, with their decrypted value if any, in object order
+     */
+    private static List<String> getStrings(ParsedFile parsed) {
+        List<String> strings = new ArrayList<>();
+        for(PdfIndirectObj o: getObjects(parsed)) {
+            collectStrings(o.getAttribute(), strings);
+        }
+        return strings;
+    }
+
+    private static void collectStrings(IPdfAttribute attribute, List<String> strings) {
+        if(attribute == null) {
+            return;
+        }
+        switch(attribute.getType()) {
+        case String:
+            PdfString string = (PdfString)attribute;
+            strings.add(string.getDecryptedValue() == null ? string.getValue()
+                    : string.getValue() + " -> " + string.getDecryptedValue());
+            break;
+        case Array:
+            for(IPdfAttribute element: ((PdfArray)attribute).getAttributes()) {
+                collectStrings(element, strings);
+            }
+            break;
+        case Dictionary:
+            for(PdfDictionaryAttribute entry: ((PdfDictionary)attribute).getAttributes()) {
+                collectStrings(entry.getValue(), strings);
+            }
+            break;
+        case Stream:
+            collectStrings(((PdfStream)attribute).getDictionary(), strings);
+            break;
+        default:
+            break;
+        }
+    }
+
+    private static List<PdfIndirectObj> getObjects(ParsedFile parsed) {
+        List<PdfIndirectObj> objects = new ArrayList<>();
+        for(Entry<PdfObjId, PdfFile> entry: parsed.objects.entrySet()) {
+            objects.add(entry.getValue().getObject(entry.getKey()));
+        }
+        return objects;
+    }
+
+    /**
+     * @return notifications by object and element, in the order they were added to an element
+     */
+    private static List<String> getNotifications(ParsedFile parsed) {
+        PdfStatistics statistics = parsed.statistics;
+        List<String> notifications = new ArrayList<>();
+        for(PdfIndirectObj o: statistics.anomalyKeys()) {
+            for(Entry<IPdfAttribute, List<IUnitNotification>> entry: statistics.getAnomalies(o).entrySet()) {
+                StringBuilder stb = new StringBuilder().append(o.getId()).append(' ').append(entry.getKey())
+                        .append(':');
+                for(IUnitNotification notification: entry.getValue()) {
+                    stb.append(' ').append(notification.getType()).append(' ').append(notification.getDescription());
+                }
+                notifications.add(stb.toString());
+            }
+        }
+        // elements of an object are not ordered
+        Collections.sort(notifications);
+        return notifications;
+    }
+
+    private static String getCounters(ParsedFile parsed) {
+        PdfStatistics statistics = parsed.statistics;
+        return String.format("%d %d %d %s %d %d %d %d %b%s", statistics.getNbIndirectObjects(),
+                statistics.getNbStreamedObjects(), statistics.getNbStreams(), statistics.getFiltersUsed(),
+                statistics.getLengthFallbacks(), statistics.getLengthFallbacksSkipped(),
+                statistics.getStreamLengthHits(), statistics.getStreamLengthMisses(), statistics.isEncrypted(),
+                statistics.toStringTokens());
+    }
+}
@@ -21,19 +21,25 @@ package com.pnf.plugin.pdf;
 import java.io.IOException;
 import java.util.Map;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.TestCase;
 
 import org.junit.Test;
 import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
 import com.pnf.plugin.pdf.obj.PdfBoolean;
 import com.pnf.plugin.pdf.obj.PdfDictionary;
 import com.pnf.plugin.pdf.obj.PdfIndirectObj;
 import com.pnf.plugin.pdf.obj.PdfNumber;
 import com.pnf.plugin.pdf.obj.PdfObjId;
+import com.pnf.plugin.pdf.obj.PdfTrailer;
+import com.pnf.plugin.pdf.parser.HeapByteSource;
 import com.pnf.plugin.pdf.parser.PdfFile;
 import com.pnf.plugin.pdf.parser.PdfParser;
+import com.pnf.plugin.pdf.parser.PdfXrefLoader;
 import com.pnfsoftware.jeb.core.input.BytesInput;
 
 /**
@@ -95,4 +101,109 @@ public class PdfParserTest extends TestCase {
         assertEquals(4, objects.size());
     }
 
+    @Test
+    public void testParseFromXref() throws IOException {
+        String header = "%PDF-1.4\n";
+        String unlisted = "9 0 obj\n18\nendobj\n";
+        String body = header + OBJ1 + OBJ2 + unlisted;
+        String xref = "xref\n0 3\n0000000000 65535 f \n" + String.format("%010d 00000 n \n", header.length())
+                + String.format("%010d 00000 n \n", header.length() + OBJ1.length())
+                + "trailer\n<</Size 3>>\nstartxref\n" + body.length() + "\n%%EOF\n";
+        byte[] pdf = (body + xref).getBytes();
+
+        Map<PdfObjId, PdfFile> objects = new TreeMap<PdfObjId, PdfFile>();
+        PdfFileUnit fileUnit = mockXrefUnit(objects);
+        PdfStatistics statistics = fileUnit.getStatistics();
+
+        PdfParser parser = new PdfParser(fileUnit);
+        parser.setXrefParsing(true);
+        parser.setXrefReportUnlisted(true);
+        parser.parse(new HeapByteSource(pdf));
+        assertTrue(objects.containsKey(new PdfObjId(1, 0, 0)));
+        assertTrue(objects.containsKey(new PdfObjId(2, 0, 0)));
+        assertFalse(objects.containsKey(new PdfObjId(9, 0, 0)));
+        assertEquals(1, statistics.getUnlistedObjects().size());
+    }
+
+    @Test
+    public void testXrefFallback() throws IOException {
+        // the trailer is parsed, then its /Prev section is out of file: the whole file is scanned
+        String body = "%PDF-1.4\n" + OBJ1;
+        String xref = "xref\n0 1\n0000000000 65535 f \ntrailer\n<</Size 1 /Prev 99999 /OpenAction 1 0 R>>\n"
+                + "startxref\n" + body.length() + "\n%%EOF\n";
+        byte[] pdf = (body + xref).getBytes();
+
+        PdfFileUnit scanUnit = mockXrefUnit(new TreeMap<PdfObjId, PdfFile>());
+        new PdfParser(scanUnit).parse(new HeapByteSource(pdf));
+
+        Map<PdfObjId, PdfFile> objects = new TreeMap<PdfObjId, PdfFile>();
+        PdfFileUnit fileUnit = mockXrefUnit(objects);
+        PdfParser parser = new PdfParser(fileUnit);
+        parser.setXrefParsing(true);
+        parser.parse(new HeapByteSource(pdf));
+        assertTrue(objects.containsKey(new PdfObjId(1, 0, 0)));
+        // notifications of the partial xref parse are not kept
+        assertEquals(scanUnit.getStatistics().getNotificationCount(), fileUnit.getStatistics().getNotificationCount());
+        assertEquals(scanUnit.getStatistics().toStringTokens(), fileUnit.getStatistics().toStringTokens());
+    }
+
+    @Test
+    public void testXrefBadOffsets() throws IOException {
+        String header = "%PDF-1.4\n";
+        String unlisted = "9 0 obj\n18\nendobj\n";
+        String body = header + OBJ1 + OBJ2 + unlisted;
+        // object 1 is listed inside its header, object 3 is not defined
+        String xref = "xref\n0 4\n0000000000 65535 f \n" + String.format("%010d 00000 n \n", header.length() + 5)
+                + String.format("%010d 00000 n \n", header.length() + OBJ1.length())
+                + String.format("%010d 00000 n \n", header.length() + OBJ1.length())
+                + "trailer\n<</Size 4>>\nstartxref\n" + body.length() + "\n%%EOF\n";
+        byte[] pdf = (body + xref).getBytes();
+
+        Map<PdfObjId, PdfFile> objects = new TreeMap<PdfObjId, PdfFile>();
+        PdfFileUnit fileUnit = mockXrefUnit(objects);
+        PdfParser parser = new PdfParser(fileUnit);
+        parser.setXrefParsing(true);
+        parser.parse(new HeapByteSource(pdf));
+        assertTrue(objects.containsKey(new PdfObjId(1, 0, 0)));
+        assertTrue(objects.containsKey(new PdfObjId(2, 0, 0)));
+        assertFalse(objects.containsKey(new PdfObjId(3, 0, 0)));
+        // the whole file is not scanned
+        assertFalse(objects.containsKey(new PdfObjId(9, 0, 0)));
+        String notifications = PdfStatistics.toString(fileUnit.getStatistics().getNotifications());
+        assertTrue(notifications.contains("1 xref entries do not point to their object"));
+        assertTrue(notifications.contains("is not found at its xref address"));
+
+        // no entry points to its object: the whole file is scanned
+        xref = "xref\n0 1\n0000000000 65535 f \n3 1\n" + String.format("%010d 00000 n \n", header.length())
+                + "trailer\n<</Size 4>>\nstartxref\n" + body.length() + "\n%%EOF\n";
+        objects = new TreeMap<PdfObjId, PdfFile>();
+        parser = new PdfParser(mockXrefUnit(objects));
+        parser.setXrefParsing(true);
+        parser.parse(new HeapByteSource((body + xref).getBytes()));
+        assertTrue(objects.containsKey(new PdfObjId(9, 0, 0)));
+    }
+
+    private static PdfFileUnit mockXrefUnit(Map<PdfObjId, PdfFile> objects) {
+        PdfFileUnit fileUnit = Mockito.mock(PdfFileUnit.class);
+        PdfStatistics statistics = new PdfStatistics(fileUnit);
+        AtomicReference<PdfXrefLoader> loader = new AtomicReference<PdfXrefLoader>();
+        Mockito.when(fileUnit.getStatistics()).thenReturn(statistics);
+        Mockito.when(fileUnit.getObjects()).thenReturn(objects);
+        Mockito.when(fileUnit.getTrailers()).thenReturn(new TreeMap<Long, PdfTrailer>());
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) {
+                loader.set((PdfXrefLoader)invocation.getArguments()[0]);
+                return null;
+            }
+        }).when(fileUnit).setObjectLoader(Mockito.any(PdfXrefLoader.class));
+        Mockito.when(fileUnit.getObjectLoader()).thenAnswer(new Answer<PdfXrefLoader>() {
+            @Override
+            public PdfXrefLoader answer(InvocationOnMock invocation) {
+                return loader.get();
+            }
+        });
+        return fileUnit;
+    }
+
 }
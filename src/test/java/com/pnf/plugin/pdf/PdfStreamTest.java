@@ -18,12 +18,25 @@ limitations under the License.
 
 package com.pnf.plugin.pdf;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
 import junit.framework.TestCase;
 
+import org.mockito.Mockito;
+
 import com.pnf.plugin.pdf.obj.IPdfAttribute.Type;
 import com.pnf.plugin.pdf.obj.PdfArray;
 import com.pnf.plugin.pdf.obj.PdfIndirectObj;
 import com.pnf.plugin.pdf.obj.PdfStream;
+import com.pnf.plugin.pdf.obj.PdfStream.StreamType;
+import com.pnf.plugin.pdf.parser.DecodedStreamCache;
+import com.pnf.plugin.pdf.parser.HeapByteSource;
+import com.pnf.plugin.pdf.parser.PdfFile;
+import com.pnfsoftware.jeb.util.format.Formatter;
+import com.pnfsoftware.jeb.util.io.IO;
 
 /**
  * 
@@ -54,4 +67,107 @@ public class PdfStreamTest extends TestCase {
                 stream.toString());
     }
 
+    public void testSourceBackedStream() throws IOException {
+        String data = "1 0 obj <</Length 6>>stream\nfirst!\nendstream endobj "
+                + "2 0 obj <</Length 6>>stream\nsecond\nendstream endobj";
+        HeapByteSource source = new HeapByteSource(data.getBytes());
+        DecodedStreamCache cache = new DecodedStreamCache(8);
+        PdfFileUnit unit = Mockito.mock(PdfFileUnit.class);
+        Mockito.when(unit.getStatistics()).thenReturn(new PdfStatistics(unit));
+        Mockito.when(unit.getDecodedStreamCache()).thenReturn(cache);
+        Mockito.when(unit.getSource()).thenReturn(source);
+
+        PdfIndirectObj o1 = new PdfIndirectObj(new PdfFile(unit), unit, 4);
+        long cursor = o1.parse(source, 4);
+        long start2 = data.indexOf("obj", (int)cursor);
+        PdfIndirectObj o2 = new PdfIndirectObj(new PdfFile(unit), unit, start2);
+        o2.parse(source, start2);
+        PdfStream s1 = (PdfStream)o1.getAttribute();
+        PdfStream s2 = (PdfStream)o2.getAttribute();
+        assertTrue(s1.isSourceBacked());
+        assertEquals("first!", new String(s1.getEncodedData()));
+
+        assertEquals("first!", new String(s1.getDecodedData()));
+        assertEquals("second", new String(s2.getDecodedData()));
+        // over budget: first stream was released, then decoded again
+        assertEquals(1, cache.getEvictionCount());
+        assertEquals("first!", new String(s1.getDecodedData()));
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    public void testLengthFastPath() {
+        String data = "1 0 obj <</Length 22>>stream\nbefore\nendstream\nafter\nendstream endobj "
+                + "2 0 obj <</Length 4>>stream\nlonger\nendstream endobj";
+        HeapByteSource source = new HeapByteSource(data.getBytes());
+        PdfFileUnit unit = Mockito.mock(PdfFileUnit.class);
+        PdfStatistics statistics = new PdfStatistics(unit);
+        Mockito.when(unit.getStatistics()).thenReturn(statistics);
+
+        PdfIndirectObj o1 = new PdfIndirectObj(new PdfFile(unit), unit, 4);
+        long cursor = o1.parse(source, 4);
+        // endstream in the data is skipped: the data ends at /Length
+        assertEquals("before\nendstream\nafter", new String(((PdfStream)o1.getAttribute()).getEncodedData()));
+        assertEquals(1, statistics.getStreamLengthHits());
+        assertEquals(1, statistics.getNotifications().size());
+        assertEquals("endstream keyword inside the stream data at address " + Integer.toHexString(
+                data.indexOf("endstream")).toUpperCase(), statistics.getNotifications().get(0).getDescription());
+
+        long start2 = data.indexOf("obj", (int)cursor);
+        PdfIndirectObj o2 = new PdfIndirectObj(new PdfFile(unit), unit, start2);
+        o2.parse(source, start2);
+        // wrong length: the data is scanned for endstream
+        assertEquals("longer", new String(((PdfStream)o2.getAttribute()).getEncodedData()));
+        assertEquals(1, statistics.getStreamLengthMisses());
+        assertEquals(1, statistics.getNotifications().size());
+    }
+
+    public void testLazyImageDecoding() throws Exception {
+        // two white rows in CCITT G4: one vertical mode code per row
+        String data = "1 0 obj <</Type/XObject/Subtype/Image/Width 8/Height 2/Filter/CCITTFaxDecode"
+                + "/DecodeParms <</K -1/Columns 16/Rows 2>>/Length 1>>stream\n\u00C0\nendstream endobj";
+        PdfFileUnit unit = Mockito.mock(PdfFileUnit.class);
+        PdfStatistics statistics = new PdfStatistics(unit);
+        Mockito.when(unit.getStatistics()).thenReturn(statistics);
+        Mockito.when(unit.isLazyImageDecoding()).thenReturn(true);
+        PdfIndirectObj o = new PdfIndirectObj(new PdfFile(unit), unit, 4);
+        o.parse(new HeapByteSource(data.getBytes("ISO-8859-1")), 4);
+        PdfStream stream = (PdfStream)o.getAttribute();
+
+        stream.decodeStream();
+        assertTrue(stream.isDecodedOnDemand());
+        assertEquals(1, statistics.getNotifications().size());
+        assertEquals("Image size is 16x2, declared 8x2", statistics.getNotifications().get(0).getDescription());
+
+        byte[] pixels = stream.getDecodedData();
+        assertTrue(Arrays.equals(new byte[]{-1, -1, -1, -1}, pixels));
+        assertEquals(1, statistics.getNotifications().size());
+    }
+
+    public void testStreamingDecoding() throws Exception {
+        byte[] xml = "<?xml version=\"1.0\"?><root>streamed</root>".getBytes();
+        Deflater deflater = new Deflater();
+        deflater.setInput(xml);
+        deflater.finish();
+        byte[] deflated = new byte[256];
+        deflated = Arrays.copyOf(deflated, deflater.deflate(deflated));
+        String encoded = Formatter.byteArrayToHexString(deflated) + ">";
+        String data = "1 0 obj <</Filter [/ASCIIHexDecode /FlateDecode] /Length " + encoded.length() + ">>stream\n"
+                + encoded + "\nendstream endobj";
+        PdfFileUnit unit = Mockito.mock(PdfFileUnit.class);
+        Mockito.when(unit.getStatistics()).thenReturn(new PdfStatistics(unit));
+        PdfIndirectObj o = new PdfIndirectObj(new PdfFile(unit), unit, 4);
+        o.parse(new HeapByteSource(data.getBytes()), 4);
+        PdfStream stream = (PdfStream)o.getAttribute();
+
+        // signature sniffing only decodes a prefix
+        assertEquals("<?xml", new String(stream.getDecodedPrefix(5)));
+        assertEquals(StreamType.XML.toString(), stream.getStreamType());
+
+        byte[] streamed;
+        try(InputStream in = stream.openDecodedStream()) {
+            streamed = IO.readInputStream(in);
+        }
+        assertTrue(Arrays.equals(xml, streamed));
+        assertTrue(Arrays.equals(stream.getDecodedData(), streamed));
+    }
 }
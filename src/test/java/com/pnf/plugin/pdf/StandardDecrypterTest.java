@@ -0,0 +1,127 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.SecretKeySpec;
+
+import junit.framework.TestCase;
+
+import com.sun.pdfview.PDFStringUtil;
+import com.sun.pdfview.decrypt.PDFPassword;
+import com.sun.pdfview.decrypt.StandardDecrypter;
+import com.sun.pdfview.decrypt.StandardDecrypter.EncryptionAlgorithm;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class StandardDecrypterTest extends TestCase {
+
+    private static final byte[] PW_PADDING = {0x28, (byte)0xBF, 0x4E, 0x5E, 0x4E, 0x75, (byte)0x8A, 0x41, 0x64, 0x00,
+            0x4E, 0x56, (byte)0xFF, (byte)0xFA, 0x01, 0x08, 0x2E, 0x2E, 0x00, (byte)0xB6, (byte)0xD0, 0x68, 0x3E,
+            (byte)0x80, 0x2F, 0x0C, (byte)0xA9, (byte)0xFE, 0x64, 0x53, 0x69, 0x7A};
+
+    private static final int P = -4;
+
+    private final byte[] oValue = new byte[32];
+
+    private byte[] generalKey;
+
+    private StandardDecrypter decrypter;
+
+    @Override
+    protected void setUp() throws Exception {
+        // 40-bit RC4, revision 2, empty user password
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        md5.update(PW_PADDING);
+        md5.update(oValue);
+        md5.update(new byte[]{(byte)P, (byte)(P >> 8), (byte)(P >> 16), (byte)(P >> 24)});
+        generalKey = new byte[5];
+        System.arraycopy(md5.digest(), 0, generalKey, 0, 5);
+        byte[] uValue = rc4(generalKey, PW_PADDING);
+        decrypter = new StandardDecrypter(EncryptionAlgorithm.RC4, null, 40, 2, oValue, uValue, P, true,
+                PDFPassword.EMPTY_PASSWORD);
+    }
+
+    public void testDecryptStrings() throws Exception {
+        String[] plain = {"Hello", "", "world", "(nested) string"};
+        String[] encrypted = new String[plain.length];
+        for(int i = 0; i < plain.length; i++) {
+            encrypted[i] = encrypt(12, 0, plain[i]);
+        }
+        String[] decrypted = decrypter.decryptStrings(12, 0, encrypted);
+        for(int i = 0; i < plain.length; i++) {
+            assertEquals(plain[i], decrypted[i]);
+            assertEquals(plain[i], decrypter.decryptString(12, 0, encrypted[i]));
+        }
+        // keys differ by object
+        assertFalse(plain[0].equals(decrypter.decryptString(13, 0, encrypted[0])));
+    }
+
+    public void testConcurrentDecryption() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Boolean>> results = new ArrayList<>();
+            for(int task = 0; task < 32; task++) {
+                int objNum = task % 8 + 1;
+                results.add(executor.submit(() -> {
+                    for(int i = 0; i < 200; i++) {
+                        String plain = "string " + i + " of object " + objNum;
+                        if(!plain.equals(decrypter.decryptString(objNum, 0, encrypt(objNum, 0, plain)))) {
+                            return false;
+                        }
+                    }
+                    return true;
+                }));
+            }
+            for(Future<Boolean> result: results) {
+                assertTrue(result.get());
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private String encrypt(int objNum, int objGen, String plain) throws Exception {
+        MessageDigest md5 = MessageDigest.getInstance("MD5");
+        md5.update(generalKey);
+        md5.update(new byte[]{(byte)objNum, (byte)(objNum >> 8), (byte)(objNum >> 16), (byte)objGen,
+                (byte)(objGen >> 8)});
+        byte[] key = new byte[generalKey.length + 5];
+        System.arraycopy(md5.digest(), 0, key, 0, key.length);
+        return PDFStringUtil.asBasicString(rc4(key, PDFStringUtil.asBytes(plain)));
+    }
+
+    private static byte[] rc4(byte[] key, byte[] data) throws Exception {
+        Cipher rc4 = Cipher.getInstance("RC4");
+        rc4.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(key, "RC4"));
+        return rc4.doFinal(data);
+    }
+}
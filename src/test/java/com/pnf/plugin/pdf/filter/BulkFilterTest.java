@@ -0,0 +1,150 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class BulkFilterTest extends TestCase {
+
+    public void testRunLengthDecode() throws Exception {
+        RunLengthDecode filter = new RunLengthDecode();
+        byte[] encoded = {2, 'a', 'b', 'c', (byte)254, 'x', 0, 'y', (byte)128, 5};
+        assertEquals("abcxxxy", new String(filter.decodeBytes(encoded, 0, encoded.length, null)));
+        // end of data marker is optional
+        assertEquals("abcxxxy", new String(filter.decodeBytes(encoded, 0, 8, null)));
+        try {
+            filter.decodeBytes(encoded, 0, 3, null);
+            fail();
+        }
+        catch(PdfFilterException e) {
+            assertEquals("ab", e.getBaos().toString());
+            assertEquals(3, e.getProcessed());
+        }
+    }
+
+    public void testRunLengthDecodedSizeOverInt() throws Exception {
+        // 2 bytes decode to 128: the decoded size is 2^31 + 128
+        int runs = (1 << 24) + 1;
+        byte[] encoded = new byte[runs * 2];
+        for(int i = 0; i < encoded.length; i += 2) {
+            encoded[i] = (byte)129;
+            encoded[i + 1] = 'x';
+        }
+        Map<String, Integer> noRatio = Collections.emptyMap();
+        OutputLimit previous = OutputLimit.begin(new OutputLimit(1_000_000, Long.MAX_VALUE, noRatio));
+        try {
+            try {
+                new RunLengthDecode().decodeBytes(encoded, 0, encoded.length, null);
+                fail();
+            }
+            catch(OutputLimitException e) {
+                assertEquals(1_000_000, e.getBaos().size());
+                assertEquals(((1L << 31) + 128) / encoded.length, e.getExpansionRatio());
+            }
+            Decoder d = new Decoder(null);
+            byte[] decoded = d.parse(Arrays.<IFilter> asList(new RunLengthDecode()), 0, encoded);
+            assertEquals(1_000_000, decoded.length);
+            assertTrue(d.getDecodingError() instanceof OutputLimitException);
+        }
+        finally {
+            OutputLimit.end(previous);
+        }
+    }
+
+    public void testSameAsReferenceDecoders() throws Exception {
+        String[] hex = {"48656c6C6f>", "4 8 6\n5 7>", "486", "48>6g", "48 > g", "48g6"};
+        for(String encoded: hex) {
+            assertEquals(decodeReference(true, encoded.getBytes()), decode(new ASCIIHexDecode(), encoded.getBytes()));
+        }
+        String[] a85 = {"87cURD]i,\"Ebo80~>", "z!!~>", "87cURz~>", "87c~x", "87cUR", "~>"};
+        for(String encoded: a85) {
+            assertEquals(decodeReference(false, encoded.getBytes()), decode(new ASCII85Decode(), encoded.getBytes()));
+        }
+    }
+
+    public void testChainedDecoding() throws Exception {
+        byte[] content = "Hello world, Hello world, Hello world".getBytes();
+        byte[] runLength = new byte[content.length + 2];
+        runLength[0] = (byte)(content.length - 1);
+        System.arraycopy(content, 0, runLength, 1, content.length);
+        runLength[runLength.length - 1] = (byte)128;
+        byte[] hex = toHex(runLength);
+        byte[] twice = toHex(hex);
+
+        List<IFilter> filters = Arrays.<IFilter> asList(new ASCIIHexDecode(), new ASCIIHexDecode(),
+                new RunLengthDecode());
+        Decoder d = new Decoder(null);
+        assertTrue(Arrays.equals(content, d.parse(filters, 0, twice)));
+        assertNull(d.getDecodingError());
+
+        // partial output of a failing layer is passed to the next one
+        byte[] broken = Arrays.copyOf(twice, twice.length + 2);
+        broken[twice.length - 1] = 'g';
+        d = new Decoder(null);
+        assertTrue(Arrays.equals(content, d.parse(filters, 0, broken)));
+        assertEquals(0, d.getFilterIndex());
+    }
+
+    private static byte[] toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b: data) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.append('>').toString().getBytes();
+    }
+
+    private static String decode(IFilter filter, byte[] encoded) {
+        try {
+            return Arrays.toString(filter.decodeBytes(encoded, 0, encoded.length, null));
+        }
+        catch(PdfFilterException e) {
+            return e.getMessage() + e.getProcessed() + Arrays.toString(e.getBaos().toByteArray());
+        }
+        catch(FilterStreamException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    private static String decodeReference(boolean hex, byte[] encoded) {
+        ByteBuffer buf = ByteBuffer.wrap(encoded);
+        try {
+            ByteBuffer bb = hex ? com.sun.pdfview.decode.ASCIIHexDecode.decode(buf, null)
+                    : com.sun.pdfview.decode.ASCII85Decode.decode(buf, null);
+            return Arrays.toString(bb.array());
+        }
+        catch(PdfFilterException e) {
+            return e.getMessage() + e.getProcessed() + Arrays.toString(e.getBaos().toByteArray());
+        }
+    }
+}
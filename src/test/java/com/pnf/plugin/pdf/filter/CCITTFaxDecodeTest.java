@@ -0,0 +1,133 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.PdfIndirectObjectHelper;
+import com.pnf.plugin.pdf.obj.PdfDictionary;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class CCITTFaxDecodeTest extends TestCase {
+
+    // EOL, mode codes and some white and black run codes
+    private static final String[] CODES = {"000000000001", "1", "011", "010", "000011", "000010", "0000011",
+            "0000010", "0001", "001", "0000001111", "00000011111", "00110101", "000111", "0111", "11011",
+            "00000001000", "0000110111", "11", "10", "000000000000"};
+
+    public void testSameAsReferenceDecoder() throws Exception {
+        Random random = new Random(0);
+        for(int i = 0; i < 3000; i++) {
+            int k = random.nextInt(3) - 1;
+            StringBuilder bits = new StringBuilder();
+            if(k >= 0 && random.nextBoolean()) {
+                bits.append(k > 0 ? "0000000000011": "000000000001");
+            }
+            for(int j = random.nextInt(100); j > 0; j--) {
+                bits.append(CODES[random.nextInt(CODES.length)]);
+            }
+            byte[] data = toBytes(bits.toString());
+            String parms = String.format("<</K %d /Columns %d /Rows %d /EncodedByteAlign %b /BlackIs1 %b>>", k,
+                    1 + random.nextInt(60), 1 + random.nextInt(10), random.nextBoolean(), random.nextBoolean());
+            PdfDictionary dictionary = parse("<</Width 10 /Height 3>>");
+            CCITTFaxDecode filter = new CCITTFaxDecode(parse(parms));
+            assertTrue(parms + " " + bits, Arrays.equals(decodeReference(data, dictionary, parse(parms)),
+                    decode(filter, data, dictionary)));
+        }
+    }
+
+    public void testConcurrentDecoding() throws Exception {
+        // G4: 4 white, 8 black and 4 white pixels by horizontal mode, then the same line by vertical modes
+        int rows = 2000;
+        StringBuilder bits = new StringBuilder("001" + "1011" + "000101" + "1");
+        for(int i = 1; i < rows; i++) {
+            bits.append("111");
+        }
+        byte[] data = toBytes(bits.toString());
+        PdfDictionary dictionary = parse("<</Width 16 /Height " + rows + ">>");
+        PdfDictionary parms = parse("<</K -1>>");
+        byte[] expected = new byte[rows * 2];
+        for(int i = 0; i < expected.length; i += 2) {
+            expected[i] = (byte)0xF0;
+            expected[i + 1] = 0x0F;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<byte[]>> results = new ArrayList<>();
+            for(int i = 0; i < 32; i++) {
+                results.add(executor.submit(() -> new CCITTFaxDecode(parms).decodeBytes(data, 0, data.length,
+                        dictionary)));
+            }
+            for(Future<byte[]> result: results) {
+                assertTrue(Arrays.equals(expected, result.get()));
+            }
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static PdfDictionary parse(String dictionary) throws Exception {
+        return (PdfDictionary)PdfIndirectObjectHelper.parseIndirectObject("1 0 obj " + dictionary + " endobj")
+                .getAttribute();
+    }
+
+    private static byte[] toBytes(String bits) {
+        byte[] data = new byte[(bits.length() + 7) / 8];
+        for(int i = 0; i < bits.length(); i++) {
+            if(bits.charAt(i) == '1') {
+                data[i >> 3] |= 0x80 >> (i & 7);
+            }
+        }
+        return data;
+    }
+
+    private static byte[] decode(IFilter filter, byte[] data, PdfDictionary dictionary) {
+        try {
+            return filter.decodeBytes(data, 0, data.length, dictionary);
+        }
+        catch(Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] decodeReference(byte[] data, PdfDictionary dictionary, PdfDictionary parms) {
+        try {
+            return com.sun.pdfview.decode.CCITTFaxDecode.decode(PDFObject.getInstance(dictionary),
+                    PDFObject.getInstance(parms), data.clone());
+        }
+        catch(Exception e) {
+            return null;
+        }
+    }
+}
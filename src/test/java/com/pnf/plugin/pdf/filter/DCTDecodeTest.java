@@ -0,0 +1,82 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class DCTDecodeTest extends TestCase {
+
+    public void testDecodePixels() throws Exception {
+        byte[] jpeg = encode(BufferedImage.TYPE_INT_RGB, 0x2080E0);
+        byte[] pixels = new DCTDecode(null).decodeBytes(jpeg, 0, jpeg.length, null);
+        assertEquals(24 * 10 * 3, pixels.length);
+        assertEquals(0x20, pixels[0] & 0xFF, 4);
+        assertEquals(0x80, pixels[1] & 0xFF, 4);
+        assertEquals(0xE0, pixels[2] & 0xFF, 4);
+
+        jpeg = encode(BufferedImage.TYPE_BYTE_GRAY, 0x808080);
+        assertEquals(24 * 10, new DCTDecode(null).decodeBytes(jpeg, 0, jpeg.length, null).length);
+    }
+
+    public void testNoPixelDecoding() throws Exception {
+        byte[] jpeg = encode(BufferedImage.TYPE_INT_RGB, 0x2080E0);
+        byte[] data = new byte[jpeg.length + 2];
+        System.arraycopy(jpeg, 0, data, 1, jpeg.length);
+        DCTDecode filter = new DCTDecode(null);
+        filter.setPixelDecoding(false);
+        assertTrue(Arrays.equals(jpeg, filter.decodeBytes(data, 1, jpeg.length, null)));
+    }
+
+    public void testReadHeader() throws Exception {
+        byte[] jpeg = encode(BufferedImage.TYPE_INT_RGB, 0);
+        ImageHeader header = DCTDecode.readHeader(jpeg, 0, jpeg.length);
+        assertEquals(24, header.getWidth());
+        assertEquals(10, header.getHeight());
+        assertEquals(3, header.getComponents());
+        assertEquals(8, header.getBitsPerComponent());
+
+        assertNull(DCTDecode.readHeader(jpeg, 1, jpeg.length - 1));
+        assertNull(DCTDecode.readHeader(jpeg, 0, 20));
+    }
+
+    private static byte[] encode(int type, int rgb) throws Exception {
+        BufferedImage image = new BufferedImage(24, 10, type);
+        for(int y = 0; y < image.getHeight(); y++) {
+            for(int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, rgb);
+            }
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(ImageIO.write(image, "jpeg", out));
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,58 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.filter;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.filter.Decoder.LengthFallback;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class DecoderTest extends TestCase {
+
+    public void testLengthFallback() throws Exception {
+        // end of line before endstream, without end of data marker: read as a truncated run
+        byte[] encoded = {2, 'a', 'b', 'c', '\r', '\n'};
+        Decoder d = new Decoder(null);
+        assertEquals("abc", new String(d.parse(0, new RunLengthDecode(), encoded, 4)));
+        assertEquals(LengthFallback.DECODED, d.getLengthFallback());
+
+        d = new Decoder(null);
+        assertEquals("abc\n", new String(d.parse(0, new RunLengthDecode(), encoded, null)));
+        assertEquals(LengthFallback.NONE, d.getLengthFallback());
+        assertNotNull(d.getDecodingError());
+    }
+
+    public void testLengthFallbackSkipped() throws Exception {
+        // the error lies well before /Length: decoding the /Length range would fail the same way
+        byte[] encoded = "4142x43444546474849>\r\n".getBytes();
+        Decoder d = new Decoder(null);
+        assertEquals("AB", new String(d.parse(0, new ASCIIHexDecode(), encoded, encoded.length - 2)));
+        assertEquals(LengthFallback.SKIPPED, d.getLengthFallback());
+        assertEquals(5, d.getDecodingError().getProcessed());
+
+        d = new Decoder(null);
+        assertEquals("AB", new String(d.parse(0, new ASCIIHexDecode(), encoded, 6)));
+        assertEquals(LengthFallback.DECODED, d.getLengthFallback());
+    }
+}
@@ -0,0 +1,105 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.Deflater;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.PdfIndirectObjectHelper;
+import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.obj.PdfIndirectObj;
+
+/**
+ * Allocation benchmark of the filter layer: bytes allocated per decoded MB when a stream is decoded
+ * from a range of a larger file buffer.
+ * 
+ * @author PNF Software
+ *
+ */
+public class FilterAllocationTest extends TestCase {
+
+    private static final int SIZE = 1 << 20;
+
+    private static final int OFFSET = 1024;
+
+    public void testFlateDecodeAllocations() throws Exception {
+        byte[] content = new byte[SIZE];
+        new Random(0).nextBytes(content); // barely compressible: encoded and decoded sizes are close
+        Deflater deflater = new Deflater();
+        deflater.setInput(content);
+        deflater.finish();
+        byte[] file = new byte[OFFSET + SIZE + 4096];
+        int length = deflater.deflate(file, OFFSET, file.length - OFFSET);
+        deflater.end();
+
+        FlateDecode filter = new FlateDecode(null);
+        assertEquals(SIZE, filter.decodeBytes(file, OFFSET, length, null).length); // warm up
+        double perMb = measureAllocations(filter, file, length);
+        if(perMb < 0) {
+            return; // allocation accounting not supported by this VM
+        }
+        // output is inflated in a pooled buffer: the result is the only allocation, about 1 MB per MB
+        assertTrue("allocated " + perMb + " bytes per decoded MB", perMb < 1.25 * SIZE);
+    }
+
+    private static double measureAllocations(IFilter filter, byte[] file, int length) throws Exception {
+        java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if(!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        com.sun.management.ThreadMXBean allocations = (com.sun.management.ThreadMXBean)bean;
+        long threadId = Thread.currentThread().getId();
+        long before = allocations.getThreadAllocatedBytes(threadId);
+        if(before < 0) {
+            return -1;
+        }
+        int rounds = 8;
+        long decoded = 0;
+        for(int i = 0; i < rounds; i++) {
+            decoded += filter.decodeBytes(file, OFFSET, length, null).length;
+        }
+        long allocated = allocations.getThreadAllocatedBytes(threadId) - before;
+        return allocated * (double)SIZE / decoded;
+    }
+
+    public void testFlateDecodeSizeHints() throws Exception {
+        byte[] content = new byte[100_000];
+        new Random(1).nextBytes(content);
+        Deflater deflater = new Deflater();
+        deflater.setInput(content);
+        deflater.finish();
+        byte[] deflated = new byte[content.length + 1024];
+        int length = deflater.deflate(deflated);
+        deflater.end();
+
+        FlateDecode filter = new FlateDecode(null);
+        for(int dl: new int[]{content.length, 10, content.length * 3}) {
+            PdfIndirectObj o = PdfIndirectObjectHelper.parseIndirectObject("1 0 obj <</DL " + dl + ">> endobj");
+            byte[] decoded = filter.decodeBytes(deflated, 0, length, (PdfDictionary)o.getAttribute());
+            assertTrue("DL " + dl, Arrays.equals(content, decoded));
+        }
+        assertTrue(Arrays.equals(content, filter.decodeBytes(deflated, 0, length, null)));
+        assertEquals(0, filter.decodeBytes(deflated, 0, length / 2, null).length); // truncated
+    }
+}
@@ -0,0 +1,104 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class ImageHeaderTest extends TestCase {
+
+    public void testJpxHeader() throws Exception {
+        byte[] codestream = codestream(640, 480, 3);
+        ImageHeader header = new JPXDecode(null).readHeader(codestream, 0, codestream.length, null);
+        assertEquals("640x480, 3 components of 8 bits", header.toString());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(12);
+        out.writeBytes("jP  ");
+        out.writeInt(0x0D0A870A);
+        out.writeInt(8 + 8 + 14);
+        out.writeBytes("jp2h");
+        out.writeInt(8 + 14);
+        out.writeBytes("ihdr");
+        out.writeInt(200);
+        out.writeInt(100);
+        out.writeShort(1);
+        out.writeByte(7);
+        out.writeByte(7);
+        out.writeShort(0);
+        byte[] jp2 = bytes.toByteArray();
+        header = new JPXDecode(null).readHeader(jp2, 0, jp2.length, null);
+        assertEquals("100x200, 1 components of 8 bits", header.toString());
+
+        assertNull(new JPXDecode(null).readHeader(jp2, 0, 20, null));
+    }
+
+    public void testJbig2Header() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        // segment 0: page information, associated to page 1
+        out.writeInt(0);
+        out.writeByte(48);
+        out.writeByte(0);
+        out.writeByte(1);
+        out.writeInt(19);
+        out.writeInt(1700);
+        out.writeInt(2200);
+        byte[] jbig2 = bytes.toByteArray();
+        ImageHeader header = new JBIG2Decode(null).readHeader(jbig2, 0, jbig2.length, null);
+        assertEquals("1700x2200, 1 components of 1 bits", header.toString());
+
+        assertNull(new JBIG2Decode(null).readHeader(jbig2, 0, 12, null));
+    }
+
+    private static byte[] codestream(int width, int height, int components) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeShort(0xFF4F);
+        out.writeShort(0xFF51);
+        out.writeShort(38 + 3 * components);
+        out.writeShort(0);
+        out.writeInt(width + 10);
+        out.writeInt(height + 20);
+        out.writeInt(10);
+        out.writeInt(20);
+        out.writeInt(width);
+        out.writeInt(height);
+        out.writeInt(0);
+        out.writeInt(0);
+        out.writeShort(components);
+        for(int i = 0; i < components; i++) {
+            out.writeByte(7);
+            out.writeByte(1);
+            out.writeByte(1);
+        }
+        return bytes.toByteArray();
+    }
+}
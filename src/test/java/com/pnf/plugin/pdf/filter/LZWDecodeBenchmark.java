@@ -0,0 +1,75 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.filter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Throughput benchmark of {@link LZWDecode} against {@link com.sun.pdfview.decode.LZWDecode}, the
+ * decoder it replaces, on the same content-stream-like data (4 MB by default, or the size in MB given
+ * as argument). Not part of the test suite: run its main from the project directory.
+ * 
+ * @author PNF Software
+ *
+ */
+public class LZWDecodeBenchmark {
+
+    private static final int WARMUP_ROUNDS = 3;
+
+    private static final int ROUNDS = 5;
+
+    public static void main(String[] args) throws Exception {
+        int size = (args.length > 0 ? Integer.parseInt(args[0]): 4) * 1024 * 1024;
+        byte[] content = LZWDecodeTest.randomContent(new Random(0), size);
+        // padding byte: both decoders stop on the last input byte (see LZWDecodeTest)
+        byte[] encoded = LZWDecodeTest.encode(content, 1);
+        encoded = Arrays.copyOf(encoded, encoded.length + 1);
+        LZWDecode filter = new LZWDecode(null);
+        if(!Arrays.equals(content, filter.decodeBytes(encoded, 0, encoded.length, null))
+                || !Arrays.equals(content, decodeReference(encoded))) {
+            throw new AssertionError("Decoders disagree on the benchmark content");
+        }
+
+        double referenceSeconds = Double.MAX_VALUE;
+        double filterSeconds = Double.MAX_VALUE;
+        for(int round = 0; round < WARMUP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            decodeReference(encoded);
+            long middle = System.nanoTime();
+            filter.decodeBytes(encoded, 0, encoded.length, null);
+            long end = System.nanoTime();
+            if(round >= WARMUP_ROUNDS) {
+                // best round: least disturbed by the JIT and the GC
+                referenceSeconds = Math.min(referenceSeconds, (middle - start) / 1e9);
+                filterSeconds = Math.min(filterSeconds, (end - middle) / 1e9);
+            }
+        }
+
+        double mb = content.length / 1e6;
+        System.out.format("%.1f MB decoded (%d bytes encoded): reference %.0f MB/s, LZWDecode %.0f MB/s%n", mb,
+                encoded.length, mb / referenceSeconds, mb / filterSeconds);
+    }
+
+    private static byte[] decodeReference(byte[] encoded) throws Exception {
+        ByteBuffer decoded = com.sun.pdfview.decode.LZWDecode.decode(ByteBuffer.wrap(encoded), null);
+        return Arrays.copyOf(decoded.array(), decoded.limit());
+    }
+}
@@ -0,0 +1,211 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.PdfIndirectObjectHelper;
+import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnf.plugin.pdf.parser.PdfFilterException;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class LZWDecodeTest extends TestCase {
+
+    public void testSameAsReferenceDecoder() throws Exception {
+        Random random = new Random(0);
+        LZWDecode filter = new LZWDecode(null);
+        for(int i = 0; i < 200; i++) {
+            byte[] content = randomContent(random, random.nextInt(20_000));
+            byte[] encoded = encode(content, 1);
+            // includes the stop codes lying in the last byte, missed by both decoders
+            assertTrue(Arrays.equals(decodeReference(encoded), decode(filter, encoded)));
+            byte[] padded = Arrays.copyOf(encoded, encoded.length + 1);
+            assertTrue(Arrays.equals(content, decodeReference(padded)));
+            assertTrue(Arrays.equals(content, decode(filter, padded)));
+        }
+    }
+
+    public void testEarlyChange() throws Exception {
+        byte[] content = randomContent(new Random(1), 50_000);
+        PdfDictionary parms = (PdfDictionary)PdfIndirectObjectHelper
+                .parseIndirectObject("1 0 obj <</EarlyChange 0>> endobj").getAttribute();
+        byte[] encoded = encode(content, 0);
+        byte[] padded = Arrays.copyOf(encoded, encoded.length + 1); // see last byte quirk
+        assertTrue(Arrays.equals(content, new LZWDecode(parms).decodeBytes(padded, 0, padded.length, null)));
+        assertFalse(Arrays.equals(content, decode(new LZWDecode(null), padded)));
+    }
+
+    public void testUndefinedCode() throws Exception {
+        // 300 is past the next code to define (259)
+        assertInvalidCode(codes(256, 'a', 'b', 300, 257), "ab");
+        // after a clear, 258 is no longer defined, even though its stale entry is still in the table
+        assertInvalidCode(codes(256, 'a', 'b', 258, 256, 258, 257), "abab");
+        // the next code to define is valid: previous string followed by its first byte
+        byte[] encoded = codes(256, 'a', 'b', 'a', 260, 257);
+        byte[] decoded = new LZWDecode(null).decodeBytes(encoded, 0, encoded.length, null);
+        assertEquals("abaaa", new String(decoded, "ISO-8859-1"));
+    }
+
+    private static void assertInvalidCode(byte[] encoded, String decodedPrefix) throws Exception {
+        try {
+            new LZWDecode(null).decodeBytes(encoded, 0, encoded.length, null);
+            fail();
+        }
+        catch(PdfFilterException e) {
+            assertEquals("Invalid code in LZWDecode", e.getMessage());
+            assertEquals(decodedPrefix, new String(e.getBaos().toByteArray(), "ISO-8859-1"));
+        }
+    }
+
+    /**
+     * Encode 9-bit codes, followed by a padding byte (see last byte quirk)
+     */
+    private static byte[] codes(int... codes) {
+        BitWriter writer = new BitWriter();
+        for(int code: codes) {
+            writer.write(code, 9);
+        }
+        writer.write(0, 8);
+        return writer.toByteArray();
+    }
+
+    private static byte[] decode(IFilter filter, byte[] encoded) {
+        try {
+            return filter.decodeBytes(encoded, 0, encoded.length, null);
+        }
+        catch(PdfFilterException e) {
+            return e.getBaos().toByteArray();
+        }
+        catch(Exception e) {
+            return null;
+        }
+    }
+
+    private static byte[] decodeReference(byte[] encoded) {
+        try {
+            return com.sun.pdfview.decode.LZWDecode.decode(ByteBuffer.wrap(encoded), null).array();
+        }
+        catch(PdfFilterException e) {
+            return e.getBaos().toByteArray();
+        }
+        catch(Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Text-like content: runs of words from a small vocabulary, with some noise
+     */
+    static byte[] randomContent(Random random, int size) {
+        String[] words = {"BT ", "/F1 12 Tf ", "72 712 Td ", "(Hello) Tj ", "ET\n", "0 0 1 rg ", "q ", "Q\n"};
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        while(out.size() < size) {
+            if(random.nextInt(10) == 0) {
+                out.write(random.nextInt(256));
+            }
+            else {
+                byte[] word = words[random.nextInt(words.length)].getBytes();
+                out.write(word, 0, word.length);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    static byte[] encode(byte[] content, int earlyChange) {
+        BitWriter writer = new BitWriter();
+        Map<Integer, Integer> table = new HashMap<>();
+        int codeLength = 9;
+        int emitted = 0;
+        writer.write(256, codeLength);
+        int current = -1;
+        for(byte b: content) {
+            if(current == -1) {
+                current = b & 0xFF;
+                continue;
+            }
+            int key = current << 8 | (b & 0xFF);
+            Integer code = table.get(key);
+            if(code != null) {
+                current = code;
+                continue;
+            }
+            writer.write(current, codeLength);
+            emitted++;
+            table.put(key, 257 + emitted);
+            if(emitted >= 2) {
+                // mirror the table of the decoder, which is one code late
+                int decoderTableSize = 257 + emitted;
+                if(decoderTableSize + earlyChange >= 1 << codeLength && codeLength < 12) {
+                    codeLength++;
+                }
+            }
+            if(table.size() >= 3800) {
+                writer.write(256, codeLength);
+                table.clear();
+                codeLength = 9;
+                emitted = 0;
+            }
+            current = b & 0xFF;
+        }
+        if(current != -1) {
+            writer.write(current, codeLength);
+            emitted++;
+            if(emitted >= 2 && 257 + emitted + earlyChange >= 1 << codeLength && codeLength < 12) {
+                codeLength++;
+            }
+        }
+        writer.write(257, codeLength);
+        return writer.toByteArray();
+    }
+
+    private static class BitWriter {
+        private ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int buffer;
+        private int count;
+
+        void write(int code, int length) {
+            buffer = buffer << length | code;
+            count += length;
+            while(count >= 8) {
+                count -= 8;
+                out.write(buffer >> count);
+            }
+        }
+
+        byte[] toByteArray() {
+            if(count > 0) {
+                out.write(buffer << (8 - count));
+            }
+            return out.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,183 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+package com.pnf.plugin.pdf.filter;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import java.util.zip.DeflaterOutputStream;
+
+import junit.framework.TestCase;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class OutputLimitTest extends TestCase {
+
+    public void testFlateBomb() throws Exception {
+        byte[] bomb = deflateZeros(32_000_000);
+        OutputLimit previous = OutputLimit.begin(limit(1_000_000, 0));
+        try {
+            new FlateDecode(null).decodeBytes(bomb, 0, bomb.length, null);
+            fail();
+        }
+        catch(OutputLimitException e) {
+            // truncated prefix is kept
+            assertEquals(1_000_000, e.getBaos().size());
+            assertTrue(e.getExpansionRatio() >= 1_000_000 / bomb.length);
+        }
+        finally {
+            OutputLimit.end(previous);
+        }
+        // no limit out of scope
+        assertEquals(32_000_000, new FlateDecode(null).decodeBytes(bomb, 0, bomb.length, null).length);
+    }
+
+    public void testRatioThreshold() throws Exception {
+        byte[] bomb = deflateZeros(12_000_000);
+        OutputLimit previous = OutputLimit.begin(limit(256_000_000, 100));
+        try {
+            new FlateDecode(null).decodeBytes(bomb, 0, bomb.length, null);
+            fail();
+        }
+        catch(OutputLimitException e) {
+            // ratios are only checked past the floor
+            assertEquals(OutputLimit.RATIO_CHECK_FLOOR, e.getBaos().size());
+        }
+        finally {
+            OutputLimit.end(previous);
+        }
+    }
+
+    public void testChainedDecoding() throws Exception {
+        byte[] runs = new byte[21];
+        for(int i = 0; i < runs.length - 1; i += 2) {
+            runs[i] = (byte)129; // 128 repetitions
+            runs[i + 1] = 'a';
+        }
+        runs[runs.length - 1] = (byte)128;
+        OutputLimit previous = OutputLimit.begin(limit(1000, 0));
+        try {
+            Decoder d = new Decoder(null);
+            byte[] decoded = d.parse(Arrays.<IFilter> asList(new ASCIIHexDecode(), new RunLengthDecode()), 0,
+                    toHex(runs));
+            assertEquals(1000, decoded.length);
+            assertTrue(d.getDecodingError() instanceof OutputLimitException);
+            assertEquals(1, d.getFilterIndex());
+        }
+        finally {
+            OutputLimit.end(previous);
+        }
+    }
+
+    public void testDocumentBudget() throws Exception {
+        OutputLimit limit = new OutputLimit(100, 250, Collections.<String, Integer> emptyMap());
+        // streams decoded concurrently all get their full ceiling: the budget is charged afterwards
+        OutputLimit[] streams = new OutputLimit[4];
+        for(int i = 0; i < streams.length; i++) {
+            streams[i] = limit.forStream();
+            assertEquals(100, getMaxSize(streams[i]));
+        }
+        decode(streams[0], 100);
+        decode(streams[1], 100);
+        decode(streams[2], 80);
+        decode(streams[3], 40);
+        assertTrue(limit.charge(streams[0], 100));
+        assertTrue(limit.charge(streams[1], 100));
+        // over what is left: nothing charged, the stream is to be decoded again under 50
+        assertFalse(limit.charge(streams[2], 80));
+        assertEquals(50, limit.getDocumentBytesLeft());
+        assertTrue(limit.charge(streams[3], 40));
+        assertEquals(10, limit.getDocumentBytesLeft());
+        // fixed ceilings of streams decoded again ignore the budget
+        assertEquals(100, getMaxSize(limit.forStream(100)));
+    }
+
+    public void testDeferredCharges() throws Exception {
+        int[] applied = new int[1];
+        List<BooleanSupplier> previous = OutputLimit.beginDeferredCharges();
+        List<BooleanSupplier> charges;
+        try {
+            assertTrue(OutputLimit.applyOrDefer(() -> ++applied[0] != 2));
+            assertTrue(OutputLimit.applyOrDefer(() -> ++applied[0] != 2));
+            assertEquals(0, applied[0]);
+        }
+        finally {
+            charges = OutputLimit.endDeferredCharges(previous);
+        }
+        assertEquals(2, charges.size());
+        // applied in order, all of them even after a failure
+        assertFalse(OutputLimit.applyDeferredCharges(charges));
+        assertEquals(2, applied[0]);
+        // applied now out of a deferring scope
+        assertTrue(OutputLimit.applyOrDefer(() -> ++applied[0] == 3));
+    }
+
+    /**
+     * Record the output of a filter of a stream decoded under a limit
+     */
+    private static void decode(OutputLimit stream, int outputSize) {
+        OutputLimit previous = OutputLimit.begin(stream);
+        try {
+            OutputLimit.recordOutput(outputSize);
+        }
+        finally {
+            OutputLimit.end(previous);
+        }
+    }
+
+    private static int getMaxSize(OutputLimit stream) {
+        OutputLimit previous = OutputLimit.begin(stream);
+        try {
+            return OutputLimit.getMaxSize(new RunLengthDecode(), 10);
+        }
+        finally {
+            OutputLimit.end(previous);
+        }
+    }
+
+    private static OutputLimit limit(long ceiling, int flateRatio) {
+        return new OutputLimit(ceiling, Long.MAX_VALUE, Collections.singletonMap("FlateDecode", flateRatio))
+                .forStream(ceiling);
+    }
+
+    private static byte[] deflateZeros(int size) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try(DeflaterOutputStream out = new DeflaterOutputStream(baos)) {
+            byte[] zeros = new byte[1 << 20];
+            for(int written = 0; written < size; written += zeros.length) {
+                out.write(zeros, 0, Math.min(zeros.length, size - written));
+            }
+        }
+        return baos.toByteArray();
+    }
+
+    private static byte[] toHex(byte[] data) {
+        StringBuilder sb = new StringBuilder();
+        for(byte b: data) {
+            sb.append(String.format("%02x", b & 0xFF));
+        }
+        return sb.append('>').toString().getBytes();
+    }
+}
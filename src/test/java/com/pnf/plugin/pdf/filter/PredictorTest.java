@@ -0,0 +1,60 @@
+/*
+Copyright PNF Software, Inc.
+
+    https://www.pnfsoftware.com
+
+Licensed under the Apache License, Version 2.0 (the "License");
+you may not use this file except in compliance with the License.
+You may obtain a copy of the License at
+
+    http://www.apache.org/licenses/LICENSE-2.0
+
+Unless required by applicable law or agreed to in writing, software
+distributed under the License is distributed on an "AS IS" BASIS,
+WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+See the License for the specific language governing permissions and
+limitations under the License.
+*/
+
+
+package com.pnf.plugin.pdf.filter;
+
+import java.io.ByteArrayInputStream;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+
+import junit.framework.TestCase;
+
+import com.pnf.plugin.pdf.PdfIndirectObjectHelper;
+import com.pnf.plugin.pdf.obj.PdfDictionary;
+import com.pnfsoftware.jeb.util.io.IO;
+
+/**
+ * 
+ * 
+ * @author PNF Software
+ *
+ */
+public class PredictorTest extends TestCase {
+
+    /** 3 rows of 4 bytes, tagged None, Sub, Up; then a trailing incomplete row */
+    private static final byte[] PNG_ROWS = {0, 1, 2, 3, 4, 1, 10, 1, 1, 1, 2, 1, 1, 1, 1, 2, 9};
+
+    private static final byte[] PNG_DECODED = {1, 2, 3, 4, 10, 11, 12, 13, 11, 12, 13, 14};
+
+    public void testPngPredictorFusedWithFlate() throws Exception {
+        PdfDictionary parms = (PdfDictionary)PdfIndirectObjectHelper
+                .parseIndirectObject("1 0 obj <</Predictor 12 /Columns 4>> endobj").getAttribute();
+        Deflater deflater = new Deflater();
+        deflater.setInput(PNG_ROWS);
+        deflater.finish();
+        byte[] deflated = new byte[256];
+        deflated = Arrays.copyOf(deflated, deflater.deflate(deflated));
+        deflater.end();
+
+        FlateDecode filter = new FlateDecode(parms);
+        assertTrue(Arrays.equals(PNG_DECODED, filter.decodeBytes(deflated, 0, deflated.length, null)));
+        byte[] streamed = IO.readInputStream(filter.decodeStream(new ByteArrayInputStream(deflated), null));
+        assertTrue(Arrays.equals(PNG_DECODED, streamed));
+    }
+}